@@ -5,12 +5,31 @@ package org.mozilla.jss;
 
 import java.io.InputStream;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.Provider;
 import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
-
+import java.util.stream.Collectors;
+
+import org.mozilla.jss.provider.java.security.IvAlgorithmParameters;
+import org.mozilla.jss.provider.java.security.JSSKeyPairGeneratorSpi;
+import org.mozilla.jss.provider.java.security.JSSKeyStoreSpi;
+import org.mozilla.jss.provider.java.security.JSSMessageDigestSpi;
+import org.mozilla.jss.provider.java.security.JSSSecureRandomSpi;
+import org.mozilla.jss.provider.java.security.JSSSignatureSpi;
+import org.mozilla.jss.provider.java.security.KeyFactorySpi1_2;
+import org.mozilla.jss.provider.java.security.RC2AlgorithmParameters;
+import org.mozilla.jss.provider.java.security.RSAPSSAlgorithmParameters;
+import org.mozilla.jss.provider.javax.crypto.JSSCipherSpi;
+import org.mozilla.jss.provider.javax.crypto.JSSKEMSpi;
+import org.mozilla.jss.provider.javax.crypto.JSSKeyGeneratorSpi;
+import org.mozilla.jss.provider.javax.crypto.JSSKeyManagerFactory;
+import org.mozilla.jss.provider.javax.crypto.JSSMacSpi;
+import org.mozilla.jss.provider.javax.crypto.JSSSecretKeyFactorySpi;
+import org.mozilla.jss.provider.javax.crypto.JSSTrustManagerFactory;
+import org.mozilla.jss.provider.javax.net.JSSContextSpi;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,6 +52,16 @@ public final class JSSProvider extends java.security.Provider {
             "MD(2|4|5)" // MD2, MD4, MD5 and variations thereof
             );
 
+    private static final List<Pattern> DEPRECATED_PATTERNS = DEPRECATED_ALGORITHMS.stream()
+            .map(Pattern::compile)
+            .collect(Collectors.toList());
+
+    /**
+     * Memoized results of isAlgorithmDeprecated(...), by algorithm name.
+     */
+    private static final ConcurrentHashMap<String, Boolean> DEPRECATION_VERDICTS = new ConcurrentHashMap<>();
+    private static final int MAX_DEPRECATION_VERDICTS = 1024;
+
     private static JSSLoader loader = new JSSLoader();
 
     private static CryptoManager cm;
@@ -100,7 +129,9 @@ public final class JSSProvider extends java.security.Provider {
 
     @Override
     public Service getService(String type, String algorithm) {
-        if (isAlgorithmDeprecated(algorithm)) {
+        // Walking the stack is expensive; only do it when we'd log the
+        // result.
+        if (logger.isDebugEnabled() && isAlgorithmDeprecated(algorithm)) {
             StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
             int i = 0;
             for (i = 0; i < stackTrace.length; i++) {
@@ -123,96 +154,145 @@ public final class JSSProvider extends java.security.Provider {
     }
 
     public static boolean isAlgorithmDeprecated(String algorithm) {
-        for (String alg : DEPRECATED_ALGORITHMS) {
-            Matcher m = Pattern.compile(alg).matcher(algorithm.toUpperCase());
-            if (m.find()) {
-                return true;
+        Boolean verdict = DEPRECATION_VERDICTS.get(algorithm);
+        if (verdict != null) {
+            return verdict;
+        }
+
+        boolean deprecated = false;
+        String name = algorithm.toUpperCase();
+        for (Pattern pattern : DEPRECATED_PATTERNS) {
+            if (pattern.matcher(name).find()) {
+                deprecated = true;
+                break;
             }
         }
-        return false;
+
+        // Callers may pass arbitrary names; don't let them grow the cache
+        // without bound.
+        if (DEPRECATION_VERDICTS.size() < MAX_DEPRECATION_VERDICTS) {
+            DEPRECATION_VERDICTS.put(algorithm, deprecated);
+        }
+
+        return deprecated;
     }
 
     public static List<String> getDeprecatedAlgortihms() {
         return DEPRECATED_ALGORITHMS;
     }
 
-    protected void initializeProvider() {
-        /////////////////////////////////////////////////////////////
-        // Signature
-        /////////////////////////////////////////////////////////////
+    /**
+     * Creates a new SPI instance for a JSSService.
+     */
+    @FunctionalInterface
+    private interface SpiFactory {
+        Object create() throws Exception;
+    }
 
-        put("Signature.MD5/RSA",
-            "org.mozilla.jss.provider.java.security.JSSSignatureSpi$MD5RSA");
-        put("Alg.Alias.Signature.MD5withRSA", "MD5/RSA");
+    /**
+     * A service whose implementation is constructed directly by a
+     * SpiFactory, rather than reflectively from its class name.
+     */
+    private static final class JSSService extends Service {
+        private final SpiFactory factory;
+
+        JSSService(Provider provider, String type, String algorithm,
+                Class<?> implementation, SpiFactory factory, String... aliases) {
+            super(provider, type, algorithm, implementation.getName(),
+                    aliases.length == 0 ? null : Arrays.asList(aliases), null);
+            this.factory = factory;
+        }
 
-        put("Signature.MD2/RSA",
-            "org.mozilla.jss.provider.java.security.JSSSignatureSpi$MD2RSA");
+        @Override
+        public Object newInstance(Object constructorParameter) throws NoSuchAlgorithmException {
+            // None of our implementations take a constructor parameter;
+            // leave validating one to the default implementation.
+            if (constructorParameter != null) {
+                return super.newInstance(constructorParameter);
+            }
 
-        put("Signature.SHA-256/RSA",
-            "org.mozilla.jss.provider.java.security.JSSSignatureSpi$SHA256RSA");
-        put("Alg.Alias.Signature.SHA256/RSA", "SHA-256/RSA");
-        put("Alg.Alias.Signature.SHA256withRSA", "SHA-256/RSA");
+            try {
+                return factory.create();
+            } catch (Exception e) {
+                String msg = "Error constructing implementation (algorithm: ";
+                msg += getAlgorithm() + ", provider: " + getProvider().getName();
+                msg += ", class: " + getClassName() + ")";
+                throw new NoSuchAlgorithmException(msg, e);
+            }
+        }
+    }
 
-        put("Signature.RSASSA-PSS",
-            "org.mozilla.jss.provider.java.security.JSSSignatureSpi$RSAPSSSignature");
+    private void add(String type, String algorithm, Class<?> implementation,
+            SpiFactory factory, String... aliases) {
+        putService(new JSSService(this, type, algorithm, implementation, factory, aliases));
+    }
 
-        put("Alg.Alias.Signature.1.2.840.113549.1.1.10",     "RSASSA-PSS");
-        put("Alg.Alias.Signature.OID.1.2.840.113549.1.1.10", "RSASSA-PSS");
+    @SuppressWarnings("removal")
+    protected void initializeProvider() {
+        /////////////////////////////////////////////////////////////
+        // Signature
+        /////////////////////////////////////////////////////////////
 
-        put("Signature.SHA-256/RSA/PSS",
-            "org.mozilla.jss.provider.java.security.JSSSignatureSpi$SHA256RSAPSS");
+        add("Signature", "MD5/RSA",
+            JSSSignatureSpi.MD5RSA.class, JSSSignatureSpi.MD5RSA::new,
+            "MD5withRSA");
 
-        put("Alg.Alias.Signature.SHA256withRSA/PSS","SHA-256/RSA/PSS");
+        add("Signature", "MD2/RSA",
+            JSSSignatureSpi.MD2RSA.class, JSSSignatureSpi.MD2RSA::new);
 
-        put("Signature.SHA-384/RSA/PSS",
-            "org.mozilla.jss.provider.java.security.JSSSignatureSpi$SHA384RSAPSS");
+        add("Signature", "SHA-256/RSA",
+            JSSSignatureSpi.SHA256RSA.class, JSSSignatureSpi.SHA256RSA::new,
+            "SHA256/RSA", "SHA256withRSA");
 
-        put("Alg.Alias.Signature.SHA384withRSA/PSS","SHA-384/RSA/PSS");
+        add("Signature", "RSASSA-PSS",
+            JSSSignatureSpi.RSAPSSSignature.class, JSSSignatureSpi.RSAPSSSignature::new,
+            "1.2.840.113549.1.1.10", "OID.1.2.840.113549.1.1.10");
 
-        put("Signature.SHA-512/RSA/PSS",
-            "org.mozilla.jss.provider.java.security.JSSSignatureSpi$SHA512RSAPSS");
+        add("Signature", "SHA-256/RSA/PSS",
+            JSSSignatureSpi.SHA256RSAPSS.class, JSSSignatureSpi.SHA256RSAPSS::new,
+            "SHA256withRSA/PSS");
 
-        put("Alg.Alias.Signature.SHA512withRSA/PSS","SHA-512/RSA/PSS");
+        add("Signature", "SHA-384/RSA/PSS",
+            JSSSignatureSpi.SHA384RSAPSS.class, JSSSignatureSpi.SHA384RSAPSS::new,
+            "SHA384withRSA/PSS");
 
+        add("Signature", "SHA-512/RSA/PSS",
+            JSSSignatureSpi.SHA512RSAPSS.class, JSSSignatureSpi.SHA512RSAPSS::new,
+            "SHA512withRSA/PSS");
 
-        put("Signature.SHA-384/RSA",
-            "org.mozilla.jss.provider.java.security.JSSSignatureSpi$SHA384RSA");
-        put("Alg.Alias.Signature.SHA384/RSA", "SHA-384/RSA");
-        put("Alg.Alias.Signature.SHA384withRSA", "SHA-384/RSA");
+        add("Signature", "SHA-384/RSA",
+            JSSSignatureSpi.SHA384RSA.class, JSSSignatureSpi.SHA384RSA::new,
+            "SHA384/RSA", "SHA384withRSA");
 
-        put("Signature.SHA-512/RSA",
-            "org.mozilla.jss.provider.java.security.JSSSignatureSpi$SHA512RSA");
-        put("Alg.Alias.Signature.SHA512/RSA", "SHA-512/RSA");
-        put("Alg.Alias.Signature.SHA512withRSA", "SHA-512/RSA");
+        add("Signature", "SHA-512/RSA",
+            JSSSignatureSpi.SHA512RSA.class, JSSSignatureSpi.SHA512RSA::new,
+            "SHA512/RSA", "SHA512withRSA");
 // ECC
 
-        put("Signature.SHA256withEC",
-            "org.mozilla.jss.provider.java.security.JSSSignatureSpi$SHA256EC");
-        put("Alg.Alias.Signature.SHA256/EC", "SHA256withEC");
-        put("Alg.Alias.Signature.SHA-256/EC", "SHA256withEC");
-        put("Alg.Alias.Signature.SHA256withECDSA", "SHA256withEC"); //JCE Standard Name
+        add("Signature", "SHA256withEC",
+            JSSSignatureSpi.SHA256EC.class, JSSSignatureSpi.SHA256EC::new,
+            "SHA256/EC", "SHA-256/EC",
+            "SHA256withECDSA"); //JCE Standard Name
 
-        put("Signature.SHA384withEC",
-            "org.mozilla.jss.provider.java.security.JSSSignatureSpi$SHA384EC");
-        put("Alg.Alias.Signature.SHA384/EC", "SHA384withEC");
-        put("Alg.Alias.Signature.SHA-384/EC", "SHA384withEC");
-        put("Alg.Alias.Signature.SHA384withECDSA", "SHA384withEC"); //JCE Standard Name
+        add("Signature", "SHA384withEC",
+            JSSSignatureSpi.SHA384EC.class, JSSSignatureSpi.SHA384EC::new,
+            "SHA384/EC", "SHA-384/EC",
+            "SHA384withECDSA"); //JCE Standard Name
 
-        put("Signature.SHA512withEC",
-            "org.mozilla.jss.provider.java.security.JSSSignatureSpi$SHA512EC");
-        put("Alg.Alias.Signature.SHA512/EC", "SHA512withEC");
-        put("Alg.Alias.Signature.SHA-512/EC", "SHA512withEC");
-        put("Alg.Alias.Signature.SHA512withECDSA", "SHA512withEC"); //JCE Standard Name
+        add("Signature", "SHA512withEC",
+            JSSSignatureSpi.SHA512EC.class, JSSSignatureSpi.SHA512EC::new,
+            "SHA512/EC", "SHA-512/EC",
+            "SHA512withECDSA"); //JCE Standard Name
 
 // ML-DSA
-        put("Signature.ML-DSA",
-            "org.mozilla.jss.provider.java.security.JSSSignatureSpi$MLDSA"); //JCE Standard Name
-        put("Signature.ML-DSA-44",
-            "org.mozilla.jss.provider.java.security.JSSSignatureSpi$MLDSA44"); //JCE Standard Name
-        put("Signature.ML-DSA-65",
-            "org.mozilla.jss.provider.java.security.JSSSignatureSpi$MLDSA65"); //JCE Standard Name
-        put("Signature.ML-DSA-87",
-            "org.mozilla.jss.provider.java.security.JSSSignatureSpi$MLDSA87"); //JCE Standard Name
+        add("Signature", "ML-DSA",
+            JSSSignatureSpi.MLDSA.class, JSSSignatureSpi.MLDSA::new); //JCE Standard Name
+        add("Signature", "ML-DSA-44",
+            JSSSignatureSpi.MLDSA44.class, JSSSignatureSpi.MLDSA44::new); //JCE Standard Name
+        add("Signature", "ML-DSA-65",
+            JSSSignatureSpi.MLDSA65.class, JSSSignatureSpi.MLDSA65::new); //JCE Standard Name
+        add("Signature", "ML-DSA-87",
+            JSSSignatureSpi.MLDSA87.class, JSSSignatureSpi.MLDSA87::new); //JCE Standard Name
 
         // NOTE: ML-DSA specific signature are not yet defined in the NSS version used.
         // They should be available in v. 3.116
@@ -221,288 +301,268 @@ public final class JSSProvider extends java.security.Provider {
         // Message Digesting
         /////////////////////////////////////////////////////////////
 
-        put("MessageDigest.MD2",
-                "org.mozilla.jss.provider.java.security.JSSMessageDigestSpi$MD2");
-        put("MessageDigest.MD5",
-                "org.mozilla.jss.provider.java.security.JSSMessageDigestSpi$MD5");
-        put("MessageDigest.SHA-256",
-                "org.mozilla.jss.provider.java.security.JSSMessageDigestSpi$SHA256");
-        put("MessageDigest.SHA-384",
-                "org.mozilla.jss.provider.java.security.JSSMessageDigestSpi$SHA384");
-        put("MessageDigest.SHA-512",
-                "org.mozilla.jss.provider.java.security.JSSMessageDigestSpi$SHA512");
-
-        put("Alg.Alias.MessageDigest.SHA256", "SHA-256");
-        put("Alg.Alias.MessageDigest.SHA384", "SHA-384");
-        put("Alg.Alias.MessageDigest.SHA512", "SHA-512");
+        add("MessageDigest", "MD2",
+            JSSMessageDigestSpi.MD2.class, JSSMessageDigestSpi.MD2::new);
+        add("MessageDigest", "MD5",
+            JSSMessageDigestSpi.MD5.class, JSSMessageDigestSpi.MD5::new);
+        add("MessageDigest", "SHA-256",
+            JSSMessageDigestSpi.SHA256.class, JSSMessageDigestSpi.SHA256::new,
+            "SHA256");
+        add("MessageDigest", "SHA-384",
+            JSSMessageDigestSpi.SHA384.class, JSSMessageDigestSpi.SHA384::new,
+            "SHA384");
+        add("MessageDigest", "SHA-512",
+            JSSMessageDigestSpi.SHA512.class, JSSMessageDigestSpi.SHA512::new,
+            "SHA512");
 
         /////////////////////////////////////////////////////////////
         // KEM
         /////////////////////////////////////////////////////////////
-        put("KEM.ML-KEM",
-            "org.mozilla.jss.provider.javax.crypto.JSSKEMSpi$MLKEM");
-        put("KEM.ML-KEM-512",
-            "org.mozilla.jss.provider.javax.crypto.JSSKEMSpi$MLKEM512");
-        put("KEM.ML-KEM-768",
-            "org.mozilla.jss.provider.javax.crypto.JSSKEMSpi$MLKEM768");
-        put("KEM.ML-KEM-1024",
-            "org.mozilla.jss.provider.javax.crypto.JSSKEMSpi$MLKEM1024");
-        
-        
+        add("KEM", "ML-KEM",
+            JSSKEMSpi.MLKEM.class, JSSKEMSpi.MLKEM::new);
+        add("KEM", "ML-KEM-512",
+            JSSKEMSpi.MLKEM512.class, JSSKEMSpi.MLKEM512::new);
+        add("KEM", "ML-KEM-768",
+            JSSKEMSpi.MLKEM768.class, JSSKEMSpi.MLKEM768::new);
+        add("KEM", "ML-KEM-1024",
+            JSSKEMSpi.MLKEM1024.class, JSSKEMSpi.MLKEM1024::new);
+
         /////////////////////////////////////////////////////////////
         // SecureRandom
         /////////////////////////////////////////////////////////////
-        put("SecureRandom.pkcs11prng",
-            "org.mozilla.jss.provider.java.security.JSSSecureRandomSpi");
+        add("SecureRandom", "pkcs11prng",
+            JSSSecureRandomSpi.class, JSSSecureRandomSpi::new);
 
         /////////////////////////////////////////////////////////////
         // KeyPairGenerator
         /////////////////////////////////////////////////////////////
-        put("KeyPairGenerator.RSA",
-            "org.mozilla.jss.provider.java.security.JSSKeyPairGeneratorSpi$RSA");
-        put("KeyPairGenerator.DSA",
-            "org.mozilla.jss.provider.java.security.JSSKeyPairGeneratorSpi$DSA");
-        put("KeyPairGenerator.EC",
-            "org.mozilla.jss.provider.java.security.JSSKeyPairGeneratorSpi$EC");
+        add("KeyPairGenerator", "RSA",
+            JSSKeyPairGeneratorSpi.RSA.class, JSSKeyPairGeneratorSpi.RSA::new);
+        add("KeyPairGenerator", "DSA",
+            JSSKeyPairGeneratorSpi.DSA.class, JSSKeyPairGeneratorSpi.DSA::new);
+        add("KeyPairGenerator", "EC",
+            JSSKeyPairGeneratorSpi.EC.class, JSSKeyPairGeneratorSpi.EC::new);
         // OpenDJK JEP 497 definition
-        put("KeyPairGenerator.ML-DSA",
-            "org.mozilla.jss.provider.java.security.JSSKeyPairGeneratorSpi$MLDSA65");
-        put("KeyPairGenerator.ML-DSA-44",
-            "org.mozilla.jss.provider.java.security.JSSKeyPairGeneratorSpi$MLDSA44");
-        put("KeyPairGenerator.ML-DSA-65",
-            "org.mozilla.jss.provider.java.security.JSSKeyPairGeneratorSpi$MLDSA65");
-        put("KeyPairGenerator.ML-DSA-87",
-            "org.mozilla.jss.provider.java.security.JSSKeyPairGeneratorSpi$MLDSA87");
+        add("KeyPairGenerator", "ML-DSA",
+            JSSKeyPairGeneratorSpi.MLDSA65.class, JSSKeyPairGeneratorSpi.MLDSA65::new);
+        add("KeyPairGenerator", "ML-DSA-44",
+            JSSKeyPairGeneratorSpi.MLDSA44.class, JSSKeyPairGeneratorSpi.MLDSA44::new);
+        add("KeyPairGenerator", "ML-DSA-65",
+            JSSKeyPairGeneratorSpi.MLDSA65.class, JSSKeyPairGeneratorSpi.MLDSA65::new);
+        add("KeyPairGenerator", "ML-DSA-87",
+            JSSKeyPairGeneratorSpi.MLDSA87.class, JSSKeyPairGeneratorSpi.MLDSA87::new);
         // OpenJDK JEP 496 definition
-        put("KeyPairGenerator.ML-KEM",
-            "org.mozilla.jss.provider.java.security.JSSKeyPairGeneratorSpi$MLKEM768");
-        put("KeyPairGenerator.ML-KEM-512",
-            "org.mozilla.jss.provider.java.security.JSSKeyPairGeneratorSpi$MLKEM512");
-        put("KeyPairGenerator.ML-KEM-768",
-            "org.mozilla.jss.provider.java.security.JSSKeyPairGeneratorSpi$MLKEM768");
-        put("KeyPairGenerator.ML-KEM-1024",
-            "org.mozilla.jss.provider.java.security.JSSKeyPairGeneratorSpi$MLKEM1024");
+        add("KeyPairGenerator", "ML-KEM",
+            JSSKeyPairGeneratorSpi.MLKEM768.class, JSSKeyPairGeneratorSpi.MLKEM768::new);
+        add("KeyPairGenerator", "ML-KEM-512",
+            JSSKeyPairGeneratorSpi.MLKEM512.class, JSSKeyPairGeneratorSpi.MLKEM512::new);
+        add("KeyPairGenerator", "ML-KEM-768",
+            JSSKeyPairGeneratorSpi.MLKEM768.class, JSSKeyPairGeneratorSpi.MLKEM768::new);
+        add("KeyPairGenerator", "ML-KEM-1024",
+            JSSKeyPairGeneratorSpi.MLKEM1024.class, JSSKeyPairGeneratorSpi.MLKEM1024::new);
 
         /////////////////////////////////////////////////////////////
         // KeyFactory
         /////////////////////////////////////////////////////////////
-        put("KeyFactory.RSA",
-            "org.mozilla.jss.provider.java.security.KeyFactorySpi1_2");
-        put("KeyFactory.DSA",
-            "org.mozilla.jss.provider.java.security.KeyFactorySpi1_2");
-        put("KeyFactory.EC",
-            "org.mozilla.jss.provider.java.security.KeyFactorySpi1_2");
-        put("KeyFactory.ML-DSA",
-            "org.mozilla.jss.provider.java.security.KeyFactorySpi1_2");
-        put("KeyFactory.ML-DSA-44",
-            "org.mozilla.jss.provider.java.security.KeyFactorySpi1_2");
-        put("KeyFactory.ML-DSA-65",
-            "org.mozilla.jss.provider.java.security.KeyFactorySpi1_2");
-        put("KeyFactory.ML-DSA-87",
-            "org.mozilla.jss.provider.java.security.KeyFactorySpi1_2");
-        put("KeyFactory.ML-KEM",
-            "org.mozilla.jss.provider.java.security.KeyFactorySpi1_2");
-        put("KeyFactory.ML-KEM-512",
-            "org.mozilla.jss.provider.java.security.KeyFactorySpi1_2");
-        put("KeyFactory.ML-KEM-768",
-            "org.mozilla.jss.provider.java.security.KeyFactorySpi1_2");
-        put("KeyFactory.ML-KEM-1024",
-            "org.mozilla.jss.provider.java.security.KeyFactorySpi1_2");
+        for (String alg : new String[] {
+                "RSA", "DSA", "EC",
+                "ML-DSA", "ML-DSA-44", "ML-DSA-65", "ML-DSA-87",
+                "ML-KEM", "ML-KEM-512", "ML-KEM-768", "ML-KEM-1024" }) {
+            add("KeyFactory", alg,
+                KeyFactorySpi1_2.class, KeyFactorySpi1_2::new);
+        }
+
         /////////////////////////////////////////////////////////////
         // KeyStore
         /////////////////////////////////////////////////////////////
-        put("KeyStore.PKCS11",
-                "org.mozilla.jss.provider.java.security.JSSKeyStoreSpi");
+        add("KeyStore", "PKCS11",
+            JSSKeyStoreSpi.class, JSSKeyStoreSpi::new);
 
         /////////////////////////////////////////////////////////////
         // AlgorithmParameters
         /////////////////////////////////////////////////////////////
-        put("AlgorithmParameters.IvAlgorithmParameters",
-            "org.mozilla.jss.provider.java.security.IvAlgorithmParameters");
-        put("AlgorithmParameters.RC2AlgorithmParameters",
-            "org.mozilla.jss.provider.java.security.RC2AlgorithmParameters");
+        add("AlgorithmParameters", "IvAlgorithmParameters",
+            IvAlgorithmParameters.class, IvAlgorithmParameters::new);
+        add("AlgorithmParameters", "RC2AlgorithmParameters",
+            RC2AlgorithmParameters.class, RC2AlgorithmParameters::new);
 
-        put("AlgorithmParameters.RSAPSSAlgorithmParameters",
-            "org.mozilla.jss.provider.java.security.RSAPSSAlgorithmParameters");
+        add("AlgorithmParameters", "RSAPSSAlgorithmParameters",
+            RSAPSSAlgorithmParameters.class, RSAPSSAlgorithmParameters::new);
 
         /////////////////////////////////////////////////////////////
         // Cipher
         /////////////////////////////////////////////////////////////
-        put("Cipher.DES",
-            "org.mozilla.jss.provider.javax.crypto.JSSCipherSpi$DES");
-        put("Cipher.DESede",
-            "org.mozilla.jss.provider.javax.crypto.JSSCipherSpi$DESede");
-        put("Alg.Alias.Cipher.DES3", "DESede");
-        put("Cipher.AES",
-            "org.mozilla.jss.provider.javax.crypto.JSSCipherSpi$AES");
-        put("Cipher.RC4",
-            "org.mozilla.jss.provider.javax.crypto.JSSCipherSpi$RC4");
-        put("Cipher.RSA",
-            "org.mozilla.jss.provider.javax.crypto.JSSCipherSpi$RSA");
-        put("Cipher.RC2",
-            "org.mozilla.jss.provider.javax.crypto.JSSCipherSpi$RC2");
+        add("Cipher", "DES",
+            JSSCipherSpi.DES.class, JSSCipherSpi.DES::new);
+        add("Cipher", "DESede",
+            JSSCipherSpi.DESede.class, JSSCipherSpi.DESede::new,
+            "DES3");
+        add("Cipher", "AES",
+            JSSCipherSpi.AES.class, JSSCipherSpi.AES::new);
+        add("Cipher", "RC4",
+            JSSCipherSpi.RC4.class, JSSCipherSpi.RC4::new);
+        add("Cipher", "RSA",
+            JSSCipherSpi.RSA.class, JSSCipherSpi.RSA::new);
+        add("Cipher", "RC2",
+            JSSCipherSpi.RC2.class, JSSCipherSpi.RC2::new);
 
         /////////////////////////////////////////////////////////////
         // KeyGenerator
         /////////////////////////////////////////////////////////////
-        String kg_spi = "org.mozilla.jss.provider.javax.crypto.JSSKeyGeneratorSpi";
-
-        put("KeyGenerator.DES", kg_spi + "$DES");
-        put("KeyGenerator.DESede", kg_spi + "$DESede");
-        put("Alg.Alias.KeyGenerator.DES3", "DESede");
-        put("KeyGenerator.AES", kg_spi + "$AES");
-        put("KeyGenerator.RC4", kg_spi + "$RC4");
-        put("KeyGenerator.RC2", kg_spi + "$RC2");
-        put("KeyGenerator.HmacSHA1", kg_spi + "$HmacSHA1");
-        put("KeyGenerator.PBAHmacSHA1", kg_spi + "$PBAHmacSHA1");
-        put("KeyGenerator.PBESHA256Hmac", kg_spi + "$PBESHA256Hmac");
-        put("KeyGenerator.PBESHA384Hmac", kg_spi + "$PBESHA384Hmac");
-        put("KeyGenerator.PBESHA512Hmac", kg_spi + "$PBESHA512Hmac");
-        put("KeyGenerator.HmacSHA256", kg_spi + "$HmacSHA256");
-        put("KeyGenerator.HmacSHA384", kg_spi + "$HmacSHA384");
-        put("KeyGenerator.HmacSHA512", kg_spi + "$HmacSHA512");
+        add("KeyGenerator", "DES",
+            JSSKeyGeneratorSpi.DES.class, JSSKeyGeneratorSpi.DES::new);
+        add("KeyGenerator", "DESede",
+            JSSKeyGeneratorSpi.DESede.class, JSSKeyGeneratorSpi.DESede::new,
+            "DES3");
+        add("KeyGenerator", "AES",
+            JSSKeyGeneratorSpi.AES.class, JSSKeyGeneratorSpi.AES::new);
+        add("KeyGenerator", "RC4",
+            JSSKeyGeneratorSpi.RC4.class, JSSKeyGeneratorSpi.RC4::new);
+        add("KeyGenerator", "RC2",
+            JSSKeyGeneratorSpi.RC2.class, JSSKeyGeneratorSpi.RC2::new);
+        add("KeyGenerator", "HmacSHA1",
+            JSSKeyGeneratorSpi.HmacSHA1.class, JSSKeyGeneratorSpi.HmacSHA1::new);
+        add("KeyGenerator", "PBAHmacSHA1",
+            JSSKeyGeneratorSpi.PBAHmacSHA1.class, JSSKeyGeneratorSpi.PBAHmacSHA1::new);
+        add("KeyGenerator", "PBESHA256Hmac",
+            JSSKeyGeneratorSpi.PBESHA256Hmac.class, JSSKeyGeneratorSpi.PBESHA256Hmac::new);
+        add("KeyGenerator", "PBESHA384Hmac",
+            JSSKeyGeneratorSpi.PBESHA384Hmac.class, JSSKeyGeneratorSpi.PBESHA384Hmac::new);
+        add("KeyGenerator", "PBESHA512Hmac",
+            JSSKeyGeneratorSpi.PBESHA512Hmac.class, JSSKeyGeneratorSpi.PBESHA512Hmac::new);
+        add("KeyGenerator", "HmacSHA256",
+            JSSKeyGeneratorSpi.HmacSHA256.class, JSSKeyGeneratorSpi.HmacSHA256::new);
+        add("KeyGenerator", "HmacSHA384",
+            JSSKeyGeneratorSpi.HmacSHA384.class, JSSKeyGeneratorSpi.HmacSHA384::new);
+        add("KeyGenerator", "HmacSHA512",
+            JSSKeyGeneratorSpi.HmacSHA512.class, JSSKeyGeneratorSpi.HmacSHA512::new);
         // KBKDF: Counter
-        put("KeyGenerator.KbkdfCounter", kg_spi + "$KbkdfCounter");
-        put("Alg.Alias.KeyGenerator.KBKDF-Counter", "KbkdfCounter");
-        put("Alg.Alias.KeyGenerator.SP800-108-KDF-Counter", "KbkdfCounter");
-        put("Alg.Alias.KeyGenerator.SP800-108-Counter", "KbkdfCounter");
-        put("Alg.Alias.KeyGenerator.CounterKbkdf", "KbkdfCounter");
+        add("KeyGenerator", "KbkdfCounter",
+            JSSKeyGeneratorSpi.KbkdfCounter.class, JSSKeyGeneratorSpi.KbkdfCounter::new,
+            "KBKDF-Counter", "SP800-108-KDF-Counter", "SP800-108-Counter",
+            "CounterKbkdf");
         // KBKDF: Counter (data)
-        put("KeyGenerator.KbkdfCounterData", kg_spi + "$KbkdfCounterData");
-        put("Alg.Alias.KeyGenerator.KBKDF-Counter-Data", "KbkdfCounterData");
-        put("Alg.Alias.KeyGenerator.SP800-108-KDF-Counter-Data", "KbkdfCounterData");
-        put("Alg.Alias.KeyGenerator.SP800-108-Counter-Data", "KbkdfCounterData");
-        put("Alg.Alias.KeyGenerator.CounterKbkdf-Data", "KbkdfCounterData");
+        add("KeyGenerator", "KbkdfCounterData",
+            JSSKeyGeneratorSpi.KbkdfCounterData.class, JSSKeyGeneratorSpi.KbkdfCounterData::new,
+            "KBKDF-Counter-Data", "SP800-108-KDF-Counter-Data",
+            "SP800-108-Counter-Data", "CounterKbkdf-Data");
         // KBKDF: Feedback
-        put("KeyGenerator.KbkdfFeedback", kg_spi + "$KbkdfFeedback");
-        put("Alg.Alias.KeyGenerator.KBKDF-Feedback", "KbkdfFeedback");
-        put("Alg.Alias.KeyGenerator.SP800-108-KDF-Feedback", "KbkdfFeedback");
-        put("Alg.Alias.KeyGenerator.SP800-108-Feedback", "KbkdfFeedback");
-        put("Alg.Alias.KeyGenerator.FeedbackKbkdf", "KbkdfFeedback");
+        add("KeyGenerator", "KbkdfFeedback",
+            JSSKeyGeneratorSpi.KbkdfFeedback.class, JSSKeyGeneratorSpi.KbkdfFeedback::new,
+            "KBKDF-Feedback", "SP800-108-KDF-Feedback", "SP800-108-Feedback",
+            "FeedbackKbkdf");
         // KBKDF: Feedback (data)
-        put("KeyGenerator.KbkdfFeedbackData", kg_spi + "$KbkdfFeedbackData");
-        put("Alg.Alias.KeyGenerator.KBKDF-Feedback-Data", "KbkdfFeedbackData");
-        put("Alg.Alias.KeyGenerator.SP800-108-KDF-Feedback-Data", "KbkdfFeedbackData");
-        put("Alg.Alias.KeyGenerator.SP800-108-Feedback-Data", "KbkdfFeedbackData");
-        put("Alg.Alias.KeyGenerator.FeedbackKbkdf-Data", "KbkdfFeedbackData");
+        add("KeyGenerator", "KbkdfFeedbackData",
+            JSSKeyGeneratorSpi.KbkdfFeedbackData.class, JSSKeyGeneratorSpi.KbkdfFeedbackData::new,
+            "KBKDF-Feedback-Data", "SP800-108-KDF-Feedback-Data",
+            "SP800-108-Feedback-Data", "FeedbackKbkdf-Data");
         // KBKDF: Double Pipeline -- sometimes Pipeline KBKDF
-        put("KeyGenerator.KbkdfDoublePipeline", kg_spi + "$KbkdfDoublePipeline");
-        put("Alg.Alias.KeyGenerator.KBKDF-DoublePipeline", "KbkdfDoublePipeline");
-        put("Alg.Alias.KeyGenerator.SP800-108-KDF-DoublePipeline", "KbkdfDoublePipeline");
-        put("Alg.Alias.KeyGenerator.SP800-108-DoublePipeline", "KbkdfDoublePipeline");
-        put("Alg.Alias.KeyGenerator.DoublePipelineKbkdf", "KbkdfDoublePipeline");
-        put("Alg.Alias.KeyGenerator.KbkdfPipeline", "KbkdfDoublePipeline");
-        put("Alg.Alias.KeyGenerator.KBKDF-Pipeline", "KbkdfDoublePipeline");
-        put("Alg.Alias.KeyGenerator.SP800-108-KDF-Pipeline", "KbkdfDoublePipeline");
-        put("Alg.Alias.KeyGenerator.SP800-108-Pipeline", "KbkdfDoublePipeline");
-        put("Alg.Alias.KeyGenerator.PipelineKbkdf", "KbkdfDoublePipeline");
+        add("KeyGenerator", "KbkdfDoublePipeline",
+            JSSKeyGeneratorSpi.KbkdfDoublePipeline.class, JSSKeyGeneratorSpi.KbkdfDoublePipeline::new,
+            "KBKDF-DoublePipeline", "SP800-108-KDF-DoublePipeline",
+            "SP800-108-DoublePipeline", "DoublePipelineKbkdf",
+            "KbkdfPipeline", "KBKDF-Pipeline", "SP800-108-KDF-Pipeline",
+            "SP800-108-Pipeline", "PipelineKbkdf");
         // KBKDF: Double Pipeline (data) -- sometimes Pipeline KBKDF (data)
-        put("KeyGenerator.KbkdfDoublePipelineData", kg_spi + "$KbkdfDoublePipelineData");
-        put("Alg.Alias.KeyGenerator.KBKDF-DoublePipeline-Data", "KbkdfDoublePipelineData");
-        put("Alg.Alias.KeyGenerator.SP800-108-KDF-DoublePipeline-Data", "KbkdfDoublePipelineData");
-        put("Alg.Alias.KeyGenerator.SP800-108-DoublePipeline-Data", "KbkdfDoublePipelineData");
-        put("Alg.Alias.KeyGenerator.DoublePipelineKbkdf-Data", "KbkdfDoublePipelineData");
-        put("Alg.Alias.KeyGenerator.KbkdfPipelineData", "KbkdfDoublePipelineData");
-        put("Alg.Alias.KeyGenerator.KBKDF-Pipeline-Data", "KbkdfDoublePipelineData");
-        put("Alg.Alias.KeyGenerator.SP800-108-KDF-Pipeline-Data", "KbkdfDoublePipelineData");
-        put("Alg.Alias.KeyGenerator.SP800-108-Pipeline-Data", "KbkdfDoublePipelineData");
-        put("Alg.Alias.KeyGenerator.PipelineKbkdf-Data", "KbkdfDoublePipelineData");
+        add("KeyGenerator", "KbkdfDoublePipelineData",
+            JSSKeyGeneratorSpi.KbkdfDoublePipelineData.class, JSSKeyGeneratorSpi.KbkdfDoublePipelineData::new,
+            "KBKDF-DoublePipeline-Data", "SP800-108-KDF-DoublePipeline-Data",
+            "SP800-108-DoublePipeline-Data", "DoublePipelineKbkdf-Data",
+            "KbkdfPipelineData", "KBKDF-Pipeline-Data",
+            "SP800-108-KDF-Pipeline-Data", "SP800-108-Pipeline-Data",
+            "PipelineKbkdf-Data");
 
         /////////////////////////////////////////////////////////////
         // SecretKeyFactory
         /////////////////////////////////////////////////////////////
-        put("SecretKeyFactory.GenericSecret", "org.mozilla.jss.provider.javax.crypto.JSSSecretKeyFactorySpi$GenericSecret");
-        put("Alg.Alias.SecretKeyFactory.GENERIC_SECRET", "GenericSecret");
-        put("SecretKeyFactory.DES",
-            "org.mozilla.jss.provider.javax.crypto.JSSSecretKeyFactorySpi$DES");
-        put("SecretKeyFactory.DESede",
-         "org.mozilla.jss.provider.javax.crypto.JSSSecretKeyFactorySpi$DESede");
-        put("Alg.Alias.SecretKeyFactory.DES3", "DESede");
-        put("SecretKeyFactory.AES",
-            "org.mozilla.jss.provider.javax.crypto.JSSSecretKeyFactorySpi$AES");
-        put("SecretKeyFactory.RC4",
-            "org.mozilla.jss.provider.javax.crypto.JSSSecretKeyFactorySpi$RC4");
-        put("SecretKeyFactory.RC2",
-            "org.mozilla.jss.provider.javax.crypto.JSSSecretKeyFactorySpi$RC2");
-        put("SecretKeyFactory.HmacSHA1",
-            "org.mozilla.jss.provider.javax.crypto.JSSSecretKeyFactorySpi$HmacSHA1");
-        put("SecretKeyFactory.PBAHmacSHA1",
-            "org.mozilla.jss.provider.javax.crypto.JSSSecretKeyFactorySpi$PBAHmacSHA1");
-        put("SecretKeyFactory.HmacSHA256",
-            "org.mozilla.jss.provider.javax.crypto.JSSSecretKeyFactorySpi$HmacSHA256");
-        put("SecretKeyFactory.HmacSHA384",
-            "org.mozilla.jss.provider.javax.crypto.JSSSecretKeyFactorySpi$HmacSHA384");
-        put("SecretKeyFactory.HmacSHA512",
-            "org.mozilla.jss.provider.javax.crypto.JSSSecretKeyFactorySpi$HmacSHA512");
-        put("SecretKeyFactory.PBEWithMD5AndDES",
-            "org.mozilla.jss.provider.javax.crypto.JSSSecretKeyFactorySpi$PBE_MD5_DES_CBC");
-        put("SecretKeyFactory.PBEWithSHA1AndDES",
-            "org.mozilla.jss.provider.javax.crypto.JSSSecretKeyFactorySpi$PBE_SHA1_DES_CBC");
-        put("SecretKeyFactory.PBEWithSHA1AndDESede",
-            "org.mozilla.jss.provider.javax.crypto.JSSSecretKeyFactorySpi$PBE_SHA1_DES3_CBC");
-        put("Alg.Alias.SecretKeyFactory.PBEWithSHA1AndDES3", "PBEWithSHA1AndDESede");
-        put("SecretKeyFactory.PBEWithSHA1And128RC4",
-            "org.mozilla.jss.provider.javax.crypto.JSSSecretKeyFactorySpi$PBE_SHA1_RC4_128");
+        add("SecretKeyFactory", "GenericSecret",
+            JSSSecretKeyFactorySpi.GenericSecret.class, JSSSecretKeyFactorySpi.GenericSecret::new,
+            "GENERIC_SECRET");
+        add("SecretKeyFactory", "DES",
+            JSSSecretKeyFactorySpi.DES.class, JSSSecretKeyFactorySpi.DES::new);
+        add("SecretKeyFactory", "DESede",
+            JSSSecretKeyFactorySpi.DESede.class, JSSSecretKeyFactorySpi.DESede::new,
+            "DES3");
+        add("SecretKeyFactory", "AES",
+            JSSSecretKeyFactorySpi.AES.class, JSSSecretKeyFactorySpi.AES::new);
+        add("SecretKeyFactory", "RC4",
+            JSSSecretKeyFactorySpi.RC4.class, JSSSecretKeyFactorySpi.RC4::new);
+        add("SecretKeyFactory", "RC2",
+            JSSSecretKeyFactorySpi.RC2.class, JSSSecretKeyFactorySpi.RC2::new);
+        add("SecretKeyFactory", "HmacSHA1",
+            JSSSecretKeyFactorySpi.HmacSHA1.class, JSSSecretKeyFactorySpi.HmacSHA1::new);
+        add("SecretKeyFactory", "PBAHmacSHA1",
+            JSSSecretKeyFactorySpi.PBAHmacSHA1.class, JSSSecretKeyFactorySpi.PBAHmacSHA1::new);
+        add("SecretKeyFactory", "HmacSHA256",
+            JSSSecretKeyFactorySpi.HmacSHA256.class, JSSSecretKeyFactorySpi.HmacSHA256::new);
+        add("SecretKeyFactory", "HmacSHA384",
+            JSSSecretKeyFactorySpi.HmacSHA384.class, JSSSecretKeyFactorySpi.HmacSHA384::new);
+        add("SecretKeyFactory", "HmacSHA512",
+            JSSSecretKeyFactorySpi.HmacSHA512.class, JSSSecretKeyFactorySpi.HmacSHA512::new);
+        add("SecretKeyFactory", "PBEWithMD5AndDES",
+            JSSSecretKeyFactorySpi.PBE_MD5_DES_CBC.class, JSSSecretKeyFactorySpi.PBE_MD5_DES_CBC::new);
+        add("SecretKeyFactory", "PBEWithSHA1AndDES",
+            JSSSecretKeyFactorySpi.PBE_SHA1_DES_CBC.class, JSSSecretKeyFactorySpi.PBE_SHA1_DES_CBC::new);
+        add("SecretKeyFactory", "PBEWithSHA1AndDESede",
+            JSSSecretKeyFactorySpi.PBE_SHA1_DES3_CBC.class, JSSSecretKeyFactorySpi.PBE_SHA1_DES3_CBC::new,
+            "PBEWithSHA1AndDES3");
+        add("SecretKeyFactory", "PBEWithSHA1And128RC4",
+            JSSSecretKeyFactorySpi.PBE_SHA1_RC4_128.class, JSSSecretKeyFactorySpi.PBE_SHA1_RC4_128::new);
 
 
         /////////////////////////////////////////////////////////////
         // MAC
         /////////////////////////////////////////////////////////////
-        put("Mac.HmacSHA1",
-            "org.mozilla.jss.provider.javax.crypto.JSSMacSpi$HmacSHA1");
-        put("Alg.Alias.Mac.Hmac-SHA1", "HmacSHA1");
-        put("Mac.HmacSHA256",
-            "org.mozilla.jss.provider.javax.crypto.JSSMacSpi$HmacSHA256");
-        put("Alg.Alias.Mac.Hmac-SHA256", "HmacSHA256");
-        put("Mac.HmacSHA384",
-            "org.mozilla.jss.provider.javax.crypto.JSSMacSpi$HmacSHA384");
-        put("Alg.Alias.Mac.Hmac-SHA384", "HmacSHA384");
-        put("Mac.HmacSHA512",
-            "org.mozilla.jss.provider.javax.crypto.JSSMacSpi$HmacSHA512");
-        put("Mac.CmacAES", "org.mozilla.jss.provider.javax.crypto.JSSMacSpi$CmacAES");
-        put("Alg.Alias.Mac.Hmac-SHA512", "HmacSHA512");
-        put("Alg.Alias.Mac.SHA-256-HMAC", "HmacSHA256");
-        put("Alg.Alias.Mac.SHA-384-HMAC", "HmacSHA384");
-        put("Alg.Alias.Mac.SHA-512-HMAC", "HmacSHA512");
-        put("Alg.Alias.Mac.AES-128-CMAC", "CmacAES");
-        put("Alg.Alias.Mac.AES-192-CMAC", "CmacAES");
-        put("Alg.Alias.Mac.AES-256-CMAC", "CmacAES");
-        put("Alg.Alias.Mac.CmacAES128", "CmacAES");
-        put("Alg.Alias.Mac.CmacAES192", "CmacAES");
-        put("Alg.Alias.Mac.CmacAES256", "CmacAES");
-        put("Alg.Alias.Mac.AES_CMAC", "CmacAES");
-        put("Alg.Alias.Mac.CMAC_AES", "CmacAES");
+        add("Mac", "HmacSHA1",
+            JSSMacSpi.HmacSHA1.class, JSSMacSpi.HmacSHA1::new,
+            "Hmac-SHA1");
+        add("Mac", "HmacSHA256",
+            JSSMacSpi.HmacSHA256.class, JSSMacSpi.HmacSHA256::new,
+            "Hmac-SHA256", "SHA-256-HMAC");
+        add("Mac", "HmacSHA384",
+            JSSMacSpi.HmacSHA384.class, JSSMacSpi.HmacSHA384::new,
+            "Hmac-SHA384", "SHA-384-HMAC");
+        add("Mac", "HmacSHA512",
+            JSSMacSpi.HmacSHA512.class, JSSMacSpi.HmacSHA512::new,
+            "Hmac-SHA512", "SHA-512-HMAC");
+        add("Mac", "CmacAES",
+            JSSMacSpi.CmacAES.class, JSSMacSpi.CmacAES::new,
+            "AES-128-CMAC", "AES-192-CMAC", "AES-256-CMAC",
+            "CmacAES128", "CmacAES192", "CmacAES256",
+            "AES_CMAC", "CMAC_AES");
 
 
         /////////////////////////////////////////////////////////////
         // KeyManagerFactory
         /////////////////////////////////////////////////////////////
-        put("KeyManagerFactory.NssX509",
-            "org.mozilla.jss.provider.javax.crypto.JSSKeyManagerFactory");
-        put("Alg.Alias.KeyManagerFactory.SunX509", "NssX509");
-        put("Alg.Alias.KeyManagerFactory.PKIX", "SunX509");
+        add("KeyManagerFactory", "NssX509",
+            JSSKeyManagerFactory.class, JSSKeyManagerFactory::new,
+            "SunX509", "PKIX");
 
 
         /////////////////////////////////////////////////////////////
         // TrustManagerFactory
         /////////////////////////////////////////////////////////////
-        put("TrustManagerFactory.NssX509",
-            "org.mozilla.jss.provider.javax.crypto.JSSTrustManagerFactory");
-        put("Alg.Alias.TrustManagerFactory.SunX509", "NssX509");
-        put("Alg.Alias.TrustManagerFactory.PKIX", "NssX509");
-        put("Alg.Alias.TrustManagerFactory.X509", "NssX509");
-        put("Alg.Alias.TrustManagerFactory.X.509", "NssX509");
+        add("TrustManagerFactory", "NssX509",
+            JSSTrustManagerFactory.class, JSSTrustManagerFactory::new,
+            "SunX509", "PKIX", "X509", "X.509");
 
         /////////////////////////////////////////////////////////////
         // TLS
         /////////////////////////////////////////////////////////////
         if (ENABLE_JSSENGINE) {
-            put("SSLContext.Default", "org.mozilla.jss.provider.javax.net.JSSContextSpi");
-            put("SSLContext.SSL", "org.mozilla.jss.provider.javax.net.JSSContextSpi");
-            put("SSLContext.TLS", "org.mozilla.jss.provider.javax.net.JSSContextSpi");
-            put("SSLContext.TLSv1.1", "org.mozilla.jss.provider.javax.net.JSSContextSpi$TLSv11");
-            put("SSLContext.TLSv1.2", "org.mozilla.jss.provider.javax.net.JSSContextSpi$TLSv12");
-            put("SSLContext.TLSv1.3", "org.mozilla.jss.provider.javax.net.JSSContextSpi$TLSv13");
+            add("SSLContext", "Default",
+                JSSContextSpi.class, JSSContextSpi::new);
+            add("SSLContext", "SSL",
+                JSSContextSpi.class, JSSContextSpi::new);
+            add("SSLContext", "TLS",
+                JSSContextSpi.class, JSSContextSpi::new);
+            add("SSLContext", "TLSv1.1",
+                JSSContextSpi.TLSv11.class, JSSContextSpi.TLSv11::new);
+            add("SSLContext", "TLSv1.2",
+                JSSContextSpi.TLSv12.class, JSSContextSpi.TLSv12::new);
+            add("SSLContext", "TLSv1.3",
+                JSSContextSpi.TLSv13.class, JSSContextSpi.TLSv13::new);
         }
     }
 
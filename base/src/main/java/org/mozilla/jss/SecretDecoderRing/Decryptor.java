@@ -6,6 +6,10 @@ package org.mozilla.jss.SecretDecoderRing;
 
 import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
@@ -21,11 +25,18 @@ import org.mozilla.jss.crypto.TokenException;
 
 /**
  * Decrypts data with the SecretDecoderRing.
+ *
+ * <p>A Decryptor may be shared by several threads. Each thread keeps its own
+ * Cipher per algorithm, created on first use, and key handles are cached by
+ * KeyManager, so decrypting many values doesn't search the token each time.
  */
 public class Decryptor {
     private CryptoToken token;
     private KeyManager keyManager;
 
+    private final ThreadLocal<Map<EncryptionAlgorithm, Cipher>> ciphers =
+        ThreadLocal.withInitial(HashMap::new);
+
     /**
      * Creates a Decryptor for use with the given CryptoToken.
      */
@@ -51,51 +62,108 @@ public class Decryptor {
         throws NotInitializedException,
         GeneralSecurityException, TokenException
     {
-        CryptoManager cm = CryptoManager.getInstance();
-        CryptoToken savedToken = cm.getThreadToken();
-
         try {
-            cm.setThreadToken(token);
-
-            //
-            // decode ASN1
-            //
-            Encoding encoding = (Encoding)
-                ASN1Util.decode(Encoding.getTemplate(), ciphertext);
-
-            //
-            // lookup the algorithm
-            //
-            EncryptionAlgorithm alg = EncryptionAlgorithm.fromOID(
-                encoding.getEncryptionOID() );
-
-            //
-            // Lookup the key
-            //
-            SecretKey key = keyManager.lookupKey(alg, encoding.getKeyID());
-            if( key == null ) {
-                throw new InvalidKeyException("No matching key found");
-            }
-
-            //
-            // do the decryption
-            //
-            IvParameterSpec ivSpec = new IvParameterSpec(encoding.getIv());
+            return decryptOne(ciphertext);
+        } catch(InvalidBERException ibe) {
+            throw new GeneralSecurityException(ibe.toString());
+        } catch(IllegalStateException ise) {
+            throw new GeneralSecurityException(ise.toString());
+        }
+    }
 
-            Cipher cipher = Cipher.getInstance(alg.toString(),
-                Encryptor.PROVIDER);
-            cipher.init(Cipher.DECRYPT_MODE, key, ivSpec);
+    /**
+     * Decrypts several ciphertexts. They may have been encrypted with
+     * different keys and algorithms, as long as every key exists on the
+     * token that was passed into the constructor.
+     *
+     * @param ciphertexts DER-encoded Encoding objects, as accepted by
+     *  decrypt(byte[]).
+     * @return The decrypted plaintexts, in the same order as the
+     *  ciphertexts.
+     * @throws InvalidKeyException If no key can be found with the matching
+     *  keyID for any of the ciphertexts.
+     */
+    public List<byte[]> decrypt(List<byte[]> ciphertexts)
+        throws NotInitializedException,
+        GeneralSecurityException, TokenException
+    {
+        List<byte[]> plaintexts = new ArrayList<>(ciphertexts.size());
 
-            byte[] paddedPtext = cipher.doFinal(encoding.getCiphertext());
-            return org.mozilla.jss.crypto.Cipher.unPad(paddedPtext,
-                alg.getBlockSize() );
+        try {
+            for (byte[] ciphertext : ciphertexts) {
+                plaintexts.add(decryptOne(ciphertext));
+            }
+            return plaintexts;
         } catch(InvalidBERException ibe) {
             throw new GeneralSecurityException(ibe.toString());
         } catch(IllegalStateException ise) {
             throw new GeneralSecurityException(ise.toString());
+        }
+    }
+
+    private byte[] decryptOne(byte[] ciphertext)
+        throws NotInitializedException, GeneralSecurityException,
+        TokenException, InvalidBERException
+    {
+        //
+        // decode ASN1
+        //
+        Encoding encoding = (Encoding)
+            ASN1Util.decode(Encoding.getTemplate(), ciphertext);
+
+        //
+        // lookup the algorithm
+        //
+        EncryptionAlgorithm alg = EncryptionAlgorithm.fromOID(
+            encoding.getEncryptionOID() );
+
+        //
+        // Lookup the key
+        //
+        SecretKey key = keyManager.lookupKey(alg, encoding.getKeyID());
+        if( key == null ) {
+            throw new InvalidKeyException("No matching key found");
+        }
+
+        //
+        // do the decryption
+        //
+        IvParameterSpec ivSpec = new IvParameterSpec(encoding.getIv());
+
+        Cipher cipher = getCipher(alg);
+        cipher.init(Cipher.DECRYPT_MODE, key, ivSpec);
+
+        byte[] paddedPtext = cipher.doFinal(encoding.getCiphertext());
+        return org.mozilla.jss.crypto.Cipher.unPad(paddedPtext,
+            alg.getBlockSize() );
+    }
+
+    /**
+     * Returns this thread's Cipher for alg, creating it on first use. The
+     * JSS provider binds a Cipher to the thread token when it is created,
+     * so the token only needs to be swapped in here.
+     */
+    private Cipher getCipher(EncryptionAlgorithm alg)
+        throws NotInitializedException, GeneralSecurityException
+    {
+        Map<EncryptionAlgorithm, Cipher> threadCiphers = ciphers.get();
+        Cipher cipher = threadCiphers.get(alg);
+        if( cipher != null ) {
+            return cipher;
+        }
+
+        CryptoManager cm = CryptoManager.getInstance();
+        CryptoToken savedToken = cm.getThreadToken();
+
+        try {
+            cm.setThreadToken(token);
+            cipher = Cipher.getInstance(alg.toString(), Encryptor.PROVIDER);
         } finally {
             cm.setThreadToken(savedToken);
         }
+
+        threadCiphers.put(alg, cipher);
+        return cipher;
     }
 
 }
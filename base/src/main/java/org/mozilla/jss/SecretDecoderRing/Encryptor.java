@@ -5,6 +5,8 @@
 package org.mozilla.jss.SecretDecoderRing;
 
 import java.security.*;
+import java.util.ArrayList;
+import java.util.List;
 import javax.crypto.*;
 import javax.crypto.spec.*;
 import org.mozilla.jss.asn1.*;
@@ -16,6 +18,10 @@ import org.mozilla.jss.crypto.TokenException;
 
 /**
  * Encrypts data with the SecretDecoderRing.
+ *
+ * <p>An Encryptor may be shared by several threads. Each thread keeps its own
+ * Cipher and SecureRandom, created on first use, so that encrypting many
+ * values doesn't repeat the provider lookups.
  */
 public class Encryptor {
 
@@ -34,6 +40,10 @@ public class Encryptor {
     static final String PROVIDER = "Mozilla-JSS";
     static final String RNG_ALG = "pkcs11prng";
 
+    private static final ThreadLocal<SecureRandom> rngs = new ThreadLocal<>();
+
+    private final ThreadLocal<Cipher> ciphers = new ThreadLocal<>();
+
     /**
      * Creates an Encryptor on the given CryptoToken, using the key with
      * the given keyID and algorithm
@@ -76,44 +86,104 @@ public class Encryptor {
             GeneralSecurityException,
             InvalidBERException
     {
-        CryptoManager cm = CryptoManager.getInstance();
+        try {
+            Cipher cipher = getCipher();
+            SecureRandom rng = getRandom();
+            return encrypt(cipher, rng, plaintext);
 
-        CryptoToken savedToken = cm.getThreadToken();
+        } catch(IllegalStateException ise ) {
+            throw new GeneralSecurityException(ise.toString());
+        }
+    }
 
-        try {
-            cm.setThreadToken(token);
+    /**
+     * Encrypts several byte arrays with the same key.
+     * @param plaintexts The plaintexts to be encrypted.
+     * @return The ciphertexts, in the same order as the plaintexts. Each is
+     *  a DER-encoded Encoding object with its own IV, exactly as returned
+     *  by encrypt(byte[]).
+     */
+    public List<byte[]> encrypt(List<byte[]> plaintexts) throws
+            NotInitializedException,
+            GeneralSecurityException,
+            InvalidBERException
+    {
+        List<byte[]> ciphertexts = new ArrayList<>(plaintexts.size());
 
-            //
-            // generate an IV
-            //
-            byte[] iv = new byte[alg.getIVLength()];
-            SecureRandom rng = SecureRandom.getInstance(RNG_ALG,
-                PROVIDER);
-            rng.nextBytes(iv);
-            IvParameterSpec ivSpec = new IvParameterSpec(iv);
-
-            //
-            // do the encryption
-            //
-            Cipher cipher = Cipher.getInstance(alg.toString(),PROVIDER);
-            cipher.init(Cipher.ENCRYPT_MODE, key, ivSpec);
-            byte[] paddedPtext = 
-                org.mozilla.jss.crypto.Cipher.pad(
-                    plaintext, alg.getBlockSize() );
-            byte[] rawCtext = cipher.doFinal(paddedPtext);
-
-            //
-            // package the encrypted content and IV
-            //
-            Encoding encoding =
-                new Encoding(keyID, iv, alg.toOID(), rawCtext);
-
-            return ASN1Util.encode(encoding);
+        try {
+            Cipher cipher = getCipher();
+            SecureRandom rng = getRandom();
+            for (byte[] plaintext : plaintexts) {
+                ciphertexts.add(encrypt(cipher, rng, plaintext));
+            }
+            return ciphertexts;
 
         } catch(IllegalStateException ise ) {
             throw new GeneralSecurityException(ise.toString());
+        }
+    }
+
+    private byte[] encrypt(Cipher cipher, SecureRandom rng, byte[] plaintext)
+            throws GeneralSecurityException, InvalidBERException
+    {
+        //
+        // generate an IV
+        //
+        byte[] iv = new byte[alg.getIVLength()];
+        rng.nextBytes(iv);
+        IvParameterSpec ivSpec = new IvParameterSpec(iv);
+
+        //
+        // do the encryption
+        //
+        cipher.init(Cipher.ENCRYPT_MODE, key, ivSpec);
+        byte[] paddedPtext =
+            org.mozilla.jss.crypto.Cipher.pad(
+                plaintext, alg.getBlockSize() );
+        byte[] rawCtext = cipher.doFinal(paddedPtext);
+
+        //
+        // package the encrypted content and IV
+        //
+        Encoding encoding =
+            new Encoding(keyID, iv, alg.toOID(), rawCtext);
+
+        return ASN1Util.encode(encoding);
+    }
+
+    /**
+     * Returns this thread's Cipher, creating it on first use. The JSS
+     * provider binds a Cipher to the thread token when it is created, so
+     * the token only needs to be swapped in here rather than per message.
+     */
+    private Cipher getCipher()
+            throws NotInitializedException, GeneralSecurityException
+    {
+        Cipher cipher = ciphers.get();
+        if (cipher != null) {
+            return cipher;
+        }
+
+        CryptoManager cm = CryptoManager.getInstance();
+        CryptoToken savedToken = cm.getThreadToken();
+
+        try {
+            cm.setThreadToken(token);
+            cipher = Cipher.getInstance(alg.toString(), PROVIDER);
         } finally {
             cm.setThreadToken(savedToken);
         }
+
+        ciphers.set(cipher);
+        return cipher;
+    }
+
+    private static SecureRandom getRandom() throws GeneralSecurityException {
+        SecureRandom rng = rngs.get();
+        if (rng == null) {
+            rng = SecureRandom.getInstance(RNG_ALG, PROVIDER);
+            rngs.set(rng);
+        }
+        return rng;
     }
 }
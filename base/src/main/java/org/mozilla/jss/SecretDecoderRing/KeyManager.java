@@ -5,6 +5,9 @@
 package org.mozilla.jss.SecretDecoderRing;
 
 import java.security.*;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.crypto.*;
 import org.mozilla.jss.crypto.*;
 
@@ -29,6 +32,26 @@ public class KeyManager {
      */
     public static final int DEFAULT_KEYSIZE = 0;
 
+    /**
+     * The maximum number of key handles remembered by lookupKey. Once
+     * reached, the least recently used handle is forgotten.
+     */
+    public static final int MAX_CACHED_KEYS = 1024;
+
+    /**
+     * Key handles found by lookupKey, shared by every KeyManager so that
+     * Encryptors and Decryptors created for the same token don't search
+     * it again. Only keys which were found are remembered. Access is
+     * synchronized on the map, since lookups reorder it.
+     */
+    private static final Map<CachedKeyID, SymmetricKey> keyCache =
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CachedKeyID, SymmetricKey> eldest) {
+                return size() > MAX_CACHED_KEYS;
+            }
+        };
+
     private CryptoToken token;
 
     /**
@@ -184,11 +207,38 @@ public class KeyManager {
         if( alg == null || keyid == null ) {
             throw new NullPointerException();
         }
-        SymmetricKey k = lookupKeyNative(token, alg, keyid);
+        CachedKeyID id = new CachedKeyID(token, alg, keyid);
+        SymmetricKey k;
+        synchronized (keyCache) {
+            k = keyCache.get(id);
+        }
         if( k == null ) {
-            return null;
-        } else {
-            return new SecretKeyFacade(k);
+            k = lookupKeyNative(token, alg, keyid);
+            if( k == null ) {
+                return null;
+            }
+            synchronized (keyCache) {
+                keyCache.putIfAbsent(id, k);
+            }
+        }
+        return new SecretKeyFacade(k);
+    }
+
+    /**
+     * Forgets every key handle remembered by lookupKey, on all tokens.
+     * This only needs to be called when SDR keys are deleted without going
+     * through a KeyManager, for example by another process sharing the
+     * NSS database.
+     */
+    public static void clearKeyCache() {
+        synchronized (keyCache) {
+            keyCache.clear();
+        }
+    }
+
+    private void evictCachedKeys() {
+        synchronized (keyCache) {
+            keyCache.keySet().removeIf(id -> id.token.equals(token));
         }
     }
 
@@ -275,9 +325,45 @@ public class KeyManager {
         if( ! (key instanceof SecretKeyFacade) ) {
             throw new InvalidKeyException("Key must be a JSS key");
         }
-        deleteKeyNative(token, ((SecretKeyFacade)key).key);
+        try {
+            deleteKeyNative(token, ((SecretKeyFacade)key).key);
+        } finally {
+            evictCachedKeys();
+        }
     }
 
     private native void deleteKeyNative(CryptoToken token, SymmetricKey key)
         throws TokenException;
+
+    /**
+     * Identifies a key handle in the lookupKey cache.
+     */
+    private static final class CachedKeyID {
+        final CryptoToken token;
+        final EncryptionAlgorithm alg;
+        final byte[] keyID;
+        final int hash;
+
+        CachedKeyID(CryptoToken token, EncryptionAlgorithm alg, byte[] keyID) {
+            this.token = token;
+            this.alg = alg;
+            this.keyID = keyID.clone();
+            this.hash = (token.hashCode() * 31 + alg.hashCode()) * 31 +
+                Arrays.hashCode(this.keyID);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if( !(o instanceof CachedKeyID other) ) {
+                return false;
+            }
+            return token.equals(other.token) && alg.equals(other.alg) &&
+                Arrays.equals(keyID, other.keyID);
+        }
+    }
 }
@@ -181,6 +181,14 @@ public class ANY implements ASN1Value {
         ostream.write(encoded);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) {
+        if (!implicitTag.equals(tag)) {
+            throw new RuntimeException("No implicit tags allowed for ANY");
+        }
+        return encoded.length;
+    }
+
     /**
      * Extracts the contents from the ANY and encodes them with
      * the provided tag.
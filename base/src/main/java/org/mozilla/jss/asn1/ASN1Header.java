@@ -9,6 +9,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * The portion of a BER encoding that precedes the contents octets. Consists
@@ -81,6 +82,10 @@ public class ASN1Header {
      */
     public static ASN1Header lookAhead(InputStream derStream)
             throws IOException, InvalidBERException {
+        if (derStream instanceof BERInputBuffer buffer) {
+            return buffer.peekHeader();
+        }
+
         if (!derStream.markSupported()) {
             throw new IOException("Mark not supported on this input stream");
         }
@@ -102,6 +107,11 @@ public class ASN1Header {
      */
     public ASN1Header(InputStream istream)
             throws InvalidBERException, IOException {
+        if (istream instanceof BERInputBuffer buffer) {
+            buffer.pos += decode(buffer.buf, buffer.pos, buffer.limit);
+            return;
+        }
+
         // default BAOS size is 32 bytes, which is plenty
         ByteArrayOutputStream encoding = new ByteArrayOutputStream();
         int inInt = istream.read();
@@ -233,6 +243,78 @@ public class ASN1Header {
         cachedEncoding = encoding.toByteArray();
     }
 
+    /**
+     * Gets info about the item at the given offset of an array.
+     */
+    ASN1Header(byte[] buf, int offset, int limit) throws InvalidBERException {
+        decode(buf, offset, limit);
+    }
+
+    /**
+     * Decodes the identifier and length octets at the given offset of an
+     * array, the same way as ASN1Header(InputStream), and returns their
+     * length.
+     */
+    private int decode(byte[] buf, int offset, int limit) throws InvalidBERException {
+        int pos = offset;
+        if (pos >= limit) {
+            throw new InvalidBERException("End-of-file reached while " +
+                    "decoding ASN.1 header");
+        }
+        byte byte1 = buf[pos++];
+
+        Tag.Class tagClass = Tag.Class.fromInt((byte1 & 0xff) >>> 6);
+        form = (byte1 & 0x20) == 0x20 ? CONSTRUCTED : PRIMITIVE;
+
+        long tagNum;
+        if ((byte1 & 0x1f) == 0x1f) {
+            // long form: 7 bits per octet, last octet has MSB == 0
+            tagNum = 0;
+            byte next;
+            do {
+                if (pos >= limit) {
+                    throw new InvalidBERException("End-of-file reached while"
+                            + " decoding ASN.1 header");
+                }
+                next = buf[pos++];
+                tagNum = (tagNum << 7) | (next & 0x7f);
+            } while ((next & 0x80) == 0x80);
+        } else {
+            // short form
+            tagNum = byte1 & 0x1f;
+        }
+
+        tag = new Tag(tagClass, tagNum);
+
+        if (pos >= limit) {
+            throw new InvalidBERException("End-of-file reached while " +
+                    "decoding ASN.1 header");
+        }
+        byte lenByte = buf[pos++];
+
+        if ((lenByte & 0x80) == 0) {
+            // short form
+            contentLength = lenByte;
+        } else if ((lenByte & 0x7f) == 0) {
+            // indefinite
+            contentLength = -1;
+        } else {
+            // definite long form
+            int numBytes = lenByte & 0x7f;
+            if (numBytes > limit - pos) {
+                throw new InvalidBERException("End-of-file reached while " +
+                        "decoding ASN.1 header");
+            }
+            contentLength = 0;
+            for (int i = 0; i < numBytes; i++) {
+                contentLength = (contentLength << 8) | (buf[pos++] & 0xff);
+            }
+        }
+
+        cachedEncoding = Arrays.copyOfRange(buf, offset, pos);
+        return pos - offset;
+    }
+
     /**
      * This constructor is to be called when we are constructing an ASN1Value
      * rather than decoding it.
@@ -249,8 +331,52 @@ public class ASN1Header {
         this.contentLength = contentLength;
     }
 
+    /**
+     * Returns the number of identifier and length octets of a value with
+     * the given tag and content length, without encoding them.
+     *
+     * @param tag Tag.
+     * @param contentLength Content length, or -1 for indefinite length.
+     * @return Header length.
+     */
+    public static int getHeaderLength(Tag tag, long contentLength) {
+        int length = 1;
+
+        if (tag.getNum() > 30) {
+            // long form tag: 7 bits per subsequent octet
+            int bitlength = 64 - Long.numberOfLeadingZeros(tag.getNum());
+            length += (bitlength + 6) / 7;
+        }
+
+        if (contentLength == -1 || contentLength <= 127) {
+            length += 1;
+        } else {
+            int bitlength = 64 - Long.numberOfLeadingZeros(contentLength);
+            length += 1 + (bitlength + 7) / 8;
+        }
+
+        return length;
+    }
+
     public void encode(OutputStream ostream)
             throws IOException {
+        if (cachedEncoding != null) {
+            ostream.write(cachedEncoding);
+            return;
+        }
+
+        // Short forms need neither a buffer nor a BigInteger.
+        if (tag.getNum() <= 30 && contentLength != -1 && contentLength <= 127) {
+            int idOctet = tag.getTagClass().toInt() << 6;
+            if (form == CONSTRUCTED) {
+                idOctet |= 0x20;
+            }
+            idOctet |= (int) tag.getNum();
+
+            ostream.write(new byte[] { (byte) idOctet, (byte) contentLength });
+            return;
+        }
+
         ostream.write(encode());
     }
 
@@ -3,11 +3,11 @@
  * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
 package org.mozilla.jss.asn1;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 public class ASN1Util {
@@ -17,14 +17,72 @@ public class ASN1Util {
     }
 
     public static byte[] encode(Tag implicitTag, ASN1Value val) {
+        // Measure first so the encoding can be written straight into an
+        // array of the right size, instead of being copied out of a
+        // growing buffer.
+        LengthCache cache = LengthCache.enter();
         try {
 
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            val.encode(implicitTag, bos);
-            return bos.toByteArray();
+            DEROutputStream dos = new DEROutputStream(val.encodedLength(implicitTag));
+            val.encode(implicitTag, dos);
+            return dos.toByteArray();
 
         } catch (IOException e) {
             throw new RuntimeException("Unable to encode byte array: " + e.getMessage(), e);
+
+        } finally {
+            cache.exit();
+        }
+    }
+
+    /**
+     * Collects an encoding of a known length without copying it.
+     */
+    static class DEROutputStream extends OutputStream {
+
+        private byte[] buf;
+        private int count;
+
+        DEROutputStream(long length) {
+            if (length > Integer.MAX_VALUE - 8) {
+                throw new RuntimeException("Encoding too large: " + length);
+            }
+            buf = new byte[(int) length];
+        }
+
+        private void ensureCapacity(int length) {
+            // Only reached if a value misreported its length.
+            if (length > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(length, buf.length * 2));
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(count + 1);
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+
+        byte[] toByteArray() {
+            return count == buf.length ? buf : Arrays.copyOf(buf, count);
+        }
+
+        /**
+         * Returns the internal buffer, which holds size() bytes of output.
+         */
+        byte[] getBuffer() {
+            return buf;
+        }
+
+        int size() {
+            return count;
         }
     }
 
@@ -32,8 +90,7 @@ public class ASN1Util {
             throws InvalidBERException {
         try {
 
-            ByteArrayInputStream bis = new ByteArrayInputStream(encoded);
-            return template.decode(bis);
+            return template.decode(new BERInputBuffer(encoded));
 
         } catch (IOException e) {
             throw (InvalidBERException) new InvalidBERException("Unable to decode byte array: " + e.getMessage())
@@ -46,8 +103,7 @@ public class ASN1Util {
             throws InvalidBERException {
         try {
 
-            ByteArrayInputStream bis = new ByteArrayInputStream(encoded);
-            return template.decode(implicitTag, bis);
+            return template.decode(implicitTag, new BERInputBuffer(encoded));
 
         } catch (IOException e) {
             throw (InvalidBERException) new InvalidBERException("Unable to decode byte array: " + e.getMessage())
@@ -55,6 +111,30 @@ public class ASN1Util {
         }
     }
 
+    /**
+     * Decodes a value from the remaining bytes of a ByteBuffer, and
+     * advances its position past the value.
+     *
+     * @param template Template.
+     * @param encoded BER encoding.
+     * @return ASN.1 value.
+     * @throws InvalidBERException If there is an invalid BER encoding.
+     */
+    public static ASN1Value decode(ASN1Template template, ByteBuffer encoded)
+            throws InvalidBERException {
+        try {
+
+            BERInputBuffer buffer = new BERInputBuffer(encoded);
+            ASN1Value value = template.decode(buffer);
+            encoded.position(encoded.position() + buffer.getPosition());
+            return value;
+
+        } catch (IOException e) {
+            throw (InvalidBERException) new InvalidBERException("Unable to decode byte buffer: " + e.getMessage())
+                    .initCause(e);
+        }
+    }
+
     /**
      * Fills a byte array with bytes from an input stream. This method
      * keeps reading until the array is filled, an IOException occurs, or EOF
@@ -40,4 +40,31 @@ public interface ASN1Value {
      */
     public void encode(Tag implicitTag, OutputStream ostream)
             throws IOException;
+
+    /**
+     * Returns the length of this value's DER encoding using its own
+     * base tag.
+     *
+     * @return Length of the encoding in bytes.
+     */
+    public default long encodedLength() {
+        return encodedLength(getTag());
+    }
+
+    /**
+     * Returns the length of this value's DER encoding using an implicit
+     * tag, that is, the number of bytes encode(implicitTag, ostream) would
+     * write.
+     *
+     * The default implementation encodes the value and counts the bytes.
+     * Types which know their length without encoding override it. While
+     * a value is being encoded, the lengths of the values nested in it
+     * are memoized, so each is computed only once.
+     *
+     * @param implicitTag Implicit tag.
+     * @return Length of the encoding in bytes.
+     */
+    public default long encodedLength(Tag implicitTag) {
+        return LengthCache.measure(this, implicitTag);
+    }
 }
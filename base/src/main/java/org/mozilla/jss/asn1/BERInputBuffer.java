@@ -0,0 +1,145 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.mozilla.jss.asn1;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * An input stream over a BER encoding that is already in memory.
+ *
+ * Templates can decode from it like from any other input stream, but
+ * the templates in this package recognize it and work on its array
+ * directly: headers are parsed and looked ahead at without mark() and
+ * reset(), and SEQUENCE and SET track how much each element consumed by
+ * its position instead of wrapping the stream in a counting stream.
+ *
+ * Unlike ByteArrayInputStream, this class is not synchronized.
+ *
+ * @see ASN1Util#decode(ASN1Template, byte[])
+ */
+public class BERInputBuffer extends InputStream {
+
+    final byte[] buf;
+    private final int start;
+    int pos;
+    final int limit;
+    private int markpos;
+
+    /**
+     * Creates a buffer over a whole array, which is not copied.
+     *
+     * @param buf BER encoding.
+     */
+    public BERInputBuffer(byte[] buf) {
+        this(buf, 0, buf.length);
+    }
+
+    /**
+     * Creates a buffer over part of an array, which is not copied.
+     *
+     * @param buf Array containing the BER encoding.
+     * @param offset Offset of the encoding in the array.
+     * @param length Length of the encoding.
+     */
+    public BERInputBuffer(byte[] buf, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, buf.length);
+        this.buf = buf;
+        this.start = offset;
+        this.pos = offset;
+        this.markpos = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * Creates a buffer over the remaining bytes of a ByteBuffer. The
+     * bytes are shared if the ByteBuffer is backed by an accessible array,
+     * and copied otherwise. The position of the ByteBuffer is not changed.
+     *
+     * @param buffer BER encoding.
+     */
+    public BERInputBuffer(ByteBuffer buffer) {
+        this(array(buffer), offset(buffer), buffer.remaining());
+    }
+
+    private static byte[] array(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return buffer.array();
+        }
+        byte[] copy = new byte[buffer.remaining()];
+        buffer.duplicate().get(copy);
+        return copy;
+    }
+
+    private static int offset(ByteBuffer buffer) {
+        return buffer.hasArray() ? buffer.arrayOffset() + buffer.position() : 0;
+    }
+
+    /**
+     * Returns the number of bytes read since this buffer was created.
+     *
+     * @return Position.
+     */
+    public int getPosition() {
+        return pos - start;
+    }
+
+    /**
+     * Returns the header of the next item without consuming it.
+     *
+     * @return ASN.1 header.
+     * @throws InvalidBERException If there is an invalid BER encoding.
+     */
+    public ASN1Header peekHeader() throws InvalidBERException {
+        return new ASN1Header(buf, pos, limit);
+    }
+
+    @Override
+    public int read() {
+        return pos < limit ? buf[pos++] & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        if (pos >= limit) {
+            return -1;
+        }
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(buf, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        long k = Math.max(0, Math.min(n, limit - pos));
+        pos += (int) k;
+        return k;
+    }
+
+    @Override
+    public int available() {
+        return limit - pos;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+        markpos = pos;
+    }
+
+    @Override
+    public void reset() {
+        pos = markpos;
+    }
+}
@@ -0,0 +1,327 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.mozilla.jss.asn1;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An input stream for reading a BER encoding one element at a time.
+ *
+ * Templates decode a whole value, which for a signed or encrypted
+ * message means holding all of its content in memory. This stream lets
+ * the caller walk the outer structures header by header instead, decode
+ * the small elements with their templates, and read the contents of a
+ * large OCTET STRING as a stream. Both definite and indefinite length
+ * encodings are supported.
+ *
+ * The stream keeps track of its position to find the end of
+ * definite-length values, so mark() and reset() are not supported.
+ */
+public class BERInputStream extends FilterInputStream {
+
+    private long position;
+
+    public BERInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * Returns the number of bytes read or skipped so far.
+     *
+     * @return Position.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            position++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            position += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * Reads the header of the next element.
+     *
+     * @return ASN.1 header.
+     * @throws InvalidBERException If there is an invalid BER encoding.
+     * @throws IOException If an I/O error occurs.
+     */
+    public ASN1Header readHeader() throws InvalidBERException, IOException {
+        return new ASN1Header(this);
+    }
+
+    /**
+     * Returns the position of the end of a value whose header has just
+     * been read, or -1 if it has indefinite length.
+     *
+     * @param header Header of the value.
+     * @return End position.
+     */
+    public long getEnd(ASN1Header header) {
+        long length = header.getContentLength();
+        return length == -1 ? -1 : position + length;
+    }
+
+    /**
+     * Reads the header of the next element of a constructed value ending
+     * at the given position, or returns null if there are no more
+     * elements. For indefinite-length values the end-of-contents marker is
+     * consumed.
+     *
+     * @param end End position returned by getEnd().
+     * @return ASN.1 header, or null.
+     * @throws InvalidBERException If there is an invalid BER encoding.
+     * @throws IOException If an I/O error occurs.
+     */
+    public ASN1Header nextHeader(long end) throws InvalidBERException, IOException {
+
+        if (end != -1) {
+            return position < end ? readHeader() : null;
+        }
+
+        ASN1Header header = readHeader();
+        return header.isEOC() ? null : header;
+    }
+
+    /**
+     * Reads the end-of-contents marker of an indefinite-length value whose
+     * last element has been read. Does nothing for definite-length values.
+     *
+     * @param header Header of the value.
+     * @throws InvalidBERException If the marker is missing.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void readEnd(ASN1Header header) throws InvalidBERException, IOException {
+
+        if (header.getContentLength() != -1) {
+            return;
+        }
+
+        if (!readHeader().isEOC()) {
+            throw new InvalidBERException("Missing end-of-contents marker");
+        }
+    }
+
+    /**
+     * Reads the complete encoding of the value whose header has been read.
+     *
+     * @param header Header of the value.
+     * @return BER encoding, including the header.
+     * @throws InvalidBERException If there is an invalid BER encoding.
+     * @throws IOException If an I/O error occurs.
+     */
+    public byte[] readElement(ASN1Header header) throws InvalidBERException, IOException {
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        copyElement(header, bos);
+        return bos.toByteArray();
+    }
+
+    private void copyElement(ASN1Header header, OutputStream out)
+            throws InvalidBERException, IOException {
+
+        header.encode(out);
+
+        long length = header.getContentLength();
+        if (length != -1) {
+            if (length > Integer.MAX_VALUE) {
+                throw new InvalidBERException("Element too large: " + length);
+            }
+            byte[] contents = new byte[(int) length];
+            ASN1Util.readFully(contents, this);
+            out.write(contents);
+            return;
+        }
+
+        while (true) {
+            ASN1Header child = readHeader();
+            if (child.isEOC()) {
+                child.encode(out);
+                return;
+            }
+            copyElement(child, out);
+        }
+    }
+
+    /**
+     * Reads and decodes the value whose header has been read.
+     *
+     * @param header Header of the value.
+     * @param template Template for the value.
+     * @return Decoded value.
+     * @throws InvalidBERException If there is an invalid BER encoding.
+     * @throws IOException If an I/O error occurs.
+     */
+    public ASN1Value decode(ASN1Header header, ASN1Template template)
+            throws InvalidBERException, IOException {
+        return ASN1Util.decode(template, readElement(header));
+    }
+
+    /**
+     * Returns a stream over the contents of a primitive or constructed
+     * OCTET STRING whose header has been read. Closing the returned stream
+     * skips the rest of the string, leaving this stream positioned after
+     * it; this stream itself is not closed.
+     *
+     * @param header Header of the OCTET STRING.
+     * @return Contents of the OCTET STRING.
+     */
+    public InputStream openOctetString(ASN1Header header) {
+        return new OctetStringInputStream(header);
+    }
+
+    /**
+     * Returns the contents of a primitive or constructed OCTET STRING,
+     * definite or indefinite length, whose header has been read.
+     */
+    private class OctetStringInputStream extends InputStream {
+
+        private final boolean constructed;
+        private final long end;
+
+        private long remaining;
+        private OctetStringInputStream nested;
+        private boolean eof;
+
+        OctetStringInputStream(ASN1Header header) {
+            constructed = header.getForm() == Form.CONSTRUCTED;
+            if (constructed) {
+                end = getEnd(header);
+            } else {
+                end = -1;
+                remaining = header.getContentLength();
+            }
+        }
+
+        /**
+         * Moves to the next segment which has bytes left, or returns false
+         * at the end of the string.
+         */
+        private boolean nextSegment() throws IOException {
+            while (!eof) {
+                if (nested != null) {
+                    if (nested.nextSegment()) {
+                        return true;
+                    }
+                    nested = null;
+                    continue;
+                }
+
+                if (remaining > 0) {
+                    return true;
+                }
+
+                if (!constructed) {
+                    eof = true;
+                    break;
+                }
+
+                try {
+                    ASN1Header header = nextHeader(end);
+                    if (header == null) {
+                        eof = true;
+                        break;
+                    }
+
+                    header.validate(OCTET_STRING.TAG);
+                    if (header.getForm() == Form.CONSTRUCTED) {
+                        nested = new OctetStringInputStream(header);
+                    } else {
+                        remaining = header.getContentLength();
+                    }
+
+                } catch (InvalidBERException e) {
+                    throw new IOException("Invalid OCTET STRING: " + e.getMessage(), e);
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!nextSegment()) {
+                return -1;
+            }
+            if (nested != null) {
+                return nested.read(b, off, len);
+            }
+
+            int n = BERInputStream.this.read(b, off, (int) Math.min(len, remaining));
+            if (n == -1) {
+                throw new EOFException("End-of-file reached while reading OCTET STRING");
+            }
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0 || !nextSegment()) {
+                return 0;
+            }
+            if (nested != null) {
+                return nested.skip(n);
+            }
+
+            long skipped = Math.min(n, remaining);
+            BERInputStream.this.skipNBytes(skipped);
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            while (skip(Long.MAX_VALUE) > 0) {
+            }
+        }
+    }
+}
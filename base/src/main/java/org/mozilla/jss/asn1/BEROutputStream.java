@@ -0,0 +1,175 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.mozilla.jss.asn1;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An output stream for writing a BER encoding one element at a time.
+ *
+ * Encoding a value whole means knowing the length of everything in it,
+ * which for a signed or encrypted message means holding all of its
+ * content in memory. This stream lets the caller write the outer
+ * structures with indefinite-length encoding instead, encode the small
+ * elements whole, and write a large OCTET STRING as a series of
+ * segments with a SegmentOutputStream.
+ *
+ * @see BERInputStream
+ */
+public class BEROutputStream extends FilterOutputStream {
+
+    /**
+     * Size of the OCTET STRING segments written by a SegmentOutputStream.
+     */
+    public static final int SEGMENT_SIZE = 16384;
+
+    private static final byte[] END_OF_CONTENTS = { 0x00, 0x00 };
+
+    public BEROutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+
+    /**
+     * Writes the identifier and length octets of a constructed value with
+     * indefinite length. Its contents are written next, followed by
+     * writeEnd().
+     *
+     * @param tag Tag of the value.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeHeader(Tag tag) throws IOException {
+        new ASN1Header(tag, Form.CONSTRUCTED, -1).encode(out);
+    }
+
+    /**
+     * Writes the end-of-contents octets ending the innermost value started
+     * with writeHeader().
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeEnd() throws IOException {
+        out.write(END_OF_CONTENTS);
+    }
+
+    /**
+     * Writes the end-of-contents octets ending the given number of nested
+     * values started with writeHeader().
+     *
+     * @param count Number of values.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeEnd(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.write(END_OF_CONTENTS);
+        }
+    }
+
+    /**
+     * Writes a primitive OCTET STRING, usually one segment of a
+     * constructed OCTET STRING.
+     *
+     * @param b Contents.
+     * @param off Offset of the contents in b.
+     * @param len Length of the contents.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeOctetString(byte[] b, int off, int len) throws IOException {
+        new ASN1Header(OCTET_STRING.TAG, Form.PRIMITIVE, len).encode(out);
+        out.write(b, off, len);
+    }
+
+    /**
+     * Collects the bytes written to it into segments of SEGMENT_SIZE bytes
+     * and hands each full segment to writeSegment(), which usually
+     * processes it and writes it with writeOctetString(). The last,
+     * partial segment is handed over by flushSegment().
+     *
+     * Closing the stream has no effect, so that the stream can be given
+     * to the caller as the content of a larger structure.
+     */
+    public abstract static class SegmentOutputStream extends OutputStream {
+
+        protected final byte[] segment = new byte[SEGMENT_SIZE];
+        protected int count;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == segment.length) {
+                flushSegment();
+            }
+            segment[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == segment.length) {
+                    flushSegment();
+                }
+                int n = Math.min(len, segment.length - count);
+                System.arraycopy(b, off, segment, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * Writes the bytes read from a file channel, from its current
+         * position until end-of-file, reading them straight into the
+         * segments.
+         *
+         * @param channel Channel to read from.
+         * @throws IOException If an I/O error occurs.
+         */
+        public void transferFrom(FileChannel channel) throws IOException {
+            while (true) {
+                if (count == segment.length) {
+                    flushSegment();
+                }
+                int n = channel.read(ByteBuffer.wrap(segment, count, segment.length - count));
+                if (n == -1) {
+                    return;
+                }
+                count += n;
+            }
+        }
+
+        /**
+         * Hands the bytes collected so far to writeSegment(), unless there
+         * are none.
+         *
+         * @throws IOException If an I/O error occurs.
+         */
+        public void flushSegment() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            writeSegment(segment, count);
+            count = 0;
+        }
+
+        /**
+         * Processes and writes a segment.
+         *
+         * @param b Segment.
+         * @param len Length of the segment, at most SEGMENT_SIZE.
+         * @throws IOException If an I/O error occurs.
+         */
+        protected abstract void writeSegment(byte[] b, int len) throws IOException;
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -219,6 +219,22 @@ public class BIT_STRING implements ASN1Value {
         ostream.write(bits, 0, numBytes);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) {
+        int numBytes = bits.length;
+        if (removeTrailingZeroes) {
+            if (numBytes > 0 && (bits[numBytes - 1] & (0xff << padCount)) == 0) {
+                // the last byte only holds unused bits, which encode() clears
+                numBytes--;
+            }
+            while (numBytes > 0 && bits[numBytes - 1] == 0) {
+                numBytes--;
+            }
+        }
+        long contentLength = numBytes + 1L;
+        return ASN1Header.getHeaderLength(implicitTag, contentLength) + contentLength;
+    }
+
     private static final Template templateInstance = new Template();
 
     public static Template getTemplate() {
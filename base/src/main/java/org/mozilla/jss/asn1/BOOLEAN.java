@@ -40,6 +40,11 @@ public class BOOLEAN implements ASN1Value {
         }
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) {
+        return ASN1Header.getHeaderLength(implicitTag, 1) + 1;
+    }
+
     private boolean val;
 
     /**
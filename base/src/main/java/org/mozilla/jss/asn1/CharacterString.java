@@ -82,6 +82,12 @@ public abstract class CharacterString implements ASN1Value {
         ostream.write(contents);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) {
+        long contentLength = getEncodedContents().length;
+        return ASN1Header.getHeaderLength(implicitTag, contentLength) + contentLength;
+    }
+
     public abstract static class Template implements ASN1Template {
 
         /**
@@ -90,6 +90,12 @@ public class INTEGER extends BigInteger implements ASN1Value {
         return getEncodedContents().length;
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) {
+        long contentLength = getContentLength();
+        return ASN1Header.getHeaderLength(implicitTag, contentLength) + contentLength;
+    }
+
     public byte[] encode() throws IOException {
         ByteArrayOutputStream b = new ByteArrayOutputStream();
         encode(b);
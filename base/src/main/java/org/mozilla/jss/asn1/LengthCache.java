@@ -0,0 +1,120 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.asn1;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.IdentityHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memoizes the lengths of DER encodings while a value is being encoded.
+ *
+ * A constructed value writes its length before its contents, so it needs
+ * the lengths of all its elements first; each of those in turn needs the
+ * lengths of its own elements. Without memoization the lengths of deeply
+ * nested values would be computed once per level of nesting.
+ *
+ * Encoders call enter() before and exit() after measuring or encoding a
+ * value. Lengths are remembered until the outermost exit(), so values must
+ * not be modified while they are being encoded. Constructed values stamp
+ * their own lengths with the pass number; other values are remembered by
+ * identity.
+ */
+final class LengthCache {
+
+    private static final ThreadLocal<LengthCache> current = new ThreadLocal<>();
+
+    private static final AtomicLong passes = new AtomicLong();
+
+    /**
+     * The length of a value encoded with a particular tag.
+     */
+    private static class Measured {
+        final Tag tag;
+        final long length;
+
+        Measured(Tag tag, long length) {
+            this.tag = tag;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Counts the bytes written to it. Constructed values which know their
+     * length add it with skip() instead of writing their contents.
+     */
+    static class CountingOutputStream extends OutputStream {
+
+        long count;
+
+        void skip(long length) {
+            count += length;
+        }
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    /**
+     * Identifies this encoding pass; never zero.
+     */
+    final long pass = passes.incrementAndGet();
+
+    private final IdentityHashMap<ASN1Value, Measured> encodedLengths = new IdentityHashMap<>();
+    private int depth;
+
+    private LengthCache() {
+    }
+
+    static LengthCache enter() {
+        LengthCache cache = current.get();
+        if (cache == null) {
+            cache = new LengthCache();
+            current.set(cache);
+        }
+        cache.depth++;
+        return cache;
+    }
+
+    void exit() {
+        if (--depth == 0) {
+            current.remove();
+        }
+    }
+
+    /**
+     * Returns the length of the DER encoding of a value which cannot tell
+     * its length without being encoded.
+     */
+    static long measure(ASN1Value value, Tag implicitTag) {
+        LengthCache cache = enter();
+        try {
+            Measured measured = cache.encodedLengths.get(value);
+            if (measured != null && measured.tag.equals(implicitTag)) {
+                return measured.length;
+            }
+
+            CountingOutputStream counter = new CountingOutputStream();
+            value.encode(implicitTag, counter);
+
+            cache.encodedLengths.put(value, new Measured(implicitTag, counter.count));
+            return counter.count;
+
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to encode value: " + e.getMessage(), e);
+
+        } finally {
+            cache.exit();
+        }
+    }
+}
@@ -30,6 +30,11 @@ public class NULL implements ASN1Value {
         head.encode(ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) {
+        return ASN1Header.getHeaderLength(implicitTag, 0);
+    }
+
     private static final NULL instance = new NULL();
 
     public static NULL getInstance() {
@@ -420,6 +420,12 @@ public class OBJECT_IDENTIFIER implements ASN1Value {
         ostream.write(getEncoding(implicitTag));
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) {
+        long contentLength = getEncodedContents().length;
+        return ASN1Header.getHeaderLength(implicitTag, contentLength) + contentLength;
+    }
+
     private static final Template templateInstance = new Template();
 
     public static Template getTemplate() {
@@ -45,6 +45,11 @@ public class OCTET_STRING implements ASN1Value {
         ostream.write(data);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) {
+        return ASN1Header.getHeaderLength(implicitTag, data.length) + data.length;
+    }
+
     private static final Template templateInstance = new Template();
 
     public static Template getTemplate() {
@@ -414,34 +414,42 @@ public class SEQUENCE extends SET {
                         continue;
                     }
 
-                    // Decode this element
-                    ASN1Template t = e.getTemplate();
+                    // Decode this element, or just read its encoding if
+                    // it will be decoded when accessed
+                    ASN1Template t = e.isLazy() ? ANY.getTemplate() : e.getTemplate();
                     ASN1Value val;
 
-                    try (CountingStream countstream = new CountingStream(istream)) {
+                    long len;
 
-                        if (e.getImplicitTag() == null) {
-                            val = t.decode(countstream);
-                        } else {
-                            val = t.decode(e.getImplicitTag(), countstream);
+                    if (istream instanceof BERInputBuffer buffer) {
+                        // the position tells how much the element used
+                        int start = buffer.getPosition();
+                        val = decode(t, e.getImplicitTag(), buffer);
+                        len = buffer.getPosition() - start;
+
+                    } else {
+                        try (CountingStream countstream = new CountingStream(istream)) {
+                            val = decode(t, e.getImplicitTag(), countstream);
+                            len = countstream.getNumRead();
                         }
+                    }
 
-                        // Decrement remaining count
-                        long len = countstream.getNumRead();
-                        if (remainingContent != -1) {
-                            if (remainingContent < len) {
-                                // this item went past the end of the SEQUENCE
-                                throw new InvalidBERException("Item went " +
-                                        (len - remainingContent) + " bytes past the end of" +
-                                        " the SEQUENCE");
-                            }
-                            remainingContent -= len;
+                    // Decrement remaining count
+                    if (remainingContent != -1) {
+                        if (remainingContent < len) {
+                            // this item went past the end of the SEQUENCE
+                            throw new InvalidBERException("Item went " +
+                                    (len - remainingContent) + " bytes past the end of" +
+                                    " the SEQUENCE");
                         }
+                        remainingContent -= len;
                     }
 
                     // Store this element in the SEQUENCE
                     if (e.producesOutput()) {
-                        if (e.getImplicitTag() == null) {
+                        if (e.isLazy()) {
+                            seq.addLazyElement(e.getImplicitTag(), (ANY) val, e.getTemplate());
+                        } else if (e.getImplicitTag() == null) {
                             // no implicit tag
                             seq.addElement(val);
                         } else {
@@ -484,6 +492,17 @@ public class SEQUENCE extends SET {
             }
         }
 
+        /**
+         * Decodes an element, with its implicit tag if it has one.
+         */
+        private static ASN1Value decode(ASN1Template t, Tag implicitTag,
+                InputStream istream) throws IOException, InvalidBERException {
+            if (implicitTag == null) {
+                return t.decode(istream);
+            }
+            return t.decode(implicitTag, istream);
+        }
+
         /**
          * An element of a SEQUENCE template. For each sub-template, contains the
          * template, its optionality, its implicit tag, and its default value.
@@ -550,6 +569,18 @@ public class SEQUENCE extends SET {
                 return repeatable;
             }
 
+            // Laziness is used for SEQUENCE OF elements which should only be
+            // decoded when they are accessed.  It is package private.
+            private boolean lazy;
+
+            void makeLazy() {
+                lazy = true;
+            }
+
+            boolean isLazy() {
+                return lazy;
+            }
+
             private boolean optional;
 
             public boolean isOptional() {
@@ -630,6 +661,27 @@ public class SEQUENCE extends SET {
             return t;
         }
 
+        /**
+         * Creates an OF_Template whose elements are not decoded until they
+         * are accessed. The elements are read as ANYs, checking only their
+         * tags and lengths, and are decoded with the given type by the
+         * first call to elementAt(). Decoding errors are then thrown as
+         * RuntimeExceptions. Elements which are never accessed are encoded
+         * again exactly as they were read.
+         *
+         * @param type Type.
+         * @return OF_Template.
+         */
+        public static OF_Template makeLazyOFTemplate(ASN1Template type) {
+            OF_Template t = new OF_Template();
+            t.template = new Template();
+            Template.Element el = new Template.Element(null, type, true);
+            el.makeRepeatable();
+            el.makeLazy();
+            t.template.addElement(el);
+            return t;
+        }
+
         @Override
         public boolean tagMatch(Tag tag) {
             return TAG.equals(tag);
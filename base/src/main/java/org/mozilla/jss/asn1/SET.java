@@ -4,11 +4,11 @@
 package org.mozilla.jss.asn1;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Vector;
 
 /**
@@ -30,6 +30,10 @@ public class SET implements ASN1Value {
     // The elements of the set
     protected Vector<Element> elements = new Vector<>();
 
+    // The length of the contents, valid during encoding pass lengthPass
+    private long contentLength;
+    private long lengthPass;
+
     private void addElement(Element e) {
         elements.addElement(e);
     }
@@ -38,6 +42,22 @@ public class SET implements ASN1Value {
         elements.insertElementAt(e, index);
     }
 
+    /**
+     * Adds an element which will be decoded with the given template when
+     * it is first accessed.
+     */
+    void addLazyElement(Tag implicitTag, ANY encoding, ASN1Template type) {
+        addElement(new Element(implicitTag, encoding, type));
+    }
+
+    /**
+     * Returns the element at the given index in a form that can be
+     * encoded, without decoding it if it was decoded lazily.
+     */
+    private ASN1Value encodableAt(int index) {
+        return elements.elementAt(index).getEncodable();
+    }
+
     /**
      * Adds an element to this SET.
      *
@@ -111,8 +131,7 @@ public class SET implements ASN1Value {
      * @return Tag.
      */
     public Tag tagAt(int index) {
-        Tag implicit = elements.elementAt(index).getImplicitTag();
-        return implicit == null ? elementAt(index).getTag() : implicit;
+        return elements.elementAt(index).getTag();
     }
 
     /**
@@ -180,6 +199,21 @@ public class SET implements ASN1Value {
     @Override
     public void encode(Tag implicitTag, OutputStream ostream)
             throws IOException {
+        LengthCache cache = LengthCache.enter();
+        try {
+            if (ostream instanceof LengthCache.CountingOutputStream counter) {
+                counter.skip(encodedLength(implicitTag));
+                return;
+            }
+
+            DERencode(implicitTag, ostream);
+        } finally {
+            cache.exit();
+        }
+    }
+
+    private void DERencode(Tag implicitTag, OutputStream ostream)
+            throws IOException {
         // what ordering method?
         boolean lexOrdering;
         if (elements.size() < 2) {
@@ -193,38 +227,72 @@ public class SET implements ASN1Value {
             lexOrdering = false;
         }
 
-        // compute and order contents
+        // Encode the elements one after the other into a single buffer
+        // and order them by their offsets, rather than encoding each one
+        // into an array of its own.
+        long contentLength = contentLength();
+        ASN1Util.DEROutputStream contents = new ASN1Util.DEROutputStream(contentLength);
+
         int numElements = elements.size();
-        int totalBytes = 0;
-        Vector<byte[]> encodings = new Vector<>(numElements);
-        Vector<Integer> tags = new Vector<>(numElements);
-        int i;
-        for (i = 0; i < numElements; i++) {
+        int[] offsets = new int[numElements + 1];
+        Tag[] tags = new Tag[numElements];
+        int count = 0;
+        for (int i = 0; i < numElements; i++) {
 
             // if an entry is null, just skip it
-            if (elementAt(i) != null) {
-                byte[] enc = ASN1Util.encode(tagAt(i), elementAt(i));
-
-                totalBytes += enc.length;
-
-                if (lexOrdering) {
-                    insertInOrder(encodings, enc);
-                } else {
-                    insertInOrder(encodings, enc, tags, (int) tagAt(i).getNum());
-                }
+            ASN1Value el = encodableAt(i);
+            if (el != null) {
+                tags[count] = tagAt(i);
+                el.encode(tags[count], contents);
+                offsets[++count] = contents.size();
             }
         }
 
+        byte[] buffer = contents.getBuffer();
+        IntComparator order = lexOrdering
+                ? (a, b) -> Arrays.compareUnsigned(
+                        buffer, offsets[a], offsets[a + 1],
+                        buffer, offsets[b], offsets[b + 1])
+                : (a, b) -> compareTags(tags[a], tags[b]);
+
         // write header
-        ASN1Header header = new ASN1Header(implicitTag, FORM, totalBytes);
+        ASN1Header header = new ASN1Header(implicitTag, FORM, contents.size());
         header.encode(ostream);
 
+        // Elements are often added in order already, for instance when
+        // they were decoded from DER, so check before sorting.
+        boolean sorted = true;
+        for (int i = 1; i < count && sorted; i++) {
+            sorted = order.compare(i - 1, i) <= 0;
+        }
+
+        if (sorted) {
+            ostream.write(buffer, 0, contents.size());
+            return;
+        }
+
+        Integer[] indices = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            indices[i] = i;
+        }
+        Arrays.sort(indices, order::compare);
+
         // write contents in order
-        for (i = 0; i < numElements; i++) {
-            ostream.write(encodings.elementAt(i));
+        for (int i : indices) {
+            ostream.write(buffer, offsets[i], offsets[i + 1] - offsets[i]);
         }
     }
 
+    private interface IntComparator {
+        int compare(int a, int b);
+    }
+
+    // orders tags by class, then by number, as required by X.690
+    private static int compareTags(Tag left, Tag right) {
+        int result = Integer.compare(left.getTagClass().toInt(), right.getTagClass().toInt());
+        return result != 0 ? result : Long.compare(left.getNum(), right.getNum());
+    }
+
     /**
      * Encodes this SET without re-ordering it. This may violate
      * DER, but it is within BER.
@@ -235,86 +303,64 @@ public class SET implements ASN1Value {
      */
     public void BERencode(Tag implicitTag, OutputStream ostream)
             throws IOException {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-
-        // compute contents
-        int size = elements.size();
-        for (int i = 0; i < size; i++) {
-            ASN1Value el = elementAt(i);
-            if (el != null) {
-                el.encode(tagAt(i), bos);
+        LengthCache cache = LengthCache.enter();
+        try {
+            if (ostream instanceof LengthCache.CountingOutputStream counter) {
+                counter.skip(encodedLength(implicitTag));
+                return;
             }
-        }
 
-        byte[] bytes = bos.toByteArray();
+            // write header
+            ASN1Header header = new ASN1Header(implicitTag, FORM, contentLength());
+            header.encode(ostream);
 
-        // write header
-        ASN1Header header = new ASN1Header(implicitTag, FORM, bytes.length);
-        header.encode(ostream);
-
-        // write contents
-        ostream.write(bytes);
-    }
-
-    // performs ascending lexicographic ordering
-    // linear search, but number of items is usually going to be small.
-    private static void insertInOrder(Vector<byte[]> encs, byte[] enc) {
-        int size = encs.size();
-
-        // find the lowest item that we are less than or equal to
-        int i;
-        for (i = 0; i < size; i++) {
-            if (compare(enc, encs.elementAt(i)) < 1) {
-                break;
+            // write contents
+            int size = elements.size();
+            for (int i = 0; i < size; i++) {
+                ASN1Value el = encodableAt(i);
+                if (el != null) {
+                    el.encode(tagAt(i), ostream);
+                }
             }
-        }
 
-        // insert ourself before this item
-        encs.insertElementAt(enc, i);
+        } finally {
+            cache.exit();
+        }
     }
 
-    // performs ascending ordering by tag
-    // linear search, but number of items is usually going to be small.
-    private static void insertInOrder(Vector<byte[]> encs, byte[] enc, Vector<Integer> tags,
-            int tag) {
-        int size = encs.size();
-
-        // find the lowest item that we are less than or equal to
-        int i;
-        for (i = 0; i < size; i++) {
-            if (tag <= tags.elementAt(i).intValue()) {
-                break;
+    /**
+     * Returns the total length of the encodings of the elements, which
+     * does not depend on their order.
+     */
+    long contentLength() {
+        LengthCache cache = LengthCache.enter();
+        try {
+            if (lengthPass == cache.pass) {
+                return contentLength;
             }
-        }
 
-        // insert ourself before this item
-        encs.insertElementAt(enc, i);
-        tags.insertElementAt(Integer.valueOf(i), i);
-    }
+            long length = 0;
+            int size = elements.size();
+            for (int i = 0; i < size; i++) {
+                ASN1Value el = encodableAt(i);
+                if (el != null) {
+                    length += el.encodedLength(tagAt(i));
+                }
+            }
 
-    // compares two byte arrays
-    // returns 1 if left > right, -1 if left < right, 0 if left == right
-    private static int compare(byte[] left, byte[] right) {
-        int min = (left.length < right.length) ? left.length : right.length;
+            contentLength = length;
+            lengthPass = cache.pass;
+            return length;
 
-        for (int i = 0; i < min; i++) {
-            if ((left[i] & 0xff) < (right[i] & 0xff)) {
-                return -1;
-            } else if ((left[i] & 0xff) > (right[i] & 0xff)) {
-                return 1;
-            }
+        } finally {
+            cache.exit();
         }
+    }
 
-        // equal up to the minimal endpoint
-        if (left.length > min) {
-            assert (right.length == min);
-            return 1;
-        }
-        if (right.length > min) {
-            assert (left.length == min);
-            return -1;
-        }
-        return 0;
+    @Override
+    public long encodedLength(Tag implicitTag) {
+        long contentLength = contentLength();
+        return ASN1Header.getHeaderLength(implicitTag, contentLength) + contentLength;
     }
 
     /**
@@ -338,22 +384,58 @@ public class SET implements ASN1Value {
             this.implicitTag = implicitTag;
         }
 
+        /**
+         * Makes a new SET element from its encoding, which will be decoded
+         * with the given template when the value is first needed.
+         */
+        Element(Tag implicitTag, ANY encoding, ASN1Template type) {
+            this.implicitTag = implicitTag;
+            this.encoding = encoding;
+            this.type = type;
+        }
+
         private ASN1Value val;
 
+        // the undecoded value and its template, until it is decoded
+        private ANY encoding;
+        private ASN1Template type;
+
         /**
          * Returns the value of this SET element.
          */
-        public ASN1Value getValue() {
+        public synchronized ASN1Value getValue() {
+            if (type != null) {
+                try {
+                    val = implicitTag == null
+                            ? ASN1Util.decode(type, encoding.getEncoded())
+                            : ASN1Util.decode(implicitTag, type, encoding.getEncoded());
+                } catch (InvalidBERException e) {
+                    throw new RuntimeException("Unable to decode element: " + e.getMessage(), e);
+                }
+                encoding = null;
+                type = null;
+            }
             return val;
         }
 
+        /**
+         * Returns the value to encode: the original encoding if the value
+         * has not been decoded yet.
+         */
+        synchronized ASN1Value getEncodable() {
+            return type != null ? encoding : val;
+        }
+
         /**
          * Returns the tag that actually shows up in the encoding.
          * If there is an implicit tag, it will be used. Otherwise,
          * it will be the base tag for the value.
          */
-        public Tag getTag() {
-            return implicitTag == null ? val.getTag() : implicitTag;
+        public synchronized Tag getTag() {
+            if (implicitTag != null) {
+                return implicitTag;
+            }
+            return type != null ? encoding.getTag() : val.getTag();
         }
 
         private Tag implicitTag = null;
@@ -735,34 +817,42 @@ public class SET implements ASN1Value {
                     // mark this element as found
                     found[index] = true;
 
-                    // Decode this element
-                    ASN1Template t = e.getTemplate();
+                    // Decode this element, or just read its encoding if
+                    // it will be decoded when accessed
+                    ASN1Template t = e.isLazy() ? ANY.getTemplate() : e.getTemplate();
                     ASN1Value val;
 
-                    try (CountingStream countstream = new CountingStream(istream)) {
+                    long len;
 
-                        if (e.getImplicitTag() == null) {
-                            val = t.decode(countstream);
-                        } else {
-                            val = t.decode(e.getImplicitTag(), countstream);
+                    if (istream instanceof BERInputBuffer buffer) {
+                        // the position tells how much the element used
+                        int start = buffer.getPosition();
+                        val = decode(t, e.getImplicitTag(), buffer);
+                        len = buffer.getPosition() - start;
+
+                    } else {
+                        try (CountingStream countstream = new CountingStream(istream)) {
+                            val = decode(t, e.getImplicitTag(), countstream);
+                            len = countstream.getNumRead();
                         }
+                    }
 
-                        // Decrement remaining count
-                        long len = countstream.getNumRead();
-                        if (remainingContent != -1) {
-                            if (remainingContent < len) {
-                                // this item went past the end of the SET
-                                throw new InvalidBERException("Item went " +
-                                        (len - remainingContent) + " bytes past the end of" +
-                                        " the SET");
-                            }
-                            remainingContent -= len;
+                    // Decrement remaining count
+                    if (remainingContent != -1) {
+                        if (remainingContent < len) {
+                            // this item went past the end of the SET
+                            throw new InvalidBERException("Item went " +
+                                    (len - remainingContent) + " bytes past the end of" +
+                                    " the SET");
                         }
+                        remainingContent -= len;
                     }
 
                     // Store this element in the SET
                     SET.Element se;
-                    if (e.getImplicitTag() == null) {
+                    if (e.isLazy()) {
+                        se = new SET.Element(e.getImplicitTag(), (ANY) val, e.getTemplate());
+                    } else if (e.getImplicitTag() == null) {
                         // no implicit tag
                         se = new SET.Element(val);
                     } else {
@@ -797,6 +887,17 @@ public class SET implements ASN1Value {
             }
         }
 
+        /**
+         * Decodes an element, with its implicit tag if it has one.
+         */
+        private static ASN1Value decode(ASN1Template t, Tag implicitTag,
+                InputStream istream) throws IOException, InvalidBERException {
+            if (implicitTag == null) {
+                return t.decode(istream);
+            }
+            return t.decode(implicitTag, istream);
+        }
+
         /**
          * Returns the index in the vector of the type with this tag and class,
          * or -1 if not found.
@@ -850,6 +951,18 @@ public class SET implements ASN1Value {
                 return repeatable;
             }
 
+            // Laziness is used for SET OF elements which should only be
+            // decoded when they are accessed.  It is package private.
+            private boolean lazy;
+
+            void makeLazy() {
+                lazy = true;
+            }
+
+            boolean isLazy() {
+                return lazy;
+            }
+
             private boolean optional;
 
             public boolean isOptional() {
@@ -929,6 +1042,26 @@ public class SET implements ASN1Value {
             template.addElement(el);
         }
 
+        /**
+         * Creates an OF_Template whose elements are not decoded until they
+         * are accessed. The elements are read as ANYs, checking only their
+         * tags and lengths, and are decoded with the given type by the
+         * first call to elementAt(). Decoding errors are then thrown as
+         * RuntimeExceptions. Elements which are never accessed are encoded
+         * again exactly as they were read.
+         *
+         * This is useful for large SETs, such as certificate sets, which
+         * callers often don't look at.
+         *
+         * @param type Type.
+         * @return OF_Template.
+         */
+        public static OF_Template makeLazyOFTemplate(ASN1Template type) {
+            OF_Template t = new OF_Template(type);
+            t.template.elements.elementAt(0).makeLazy();
+            return t;
+        }
+
         @Override
         public boolean tagMatch(Tag tag) {
             return TAG.equals(tag);
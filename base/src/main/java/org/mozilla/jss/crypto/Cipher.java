@@ -9,6 +9,7 @@ import java.security.InvalidKeyException;
 import java.security.spec.AlgorithmParameterSpec;
 
 import javax.crypto.BadPaddingException;
+import javax.crypto.ShortBufferException;
 
 /**
  * A context for performing symmetric encryption and decryption.
@@ -110,6 +111,76 @@ public abstract class Cipher {
         throws IllegalStateException, IllegalBlockSizeException,
         BadPaddingException, TokenException;
 
+    /**
+     * Updates the encryption context with additional input, storing the
+     * output into the provided array instead of allocating a new one.
+     *
+     * The default implementation delegates to
+     * {@link #update(byte[], int, int)} and copies the result; subclasses
+     * may override it to avoid the intermediate array.
+     *
+     * @param bytes Bytes of plaintext (if encrypting) or ciphertext (if
+     *      decrypting).
+     * @param offset The index in <code>bytes</code> at which to begin reading.
+     * @param length The number of bytes from <code>bytes</code> to read.
+     * @param output The array in which to store the output.
+     * @param outputOffset The index in <code>output</code> at which to
+     *      begin writing.
+     * @return The number of bytes stored into <code>output</code>.
+     * @exception ShortBufferException If <code>output</code> is too small
+     *      to hold the result.
+     */
+    public int update(byte[] bytes, int offset, int length,
+        byte[] output, int outputOffset)
+        throws IllegalStateException, ShortBufferException, TokenException
+    {
+        return copyOutput(update(bytes, offset, length), output, outputOffset);
+    }
+
+    /**
+     * Completes a cipher operation, storing the last of the output into the
+     * provided array instead of allocating a new one.
+     *
+     * The default implementation delegates to
+     * {@link #doFinal(byte[], int, int)} and copies the result; subclasses
+     * may override it to avoid the intermediate array.
+     *
+     * @param bytes Bytes of plaintext (if encrypting) or ciphertext (if
+     *      decrypting).
+     * @param offset The index in <code>bytes</code> at which to begin reading.
+     * @param length The number of bytes from <code>bytes</code> to read.
+     * @param output The array in which to store the output.
+     * @param outputOffset The index in <code>output</code> at which to
+     *      begin writing.
+     * @return The number of bytes stored into <code>output</code>.
+     * @exception ShortBufferException If <code>output</code> is too small
+     *      to hold the result.
+     */
+    public int doFinal(byte[] bytes, int offset, int length,
+        byte[] output, int outputOffset)
+        throws IllegalStateException, IllegalBlockSizeException,
+        BadPaddingException, ShortBufferException, TokenException
+    {
+        byte[] result;
+        if (bytes == null || length == 0) {
+            result = doFinal();
+        } else {
+            result = doFinal(bytes, offset, length);
+        }
+        return copyOutput(result, output, outputOffset);
+    }
+
+    private static int copyOutput(byte[] result, byte[] output,
+        int outputOffset) throws ShortBufferException
+    {
+        if (result.length > output.length - outputOffset) {
+            throw new ShortBufferException(result.length + " needed, " +
+                (output.length - outputOffset) + " supplied");
+        }
+        System.arraycopy(result, 0, output, outputOffset, result.length);
+        return result.length;
+    }
+
     /**
      * Pads a byte array so that its length is a multiple of the given
      *  blocksize.  The method of padding is the one defined in the RSA
@@ -14,5 +14,10 @@ public class Tunnel {
     ConstructSignature( SignatureAlgorithm alg, SignatureSpi engine) {
         return new Signature(alg, engine);
     }
+
+    protected static SignatureSpi
+    GetSignatureEngine(Signature sig) {
+        return sig.engine;
+    }
 }
 
@@ -0,0 +1,586 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.mozilla.jss.netscape.security.pkcs;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mozilla.jss.asn1.ASN1Header;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.BERInputStream;
+import org.mozilla.jss.asn1.Form;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.InvalidBERException;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.Tag;
+import org.mozilla.jss.crypto.JSSMessageDigest;
+import org.mozilla.jss.crypto.PBEAlgorithm;
+import org.mozilla.jss.pkcs12.MacData;
+import org.mozilla.jss.pkcs12.SafeBag;
+import org.mozilla.jss.pkcs7.ContentInfo;
+import org.mozilla.jss.pkcs7.EncryptedData;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+import org.mozilla.jss.util.Password;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads a PKCS #12 file without decoding all of it into memory.
+ *
+ * PKCS12Util.loadFromFile() decodes the whole PFX, then walks the
+ * AuthenticatedSafe twice and decrypts each encrypted SafeContents in
+ * turn. This reader instead parses the file as a stream: bags of
+ * unencrypted SafeContents are decoded one at a time, and encrypted
+ * SafeContents are decrypted on a pool of threads, a bounded number at a
+ * time. The entries are passed to a Handler in the order in which they
+ * appear in the file, so memory use does not depend on the number of
+ * entries.
+ *
+ * The MacData follows the data it authenticates, so the file is read
+ * more than once: first to find the MacData, then to verify the MAC, and
+ * finally to read the entries. No entry is passed to the Handler unless
+ * the MAC is valid. The MAC, classic or PBMAC1, is computed as the data
+ * is read.
+ *
+ * Private keys are passed to the Handler still encrypted. storeIntoNSS()
+ * imports the entries into the NSS database as they are read, decrypting
+ * the private keys on the pool of threads.
+ */
+public class PKCS12Reader implements AutoCloseable {
+
+    private static Logger logger = LoggerFactory.getLogger(PKCS12Reader.class);
+
+    /**
+     * Receives the entries of a PKCS #12 file.
+     */
+    public interface Handler {
+        void handleKey(PKCS12KeyInfo keyInfo) throws Exception;
+        void handleCert(PKCS12CertInfo certInfo) throws Exception;
+    }
+
+    /**
+     * Passes the bytes read to the MAC.
+     */
+    private static class MacOutputStream extends OutputStream {
+
+        private final JSSMessageDigest mac;
+
+        MacOutputStream(JSSMessageDigest mac) {
+            this.mac = mac;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            try {
+                mac.update(b, off, len);
+            } catch (DigestException e) {
+                throw new IOException("Unable to compute MAC: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private final PKCS12Util util;
+    private final Path path;
+    private final Password password;
+    private final int maxPendingSafes;
+    private final ExecutorService executor;
+
+    // Decrypted SafeContents, in file order.
+    private final ArrayDeque<CompletableFuture<SEQUENCE>> pendingSafes = new ArrayDeque<>();
+
+    /**
+     * Creates a reader decrypting SafeContents with one thread per
+     * available processor.
+     */
+    public PKCS12Reader(PKCS12Util util, Path path, Password password) {
+        this(util, path, password, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a reader decrypting SafeContents with the given number of
+     * threads.
+     */
+    public PKCS12Reader(PKCS12Util util, Path path, Password password, int threads) {
+
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+
+        this.util = util;
+        this.path = path;
+        this.password = password;
+
+        maxPendingSafes = threads * 2;
+
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "PKCS12Reader-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reads all the private keys and certificates into a PKCS #12 object.
+     */
+    public PKCS12 read() throws Exception {
+
+        PKCS12 pkcs12 = new PKCS12();
+
+        read(new Handler() {
+            @Override
+            public void handleKey(PKCS12KeyInfo keyInfo) {
+                pkcs12.addKeyInfo(keyInfo);
+            }
+
+            @Override
+            public void handleCert(PKCS12CertInfo certInfo) throws Exception {
+                pkcs12.addCertInfo(certInfo, true);
+            }
+        });
+
+        return pkcs12;
+    }
+
+    /**
+     * Imports private keys and certificates into the NSS database as they
+     * are read. Only the entries waiting for their counterpart are kept: a
+     * certificate waits for its private key, and a private key for its
+     * certificates.
+     */
+    private class Importer implements Handler {
+
+        private final boolean overwrite;
+
+        // Private keys read so far, by ID.
+        private final Map<BigInteger, PKCS12KeyInfo> keyInfos = new HashMap<>();
+
+        // Certificates waiting for their private key, by key ID.
+        private final Map<BigInteger, List<PKCS12CertInfo>> waitingCerts = new LinkedHashMap<>();
+
+        // Certificates whose private keys are being imported, in order.
+        private final ArrayDeque<PKCS12CertInfo> importingCerts = new ArrayDeque<>();
+        private final ArrayDeque<CompletableFuture<Void>> importingKeys = new ArrayDeque<>();
+        private final Map<String, Integer> importingNicknames = new HashMap<>();
+
+        Importer(boolean overwrite) {
+            this.overwrite = overwrite;
+        }
+
+        @Override
+        public void handleKey(PKCS12KeyInfo keyInfo) throws Exception {
+
+            BigInteger id = new BigInteger(1, keyInfo.getID());
+            keyInfos.put(id, keyInfo);
+
+            List<PKCS12CertInfo> certInfos = waitingCerts.remove(id);
+            if (certInfos == null) {
+                return;
+            }
+
+            for (PKCS12CertInfo certInfo : certInfos) {
+                store(certInfo, keyInfo);
+            }
+        }
+
+        @Override
+        public void handleCert(PKCS12CertInfo certInfo) throws Exception {
+
+            byte[] keyID = certInfo.getKeyID();
+            if (keyID == null) {
+                store(certInfo, null);
+                return;
+            }
+
+            BigInteger id = new BigInteger(1, keyID);
+            PKCS12KeyInfo keyInfo = keyInfos.get(id);
+            if (keyInfo == null) {
+                waitingCerts.computeIfAbsent(id, k -> new ArrayList<>()).add(certInfo);
+                return;
+            }
+
+            store(certInfo, keyInfo);
+        }
+
+        /**
+         * Stores a certificate, and its private key if it has one, as
+         * PKCS12Util.storeCertIntoNSS() does. The private key is imported
+         * on the pool of threads, and the certificate once the key is in.
+         */
+        private void store(PKCS12CertInfo certInfo, PKCS12KeyInfo keyInfo) throws Exception {
+
+            String nickname = certInfo.getFriendlyName();
+
+            // Finish importing any certificate with the same nickname
+            // first, so that only one of them is kept.
+            if (importingNicknames.containsKey(nickname)) {
+                finish(0);
+            }
+
+            if (!util.removeCertsFromNSS(certInfo, overwrite)) {
+                return;
+            }
+
+            CompletableFuture<Void> key;
+            if (keyInfo == null) {
+                key = CompletableFuture.completedFuture(null);
+            } else {
+                key = submit(() -> {
+                    logger.debug("Importing private key for " + nickname);
+                    util.importKey(certInfo, password, nickname, keyInfo);
+                    return null;
+                });
+            }
+
+            importingCerts.addLast(certInfo);
+            importingKeys.addLast(key);
+            importingNicknames.merge(nickname, 1, Integer::sum);
+
+            finish(maxPendingSafes);
+        }
+
+        /**
+         * Imports the certificates whose private keys have been imported
+         * until no more than max remain pending.
+         */
+        private void finish(int max) throws Exception {
+
+            while (importingCerts.size() > max) {
+
+                join(importingKeys.removeFirst());
+
+                PKCS12CertInfo certInfo = importingCerts.removeFirst();
+                util.importCertIntoNSS(certInfo);
+
+                importingNicknames.computeIfPresent(certInfo.getFriendlyName(),
+                        (nickname, count) -> count == 1 ? null : count - 1);
+            }
+        }
+
+        void close() throws Exception {
+
+            finish(0);
+
+            if (!waitingCerts.isEmpty()) {
+                PKCS12CertInfo certInfo = waitingCerts.values().iterator().next().get(0);
+                throw new Exception("Missing private key for " + certInfo.getFriendlyName());
+            }
+        }
+    }
+
+    /**
+     * Reads all the private keys and certificates and stores them into the
+     * NSS database as they are read, so the file is never held in memory.
+     * The private keys are decrypted and imported on the pool of threads.
+     */
+    public void storeIntoNSS(boolean overwrite) throws Exception {
+
+        logger.info("Storing data into NSS database");
+
+        Importer importer = new Importer(overwrite);
+        read(importer);
+        importer.close();
+    }
+
+    /**
+     * Verifies the MAC, then passes each private key and certificate to
+     * the handler in file order. Private keys remain encrypted, as with
+     * PKCS12Util.getKeyInfo().
+     */
+    public void read(Handler handler) throws Exception {
+
+        logger.info("Loading PKCS #12 file");
+
+        MacData macData = readMacData();
+        verifyMac(macData);
+
+        try (BERInputStream in = open()) {
+            readAuthenticatedSafe(openAuthenticatedSafe(in).content, handler);
+        }
+    }
+
+    private BERInputStream open() throws IOException {
+        return new BERInputStream(new BufferedInputStream(Files.newInputStream(path)));
+    }
+
+    /**
+     * The headers of the outer PFX structures and the contents of the
+     * OCTET STRING containing the AuthenticatedSafe.
+     */
+    private static class PFXContent {
+        ASN1Header pfx;
+        long pfxEnd;
+        ASN1Header contentInfo;
+        ASN1Header explicit;
+        InputStream content;
+    }
+
+    /**
+     * Reads the PFX up to the contents of the OCTET STRING containing the
+     * AuthenticatedSafe.
+     */
+    private static PFXContent openAuthenticatedSafe(BERInputStream in)
+            throws InvalidBERException, IOException {
+
+        PFXContent pfx = new PFXContent();
+
+        pfx.pfx = in.readHeader();
+        pfx.pfx.validate(SEQUENCE.TAG, Form.CONSTRUCTED);
+        pfx.pfxEnd = in.getEnd(pfx.pfx);
+
+        INTEGER version = (INTEGER) ASN1Util.decode(INTEGER.getTemplate(),
+                in.readElement(in.readHeader()));
+        logger.debug("PFX version: " + version);
+
+        pfx.contentInfo = in.readHeader();
+        pfx.contentInfo.validate(SEQUENCE.TAG, Form.CONSTRUCTED);
+
+        OBJECT_IDENTIFIER contentType = (OBJECT_IDENTIFIER) ASN1Util.decode(
+                OBJECT_IDENTIFIER.getTemplate(), in.readElement(in.readHeader()));
+        if (!contentType.equals(ContentInfo.DATA)) {
+            throw new InvalidBERException(
+                    "ContentInfo containing AuthenticatedSafes does not have content-type DATA");
+        }
+
+        pfx.explicit = in.readHeader();
+        pfx.explicit.validate(Tag.get(0), Form.CONSTRUCTED);
+
+        ASN1Header octetString = in.readHeader();
+        octetString.validate(OCTET_STRING.TAG);
+
+        pfx.content = in.openOctetString(octetString);
+        return pfx;
+    }
+
+    /**
+     * Reads the MacData, or returns null if there is none.
+     */
+    private MacData readMacData() throws Exception {
+
+        try (BERInputStream in = open()) {
+
+            PFXContent pfx = openAuthenticatedSafe(in);
+            pfx.content.close();
+
+            in.readEnd(pfx.explicit);
+            in.readEnd(pfx.contentInfo);
+
+            ASN1Header header = in.nextHeader(pfx.pfxEnd);
+            if (header == null) {
+                return null;
+            }
+
+            return (MacData) ASN1Util.decode(MacData.getTemplate(), in.readElement(header));
+        }
+    }
+
+    private void verifyMac(MacData macData) throws Exception {
+
+        if (macData == null) {
+            throw new Exception("Unable to validate PKCS #12 file: No MAC present in PFX");
+        }
+
+        AlgorithmIdentifier algID = macData.getMac().getDigestAlgorithm();
+        byte[] salt = macData.getMacSalt().toByteArray();
+        int iterations = macData.getMacIterationCount().intValue();
+
+        boolean valid;
+
+        try (BERInputStream in = open()) {
+            InputStream content = openAuthenticatedSafe(in).content;
+
+            JSSMessageDigest mac;
+            if (algID.getOID().equals(PBEAlgorithm.PBE_PKCS5_PBMAC1.toOID())) {
+                // The salt and iteration count are in the AlgorithmIdentifier.
+                mac = MacData.createPBMAC1(password, algID);
+            } else {
+                mac = MacData.createHMAC(password, salt, iterations, algID);
+            }
+
+            content.transferTo(new MacOutputStream(mac));
+            valid = MessageDigest.isEqual(mac.digest(),
+                    macData.getMac().getDigest().toByteArray());
+        }
+
+        if (!valid) {
+            throw new Exception("Unable to validate PKCS #12 file: Digests do not match");
+        }
+    }
+
+    private void readAuthenticatedSafe(InputStream content, Handler handler) throws Exception {
+
+        BERInputStream in = new BERInputStream(content);
+
+        ASN1Header authSafe = in.readHeader();
+        authSafe.validate(SEQUENCE.TAG, Form.CONSTRUCTED);
+        long end = in.getEnd(authSafe);
+
+        ASN1Header contentInfo;
+        while ((contentInfo = in.nextHeader(end)) != null) {
+
+            contentInfo.validate(SEQUENCE.TAG, Form.CONSTRUCTED);
+
+            OBJECT_IDENTIFIER contentType = (OBJECT_IDENTIFIER) ASN1Util.decode(
+                    OBJECT_IDENTIFIER.getTemplate(), in.readElement(in.readHeader()));
+
+            ASN1Header explicit = in.readHeader();
+            explicit.validate(Tag.get(0), Form.CONSTRUCTED);
+
+            if (contentType.equals(ContentInfo.DATA)) {
+
+                // Keep the entries in file order.
+                handlePendingSafes(handler, 0);
+
+                ASN1Header octetString = in.readHeader();
+                octetString.validate(OCTET_STRING.TAG);
+
+                InputStream data = in.openOctetString(octetString);
+                readSafeContents(data, handler);
+                data.close();
+
+            } else if (contentType.equals(ContentInfo.ENCRYPTED_DATA)) {
+
+                byte[] encryptedData = in.readElement(in.readHeader());
+                pendingSafes.addLast(submit(() -> decryptSafeContents(encryptedData)));
+                handlePendingSafes(handler, maxPendingSafes);
+
+            } else {
+                throw new InvalidBERException(
+                        "AuthenticatedSafes element is neither a Data or an EncryptedData");
+            }
+
+            in.readEnd(explicit);
+            in.readEnd(contentInfo);
+        }
+
+        handlePendingSafes(handler, 0);
+    }
+
+    private void readSafeContents(InputStream data, Handler handler) throws Exception {
+
+        BERInputStream in = new BERInputStream(data);
+
+        ASN1Header safeContents = in.readHeader();
+        safeContents.validate(SEQUENCE.TAG, Form.CONSTRUCTED);
+        long end = in.getEnd(safeContents);
+
+        ASN1Header header;
+        while ((header = in.nextHeader(end)) != null) {
+            SafeBag bag = (SafeBag) ASN1Util.decode(SafeBag.getTemplate(), in.readElement(header));
+            handleBag(bag, handler);
+        }
+    }
+
+    private SEQUENCE decryptSafeContents(byte[] encryptedData) throws Exception {
+
+        if (password == null) {
+            // can't decrypt if we don't have a password
+            throw new IllegalStateException("No password to decode encrypted SafeContents");
+        }
+
+        EncryptedData data = (EncryptedData) ASN1Util.decode(EncryptedData.getTemplate(), encryptedData);
+
+        // this should be a BER-encoded SafeContents
+        byte[] decrypted = data.getEncryptedContentInfo().decrypt(password, null);
+
+        SEQUENCE.OF_Template seqt = new SEQUENCE.OF_Template(SafeBag.getTemplate());
+        return (SEQUENCE) ASN1Util.decode(seqt, decrypted);
+    }
+
+    /**
+     * Hands the bags of decrypted SafeContents to the handler until no
+     * more than max remain pending.
+     */
+    private void handlePendingSafes(Handler handler, int max) throws Exception {
+
+        while (pendingSafes.size() > max) {
+
+            SEQUENCE contents = join(pendingSafes.removeFirst());
+
+            for (int i = 0; i < contents.size(); i++) {
+                handleBag((SafeBag) contents.elementAt(i), handler);
+            }
+        }
+    }
+
+    private void handleBag(SafeBag bag, Handler handler) throws Exception {
+
+        OBJECT_IDENTIFIER oid = bag.getBagType();
+
+        if (oid.equals(SafeBag.PKCS8_SHROUDED_KEY_BAG)) {
+            logger.debug(" - Private key:");
+            handler.handleKey(util.getKeyInfo(bag, password));
+
+        } else if (oid.equals(SafeBag.CERT_BAG)) {
+            logger.debug(" - Certificate:");
+            handler.handleCert(util.getCertInfo(bag));
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    @Override
+    public void close() {
+        pendingSafes.clear();
+        executor.shutdownNow();
+    }
+}
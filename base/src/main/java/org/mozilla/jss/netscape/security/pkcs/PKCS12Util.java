@@ -20,6 +20,7 @@ package org.mozilla.jss.netscape.security.pkcs;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -31,7 +32,12 @@ import java.security.cert.CertificateException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import javax.naming.InvalidNameException;
 import javax.naming.ldap.LdapName;
@@ -249,6 +255,16 @@ public class PKCS12Util {
     public void addKeyBag(PKCS12KeyInfo keyInfo, Password password,
             SEQUENCE encSafeContents) throws Exception {
 
+        SafeBag safeBag = createKeyBag(keyInfo, password);
+        encSafeContents.addElement(safeBag);
+    }
+
+    /**
+     * Create the shrouded key bag for a private key as described in
+     * addKeyBag(). This is safe to call from several threads at once.
+     */
+    public SafeBag createKeyBag(PKCS12KeyInfo keyInfo, Password password) throws Exception {
+
         byte[] keyID = keyInfo.getID();
         logger.debug(" - Key ID: " + Utils.HexEncode(keyID));
 
@@ -281,8 +297,7 @@ public class PKCS12Util {
 
         SET keyAttrs = createKeyBagAttrs(keyInfo);
 
-        SafeBag safeBag = new SafeBag(SafeBag.PKCS8_SHROUDED_KEY_BAG, content, keyAttrs);
-        encSafeContents.addElement(safeBag);
+        return new SafeBag(SafeBag.PKCS8_SHROUDED_KEY_BAG, content, keyAttrs);
     }
 
     public ASN1Value create_EPKI_with_PBE_SHA1_DES3_CBC(CryptoToken token, PrivateKey privateKey, Password password)
@@ -330,6 +345,12 @@ public class PKCS12Util {
     public void addCertBag(PKCS12CertInfo certInfo,
             SEQUENCE safeContents) throws Exception {
 
+        SafeBag safeBag = createCertBag(certInfo);
+        safeContents.addElement(safeBag);
+    }
+
+    public SafeBag createCertBag(PKCS12CertInfo certInfo) throws Exception {
+
         byte[] id = certInfo.getID();
         logger.debug(" - Certificate ID: " + Utils.HexEncode(id));
 
@@ -339,8 +360,7 @@ public class PKCS12Util {
 
         SET certAttrs = createCertBagAttrs(certInfo);
 
-        SafeBag safeBag = new SafeBag(SafeBag.CERT_BAG, certBag, certAttrs);
-        safeContents.addElement(safeBag);
+        return new SafeBag(SafeBag.CERT_BAG, certBag, certAttrs);
     }
 
     BigInteger createLocalID(X509Certificate cert) throws Exception {
@@ -671,6 +691,18 @@ public class PKCS12Util {
         }
     }
 
+    /**
+     * Writes PKCS #12 data to a stream as it is generated, encrypting
+     * private keys in parallel. See PKCS12Writer. The stream is not
+     * closed.
+     */
+    public void storeIntoStream(PKCS12 pkcs12, OutputStream os, Password password) throws Exception {
+
+        try (PKCS12Writer writer = new PKCS12Writer(this, os, password)) {
+            writer.addAll(pkcs12);
+        }
+    }
+
     /**
      * Loads key bags (for IMPORT and other operations on existing
      * PKCS #12 files).  Does not decrypt EncryptedPrivateKeyInfo
@@ -871,6 +903,19 @@ public class PKCS12Util {
         return loadFromByteArray(b, password);
     }
 
+    /**
+     * Loads a PKCS #12 file with PKCS12Reader, decrypting encrypted
+     * SafeContents in parallel. The returned object holds all the entries;
+     * use PKCS12Reader.storeIntoNSS() to import a file into NSSDB without
+     * holding them in memory.
+     */
+    public PKCS12 loadFromFile(Path path, Password password) throws Exception {
+
+        try (PKCS12Reader reader = new PKCS12Reader(this, path, password)) {
+            return reader.read();
+        }
+    }
+
     public PKCS12 loadFromByteArray(byte[] b, Password password) throws Exception {
         ByteArrayInputStream bis = new ByteArrayInputStream(b);
 
@@ -933,6 +978,19 @@ public class PKCS12Util {
             return;
         }
 
+        importKey(certInfo, password, nickname, keyInfo);
+    }
+
+    /**
+     * Import a private key into NSSDB, using the public key of the given
+     * certificate.
+     */
+    public void importKey(
+            PKCS12CertInfo certInfo,
+            Password password,
+            String nickname,
+            PKCS12KeyInfo keyInfo) throws Exception {
+
         CryptoManager cm = CryptoManager.getInstance();
         CryptoToken token = cm.getInternalKeyStorageToken();
         PK11Store store = (PK11Store)token.getCryptoStore();
@@ -979,20 +1037,10 @@ public class PKCS12Util {
             PKCS12CertInfo certInfo, boolean overwrite)
         throws Exception
     {
-        CryptoManager cm = CryptoManager.getInstance();
-        CryptoToken ct = cm.getInternalKeyStorageToken();
-        CryptoStore store = ct.getCryptoStore();
-
-        String nickname = certInfo.getFriendlyName();
-        for (X509Certificate cert : cm.findCertsByNickname(nickname)) {
-            if (!overwrite) {
-                return;
-            }
-            store.deleteCert(cert);
+        if (!removeCertsFromNSS(certInfo, overwrite)) {
+            return;
         }
 
-        X509CertImpl certImpl = certInfo.getCert();
-
         byte[] keyID = certInfo.getKeyID();
 
         if (keyID != null) { // cert has key
@@ -1001,6 +1049,36 @@ public class PKCS12Util {
             importKey(pkcs12, password, certInfo.getFriendlyName(), keyInfo);
         }
 
+        importCertIntoNSS(certInfo);
+    }
+
+    /**
+     * Delete the certificates in NSSDB with the nickname of the given
+     * certificate if overwrite is true. Returns false if there are
+     * such certificates and overwrite is false.
+     */
+    boolean removeCertsFromNSS(PKCS12CertInfo certInfo, boolean overwrite) throws Exception {
+
+        CryptoManager cm = CryptoManager.getInstance();
+        CryptoStore store = cm.getInternalKeyStorageToken().getCryptoStore();
+
+        for (X509Certificate cert : cm.findCertsByNickname(certInfo.getFriendlyName())) {
+            if (!overwrite) {
+                return false;
+            }
+            store.deleteCert(cert);
+        }
+
+        return true;
+    }
+
+    void importCertIntoNSS(PKCS12CertInfo certInfo) throws Exception {
+
+        CryptoManager cm = CryptoManager.getInstance();
+        CryptoStore store = cm.getInternalKeyStorageToken().getCryptoStore();
+
+        String nickname = certInfo.getFriendlyName();
+
         logger.debug("Importing certificate " + nickname);
         byte[] certData = certInfo.getCert().getEncoded();
         X509Certificate cert = store.importCert(certData, nickname);
@@ -1029,4 +1107,72 @@ public class PKCS12Util {
             storeCertIntoNSS(pkcs12, password, certInfo, overwrite);
         }
     }
+
+    /**
+     * Store the certificates and keys in NSSDB like storeIntoNSS(), but
+     * decrypt and import the private keys on the given executor, several
+     * at a time. The certificates are imported in order once all the
+     * keys have been imported.
+     */
+    public void storeIntoNSS(
+            PKCS12 pkcs12, Password password, boolean overwrite, Executor executor)
+        throws Exception
+    {
+        logger.info("Storing data into NSS database");
+
+        // As with storeIntoNSS(), of several certificates with the same
+        // nickname only the last one is kept when overwriting, and only
+        // the first one otherwise.
+        Map<String, PKCS12CertInfo> certInfos = new LinkedHashMap<>();
+        for (PKCS12CertInfo certInfo : pkcs12.getCertInfos()) {
+            String nickname = certInfo.getFriendlyName();
+            if (overwrite) {
+                certInfos.remove(nickname);
+                certInfos.put(nickname, certInfo);
+            } else {
+                certInfos.putIfAbsent(nickname, certInfo);
+            }
+        }
+
+        List<PKCS12CertInfo> certsToStore = new ArrayList<>();
+        for (PKCS12CertInfo certInfo : certInfos.values()) {
+            if (removeCertsFromNSS(certInfo, overwrite)) {
+                certsToStore.add(certInfo);
+            }
+        }
+
+        List<CompletableFuture<Void>> keys = new ArrayList<>();
+        for (PKCS12CertInfo certInfo : certsToStore) {
+
+            byte[] keyID = certInfo.getKeyID();
+            if (keyID == null) {
+                continue;
+            }
+
+            PKCS12KeyInfo keyInfo = pkcs12.getKeyInfoByID(keyID);
+            keys.add(CompletableFuture.runAsync(() -> {
+                try {
+                    logger.debug("Importing private key for " + certInfo.getFriendlyName());
+                    importKey(pkcs12, password, certInfo.getFriendlyName(), keyInfo);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+
+        for (CompletableFuture<Void> key : keys) {
+            try {
+                key.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Exception cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        for (PKCS12CertInfo certInfo : certsToStore) {
+            importCertIntoNSS(certInfo);
+        }
+    }
 }
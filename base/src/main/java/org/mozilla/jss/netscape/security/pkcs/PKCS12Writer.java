@@ -0,0 +1,412 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.mozilla.jss.netscape.security.pkcs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestException;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.BEROutputStream;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.Tag;
+import org.mozilla.jss.crypto.JSSMessageDigest;
+import org.mozilla.jss.crypto.PBEAlgorithm;
+import org.mozilla.jss.pkcs12.AuthenticatedSafes;
+import org.mozilla.jss.pkcs12.MacData;
+import org.mozilla.jss.pkcs12.MacType;
+import org.mozilla.jss.pkcs12.PFX;
+import org.mozilla.jss.pkcs12.SafeBag;
+import org.mozilla.jss.pkcs7.ContentInfo;
+import org.mozilla.jss.pkcs7.DigestInfo;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+import org.mozilla.jss.util.Password;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a PKCS #12 file to an OutputStream as its entries are added.
+ *
+ * PKCS12Util.generatePFX() builds the whole PFX in memory and encrypts the
+ * private keys one after the other. This writer instead collects the bags
+ * into SafeContents of at most batchSize bags, and encodes each
+ * SafeContents to the stream as soon as it is complete. Private keys are
+ * exported and encrypted on a pool of threads, as are encrypted
+ * certificate SafeContents; the output order is the order in which the
+ * entries were added. At most a few batches are in progress at any time,
+ * so memory use does not depend on the number of entries.
+ *
+ * The outer PFX structures are written with BER indefinite-length
+ * encoding, since their length isn't known until the last entry has been
+ * added. The MAC, classic or PBMAC1, is computed incrementally as the
+ * AuthenticatedSafe is written.
+ *
+ * Entries are encrypted and the MAC computed with the settings of the
+ * given PKCS12Util. The PKCS #12 file is complete once close() returns.
+ * The output stream is not closed.
+ */
+public class PKCS12Writer implements AutoCloseable {
+
+    private static Logger logger = LoggerFactory.getLogger(PKCS12Writer.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    // Use the same salt size and number of iterations as in pk12util.
+    static final int SALT_LENGTH = 16;
+    static final int ITERATIONS = 100000;
+
+    static final INTEGER VERSION = new INTEGER(3);
+
+    // OID of the deprecated PBEAlgorithm.PBE_SHA1_RC2_40_CBC.
+    static final OBJECT_IDENTIFIER PBE_SHA1_RC2_40_CBC =
+            OBJECT_IDENTIFIER.PKCS12.subBranch(1).subBranch(6);
+
+    /**
+     * Writes the AuthenticatedSafe into the PFX as a series of primitive
+     * OCTET STRING segments, passing it to the MAC on the way.
+     */
+    private class ContentOutputStream extends BEROutputStream.SegmentOutputStream {
+
+        @Override
+        protected void writeSegment(byte[] b, int len) throws IOException {
+            try {
+                mac.update(b, 0, len);
+            } catch (DigestException e) {
+                throw new IOException("Unable to compute MAC: " + e.getMessage(), e);
+            }
+
+            out.writeOctetString(b, 0, len);
+        }
+    }
+
+    private final PKCS12Util util;
+    private final BEROutputStream out;
+    private final Password password;
+    private final int batchSize;
+    private final int maxPendingSafes;
+    private final ExecutorService executor;
+
+    private final byte[] macSalt = new byte[SALT_LENGTH];
+    private final AlgorithmIdentifier macAlgID;
+    private final boolean pbmac1;
+    private final JSSMessageDigest mac;
+    private final ContentOutputStream content = new ContentOutputStream();
+    private final BEROutputStream authenticatedSafe = new BEROutputStream(content);
+
+    private List<CompletableFuture<SafeBag>> keyBags = new ArrayList<>();
+    private SEQUENCE certBags = new SEQUENCE();
+
+    // Encoded ContentInfos of SafeContents, in output order.
+    private final ArrayDeque<CompletableFuture<byte[]>> pendingSafes = new ArrayDeque<>();
+
+    private boolean failed;
+    private boolean closed;
+
+    /**
+     * Creates a writer encrypting private keys with one thread per
+     * available processor.
+     */
+    public PKCS12Writer(PKCS12Util util, OutputStream out, Password password)
+            throws Exception {
+        this(util, out, password, Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a writer encrypting private keys with the given number of
+     * threads and storing at most batchSize bags in each SafeContents.
+     * The password must remain valid until close() returns.
+     */
+    public PKCS12Writer(PKCS12Util util, OutputStream out, Password password,
+            int threads, int batchSize) throws Exception {
+
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+
+        this.util = util;
+        this.out = new BEROutputStream(out);
+        this.password = password;
+        this.batchSize = batchSize;
+
+        // Keep every thread busy while the oldest SafeContents is waited on.
+        maxPendingSafes = Math.max(2, (threads + batchSize - 1) / batchSize + 1);
+
+        util.random.nextBytes(macSalt);
+        macAlgID = PFX.createMacAlgorithmID(util.getMacType(), util.getMacDigest(), macSalt, ITERATIONS);
+
+        pbmac1 = util.getMacType() == MacType.PBMAC1;
+        if (pbmac1) {
+            mac = MacData.createPBMAC1(password, macAlgID);
+        } else {
+            mac = MacData.createHMAC(password, macSalt, ITERATIONS, macAlgID);
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "PKCS12Writer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        logger.info("Generating PKCS #12 data");
+
+        // PFX ::= SEQUENCE { version, authSafe ContentInfo, macData }
+        this.out.writeHeader(SEQUENCE.TAG);
+        VERSION.encode(this.out);
+
+        // ContentInfo ::= SEQUENCE { data, [0] EXPLICIT OCTET STRING }
+        this.out.writeHeader(SEQUENCE.TAG);
+        ContentInfo.DATA.encode(this.out);
+        this.out.writeHeader(new Tag(0));
+        this.out.writeHeader(OCTET_STRING.TAG);
+
+        // AuthenticatedSafe ::= SEQUENCE OF ContentInfo
+        authenticatedSafe.writeHeader(SEQUENCE.TAG);
+    }
+
+    /**
+     * Add a private key. It is exported and encrypted in the background as
+     * described in PKCS12Util.addKeyBag().
+     */
+    public void addKey(PKCS12KeyInfo keyInfo) throws Exception {
+        checkOpen();
+
+        try {
+            keyBags.add(submit(() -> util.createKeyBag(keyInfo, password)));
+            if (keyBags.size() >= batchSize) {
+                flushKeyBags();
+            }
+
+        } catch (Exception e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Add a certificate.
+     */
+    public void addCert(PKCS12CertInfo certInfo) throws Exception {
+        checkOpen();
+
+        try {
+            certBags.addElement(util.createCertBag(certInfo));
+            if (certBags.size() >= batchSize) {
+                flushCertBags();
+            }
+
+        } catch (Exception e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Add all the private keys and certificates of a PKCS #12 object.
+     */
+    public void addAll(PKCS12 pkcs12) throws Exception {
+
+        for (PKCS12KeyInfo keyInfo : pkcs12.getKeyInfos()) {
+            addKey(keyInfo);
+        }
+
+        for (PKCS12CertInfo certInfo : pkcs12.getCertInfos()) {
+            addCert(certInfo);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("PKCS #12 writer is closed");
+        }
+        if (failed) {
+            throw new IllegalStateException("PKCS #12 writer has failed");
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private static <T> T join(CompletableFuture<T> future)
+            throws IOException, GeneralSecurityException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioe) {
+                throw ioe;
+            }
+            if (cause instanceof GeneralSecurityException gse) {
+                throw gse;
+            }
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IOException("Unable to create PKCS #12 data: " + cause.getMessage(), cause);
+        }
+    }
+
+    private void flushKeyBags() throws IOException, GeneralSecurityException {
+
+        if (keyBags.isEmpty()) {
+            return;
+        }
+
+        List<CompletableFuture<SafeBag>> bags = keyBags;
+        keyBags = new ArrayList<>();
+
+        // Wait for the bags without tying up a thread of the pool.
+        CompletableFuture<byte[]> safe = CompletableFuture
+                .allOf(bags.toArray(new CompletableFuture<?>[bags.size()]))
+                .thenApply(v -> {
+                    SEQUENCE safeContents = new SEQUENCE();
+                    for (CompletableFuture<SafeBag> bag : bags) {
+                        safeContents.addElement(bag.join());
+                    }
+
+                    AuthenticatedSafes safes = new AuthenticatedSafes();
+                    safes.addSafeContents(safeContents);
+                    return ASN1Util.encode(safes.getSequence().elementAt(0));
+                });
+
+        queue(safe);
+    }
+
+    private void flushCertBags() throws IOException, GeneralSecurityException {
+
+        if (certBags.size() == 0) {
+            return;
+        }
+
+        SEQUENCE safeContents = certBags;
+        certBags = new SEQUENCE();
+
+        PBEAlgorithm certEncryption = util.getCertEncryption();
+        CompletableFuture<byte[]> safe;
+
+        if (certEncryption == null) {
+            AuthenticatedSafes safes = new AuthenticatedSafes();
+            safes.addSafeContents(safeContents);
+            safe = CompletableFuture.completedFuture(ASN1Util.encode(safes.getSequence().elementAt(0)));
+
+        } else if (PBE_SHA1_RC2_40_CBC.equals(certEncryption.toOID())) {
+
+            byte[] salt = new byte[SALT_LENGTH];
+            util.random.nextBytes(salt);
+
+            safe = submit(() -> {
+                AuthenticatedSafes safes = new AuthenticatedSafes();
+                safes.addEncryptedSafeContents(
+                        certEncryption,
+                        password,
+                        salt,
+                        ITERATIONS,
+                        safeContents);
+                return ASN1Util.encode(safes.getSequence().elementAt(0));
+            });
+
+        } else {
+            throw new NoSuchAlgorithmException("Unsupported certificate encryption: " + certEncryption);
+        }
+
+        queue(safe);
+    }
+
+    private void queue(CompletableFuture<byte[]> safe) throws IOException, GeneralSecurityException {
+
+        pendingSafes.addLast(safe);
+
+        // Write whatever is ready, and wait for the oldest SafeContents if
+        // too many are in progress.
+        while (!pendingSafes.isEmpty()
+                && (pendingSafes.size() > maxPendingSafes || pendingSafes.peekFirst().isDone())) {
+            content.write(join(pendingSafes.removeFirst()));
+        }
+    }
+
+    /**
+     * Write the remaining entries and the MAC. If adding an entry failed,
+     * the output is left incomplete.
+     */
+    @Override
+    public void close() throws IOException, GeneralSecurityException {
+
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            if (failed) {
+                return;
+            }
+
+            flushKeyBags();
+            flushCertBags();
+
+            while (!pendingSafes.isEmpty()) {
+                content.write(join(pendingSafes.removeFirst()));
+            }
+
+            // end of AuthenticatedSafe
+            authenticatedSafe.writeEnd();
+            content.flushSegment();
+
+            // end of OCTET STRING, [0] and ContentInfo
+            out.writeEnd(3);
+
+            // A PBMAC1 MacData has the PBKDF2 salt and an iteration count
+            // of 1; the actual iteration count is in the AlgorithmIdentifier.
+            MacData macData = new MacData(
+                    new DigestInfo(macAlgID, new OCTET_STRING(mac.digest())),
+                    new OCTET_STRING(macSalt),
+                    new INTEGER(pbmac1 ? 1 : ITERATIONS));
+            macData.encode(out);
+
+            // end of PFX
+            out.writeEnd();
+            out.flush();
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
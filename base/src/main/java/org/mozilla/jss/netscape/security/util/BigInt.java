@@ -53,6 +53,14 @@ public final class BigInt implements Serializable {
         places = data.clone();
     }
 
+    /**
+     * Constructs a "Big" integer from part of a byte array, which is
+     * copied.
+     */
+    BigInt(byte[] data, int offset, int length) {
+        places = Arrays.copyOfRange(data, offset, offset + length);
+    }
+
     /**
      * Constructs a "Big" integer from a "BigInteger", which must be
      * positive (or zero) in value.
@@ -18,6 +18,8 @@
 package org.mozilla.jss.netscape.security.util;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.cert.CertificateException;
 import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
@@ -129,10 +131,7 @@ public class Cert {
     // private static BASE64Decoder mDecoder = new BASE64Decoder();
     public static X509CertImpl mapCert(String mime64)
             throws IOException {
-        mime64 = stripCertBrackets(mime64.trim());
-        String newval = normalizeCertStr(mime64);
-        // byte rawPub[] = mDecoder.decodeBuffer(newval);
-        byte[] rawPub = Utils.base64decode(newval);
+        byte[] rawPub = decodePEM(mime64, CERT_BRACKETS);
         X509CertImpl cert = null;
 
         try {
@@ -144,10 +143,7 @@ public class Cert {
 
     public static X509Certificate[] mapCertFromPKCS7(String mime64)
             throws IOException {
-        mime64 = stripCertBrackets(mime64.trim());
-        String newval = normalizeCertStr(mime64);
-        // byte rawPub[] = mDecoder.decodeBuffer(newval);
-        byte[] rawPub = Utils.base64decode(newval);
+        byte[] rawPub = decodePEM(mime64, CERT_BRACKETS);
         PKCS7 p7 = null;
 
         try {
@@ -160,10 +156,7 @@ public class Cert {
 
     public static X509CRL mapCRL(String mime64)
             throws IOException {
-        mime64 = stripCRLBrackets(mime64.trim());
-        String newval = normalizeCertStr(mime64);
-        // byte rawPub[] = mDecoder.decodeBuffer(newval);
-        byte[] rawPub = Utils.base64decode(newval);
+        byte[] rawPub = decodePEM(mime64, CRL_BRACKETS);
         X509CRL crl = null;
 
         try {
@@ -188,6 +181,63 @@ public class Cert {
         return crl;
     }
 
+    // headers and footers removed by stripBrackets() and stripCRLBrackets()
+    private static final String[][] CERT_BRACKETS = {
+            { HEADER, FOOTER },
+            { PKCS7_HEADER, PKCS7_FOOTER },
+            { "-----BEGIN PKCS #7 SIGNED DATA-----", "-----END PKCS #7 SIGNED DATA-----" }
+    };
+    private static final String[][] CRL_BRACKETS = {
+            { "-----BEGIN CERTIFICATE REVOCATION LIST-----", "-----END CERTIFICATE REVOCATION LIST-----" }
+    };
+
+    /**
+     * Decodes PEM data straight to DER. This is the same as trimming the
+     * string, removing the first matching pair of brackets, normalizing
+     * it with normalizeCertStr() and decoding it with Utils.base64decode(),
+     * but the line breaks, spaces and quotes are skipped by the decoder
+     * instead of being removed from a copy of the string.
+     */
+    static byte[] decodePEM(String pem, String[][] brackets) {
+        int start = 0;
+        int end = pem.length();
+
+        // same as String.trim()
+        while (start < end && pem.charAt(start) <= ' ') {
+            start++;
+        }
+        while (start < end && pem.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        for (String[] bracket : brackets) {
+            String header = bracket[0];
+            String footer = bracket[1];
+            if (end - start >= header.length() + footer.length()
+                    && pem.startsWith(header, start)
+                    && pem.startsWith(footer, end - footer.length())) {
+                start += header.length();
+                end -= footer.length();
+                break;
+            }
+        }
+
+        byte[] bytes = pem.getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer data = ByteBuffer.wrap(bytes, start, end - start);
+
+        for (int i = start; i < end; i++) {
+            if (bytes[i] == '-' || bytes[i] == '_') {
+                // The URL decoder does not skip line breaks or spaces, so
+                // they have to be removed first.
+                return Utils.base64decode(normalizeCertStr(pem.substring(start, end)));
+            }
+        }
+
+        // The MIME decoder skips characters outside of the alphabet,
+        // including those removed by normalizeCertStr().
+        return Utils.base64decode(data);
+    }
+
     public static String normalizeCertStr(String s) {
         StringBuilder val = new StringBuilder();
         if (s != null) {
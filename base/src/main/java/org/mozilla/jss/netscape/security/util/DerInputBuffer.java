@@ -20,6 +20,8 @@ package org.mozilla.jss.netscape.security.util;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * DER input buffer ... this is the main abstraction in the DER library
@@ -28,6 +30,9 @@ import java.io.OutputStream;
  * anyone who could violate the "typed value stream" DER model and hence
  * corrupt the input stream of DER values.
  *
+ * Buffers never copy their array: dup() and the buffers of the values
+ * read from a buffer share it, so it must be treated as read-only.
+ *
  * @version 1.11
  * @author David Brownell
  */
@@ -52,6 +57,40 @@ class DerInputBuffer extends ByteArrayInputStream implements Cloneable {
         }
     }
 
+    /**
+     * Returns the current read position in the shared array.
+     */
+    int position() {
+        return pos;
+    }
+
+    /**
+     * Returns a copy of the given range of the shared array, relative to
+     * the mark.
+     */
+    byte[] copyFromMark(int from, int to) throws IOException {
+        if (mark + from < 0 || mark + to > count)
+            throw new IOException("short DER value (copy)");
+        return Arrays.copyOfRange(buf, mark + from, mark + to);
+    }
+
+    /**
+     * Returns the byte at the given offset from the mark.
+     */
+    byte getFromMark(int offset) {
+        return buf[mark + offset];
+    }
+
+    /**
+     * Returns a read-only view of the given number of bytes starting at
+     * the mark.
+     */
+    ByteBuffer viewFromMark(int length) throws IOException {
+        if (count < mark + length)
+            throw new IOException("short DER value (view)");
+        return ByteBuffer.wrap(buf, mark, length).slice().asReadOnlyBuffer();
+    }
+
     byte[] toByteArray() throws IOException {
         int len = available();
         if (len <= 0)
@@ -127,11 +166,9 @@ class DerInputBuffer extends ByteArrayInputStream implements Cloneable {
          * Consume the rest of the buffer, returning its value as
          * an unsigned integer.
          */
-        byte[] bytes = new byte[len];
-
-        System.arraycopy(buf, pos, bytes, 0, len);
+        BigInt value = new BigInt(buf, pos, len);
         skip(len);
-        return new BigInt(bytes);
+        return value;
     }
 
     /**
@@ -27,7 +27,6 @@ import java.nio.charset.CharsetEncoder;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.TimeZone;
@@ -441,50 +440,75 @@ public class DerOutputStream
         putOrderedSet(tag, set, tagOrder);
     }
 
-    /**
-     * Lexicographical order comparison on byte arrays, for ordering
-     * elements of a SET OF objects in DER encoding.
-     */
-    private static ByteArrayLexOrder lexOrder = new ByteArrayLexOrder();
-
-    /**
-     * Tag order comparison on byte arrays, for ordering elements of
-     * SET objects in DER encoding.
-     */
-    private static ByteArrayTagOrder tagOrder = new ByteArrayTagOrder();
-
     /**
      * Marshals a the contents of a set on the output stream with the
      * encodings of its sorted in increasing order.
      *
-     * @param order the order to use when sorting encodings of components.
+     * The elements are encoded one after the other into a single buffer
+     * and sorted by their offsets in it, rather than each being encoded
+     * into a stream and copied into an array of its own. If they are
+     * already in order, which is common, the buffer is written as is.
+     *
+     * @param order the order to use when sorting encodings of components,
+     *            or null to keep the order of the set.
      */
     private void putOrderedSet(byte tag, DerEncoder[] set,
-                   Comparator<byte[]> order) throws IOException {
-        DerOutputStream[] streams = new DerOutputStream[set.length];
+                   SetOrder order) throws IOException {
+        DerOutputStream bytes = new DerOutputStream();
+        int[] offsets = new int[set.length + 1];
 
         for (int i = 0; i < set.length; i++) {
-            streams[i] = new DerOutputStream();
-            set[i].derEncode(streams[i]);
+            set[i].derEncode(bytes);
+            offsets[i + 1] = bytes.count;
         }
 
-        // order the element encodings
-        byte[][] bufs = new byte[streams.length][];
-        for (int i = 0; i < streams.length; i++) {
-            bufs[i] = streams[i].toByteArray();
+        boolean sorted = true;
+        for (int i = 1; i < set.length && sorted && order != null; i++) {
+            sorted = order.compare(bytes.buf, offsets, i - 1, i) <= 0;
         }
-        if (order != null) {
-            Arrays.sort(bufs, order);
+
+        if (sorted) {
+            write(tag, bytes);
+            return;
         }
 
-        DerOutputStream bytes = new DerOutputStream();
-        for (int i = 0; i < streams.length; i++) {
-            bytes.write(bufs[i]);
+        // order the element encodings
+        Integer[] indices = new Integer[set.length];
+        for (int i = 0; i < set.length; i++) {
+            indices[i] = i;
         }
-        write(tag, bytes);
+        Arrays.sort(indices, (a, b) -> order.compare(bytes.buf, offsets, a, b));
 
+        write(tag);
+        putLength(bytes.count);
+        for (int i : indices) {
+            write(bytes.buf, offsets[i], offsets[i + 1] - offsets[i]);
+        }
+    }
+
+    /**
+     * Orders the encodings of set elements, given by their offsets in a
+     * buffer.
+     */
+    private interface SetOrder {
+        int compare(byte[] buf, int[] offsets, int a, int b);
     }
 
+    /**
+     * Lexicographical order, for ordering elements of a SET OF objects
+     * in DER encoding. Same as ByteArrayLexOrder.
+     */
+    private static final SetOrder lexOrder = (buf, offsets, a, b) -> Arrays.compareUnsigned(
+            buf, offsets[a], offsets[a + 1],
+            buf, offsets[b], offsets[b + 1]);
+
+    /**
+     * Tag order, for ordering elements of SET objects in DER encoding.
+     * Same as ByteArrayTagOrder.
+     */
+    private static final SetOrder tagOrder = (buf, offsets, a, b) ->
+            (buf[offsets[a]] | 0x20) - (buf[offsets[b]] | 0x20);
+
     /**
      * Converts string to printable and writes to der output stream.
      */
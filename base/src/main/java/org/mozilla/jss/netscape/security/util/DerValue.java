@@ -17,7 +17,6 @@
 // --- END COPYRIGHT BLOCK ---
 package org.mozilla.jss.netscape.security.util;
 
-import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -69,6 +68,10 @@ public class DerValue {
 
     private int length;
 
+    // The number of tag and length octets before the data in the
+    // buffer, if the value was read from a buffer; otherwise 0.
+    private int headerLength;
+
     /*
      * The type starts at the first byte of the encoding, and
      * is one of these tag_* values.  That may be all the type
@@ -216,6 +219,7 @@ public class DerValue {
         tag = val.tag;
         buffer = val.buffer;
         length = val.length;
+        headerLength = val.headerLength;
         data = val.data;
         data.mark(Integer.MAX_VALUE);
     }
@@ -243,7 +247,11 @@ public class DerValue {
      * @param length length of the data
      */
     public DerValue(byte tag, byte[] data, int offset, int length) {
-        this(tag, Arrays.copyOfRange(data, offset, offset + length));
+        this.tag = tag;
+        buffer = new DerInputBuffer(Arrays.copyOfRange(data, offset, offset + length));
+        this.length = length;
+        this.data = new DerInputStream(buffer);
+        this.data.mark(Integer.MAX_VALUE);
     }
 
     /*
@@ -257,8 +265,10 @@ public class DerValue {
         // XXX must also parse BER-encoded constructed
         // values such as sequences, sets...
 
+        int start = in.position();
         tag = (byte) in.read();
         length = DerInputStream.getLength(in);
+        headerLength = in.position() - start;
 
         buffer = in.dup();
         buffer.truncate(length);
@@ -270,25 +280,32 @@ public class DerValue {
     /**
      * Get an ASN.1/DER encoded datum from a buffer. The
      * entire buffer must hold exactly one datum, including
-     * its tag and length.
+     * its tag and length. The buffer is not copied, it is
+     * shared. Accordingly, the buffer should be treated as
+     * read-only.
      *
      * @param buf buffer holding a single DER-encoded datum.
      */
     public DerValue(byte[] buf) throws IOException {
-        init(true, new ByteArrayInputStream(buf));
+        this(buf, 0, buf.length);
     }
 
     /**
      * Get an ASN.1/DER encoded datum from part of a buffer.
      * That part of the buffer must hold exactly one datum, including
-     * its tag and length.
+     * its tag and length. The buffer is not copied, it is
+     * shared. Accordingly, the buffer should be treated as
+     * read-only.
      *
      * @param buf the buffer
      * @param offset start point of the single DER-encoded dataum
      * @param len how many bytes are in the encoded datum
      */
     public DerValue(byte[] buf, int offset, int len) throws IOException {
-        init(true, new ByteArrayInputStream(buf, offset, len));
+        this(new DerInputBuffer(buf, offset, len));
+
+        if (buffer.position() + length != offset + len)
+            throw new IOException("extra DER value data (constructor)");
     }
 
     /**
@@ -299,25 +316,13 @@ public class DerValue {
      *            which may be followed by additional data
      */
     public DerValue(InputStream in) throws IOException {
-        init(false, in);
-    }
-
-    /*
-     * helper routine
-     */
-    private void init(boolean fullyBuffered, InputStream in)
-            throws IOException {
         byte[] bytes;
 
         tag = (byte) in.read();
         length = DerInputStream.getLength(in);
 
-        if (fullyBuffered && in.available() != length)
-            throw new IOException("extra DER value data (constructor)");
-
         bytes = new byte[length];
 
-        // n.b. readFully not needed in normal fullyBuffered case
         DataInputStream dis = new DataInputStream(in);
 
         dis.readFully(bytes);
@@ -563,10 +568,11 @@ public class DerValue {
             if (decoder == null)
                 return null;
 
-            ByteBuffer byteBuffer = ByteBuffer.allocate(length);
+            ByteBuffer byteBuffer = getContents();
 
+            // consume the contents, as reading them used to
             data.reset();
-            data.getBytes(byteBuffer.array());
+            buffer.skip(length);
 
             CharBuffer charBuffer = decoder.decode(byteBuffer);
             return charBuffer.toString();
@@ -705,6 +711,13 @@ public class DerValue {
      * @return DER-encoded value, including tag and length.
      */
     public byte[] toByteArray() throws IOException {
+        if (headerLength > 0 && buffer.getFromMark(-headerLength) == tag) {
+            // the value was read from a buffer and its tag has not
+            // been changed, so its encoding is still in the buffer
+            data.reset();
+            return buffer.copyFromMark(-headerLength, length);
+        }
+
         DerOutputStream out = new DerOutputStream();
 
         encode(out);
@@ -712,6 +725,18 @@ public class DerValue {
         return out.toByteArray();
     }
 
+    /**
+     * Returns a read-only view of the contents of this value, without
+     * the tag and length, which shares the buffer of this value. Use the
+     * type-specific getters, such as getOctetString(), to get a copy of
+     * the contents.
+     *
+     * @return the contents of this value
+     */
+    public ByteBuffer getContents() throws IOException {
+        return buffer.viewFromMark(length);
+    }
+
     /**
      * For "set" and "sequence" types, this function may be used
      * to return a DER stream of the members of the set or sequence.
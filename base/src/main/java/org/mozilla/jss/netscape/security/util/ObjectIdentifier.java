@@ -287,15 +287,23 @@ public final class ObjectIdentifier implements Serializable {
     private static BigInteger getComponentBigInt(DerInputStream in)
             throws IOException {
 
-        BigInteger retval = BigInteger.valueOf(0);
+        // Accumulate in a long while the value fits, which it almost
+        // always does, and only then switch to a BigInteger.
+        long value = 0;
+        BigInteger retval = null;
         int tmp;
 
         while (true) {
-            retval = retval.shiftLeft(7);
             tmp = in.getByte();
-            retval = retval.or(BigInteger.valueOf(tmp & 0x07f));
+            if (retval == null && (value >>> 56) == 0) {
+                value = (value << 7) | (tmp & 0x07f);
+            } else {
+                if (retval == null)
+                    retval = BigInteger.valueOf(value);
+                retval = retval.shiftLeft(7).or(BigInteger.valueOf(tmp & 0x07f));
+            }
             if ((tmp & 0x080) == 0)
-                return retval;
+                return retval == null ? BigInteger.valueOf(value) : retval;
         }
 
     }
@@ -310,9 +318,23 @@ public final class ObjectIdentifier implements Serializable {
         int blockSize = 100;
         byte[] buf = new byte[blockSize];
 
+        if (val.bitLength() < 64) {
+            long cur = val.longValue();
+            for (i = 0;; i++) {
+                buf[i] = (byte) (cur & 0x7f);
+                cur >>>= 7;
+                if (cur == 0)
+                    break;
+            }
+            for (; i > 0; --i)
+                out.write(buf[i] | 0x080);
+            out.write(buf[0]);
+            return;
+        }
+
         BigInteger bigInt7f = BigInteger.valueOf(0x7f);
 
-        BigInteger cur =  new BigInteger(val.toString());
+        BigInteger cur = val;
         for (i = 0;; i++) {
             buf[i] = (cur.and(bigInt7f).byteValue());
             cur = cur.shiftRight(7);
@@ -31,9 +31,13 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Date;
+import java.util.HexFormat;
 import java.util.StringTokenizer;
 import java.util.Vector;
 
@@ -201,29 +205,17 @@ public class Utils {
         return out.toByteArray();
     }
 
+    private static final HexFormat specialFormat = HexFormat.of().withPrefix("%").withUpperCase();
+
     public static String SpecialEncode(byte data[]) {
-        StringBuffer sb = new StringBuffer();
-        for (int i = 0; i < data.length; i++) {
-            sb.append("%");
-            if ((data[i] & 0xff) < 16) {
-                sb.append("0");
-            }
-            sb.append(Integer.toHexString((data[i] & 0xff)));
-        }
-        return sb.toString().toUpperCase();
+        return specialFormat.formatHex(data);
     }
 
     public static String HexEncode(byte data[]) {
-        StringBuffer sb = new StringBuffer();
-        if (data != null) {
-            for (int i = 0; i < data.length; i++) {
-                if ((data[i] & 0xff) < 16) {
-                    sb.append("0");
-                }
-                sb.append(Integer.toHexString((data[i] & 0xff)));
-            }
+        if (data == null) {
+            return "";
         }
-        return sb.toString();
+        return HexFormat.of().formatHex(data);
     }
 
     public static void checkHost(String hostname) throws UnknownHostException {
@@ -388,22 +380,54 @@ public class Utils {
      * @return byte array
      */
     public static byte[] base64decode(String string) {
+        return base64decode(ByteBuffer.wrap(string.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    /**
+     * Converts Base-64 encoded data into a byte array, decoding the
+     * remaining bytes of the buffer without converting them to a string
+     * first. The buffer's position is advanced to its limit.
+     *
+     * @param buffer base-64 encoded data
+     * @return byte array
+     */
+    public static byte[] base64decode(ByteBuffer buffer) {
         try {
             // Java is particular about its base64. We already used the MIME
             // decoder as it was most flexible about whitespace. However, it
             // doesn't understand URL-encoded Base64 (using '-' instead of
             // '+' and '_' instead of '/'). So, detect those characters and
             // pass it to the correct decoder.
-            if (string.contains("_") || string.contains("-")) {
-                return Base64.getUrlDecoder().decode(string);
+            ByteBuffer decoded;
+            if (isURLEncoded(buffer)) {
+                decoded = Base64.getUrlDecoder().decode(buffer);
             } else {
-                return Base64.getMimeDecoder().decode(string);
+                decoded = Base64.getMimeDecoder().decode(buffer);
+            }
+
+            byte[] bytes = decoded.array();
+            if (decoded.arrayOffset() == 0 && decoded.remaining() == bytes.length) {
+                return bytes;
             }
+            int start = decoded.arrayOffset() + decoded.position();
+            return Arrays.copyOfRange(bytes, start, start + decoded.remaining());
+
         } catch (IllegalArgumentException iae) {
+            buffer.position(buffer.limit());
             return new byte[0];
         }
     }
 
+    private static boolean isURLEncoded(ByteBuffer buffer) {
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            byte b = buffer.get(i);
+            if (b == '_' || b == '-') {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Normalize B64 input String
      *
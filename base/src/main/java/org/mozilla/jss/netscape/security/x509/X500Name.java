@@ -18,12 +18,19 @@
 package org.mozilla.jss.netscape.security.x509;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.security.Principal;
+import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Vector;
+import java.util.WeakHashMap;
 
 import org.mozilla.jss.netscape.security.util.DerInputStream;
 import org.mozilla.jss.netscape.security.util.DerOutputStream;
@@ -43,6 +50,13 @@ import org.mozilla.jss.netscape.security.util.ObjectIdentifier;
  * to be visible to applications.  This limitation, and others, will
  * be lifted over time.</em>
  *
+ * <P>
+ * An X500Name does not change once constructed, so its DER encoding, its
+ * LDAP DN string and its canonical form are computed when first needed
+ * and kept. Equality and the hash code are based on the DER encoding.
+ * Use <code>matches()</code> to compare names with the RFC 5280 rules,
+ * and <code>intern()</code> to share one instance between identical names.
+ *
  * @author David Brownell
  * @author Amit Kapoor
  * @author Hemma Prafullchandra
@@ -286,14 +300,28 @@ public class X500Name implements Principal, GeneralNameInterface {
         }
     }
 
+    /**
+     * Returns a hash code computed from the DER encoding. It is computed
+     * once.
+     */
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + Arrays.hashCode(names);
-        return result;
+        int h = hash;
+        if (h == 0) {
+            try {
+                h = Arrays.hashCode(encodedName());
+            } catch (IOException e) {
+                return Arrays.hashCode(names);
+            }
+            hash = h;
+        }
+        return h;
     }
 
+    /**
+     * Compares the DER encodings of the names, which is equivalent to
+     * comparing their RDNs. The cached hash codes are compared first.
+     */
     @Override
     public boolean equals(Object obj) {
         if (this == obj)
@@ -303,7 +331,75 @@ public class X500Name implements Principal, GeneralNameInterface {
         if (getClass() != obj.getClass())
             return false;
         X500Name other = (X500Name) obj;
-        return Arrays.equals(names, other.names);
+        if (hashCode() != other.hashCode())
+            return false;
+        try {
+            return Arrays.equals(encodedName(), other.encodedName());
+        } catch (IOException e) {
+            return Arrays.equals(names, other.names);
+        }
+    }
+
+    /**
+     * Compares this name with another using the name matching rules of
+     * RFC 5280 section 7.1: attribute values which are character strings
+     * are compared ignoring case and insignificant white space.
+     *
+     * @param other the name to compare with.
+     * @return true if the names match.
+     * @see #toCanonicalString
+     */
+    public boolean matches(X500Name other) {
+        if (this == other)
+            return true;
+        if (other == null)
+            return false;
+        return toCanonicalString().equals(other.toCanonicalString());
+    }
+
+    /**
+     * Returns the canonical form of this name, for comparisons and as a
+     * key for lookups. Two names match as described in RFC 5280 if and
+     * only if their canonical forms are equal. It is computed once.
+     *
+     * <P>
+     * The RDNs are listed most significant first, separated by ",". The
+     * AVAs of a multi-valued RDN are sorted and separated by "+". Each
+     * AVA is written as the dotted OID of its type, "=", and its value.
+     * Character string values are normalized to Unicode NFKC and folded
+     * to lower case, leading and trailing white space is removed and
+     * internal white space collapsed to one space, and "\", ",", "+" and
+     * "=" are escaped with "\". Other values are written as "#" followed
+     * by their DER encoding in hex.
+     *
+     * @return canonical form of this name.
+     */
+    public String toCanonicalString() {
+        String s = canonicalName;
+        if (s == null) {
+            s = generateCanonicalName();
+            canonicalName = s;
+        }
+        return s;
+    }
+
+    /**
+     * Returns the instance shared by all interned names equal to this
+     * one, adding this one to the pool if there is none yet. Names which
+     * are no longer referenced elsewhere are dropped from the pool.
+     *
+     * @return the shared instance.
+     */
+    public X500Name intern() {
+        synchronized (pool) {
+            WeakReference<X500Name> ref = pool.get(this);
+            X500Name name = ref == null ? null : ref.get();
+            if (name == null) {
+                name = this;
+                pool.put(this, new WeakReference<>(this));
+            }
+            return name;
+        }
     }
 
     /**
@@ -311,7 +407,7 @@ public class X500Name implements Principal, GeneralNameInterface {
      */
 
     private void clear() {
-        dn = "";
+        dn = null;
         names = null;
 
     }
@@ -447,9 +543,7 @@ public class X500Name implements Principal, GeneralNameInterface {
      */
     public String toLdapDNString()
             throws IOException {
-        if (dn == null)
-            generateDN(LdapDNStrConverter.getDefault());
-        return dn;
+        return toLdapDNString(LdapDNStrConverter.getDefault());
     }
 
     /**
@@ -484,9 +578,16 @@ public class X500Name implements Principal, GeneralNameInterface {
     public String toLdapDNString(LdapDNStrConverter ldapDNStrConverter)
             throws IOException {
 
-        if (dn == null)
-            generateDN(ldapDNStrConverter);
-        return dn;
+        if (names == null)
+            return "";
+
+        // the string from the last converter used is kept
+        LdapDN cached = dn;
+        if (cached == null || cached.converter != ldapDNStrConverter) {
+            cached = new LdapDN(ldapDNStrConverter, ldapDNStrConverter.encodeDN(this));
+            dn = cached;
+        }
+        return cached.string;
     }
 
     /**
@@ -517,9 +618,31 @@ public class X500Name implements Principal, GeneralNameInterface {
         return toString();
     }
 
-    private String dn; // RFC 1779 style DN, or null
+    /**
+     * A DN string together with the converter which produced it, so
+     * that both are published in a single write.
+     */
+    private static final class LdapDN {
+        final LdapDNStrConverter converter;
+        final String string;
+
+        LdapDN(LdapDNStrConverter converter, String string) {
+            this.converter = converter;
+            this.string = string;
+        }
+    }
+
+    private transient LdapDN dn; // last converted DN string, or null
     private RDN[] names; // RDNs
 
+    private byte[] encodedName; // DER encoding, or null
+    private int hash; // hash code of the DER encoding, or 0
+    private String canonicalName; // RFC 5280 canonical form, or null
+
+    // interned names; the values are weak so that the keys can be collected
+    private static final Map<X500Name, WeakReference<X500Name>> pool =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
     /**
      * Find the first instance of this attribute in a "top down"
      * search of all the attributes in the name.
@@ -591,21 +714,7 @@ public class X500Name implements Principal, GeneralNameInterface {
      */
     @Override
     public void encode(DerOutputStream out) throws IOException {
-        DerOutputStream tmp = new DerOutputStream();
-        int i;
-
-        int len = 0;
-        if (names == null) {
-            len = 0;
-        } else {
-            len = names.length;
-
-        }
-
-        for (i = 0; i < len; i++)
-            names[i].encode(tmp);
-
-        out.write(DerValue.tag_Sequence, tmp);
+        out.write(encodedName());
     }
 
     /**
@@ -615,6 +724,18 @@ public class X500Name implements Principal, GeneralNameInterface {
      *         null if no names are present.
      */
     public byte[] getEncoded() throws IOException {
+        return encodedName().clone();
+    }
+
+    /**
+     * Returns the DER encoding, encoding the name the first time. The
+     * array is shared and must not be modified.
+     */
+    private byte[] encodedName() throws IOException {
+        byte[] encoded = encodedName;
+        if (encoded != null)
+            return encoded;
+
         try (DerOutputStream out = new DerOutputStream()) {
             DerOutputStream tmp = new DerOutputStream();
 
@@ -630,24 +751,87 @@ public class X500Name implements Principal, GeneralNameInterface {
                 names[i].encode(tmp);
 
             out.write(DerValue.tag_Sequence, tmp);
-            return out.toByteArray();
+            encoded = out.toByteArray();
         }
+
+        encodedName = encoded;
+        return encoded;
     }
 
-    /*
-     * Dump the printable form of a distinguished name.  Each relative
-     * name is separated from the next by a ",", and assertions in the
-     * relative names have "label=value" syntax.
-     *
-     * Uses RFC 1779 syntax (i.e. little-endian, comma separators)
-     *
-     */
-    private void generateDN(LdapDNStrConverter ldapDNStrConverter)
-            throws IOException {
+    private String generateCanonicalName() {
         if (names == null)
-            return;
+            return "";
 
-        dn = ldapDNStrConverter.encodeDN(this);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0)
+                sb.append(',');
+
+            AVA[] avas = names[i].getAssertion();
+            String[] canonicalAVAs = new String[avas.length];
+            for (int j = 0; j < avas.length; j++)
+                canonicalAVAs[j] = canonicalAVA(avas[j]);
+
+            // the AVAs of an RDN are a SET, so their order does not matter
+            Arrays.sort(canonicalAVAs);
+            sb.append(String.join("+", canonicalAVAs));
+        }
+        return sb.toString();
+    }
+
+    private static String canonicalAVA(AVA ava) {
+        String value = null;
+        try {
+            switch (ava.value.tag) {
+            case DerValue.tag_PrintableString:
+            case DerValue.tag_T61String:
+            case DerValue.tag_IA5String:
+            case DerValue.tag_BMPString:
+            case DerValue.tag_UniversalString:
+            case DerValue.tag_UTF8String:
+                value = ava.value.getASN1CharString();
+                break;
+            default:
+                break;
+            }
+        } catch (IOException e) {
+            // not a valid string, so compared by its encoding
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(ava.oid).append('=');
+
+        if (value == null) {
+            sb.append('#');
+            try {
+                sb.append(HexFormat.of().formatHex(ava.value.toByteArray()));
+            } catch (IOException e) {
+                // an AVA is never encoded from an invalid value
+            }
+            return sb.toString();
+        }
+
+        value = Normalizer.normalize(value, Normalizer.Form.NFKC);
+        value = value.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+
+        int start = sb.length();
+        boolean space = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space && sb.length() > start) {
+                sb.append(' ');
+            }
+            space = false;
+            if (c == '\\' || c == ',' || c == '+' || c == '=') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.toString();
     }
 
     private class RDNEnumerator implements Enumeration<RDN> {
@@ -18,7 +18,8 @@
 package org.mozilla.jss.netscape.security.x509;
 
 import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.mozilla.jss.netscape.security.util.ObjectIdentifier;
 
@@ -70,7 +71,7 @@ public class X500NameAttrMap {
      */
     public ObjectIdentifier getOid(String name) {
         // XXX assert name != null
-        return name2OID.get(name.toUpperCase());
+        return name2OID.get(name.toUpperCase(Locale.ROOT));
     }
 
     /**
@@ -82,7 +83,7 @@ public class X500NameAttrMap {
      */
     public AVAValueConverter getValueConverter(String name) {
         ObjectIdentifier oid =
-                name2OID.get(name.toUpperCase());
+                name2OID.get(name.toUpperCase(Locale.ROOT));
         if (oid == null)
             return null;
         return oid2ValueConverter.get(oid);
@@ -161,8 +162,8 @@ public class X500NameAttrMap {
             }
             return;
         }
-        name2OID.put(name.toUpperCase(), oid);
-        oid2Name.put(oid, name.toUpperCase());
+        name2OID.put(name.toUpperCase(Locale.ROOT), oid);
+        oid2Name.put(oid, name.toUpperCase(Locale.ROOT));
         oid2ValueConverter.put(oid, valueConverter);
     }
 
@@ -204,10 +205,11 @@ public class X500NameAttrMap {
     // private variables
     //
 
-    Hashtable<String, ObjectIdentifier> name2OID = new Hashtable<>();
-    Hashtable<ObjectIdentifier, String> oid2Name = new Hashtable<>();
-    Hashtable<ObjectIdentifier, AVAValueConverter> oid2ValueConverter =
-            new Hashtable<>();
+    // looked up for every AVA parsed or printed, so reads do not lock
+    ConcurrentHashMap<String, ObjectIdentifier> name2OID = new ConcurrentHashMap<>();
+    ConcurrentHashMap<ObjectIdentifier, String> oid2Name = new ConcurrentHashMap<>();
+    ConcurrentHashMap<ObjectIdentifier, AVAValueConverter> oid2ValueConverter =
+            new ConcurrentHashMap<>();
 
     //
     // global defaults.
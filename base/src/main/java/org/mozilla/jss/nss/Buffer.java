@@ -8,6 +8,16 @@ public class Buffer {
      */
     public static native BufferProxy Create(long length);
 
+    /**
+     * Create a new elastic j_buffer object. No memory is allocated until the
+     * first write; then initial_length bytes are allocated, growing on demand
+     * up to max_length bytes. To readers and writers, the buffer behaves as
+     * though it had a capacity of max_length bytes.
+     *
+     * See also: jb_alloc_elastic in org/mozilla/jss/ssl/javax/j_buffer.h
+     */
+    public static native BufferProxy CreateElastic(long initial_length, long max_length);
+
     /**
      * Check the total capacity of a buffer object.
      *
@@ -15,6 +25,14 @@ public class Buffer {
      */
     public static native long Capacity(BufferProxy buf);
 
+    /**
+     * Check the number of bytes currently allocated to the buffer's contents.
+     * For fixed-size buffers, this is always equal to Capacity(buf).
+     *
+     * See also: jb_allocated in org/mozilla/jss/ssl/javax/j_buffer.h
+     */
+    public static native long Allocated(BufferProxy buf);
+
     /**
      * Check whether or not the buffer can be read from (i.e., is non-empty).
      *
@@ -73,10 +91,42 @@ public class Buffer {
      */
     public static native int Put(BufferProxy buf, byte input);
 
+    /**
+     * Release the contents of an empty elastic buffer. The buffer stays
+     * usable and reallocates on the next write. Returns true if any memory
+     * was released.
+     *
+     * See also: jb_release in org/mozilla/jss/ssl/javax/j_buffer.h
+     */
+    public static native boolean Release(BufferProxy buf);
+
     /**
      * Destroy a buffer object, freeing its resources.
      *
      * See also: jb_free in org/mozilla/jss/ssl/javax/j_buffer.h
      */
     public static native void Free(BufferProxy buf);
+
+    /**
+     * Set the caps on the native pool which recycles buffer contents across
+     * all buffers in this process. A max_pooled_bytes of zero disables
+     * pooling. Pooled contents beyond the new caps are freed.
+     *
+     * See also: jbp_configure in org/mozilla/jss/ssl/javax/j_buffer_pool.h
+     */
+    public static native void ConfigurePool(long max_pooled_bytes, long max_pooled_per_size);
+
+    /**
+     * Free all contents currently held in the native pool.
+     *
+     * See also: jbp_drain in org/mozilla/jss/ssl/javax/j_buffer_pool.h
+     */
+    public static native void DrainPool();
+
+    /**
+     * Get a snapshot of the native pool's counters.
+     *
+     * See also: jbp_stats in org/mozilla/jss/ssl/javax/j_buffer_pool.h
+     */
+    public static native BufferPoolStats GetPoolStats();
 }
@@ -0,0 +1,58 @@
+package org.mozilla.jss.nss;
+
+import java.lang.StringBuilder;
+
+/**
+ * The fields in a BufferPoolStats are a snapshot of the counters of the
+ * native pool backing j_buffer contents, shared by all JSSEngine instances.
+ *
+ * These objects are returned by org.mozilla.jss.nss.Buffer.GetPoolStats().
+ */
+public class BufferPoolStats {
+    /* Bytes currently handed out to buffers. */
+    public long allocatedBytes;
+
+    /* Blocks currently handed out to buffers. */
+    public long allocatedBlocks;
+
+    /* Bytes held in the pool, waiting for reuse. */
+    public long pooledBytes;
+
+    /* Blocks held in the pool, waiting for reuse. */
+    public long pooledBlocks;
+
+    /* Highest value allocatedBytes has reached. */
+    public long highWaterBytes;
+
+    /* Allocations satisfied from the pool. */
+    public long hits;
+
+    /* Allocations which fell through to the system allocator. */
+    public long misses;
+
+    public BufferPoolStats(long _allocatedBytes, long _allocatedBlocks,
+        long _pooledBytes, long _pooledBlocks, long _highWaterBytes,
+        long _hits, long _misses)
+    {
+        this.allocatedBytes = _allocatedBytes;
+        this.allocatedBlocks = _allocatedBlocks;
+        this.pooledBytes = _pooledBytes;
+        this.pooledBlocks = _pooledBlocks;
+        this.highWaterBytes = _highWaterBytes;
+        this.hits = _hits;
+        this.misses = _misses;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("BufferPoolStats:");
+        result.append("\n- allocatedBytes: " + allocatedBytes);
+        result.append("\n- allocatedBlocks: " + allocatedBlocks);
+        result.append("\n- pooledBytes: " + pooledBytes);
+        result.append("\n- pooledBlocks: " + pooledBlocks);
+        result.append("\n- highWaterBytes: " + highWaterBytes);
+        result.append("\n- hits: " + hits);
+        result.append("\n- misses: " + misses);
+        return result.toString();
+    }
+}
@@ -6,7 +6,21 @@ import java.security.cert.CertificateNotYetValidException;
 import java.security.cert.CertificateParsingException;
 import java.security.cert.CertificateRevokedException;
 
+import org.mozilla.jss.pkcs11.PK11Cert;
+
 public class Cert {
+    /**
+     * Query an OCSP responder for the status of the given certificate,
+     * returning the DER-encoded OCSPResponse, or null on failure. When
+     * location is null, the responder is taken from the certificate's
+     * Authority Information Access extension. The issuer of the certificate
+     * must be present in the NSS DB. This blocks until the responder
+     * answers or the NSS OCSP timeout expires.
+     *
+     * See also: CERT_GetEncodedOCSPResponse in /usr/include/nss3/ocsp.h
+     */
+    public static native byte[] GetEncodedOCSPResponse(PK11Cert cert, String location);
+
     public static int MatchExceptionToNSSError(Exception excpt) {
         if (excpt == null) {
             return 0;
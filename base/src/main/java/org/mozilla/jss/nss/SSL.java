@@ -5,7 +5,9 @@ package org.mozilla.jss.nss;
  * and handles the usage of NativeProxy objects.
  */
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.mozilla.jss.pkcs11.PK11Cert;
 import org.mozilla.jss.pkcs11.PK11PrivKey;
@@ -120,6 +122,22 @@ public class SSL {
      */
     public static final int ENABLE_FALLBACK_SCSV = getSSLEnableFallbackSCSV();
 
+    /**
+     * Option for enabling session tickets. Value for use with OptionGet and
+     * OptionSet.
+     *
+     * See also: SSL_ENABLE_SESSION_TICKETS in /usr/include/nss3/ssl.h
+     */
+    public static final int ENABLE_SESSION_TICKETS = getSSLEnableSessionTickets();
+
+    /**
+     * Option for enabling Application Layer Protocol Negotiation (ALPN).
+     * Value for use with OptionGet and OptionSet.
+     *
+     * See also: SSL_ENABLE_ALPN in /usr/include/nss3/ssl.h
+     */
+    public static final int ENABLE_ALPN = getSSLEnableALPN();
+
     /**
      * Value for never requiring a certificate. Value for use with
      * SSL_REQUIRE_CERTIFICATE with OptionGet and OptionSet.
@@ -367,6 +385,16 @@ public class SSL {
     public static native int ConfigServerCert(SSLFDProxy fd, PK11Cert cert,
         PK11PrivKey key);
 
+    /**
+     * Configure the certificate and private key for a server socket, along
+     * with a DER-encoded OCSPResponse to staple during the handshake. When
+     * ocspResponse is null, this is the same as ConfigServerCert.
+     *
+     * See also: SSL_ConfigServerCert in /usr/include/nss3/ssl.h
+     */
+    public static native int ConfigServerCertWithOCSP(SSLFDProxy fd,
+        PK11Cert cert, PK11PrivKey key, byte[] ocspResponse);
+
     /**
      * Configure the server's session cache.
      *
@@ -519,6 +547,125 @@ public class SSL {
      */
     public static native int EnableHandshakeCallback(SSLFDProxy fd);
 
+    /**
+     * Enable delivery of resumption tokens to the SSLFDProxy object; see
+     * SSLFDProxy.resumptionTokenHandler. Note that this disables the NSS
+     * client session cache for this file descriptor.
+     *
+     * See also: SSL_SetResumptionTokenCallback in /usr/include/nss3/sslexp.h
+     */
+    public static native int EnableResumptionTokenCallback(SSLFDProxy fd);
+
+    /**
+     * Set a resumption token, previously received from a server, to use
+     * when handshaking as a client. On failure (for instance, when the
+     * token has expired), a full handshake is performed instead.
+     *
+     * See also: SSL_SetResumptionToken in /usr/include/nss3/sslexp.h
+     */
+    public static native int SetResumptionToken(SSLFDProxy fd, byte[] token);
+
+    /**
+     * Set the list of application protocols to offer (as a client) or to
+     * select from (as a server) via ALPN, in order of preference.
+     *
+     * See also: SSL_SetNextProtoNego in /usr/include/nss3/ssl.h
+     */
+    public static int SetApplicationProtocols(SSLFDProxy fd, String[] protocols) throws IllegalArgumentException {
+        return SetNextProtoNego(fd, EncodeApplicationProtocols(protocols));
+    }
+
+    /**
+     * Set the list of application protocols, already in ALPN wire format
+     * (each protocol prefixed by its length in a single byte).
+     *
+     * See also: SSL_SetNextProtoNego in /usr/include/nss3/ssl.h
+     */
+    public static native int SetNextProtoNego(SSLFDProxy fd, byte[] protocols);
+
+    /**
+     * Get the application protocol negotiated via ALPN, or null if none
+     * has been negotiated (yet).
+     *
+     * See also: SSL_GetNextProto in /usr/include/nss3/ssl.h
+     */
+    public static String GetApplicationProtocol(SSLFDProxy fd) {
+        byte[] protocol = GetNextProto(fd);
+        if (protocol == null) {
+            return null;
+        }
+
+        return new String(protocol, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Get the raw application protocol negotiated via ALPN, or null if none
+     * has been negotiated (yet).
+     *
+     * See also: SSL_GetNextProto in /usr/include/nss3/ssl.h
+     */
+    public static native byte[] GetNextProto(SSLFDProxy fd);
+
+    /**
+     * Encode a list of application protocols into ALPN wire format.
+     *
+     * Protocol names are converted to bytes with ISO-8859-1, matching the
+     * JDK's default; each must be between 1 and 255 bytes long.
+     */
+    public static byte[] EncodeApplicationProtocols(String[] protocols) throws IllegalArgumentException {
+        if (protocols == null || protocols.length == 0) {
+            return new byte[0];
+        }
+
+        int length = 0;
+        byte[][] encoded = new byte[protocols.length][];
+        for (int i = 0; i < protocols.length; i++) {
+            if (protocols[i] == null) {
+                throw new IllegalArgumentException("Application protocol must not be null");
+            }
+
+            encoded[i] = protocols[i].getBytes(StandardCharsets.ISO_8859_1);
+            if (encoded[i].length == 0 || encoded[i].length > 255) {
+                throw new IllegalArgumentException("Invalid length for application protocol: " + protocols[i]);
+            }
+
+            length += 1 + encoded[i].length;
+        }
+
+        byte[] result = new byte[length];
+        int offset = 0;
+        for (byte[] protocol : encoded) {
+            result[offset] = (byte) protocol.length;
+            System.arraycopy(protocol, 0, result, offset + 1, protocol.length);
+            offset += 1 + protocol.length;
+        }
+
+        return result;
+    }
+
+    /**
+     * Decode a list of application protocols from ALPN wire format.
+     */
+    public static List<String> DecodeApplicationProtocols(byte[] protocols) throws IllegalArgumentException {
+        ArrayList<String> result = new ArrayList<>();
+        if (protocols == null) {
+            return result;
+        }
+
+        int offset = 0;
+        while (offset < protocols.length) {
+            int length = protocols[offset] & 0xFF;
+            if (length == 0 || offset + 1 + length > protocols.length) {
+                throw new IllegalArgumentException("Malformed application protocol list at offset " + offset);
+            }
+
+            result.add(new String(protocols, offset + 1, length, StandardCharsets.ISO_8859_1));
+            offset += 1 + length;
+        }
+
+        return result;
+    }
+
     /* Internal methods for querying constants. */
     private static native int getSSLRequestCertificate();
     private static native int getSSLRequireCertificate();
@@ -533,6 +680,8 @@ public class SSL {
     private static native int getSSLRenegotiateRequiresXtn();
     private static native int getSSLRenegotiateTransitional();
     private static native int getSSLEnableFallbackSCSV();
+    private static native int getSSLEnableSessionTickets();
+    private static native int getSSLEnableALPN();
     private static native int getSSLRequireNever();
     private static native int getSSLRequireAlways();
     private static native int getSSLRequireFirstHandshake();
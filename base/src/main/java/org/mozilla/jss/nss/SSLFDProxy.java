@@ -1,6 +1,7 @@
 package org.mozilla.jss.nss;
 
 import java.util.ArrayList;
+import java.util.function.Consumer;
 
 import org.mozilla.jss.crypto.X509Certificate;
 import org.mozilla.jss.pkcs11.PK11Cert;
@@ -27,6 +28,12 @@ public class SSLFDProxy extends PRFDProxy implements SSLSocketListener {
     public CertAuthHandler certAuthHandler;
     public BadCertHandler badCertHandler;
 
+    /**
+     * Receives resumption tokens from the server, once enabled with
+     * SSL.EnableResumptionTokenCallback(...).
+     */
+    public Consumer<byte[]> resumptionTokenHandler;
+
     public SSLFDProxy(byte[] pointer) {
         super(pointer);
 
@@ -63,6 +70,12 @@ public class SSLFDProxy extends PRFDProxy implements SSLSocketListener {
         return badCertHandler.check(this, error);
     }
 
+    public void resumptionTokenReceived(byte[] token) {
+        if (resumptionTokenHandler != null) {
+            resumptionTokenHandler.accept(token);
+        }
+    }
+
     @Override
     public void handshakeCompleted(SSLHandshakeCompletedEvent event) {
         handshakeComplete = true;
@@ -4,6 +4,8 @@
 
 package org.mozilla.jss.pkcs11;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.math.BigInteger;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
@@ -17,7 +19,9 @@ import java.security.cert.CertificateExpiredException;
 import java.security.cert.CertificateNotYetValidException;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.mozilla.jss.crypto.CryptoToken;
 import org.mozilla.jss.crypto.X509Certificate;
@@ -33,11 +37,45 @@ public class PK11Cert
     public static Logger logger = LoggerFactory.getLogger(PK11Cert.class);
 
     // Internal X509CertImpl to handle java.security.cert.X509Certificate
-    // methods.
-    private X509CertImpl x509 = null;
+    // methods. This is shared with every other PK11Cert having the same
+    // encoding; see ParsedCerts.
+    private volatile X509CertImpl x509 = null;
+
+    // DER encoding of this certificate, copied out of NSS on first use.
+    private volatile byte[] encoded = null;
 
     @Override
-    public native byte[] getEncoded() throws CertificateEncodingException;
+    public byte[] getEncoded() throws CertificateEncodingException {
+        return getEncodedInternal().clone();
+    }
+
+    /**
+     * Returns the memoized encoding of this certificate; callers must not
+     * modify the returned array.
+     */
+    private byte[] getEncodedInternal() throws CertificateEncodingException {
+        byte[] der = encoded;
+        if (der == null) {
+            der = getEncodedNative();
+            encoded = der;
+        }
+        return der;
+    }
+
+    private native byte[] getEncodedNative() throws CertificateEncodingException;
+
+    private X509CertImpl getCertImpl() throws CertificateException {
+        X509CertImpl impl = x509;
+        if (impl == null) {
+            ParsedCerts.Entry entry = ParsedCerts.get(getEncodedInternal());
+
+            // Drop our copy of the encoding in favor of the shared one.
+            encoded = entry.der.bytes;
+            impl = entry.impl;
+            x509 = impl;
+        }
+        return impl;
+    }
 
     //public native byte[] getUniqueID();
 
@@ -49,7 +87,7 @@ public class PK11Cert
     @Override
     public int hashCode() {
         try {
-            return Arrays.hashCode(getEncoded());
+            return Arrays.hashCode(getEncodedInternal());
         } catch (CertificateEncodingException cee) {
             throw new RuntimeException(cee.getMessage(), cee);
         }
@@ -63,7 +101,8 @@ public class PK11Cert
 
         PK11Cert p_other = (PK11Cert) other;
         try {
-            return Arrays.equals(getEncoded(), p_other.getEncoded());
+            return Arrays.equals(getEncodedInternal(),
+                    p_other.getEncodedInternal());
         } catch (CertificateEncodingException cee) {
             throw new RuntimeException(cee.getMessage(), cee);
         }
@@ -135,11 +174,7 @@ public class PK11Cert
     @Override
     public int getBasicConstraints() {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            return x509.getBasicConstraints();
+            return getCertImpl().getBasicConstraints();
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
@@ -148,11 +183,7 @@ public class PK11Cert
     @Override
     public boolean[] getKeyUsage() {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            return x509.getKeyUsage();
+            return getCertImpl().getKeyUsage();
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
@@ -161,11 +192,7 @@ public class PK11Cert
     @Override
     public boolean[] getSubjectUniqueID() {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            return x509.getSubjectUniqueID();
+            return getCertImpl().getSubjectUniqueID();
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
@@ -174,11 +201,7 @@ public class PK11Cert
     @Override
     public boolean[] getIssuerUniqueID() {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            return x509.getIssuerUniqueID();
+            return getCertImpl().getIssuerUniqueID();
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
@@ -187,11 +210,7 @@ public class PK11Cert
     @Override
     public byte[] getSigAlgParams() {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            return x509.getSigAlgParams();
+            return getCertImpl().getSigAlgParams();
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
@@ -200,11 +219,7 @@ public class PK11Cert
     @Override
     public String getSigAlgName() {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            return x509.getSigAlgName();
+            return getCertImpl().getSigAlgName();
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
@@ -213,11 +228,7 @@ public class PK11Cert
     @Override
     public String getSigAlgOID() {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            return x509.getSigAlgOID();
+            return getCertImpl().getSigAlgOID();
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
@@ -226,11 +237,7 @@ public class PK11Cert
     @Override
     public byte[] getSignature() {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            return x509.getSignature();
+            return getCertImpl().getSignature();
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
@@ -239,11 +246,7 @@ public class PK11Cert
     @Override
     public byte[] getTBSCertificate() throws CertificateEncodingException {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            return x509.getTBSCertificate();
+            return getCertImpl().getTBSCertificate();
         } catch (CertificateEncodingException cee) {
             throw cee;
         } catch (Exception e) {
@@ -254,11 +257,7 @@ public class PK11Cert
     @Override
     public Date getNotAfter() {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            return x509.getNotAfter();
+            return getCertImpl().getNotAfter();
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
@@ -267,11 +266,7 @@ public class PK11Cert
     @Override
     public Date getNotBefore() {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            return x509.getNotBefore();
+            return getCertImpl().getNotBefore();
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
@@ -282,11 +277,7 @@ public class PK11Cert
             throws CertificateExpiredException, CertificateNotYetValidException
     {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            x509.checkValidity();
+            getCertImpl().checkValidity();
         } catch (CertificateExpiredException cee) {
             throw cee;
         } catch (CertificateNotYetValidException cnyve) {
@@ -301,11 +292,7 @@ public class PK11Cert
             throws CertificateExpiredException, CertificateNotYetValidException
     {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            x509.checkValidity(date);
+            getCertImpl().checkValidity(date);
         } catch (CertificateExpiredException cee) {
             throw cee;
         } catch (CertificateNotYetValidException cnyve) {
@@ -318,11 +305,7 @@ public class PK11Cert
     @Override
     public String toString() {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            return x509.toString();
+            return getCertImpl().toString();
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
@@ -334,11 +317,7 @@ public class PK11Cert
             InvalidKeyException, NoSuchProviderException, SignatureException
     {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            x509.verify(key);
+            getCertImpl().verify(key);
         } catch (NoSuchAlgorithmException nsae) {
             throw nsae;
         } catch (InvalidKeyException ike) {
@@ -360,11 +339,7 @@ public class PK11Cert
             InvalidKeyException, NoSuchProviderException, SignatureException
     {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            x509.verify(key, sigProvider);
+            getCertImpl().verify(key, sigProvider);
         } catch (NoSuchAlgorithmException nsae) {
             throw nsae;
         } catch (InvalidKeyException ike) {
@@ -383,11 +358,7 @@ public class PK11Cert
     @Override
     public byte[] getExtensionValue(String oid) {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            return x509.getExtensionValue(oid);
+            return getCertImpl().getExtensionValue(oid);
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
@@ -396,11 +367,7 @@ public class PK11Cert
     @Override
     public Set<String> getCriticalExtensionOIDs() {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            return x509.getCriticalExtensionOIDs();
+            return getCertImpl().getCriticalExtensionOIDs();
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
@@ -409,11 +376,7 @@ public class PK11Cert
     @Override
     public Set<String> getNonCriticalExtensionOIDs() {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            return x509.getNonCriticalExtensionOIDs();
+            return getCertImpl().getNonCriticalExtensionOIDs();
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
@@ -422,11 +385,7 @@ public class PK11Cert
     @Override
     public boolean hasUnsupportedCriticalExtension() {
         try {
-            if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
-            }
-
-            return x509.hasUnsupportedCriticalExtension();
+            return getCertImpl().hasUnsupportedCriticalExtension();
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
@@ -497,6 +456,90 @@ public class PK11Cert
 		this.nickname = nickname;
 	}
 
+    /**
+     * Process-wide cache of parsed certificates, keyed by encoding, so that
+     * the PK11Certs returned by repeated calls to CryptoManager.getCACerts()
+     * or PK11Store.getCertificates() share a single X509CertImpl. Parsed
+     * certificates are only weakly held; once no PK11Cert refers to one,
+     * it is collected and its entry removed.
+     */
+    private static final class ParsedCerts {
+        private static final ReferenceQueue<X509CertImpl> queue = new ReferenceQueue<>();
+        private static final Map<DER, Ref> refs = new ConcurrentHashMap<>();
+
+        static final class DER {
+            final byte[] bytes;
+            final int hash;
+
+            DER(byte[] bytes) {
+                this.bytes = bytes;
+                this.hash = Arrays.hashCode(bytes);
+            }
+
+            @Override
+            public int hashCode() {
+                return hash;
+            }
+
+            @Override
+            public boolean equals(Object other) {
+                return other instanceof DER o && hash == o.hash &&
+                        Arrays.equals(bytes, o.bytes);
+            }
+        }
+
+        static final class Entry {
+            final DER der;
+            final X509CertImpl impl;
+
+            Entry(DER der, X509CertImpl impl) {
+                this.der = der;
+                this.impl = impl;
+            }
+        }
+
+        static final class Ref extends WeakReference<X509CertImpl> {
+            final DER der;
+
+            Ref(DER der, X509CertImpl impl) {
+                super(impl, queue);
+                this.der = der;
+            }
+        }
+
+        static Entry get(byte[] encoded) throws CertificateException {
+            expunge();
+
+            DER key = new DER(encoded);
+            Ref ref = refs.get(key);
+            X509CertImpl impl = ref == null ? null : ref.get();
+            if (impl != null) {
+                return new Entry(ref.der, impl);
+            }
+
+            // Parse outside of the map; concurrent misses for the same
+            // certificate may both parse it, but only one result is kept.
+            X509CertImpl parsed = new X509CertImpl(encoded);
+            Ref created = new Ref(key, parsed);
+            Ref winner = refs.merge(key, created, (old, ours) ->
+                    old.get() != null ? old : ours);
+
+            impl = winner.get();
+            if (impl == null) {
+                // Collected between merge and get; use our own copy.
+                return new Entry(key, parsed);
+            }
+            return new Entry(winner.der, impl);
+        }
+
+        private static void expunge() {
+            Ref ref;
+            while ((ref = (Ref) queue.poll()) != null) {
+                refs.remove(ref.der, ref);
+            }
+        }
+    }
+
 	/////////////////////////////////////////////////////////////
 	// private data
 	/////////////////////////////////////////////////////////////
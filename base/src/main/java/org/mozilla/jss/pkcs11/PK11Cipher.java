@@ -8,8 +8,10 @@ import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.AlgorithmParameterSpec;
+import java.util.Objects;
 
 import javax.crypto.BadPaddingException;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.RC2ParameterSpec;
 
@@ -220,6 +222,88 @@ public final class PK11Cipher
                     algorithm.isPadded() );
     }
 
+    /**
+     * Updates the context, writing the output directly into the caller's
+     * array when it has room for the worst case (length plus one block)
+     * and doesn't overlap the input; otherwise falls back to the copying
+     * implementation.
+     */
+    @Override
+    public int update(byte[] bytes, int offset, int length,
+        byte[] output, int outputOffset)
+        throws IllegalStateException, ShortBufferException, TokenException
+    {
+        if( state == UNINITIALIZED ) {
+            throw new IllegalStateException();
+        }
+
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        Objects.checkIndex(outputOffset, output.length + 1);
+
+        int blockSize = algorithm.getBlockSize();
+        int available = output.length - outputOffset;
+        if( available < length + blockSize ||
+                overlaps(bytes, offset, length, output, outputOffset, available) ) {
+            return super.update(bytes, offset, length, output, outputOffset);
+        }
+
+        return updateContextInto(contextProxy, bytes, offset, length,
+            output, outputOffset, available);
+    }
+
+    /**
+     * Completes the operation, writing the output directly into the caller's
+     * array when it has room for the worst case (length plus two blocks) and
+     * doesn't overlap the input; otherwise falls back to the copying
+     * implementation.
+     *
+     * @deprecated isPadded() in EncryptionAlgorithm has been deprecated
+     */
+    @Override
+    @Deprecated
+    public int doFinal(byte[] bytes, int offset, int length,
+        byte[] output, int outputOffset)
+        throws IllegalStateException, IllegalBlockSizeException,
+        BadPaddingException, ShortBufferException, TokenException
+    {
+        if( state == UNINITIALIZED ) {
+            throw new IllegalStateException();
+        }
+
+        if( bytes == null ) {
+            bytes = new byte[0];
+            offset = 0;
+            length = 0;
+        }
+
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        Objects.checkIndex(outputOffset, output.length + 1);
+
+        int blockSize = algorithm.getBlockSize();
+        int available = output.length - outputOffset;
+        if( available < length + 2 * blockSize ||
+                overlaps(bytes, offset, length, output, outputOffset, available) ) {
+            return super.doFinal(bytes, offset, length, output, outputOffset);
+        }
+
+        int produced = 0;
+        if( length > 0 ) {
+            produced = updateContextInto(contextProxy, bytes, offset, length,
+                output, outputOffset, available);
+        }
+
+        produced += finalizeContextInto(contextProxy, output,
+            outputOffset + produced, available - produced);
+        return produced;
+    }
+
+    private static boolean overlaps(byte[] input, int offset, int length,
+        byte[] output, int outputOffset, int outputLength)
+    {
+        return input == output && offset < outputOffset + outputLength &&
+            outputOffset < offset + length;
+    }
+
     private static native CipherContextProxy
     initContext(boolean encrypt, SymmetricKey key, EncryptionAlgorithm alg,
                  byte[] IV, boolean padded)
@@ -239,6 +323,17 @@ public final class PK11Cipher
     finalizeContext( CipherContextProxy context, int blocksize, boolean padded)
         throws TokenException, IllegalBlockSizeException, BadPaddingException;
 
+    private static native int
+    updateContextInto( CipherContextProxy context, byte[] input,
+        int inputOffset, int inputLen, byte[] output, int outputOffset,
+        int outputLen )
+        throws TokenException;
+
+    private static native int
+    finalizeContextInto( CipherContextProxy context, byte[] output,
+        int outputOffset, int outputLen )
+        throws TokenException, IllegalBlockSizeException, BadPaddingException;
+
     private void reset() {
         parameters = null;
         key = null;
@@ -15,6 +15,7 @@ import java.security.spec.DSAParameterSpec;
 import java.security.spec.ECGenParameterSpec;
 import java.security.spec.NamedParameterSpec;
 import java.security.spec.RSAKeyGenParameterSpec;
+import java.util.HexFormat;
 
 import org.mozilla.jss.asn1.ASN1Util;
 import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
@@ -201,6 +202,7 @@ public final class PK11KeyPairGenerator
 
         this.token = token;
         this.algorithm = algorithm;
+        this.pool = PK11KeyPairPool.getDefault();
     }
 
     ///////////////////////////////////////////////////////////////////////
@@ -360,9 +362,93 @@ public final class PK11KeyPairGenerator
      * @throws TokenException
      */
 
+    /**
+     * Generates a key pair. If a pool is set and temporary key pairs are
+     * being generated, a matching pre-generated key pair is taken from the
+     * pool when one is available.
+     */
     @Override
     public KeyPair generateKeyPair()
         throws TokenException
+    {
+        PK11KeyPairPool pool = this.pool;
+        if (pool == null || !temporaryPairMode || !token.equals(pool.getToken())) {
+            return generateKeyPairNow();
+        }
+
+        String key = getPoolKey();
+        if (key == null) {
+            return generateKeyPairNow();
+        }
+
+        long start = System.nanoTime();
+        KeyPair pair = pool.take(key);
+        if (pair == null) {
+            pair = generateKeyPairNow();
+        }
+        pool.recordWait(System.nanoTime() - start);
+
+        return pair;
+    }
+
+    /**
+     * Sets the pool consulted for pre-generated temporary key pairs, or
+     * null to always generate key pairs on demand. Defaults to
+     * PK11KeyPairPool.getDefault() at construction.
+     */
+    public void setPool(PK11KeyPairPool pool) {
+        this.pool = pool;
+    }
+
+    public PK11KeyPairPool getPool() {
+        return pool;
+    }
+
+    PK11Token getToken() {
+        return token;
+    }
+
+    boolean isTemporary() {
+        return temporaryPairMode;
+    }
+
+    /**
+     * Describes the settings which determine the key pairs this generator
+     * produces, for matching against pooled key pairs. Returns null if
+     * the key pairs can't be pooled.
+     */
+    String getPoolKey() {
+        String spec;
+        if (algorithm == KeyPairAlgorithm.RSA) {
+            if (params instanceof RSAKeyGenParameterSpec rsaparams) {
+                spec = rsaparams.getKeysize() + "/" + rsaparams.getPublicExponent();
+            } else if (params == null) {
+                spec = DEFAULT_RSA_KEY_SIZE + "/" + DEFAULT_RSA_PUBLIC_EXPONENT;
+            } else {
+                return null;
+            }
+        } else if (algorithm == KeyPairAlgorithm.EC) {
+            if (!(params instanceof PK11ParameterSpec ecParams)) {
+                return null;
+            }
+            spec = HexFormat.of().formatHex(ecParams.getEncoded());
+        } else if (algorithm == KeyPairAlgorithm.MLDSA) {
+            spec = params instanceof NamedParameterSpec nParam ? nParam.getName() : "ML-DSA-65";
+        } else if (algorithm == KeyPairAlgorithm.MLKEM) {
+            spec = params instanceof NamedParameterSpec nParam ? nParam.getName() : "ML-KEM-768";
+        } else {
+            return null;
+        }
+
+        return algorithm + "/" + spec
+                + "/sensitive=" + sensitivePairMode
+                + "/extractable=" + extractablePairMode
+                + "/flags=" + Long.toHexString(opFlags)
+                + "/mask=" + Long.toHexString(opFlagsMask);
+    }
+
+    private KeyPair generateKeyPairNow()
+        throws TokenException
     {
         if(algorithm == KeyPairAlgorithm.RSA) {
             if(params != null) {
@@ -919,6 +1005,7 @@ public final class PK11KeyPairGenerator
     private AlgorithmParameterSpec params;
     private KeyPairAlgorithm algorithm;
     private boolean mKeygenOnInternalToken;
+    private PK11KeyPairPool pool;
     private boolean temporaryPairMode = false;
     //  1: sensitive
     //  0: insensitive
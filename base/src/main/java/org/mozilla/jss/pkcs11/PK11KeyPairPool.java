@@ -0,0 +1,402 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.pkcs11;
+
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.mozilla.jss.crypto.KeyPairAlgorithm;
+import org.mozilla.jss.crypto.KeyPairGeneratorSpi.Usage;
+import org.mozilla.jss.crypto.TokenException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of pre-generated temporary (session) key pairs on a single token.
+ *
+ * Key pair generation for large RSA keys and ML-DSA keys can take tens to
+ * hundreds of milliseconds. A pool is configured with the key pair
+ * settings it should serve; for each, it keeps up to capacity key pairs
+ * generated ahead of time on background threads, and refills whenever the
+ * number of pooled key pairs drops to the low-water mark.
+ *
+ * A PK11KeyPairGenerator with a pool set consults it when generating
+ * temporary key pairs: if the pool holds a key pair generated with
+ * exactly the same token, algorithm, parameters, sensitivity,
+ * extractability and usages, that key pair is returned immediately.
+ * Otherwise the key pair is generated synchronously as usual. Permanent
+ * key pairs and DSA key pairs are never pooled.
+ *
+ * Pooling is opt-in: either set a pool on individual generators with
+ * PK11KeyPairGenerator.setPool(), or install a pool with setDefault() to
+ * have it used by every PK11KeyPairGenerator constructed afterwards.
+ *
+ * This class is thread-safe.
+ */
+public final class PK11KeyPairPool implements AutoCloseable {
+
+    public static Logger logger = LoggerFactory.getLogger(PK11KeyPairPool.class);
+
+    public static final int DEFAULT_CAPACITY = 8;
+    public static final int DEFAULT_LOW_WATER = 2;
+
+    private static volatile PK11KeyPairPool defaultPool;
+
+    /**
+     * Pooled key pairs for a single generator configuration.
+     */
+    private class Entry {
+        final PK11KeyPairGenerator generator;
+        final int capacity;
+        final int lowWater;
+
+        final ConcurrentLinkedQueue<KeyPair> pairs = new ConcurrentLinkedQueue<>();
+        final AtomicInteger depth = new AtomicInteger();
+        final AtomicBoolean refilling = new AtomicBoolean();
+
+        // Set once the entry is replaced or removed.
+        volatile boolean cancelled;
+        volatile Future<?> task;
+
+        Entry(PK11KeyPairGenerator generator, int capacity, int lowWater) {
+            this.generator = generator;
+            this.capacity = capacity;
+            this.lowWater = lowWater;
+        }
+
+        KeyPair poll() {
+            KeyPair pair = pairs.poll();
+            if (pair != null) {
+                depth.decrementAndGet();
+            }
+            return pair;
+        }
+
+        void refill() {
+            if (closed || cancelled || depth.get() > lowWater || !refilling.compareAndSet(false, true)) {
+                return;
+            }
+
+            task = executor.submit(() -> {
+                boolean failed = false;
+                try {
+                    while (!closed && !cancelled && depth.get() < capacity) {
+                        KeyPair pair = generator.generateKeyPair();
+                        if (cancelled) {
+                            break;
+                        }
+
+                        // Count the key pair before it can be seen in the
+                        // depth, so getGenerated() is never behind it.
+                        generated.increment();
+                        pairs.add(pair);
+                        depth.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    // Leave the entry below its low-water mark; the next
+                    // take() will try again.
+                    logger.warn("PK11KeyPairPool: Unable to generate key pair: " + e.getMessage(), e);
+                    failures.increment();
+                    failed = true;
+                } finally {
+                    refilling.set(false);
+                }
+
+                // Key pairs may have been taken while we were finishing up.
+                if (!failed) {
+                    refill();
+                }
+            });
+        }
+
+        /**
+         * Stops refilling this entry. A generation already in progress
+         * finishes, but its key pair is discarded.
+         */
+        void cancel() {
+            cancelled = true;
+            Future<?> f = task;
+            if (f != null) {
+                f.cancel(false);
+            }
+        }
+    }
+
+    private final PK11Token token;
+    private final ExecutorService executor;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitTime = new LongAdder();
+
+    /**
+     * Creates a pool generating key pairs on the given token with a single
+     * background thread.
+     */
+    public PK11KeyPairPool(PK11Token token) {
+        this(token, 1);
+    }
+
+    /**
+     * Creates a pool generating key pairs on the given token with the given
+     * number of background threads.
+     */
+    public PK11KeyPairPool(PK11Token token, int threads) {
+        if (token == null) {
+            throw new IllegalArgumentException("Token must not be null");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+
+        this.token = token;
+
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "PK11KeyPairPool-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gets the pool used by newly constructed PK11KeyPairGenerators, or
+     * null if there is none.
+     */
+    public static PK11KeyPairPool getDefault() {
+        return defaultPool;
+    }
+
+    /**
+     * Sets the pool used by newly constructed PK11KeyPairGenerators; pass
+     * null to disable pooling by default. Existing generators are not
+     * affected.
+     */
+    public static void setDefault(PK11KeyPairPool pool) {
+        defaultPool = pool;
+    }
+
+    public PK11Token getToken() {
+        return token;
+    }
+
+    /**
+     * Pre-generate key pairs of the given algorithm and strength, with
+     * default sensitivity, extractability and usages.
+     *
+     * @param strength As for PK11KeyPairGenerator.initialize(int, ...).
+     */
+    public void configure(KeyPairAlgorithm algorithm, int strength,
+            int capacity, int lowWater)
+        throws NoSuchAlgorithmException, TokenException
+    {
+        configure(algorithm, strength, null, null, capacity, lowWater);
+    }
+
+    /**
+     * Pre-generate key pairs of the given algorithm and strength for the
+     * given usages.
+     *
+     * @param strength As for PK11KeyPairGenerator.initialize(int, ...).
+     * @param usages As for PK11KeyPairGenerator.setKeyPairUsages().
+     * @param usagesMask As for PK11KeyPairGenerator.setKeyPairUsages().
+     */
+    public void configure(KeyPairAlgorithm algorithm, int strength,
+            Usage[] usages, Usage[] usagesMask,
+            int capacity, int lowWater)
+        throws NoSuchAlgorithmException, TokenException
+    {
+        PK11KeyPairGenerator template = new PK11KeyPairGenerator(token, algorithm);
+        template.initialize(strength, null);
+        template.setKeyPairUsages(usages, usagesMask);
+        configure(template, capacity, lowWater);
+    }
+
+    /**
+     * Pre-generate key pairs with the same settings as the given generator,
+     * which must be for this pool's token and generate temporary key
+     * pairs. The pool takes ownership of the generator; it must not be
+     * used or modified afterwards.
+     *
+     * Configuring the same settings again replaces the previous capacity
+     * and low-water mark, discarding any key pairs already pooled.
+     */
+    public void configure(PK11KeyPairGenerator template, int capacity, int lowWater) {
+        if (capacity < 1 || lowWater < 0 || lowWater >= capacity) {
+            throw new IllegalArgumentException("Invalid pool limits: capacity " + capacity + ", low-water mark " + lowWater);
+        }
+        if (!token.equals(template.getToken())) {
+            throw new IllegalArgumentException("Generator is for a different token");
+        }
+        if (!template.isTemporary()) {
+            throw new IllegalArgumentException("Only temporary key pairs can be pooled");
+        }
+
+        String key = template.getPoolKey();
+        if (key == null) {
+            throw new IllegalArgumentException("Key pairs of this algorithm can't be pooled");
+        }
+
+        if (closed) {
+            throw new IllegalStateException("Pool is closed");
+        }
+
+        // The template must always generate key pairs itself.
+        template.setPool(null);
+
+        Entry entry = new Entry(template, capacity, lowWater);
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            previous.cancel();
+        }
+        entry.refill();
+    }
+
+    /**
+     * Stop pre-generating key pairs with the given generator's settings,
+     * discarding any already pooled.
+     */
+    public void remove(PK11KeyPairGenerator generator) {
+        String key = generator.getPoolKey();
+        if (key == null) {
+            return;
+        }
+
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            entry.cancel();
+        }
+    }
+
+    /**
+     * Take a pooled key pair generated with the given settings, or null if
+     * none is available.
+     */
+    KeyPair take(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        KeyPair pair = entry.poll();
+        if (pair != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+
+        entry.refill();
+        return pair;
+    }
+
+    /**
+     * Records how long a PK11KeyPairGenerator waited for a key pair for
+     * which this pool was consulted.
+     */
+    void recordWait(long nanos) {
+        waits.increment();
+        waitTime.add(nanos);
+    }
+
+    /**
+     * Gets the total number of key pairs currently pooled.
+     */
+    public int getDepth() {
+        int depth = 0;
+        for (Entry entry : entries.values()) {
+            depth += entry.depth.get();
+        }
+        return depth;
+    }
+
+    /**
+     * Gets the number of key pairs currently pooled for each configuration,
+     * keyed by a description of its settings.
+     */
+    public Map<String, Integer> getDepths() {
+        Map<String, Integer> result = new TreeMap<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().depth.get());
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of requests served from the pool.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of requests for a configured setting which found the
+     * pool empty and generated a key pair synchronously.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the number of key pairs generated in the background.
+     */
+    public long getGenerated() {
+        return generated.sum();
+    }
+
+    /**
+     * Gets the number of background generation attempts which failed.
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * Gets the total time, in nanoseconds, PK11KeyPairGenerators consulting
+     * this pool spent waiting for a key pair, whether or not it came from
+     * the pool.
+     */
+    public long getTotalWaitTime() {
+        return waitTime.sum();
+    }
+
+    /**
+     * Gets the average time, in nanoseconds, PK11KeyPairGenerators
+     * consulting this pool spent waiting for a key pair.
+     */
+    public long getAverageWaitTime() {
+        long count = waits.sum();
+        return count == 0 ? 0 : waitTime.sum() / count;
+    }
+
+    /**
+     * Stop background generation and discard all pooled key pairs. If this
+     * is the default pool, pooling is disabled by default.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+        entries.clear();
+
+        if (defaultPool == this) {
+            defaultPool = null;
+        }
+    }
+}
@@ -88,7 +88,11 @@ public final class PK11MessageDigest
 
     @Override
     public void reset() throws DigestException {
-        if( ! (alg instanceof HMACAlgorithm || alg instanceof CMACAlgorithm) ) {
+        if( digestProxy != null ) {
+            // Restart the existing context (keeping any HMAC key) rather
+            // than creating and destroying a new one for every digest.
+            reinit(digestProxy);
+        } else if( ! (alg instanceof HMACAlgorithm || alg instanceof CMACAlgorithm) ) {
             // This is a regular digest, so we have enough information
             // to initialize the context
             this.digestProxy = initDigest(alg);
@@ -121,6 +125,10 @@ public final class PK11MessageDigest
     private static native int
     digest(CipherContextProxy proxy, byte[] outbuf, int offset, int len);
 
+    private static native void
+    reinit(CipherContextProxy proxy)
+        throws DigestException;
+
     @Override
     public void finalize() throws Throwable {
         close();
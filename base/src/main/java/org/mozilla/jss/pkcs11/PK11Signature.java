@@ -13,11 +13,18 @@ import java.security.SecureRandom;
 import java.security.SignatureException;
 import java.security.spec.AlgorithmParameterSpec;
 import java.security.spec.PSSParameterSpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.mozilla.jss.crypto.Algorithm;
 import org.mozilla.jss.crypto.DigestAlgorithm;
 import org.mozilla.jss.crypto.NoSuchItemOnTokenException;
 import org.mozilla.jss.crypto.PrivateKey;
+import org.mozilla.jss.crypto.Signature;
 import org.mozilla.jss.crypto.SignatureAlgorithm;
 import org.mozilla.jss.crypto.TokenException;
 import org.mozilla.jss.util.NativeProxy;
@@ -28,6 +35,7 @@ public final class PK11Signature
     extends org.mozilla.jss.crypto.SignatureSpi
     implements java.lang.AutoCloseable
 {
+    public static Logger logger = LoggerFactory.getLogger(PK11Signature.class);
 
     public static final String NO_TOKEN = "No token provided";
     public static final String NO_TOKEN_PROXY = "No tokenProxy provided";
@@ -83,12 +91,15 @@ public final class PK11Signature
                 digestAlgorithm = null;
             }
         }
+        this.defaultDigestAlgorithm = digestAlgorithm;
     }
 
-	@Override
-    public void engineInitSign(org.mozilla.jss.crypto.PrivateKey privateKey)
-		throws InvalidKeyException, TokenException
-	{
+    /**
+     * Scrutinizes a private key for signing with this signature.
+     */
+    private PK11PrivKey checkPrivateKey(org.mozilla.jss.crypto.PrivateKey privateKey)
+        throws InvalidKeyException, TokenException
+    {
         PK11PrivKey privKey;
 
         //
@@ -124,13 +135,24 @@ public final class PK11Signature
             throw new InvalidKeyException("Unknown algorithm: " + algorithm, e);
         }
 
+        return privKey;
+    }
+
+	@Override
+    public void engineInitSign(org.mozilla.jss.crypto.PrivateKey privateKey)
+		throws InvalidKeyException, TokenException
+	{
+        PK11PrivKey privKey = checkPrivateKey(privateKey);
+
         // Finally, the key is OK
 		key = privKey;
 
         // Now initialize the signature context
         if( ! raw ) {
             sigContext = null;
-            initSigContext();
+            if (!reuseContext(SIGN)) {
+                initSigContext();
+            }
         }
 
         // Don't set state until we know everything worked
@@ -192,7 +214,9 @@ public final class PK11Signature
 
         if( ! raw ) {
             sigContext = null;
-            initVfyContext();
+            if (!reuseContext(VERIFY)) {
+                initVfyContext();
+            }
         }
 
         // Don't set state until we know everything worked.
@@ -201,6 +225,59 @@ public final class PK11Signature
 
     protected native void initVfyContext() throws TokenException;
 
+    /*************************************************************
+    ** Restarts the finished signing or verification context in the
+    ** sigContext field for another operation with the same key.
+    */
+    protected native void resetSigContext() throws TokenException;
+
+    /**
+     * Reuses the context of the previous operation if it was of the same
+     * kind, with the same key and parameters, instead of creating a new
+     * one. Otherwise the previous context is released.
+     *
+     * @return true if sigContext was set to the restarted context.
+     */
+    private boolean reuseContext(int newState) throws TokenException {
+        SigContextProxy spare = finishedContext;
+        if (spare == null) {
+            return false;
+        }
+
+        finishedContext = null;
+
+        if (finishedState == newState && finishedKey == key
+                && finishedDigestAlgorithm == digestAlgorithm) {
+            sigContext = spare;
+            try {
+                resetSigContext();
+                return true;
+            } catch (TokenException e) {
+                logger.debug("PK11Signature: Unable to reuse context: " + e.getMessage(), e);
+                sigContext = null;
+            }
+        }
+
+        try {
+            spare.close();
+        } catch (Exception e) {
+            logger.warn("PK11Signature: Unable to release context: " + e.getMessage(), e);
+        }
+        return false;
+    }
+
+    /**
+     * Keeps the context of a completed operation for reuse by the next
+     * initSign() or initVerify() call with the same key.
+     */
+    private void finishContext() {
+        finishedContext = sigContext;
+        finishedState = state;
+        finishedKey = key;
+        finishedDigestAlgorithm = digestAlgorithm;
+        sigContext = null;
+    }
+
 	@Override
     public void engineUpdate(byte b)
         throws SignatureException, TokenException
@@ -267,6 +344,7 @@ public final class PK11Signature
             rawInput.reset();
         } else {
             result = engineSignNative();
+            finishContext();
         }
 		state = UNINITIALIZED;
 		sigContext = null;
@@ -333,6 +411,7 @@ public final class PK11Signature
             rawInput.reset();
         } else {
             result = engineVerifyNative(sigBytes);
+            finishContext();
         }
 		state = UNINITIALIZED;
 		sigContext = null;
@@ -351,6 +430,312 @@ public final class PK11Signature
 	protected native boolean engineVerifyNative(byte[] sigBytes)
 		throws SignatureException, TokenException;
 
+    ///////////////////////////////////////////////////////////////////////
+    // Batch operations
+    ///////////////////////////////////////////////////////////////////////
+
+    /**
+     * Signs each of the given messages with the given private key.
+     *
+     * This is equivalent to calling initSign(), update() and sign() for each
+     * message, but initializes the signing context once and signs every
+     * message in a single native call. As with sign(), this signature must
+     * be initialized again before being used for another operation.
+     *
+     * @return The signatures, in the same order as the messages.
+     */
+    public List<byte[]> signAll(PrivateKey privateKey, List<byte[]> messages)
+        throws InvalidKeyException, SignatureException, TokenException
+    {
+        byte[][] inputs = toArray(messages, "message");
+
+        engineInitSign(privateKey);
+
+        byte[][] result;
+        try {
+            if (raw) {
+                result = new byte[inputs.length][];
+                for (int i = 0; i < inputs.length; i++) {
+                    result[i] = engineRawSignNative(token, (PK11PrivKey) key, inputs[i]);
+                }
+            } else {
+                result = engineSignBatchNative(inputs);
+                finishContext();
+            }
+        } finally {
+            endBatch();
+        }
+
+        return Arrays.asList(result);
+    }
+
+    /**
+     * Signs each of the given messages with the given private key, splitting
+     * the messages across the tasks of the given pool. Each task signs with
+     * a context from its thread's PK11SignaturePool, configured like this
+     * one.
+     *
+     * @return The signatures, in the same order as the messages.
+     */
+    public List<byte[]> signAll(PrivateKey privateKey, List<byte[]> messages,
+            ForkJoinPool pool)
+        throws InvalidKeyException, SignatureException, TokenException
+    {
+        toArray(messages, "message");
+        return fanOut(pool, messages, chunk -> {
+            Signature sig = acquireCopy();
+            try {
+                return ((PK11Signature) Tunnel.getSignatureEngine(sig)).signAll(privateKey, chunk);
+            } finally {
+                PK11SignaturePool.release(sig);
+            }
+        });
+    }
+
+    /**
+     * Signs each of the given precomputed digests with the given private
+     * key. Each digest must have been computed with this signature's digest
+     * algorithm; the signatures are identical to those sign() produces for
+     * the messages the digests were computed from.
+     *
+     * This is not supported for raw, RSA-PSS or ML-DSA signatures.
+     *
+     * @return The signatures, in the same order as the digests.
+     */
+    public List<byte[]> signDigests(PrivateKey privateKey, List<byte[]> digests)
+        throws InvalidKeyException, SignatureException, TokenException
+    {
+        byte[][] inputs = toArray(digests, "digest");
+
+        Algorithm digestAlg;
+        try {
+            digestAlg = isRSAPSSAlgorithm((SignatureAlgorithm) algorithm) || raw
+                ? null
+                : ((SignatureAlgorithm) algorithm).getDigestAlg();
+        } catch (NoSuchAlgorithmException e) {
+            digestAlg = null;
+        }
+        if (digestAlg == null) {
+            throw new SignatureException("Signing precomputed digests is not supported for " + algorithm);
+        }
+
+        PK11PrivKey privKey = checkPrivateKey(privateKey);
+        return Arrays.asList(engineSignDigestsNative(privKey, digestAlg, inputs));
+    }
+
+    /**
+     * Signs each of the given precomputed digests with the given private
+     * key, splitting the digests across the tasks of the given pool.
+     *
+     * @see #signDigests(PrivateKey, List)
+     */
+    public List<byte[]> signDigests(PrivateKey privateKey, List<byte[]> digests,
+            ForkJoinPool pool)
+        throws InvalidKeyException, SignatureException, TokenException
+    {
+        toArray(digests, "digest");
+        return fanOut(pool, digests, chunk -> signDigests(privateKey, chunk));
+    }
+
+    /**
+     * Verifies each of the given messages against the signature at the
+     * same position with the given public key.
+     *
+     * This is equivalent to calling initVerify(), update() and verify()
+     * for each message, but initializes the verification context once and
+     * verifies every message in a single native call. As with verify(),
+     * this signature must be initialized again before being used for
+     * another operation.
+     *
+     * @return Whether each signature is valid, in the same order as the
+     *      messages.
+     */
+    public boolean[] verifyAll(PublicKey publicKey, List<byte[]> messages,
+            List<byte[]> signatures)
+        throws InvalidKeyException, SignatureException, TokenException
+    {
+        byte[][] inputs = toArray(messages, "message");
+        byte[][] sigs = toArray(signatures, "signature");
+        if (inputs.length != sigs.length) {
+            throw new SignatureException("Number of signatures does not match number of messages");
+        }
+
+        engineInitVerify(publicKey);
+
+        boolean[] result;
+        try {
+            if (raw) {
+                result = new boolean[inputs.length];
+                for (int i = 0; i < inputs.length; i++) {
+                    result[i] = engineRawVerifyNative(token, (PK11PubKey) key, inputs[i], sigs[i]);
+                }
+            } else {
+                result = engineVerifyBatchNative(inputs, sigs);
+                finishContext();
+            }
+        } finally {
+            endBatch();
+        }
+
+        return result;
+    }
+
+    /**
+     * Verifies each of the given messages against the signature at the same
+     * position with the given public key, splitting the messages across
+     * the tasks of the given pool.
+     *
+     * @see #verifyAll(PublicKey, List, List)
+     */
+    public boolean[] verifyAll(PublicKey publicKey, List<byte[]> messages,
+            List<byte[]> signatures, ForkJoinPool pool)
+        throws InvalidKeyException, SignatureException, TokenException
+    {
+        toArray(messages, "message");
+        if (toArray(signatures, "signature").length != messages.size()) {
+            throw new SignatureException("Number of signatures does not match number of messages");
+        }
+
+        List<Integer> indices = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            indices.add(i);
+        }
+
+        List<Boolean> results = fanOut(pool, indices, chunk -> {
+            int from = chunk.get(0);
+            int to = from + chunk.size();
+
+            Signature sig = acquireCopy();
+            try {
+                boolean[] verified = ((PK11Signature) Tunnel.getSignatureEngine(sig)).verifyAll(
+                        publicKey, messages.subList(from, to), signatures.subList(from, to));
+
+                List<Boolean> list = new ArrayList<>(verified.length);
+                for (boolean v : verified) {
+                    list.add(v);
+                }
+                return list;
+            } finally {
+                PK11SignaturePool.release(sig);
+            }
+        });
+
+        boolean[] result = new boolean[results.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = results.get(i);
+        }
+        return result;
+    }
+
+    private interface BatchTask<T, R> {
+        List<R> run(List<T> chunk)
+            throws InvalidKeyException, SignatureException, TokenException;
+    }
+
+    /**
+     * Runs task over consecutive chunks of items on the given pool,
+     * concatenating the results in order.
+     */
+    private static <T, R> List<R> fanOut(ForkJoinPool pool, List<T> items,
+            BatchTask<T, R> task)
+        throws InvalidKeyException, SignatureException, TokenException
+    {
+        if (pool == null) {
+            throw new IllegalArgumentException("No pool provided");
+        }
+
+        int chunks = Math.min(pool.getParallelism() * 4,
+                (items.size() + MIN_BATCH_CHUNK - 1) / MIN_BATCH_CHUNK);
+        if (chunks <= 1) {
+            return task.run(items);
+        }
+
+        List<ForkJoinTask<List<R>>> tasks = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            List<T> chunk = items.subList(
+                    (int) ((long) items.size() * i / chunks),
+                    (int) ((long) items.size() * (i + 1) / chunks));
+            tasks.add(pool.submit(() -> task.run(chunk)));
+        }
+
+        List<R> result = new ArrayList<>(items.size());
+        for (ForkJoinTask<List<R>> t : tasks) {
+            try {
+                result.addAll(t.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SignatureException("Interrupted while waiting for batch: " + e.getMessage(), e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof InvalidKeyException ike) {
+                    throw ike;
+                } else if (cause instanceof SignatureException se) {
+                    throw se;
+                } else if (cause instanceof TokenException te) {
+                    throw te;
+                } else if (cause instanceof RuntimeException re) {
+                    throw re;
+                }
+                throw new SignatureException("Batch operation failed: " + cause.getMessage(), cause);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets a signature context from the current thread's pool with the
+     * same algorithm and parameters as this one.
+     */
+    private Signature acquireCopy() throws SignatureException, TokenException {
+        Signature sig;
+        try {
+            sig = PK11SignaturePool.acquire(token, (SignatureAlgorithm) algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new SignatureException("Algorithm not supported: " + e.getMessage(), e);
+        }
+        ((PK11Signature) Tunnel.getSignatureEngine(sig)).digestAlgorithm = digestAlgorithm;
+        return sig;
+    }
+
+    private static byte[][] toArray(List<byte[]> items, String name) throws SignatureException {
+        if (items == null) {
+            throw new SignatureException("No " + name + "s provided");
+        }
+
+        byte[][] result = items.toArray(new byte[items.size()][]);
+        for (byte[] item : result) {
+            if (item == null) {
+                throw new SignatureException("Null " + name + " provided");
+            }
+        }
+        return result;
+    }
+
+    private void endBatch() {
+        state = UNINITIALIZED;
+        if (sigContext != null) {
+            // The batch failed part way; the context can't be reused.
+            try {
+                sigContext.close();
+            } catch (Exception e) {
+                logger.warn("PK11Signature: Unable to release context: " + e.getMessage(), e);
+            } finally {
+                sigContext = null;
+            }
+        }
+    }
+
+    private native byte[][] engineSignBatchNative(byte[][] messages)
+        throws SignatureException, TokenException;
+
+    private native boolean[] engineVerifyBatchNative(byte[][] messages,
+        byte[][] signatures)
+        throws SignatureException, TokenException;
+
+    private static native byte[][] engineSignDigestsNative(PrivateKey key,
+        Algorithm digestAlg, byte[][] digests)
+        throws SignatureException, TokenException;
+
     @Override
     public void engineSetParameter(AlgorithmParameterSpec params)
         throws InvalidAlgorithmParameterException, TokenException
@@ -405,6 +790,29 @@ public final class PK11Signature
             || algorithm == SignatureAlgorithm.RSAPSSSignature;
     }
 
+    /**
+     * Returns an idle signature to the state it had when constructed, apart
+     * from any context kept for reuse.
+     */
+    void resetParameters() {
+        digestAlgorithm = defaultDigestAlgorithm;
+        if (rawInput != null) {
+            rawInput.reset();
+        }
+    }
+
+    boolean isIdle() {
+        return state == UNINITIALIZED;
+    }
+
+    PK11Token getToken() {
+        return token;
+    }
+
+    Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
     @Override
     public void finalize() throws Throwable {
         close();
@@ -412,11 +820,22 @@ public final class PK11Signature
 
     @Override
     public void close() throws Exception {
-        if (sigContext != null) {
-            try {
-                sigContext.close();
-            } finally {
-                sigContext = null;
+        try {
+            if (sigContext != null) {
+                try {
+                    sigContext.close();
+                } finally {
+                    sigContext = null;
+                }
+            }
+        } finally {
+            if (finishedContext != null) {
+                try {
+                    finishedContext.close();
+                } finally {
+                    finishedContext = null;
+                    finishedKey = null;
+                }
             }
         }
     }
@@ -428,9 +847,18 @@ public final class PK11Signature
     protected PK11Key key;
     protected int state;
     protected SigContextProxy sigContext;
+    private Algorithm defaultDigestAlgorithm;
+    // The context of the last completed operation, kept for reuse.
+    private SigContextProxy finishedContext;
+    private int finishedState;
+    private PK11Key finishedKey;
+    private Algorithm finishedDigestAlgorithm;
     protected boolean raw=false; // raw signing only, no hashing
     protected ByteArrayOutputStream rawInput;
 
+    // Minimum number of items handed to each task of a parallel batch.
+    private static final int MIN_BATCH_CHUNK = 16;
+
     // states
     public static final int UNINITIALIZED = 0;
     public static final int SIGN = 1;
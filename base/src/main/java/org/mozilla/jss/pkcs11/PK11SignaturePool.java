@@ -0,0 +1,165 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.pkcs11;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.mozilla.jss.crypto.Signature;
+import org.mozilla.jss.crypto.SignatureAlgorithm;
+import org.mozilla.jss.crypto.SignatureSpi;
+import org.mozilla.jss.crypto.TokenException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A per-thread pool of idle signature contexts.
+ *
+ * Creating a signature context for every signature means checking the
+ * token's mechanisms and creating and destroying an NSS signing context
+ * each time. Instead, a thread finished with a context returns it to the
+ * pool with release(), and the next acquire() on the same thread for the
+ * same token and algorithm reuses it. A reused context which is
+ * initialized again with the same key also reuses its NSS signing or
+ * verification context.
+ *
+ * Each thread has its own pool, so concurrent signers never contend for
+ * a pooled context. At most getMaxIdle() idle contexts are kept per
+ * thread; the least recently released are closed beyond that.
+ */
+public final class PK11SignaturePool {
+
+    public static Logger logger = LoggerFactory.getLogger(PK11SignaturePool.class);
+
+    public static final int DEFAULT_MAX_IDLE = 4;
+
+    private static volatile int maxIdle = DEFAULT_MAX_IDLE;
+
+    // Most recently released first.
+    private static final ThreadLocal<ArrayDeque<Signature>> idle =
+            ThreadLocal.withInitial(ArrayDeque::new);
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    private PK11SignaturePool() {
+    }
+
+    /**
+     * Gets an idle signature context for the given token and algorithm
+     * from this thread's pool, or creates a new one.
+     */
+    public static Signature acquire(PK11Token token, SignatureAlgorithm algorithm)
+        throws NoSuchAlgorithmException, TokenException
+    {
+        for (Iterator<Signature> it = idle.get().iterator(); it.hasNext();) {
+            Signature sig = it.next();
+            PK11Signature engine = (PK11Signature) Tunnel.getSignatureEngine(sig);
+            if (engine.getAlgorithm() == algorithm && engine.getToken().equals(token)) {
+                it.remove();
+                hits.increment();
+                return sig;
+            }
+        }
+
+        misses.increment();
+        return token.getSignatureContext(algorithm);
+    }
+
+    /**
+     * Returns a signature context obtained from acquire() to this thread's
+     * pool. The caller must not use it afterwards. Contexts in the middle
+     * of an operation are closed rather than pooled.
+     */
+    public static void release(Signature sig) {
+        if (sig == null) {
+            return;
+        }
+
+        SignatureSpi spi = Tunnel.getSignatureEngine(sig);
+        if (!(spi instanceof PK11Signature engine)) {
+            return;
+        }
+
+        if (!engine.isIdle() || maxIdle == 0) {
+            close(engine);
+            return;
+        }
+
+        engine.resetParameters();
+
+        ArrayDeque<Signature> sigs = idle.get();
+        sigs.addFirst(sig);
+        while (sigs.size() > maxIdle) {
+            close((PK11Signature) Tunnel.getSignatureEngine(sigs.removeLast()));
+        }
+    }
+
+    /**
+     * Takes a signature context back from this thread's pool after the
+     * caller released it, if no acquire() has handed it out since.
+     *
+     * @return true if the context was still in the pool.
+     */
+    public static boolean reclaim(Signature sig) {
+        for (Iterator<Signature> it = idle.get().iterator(); it.hasNext();) {
+            if (it.next() == sig) {
+                it.remove();
+                hits.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void close(PK11Signature engine) {
+        try {
+            engine.close();
+        } catch (Exception e) {
+            logger.warn("PK11SignaturePool: Unable to close signature context: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Close all idle signature contexts pooled by the current thread.
+     */
+    public static void clear() {
+        ArrayDeque<Signature> sigs = idle.get();
+        while (!sigs.isEmpty()) {
+            close((PK11Signature) Tunnel.getSignatureEngine(sigs.removeFirst()));
+        }
+    }
+
+    public static int getMaxIdle() {
+        return maxIdle;
+    }
+
+    /**
+     * Sets the maximum number of idle contexts kept per thread; 0 disables
+     * pooling. Takes effect as contexts are released.
+     */
+    public static void setMaxIdle(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("Maximum number of idle contexts must not be negative: " + max);
+        }
+        maxIdle = max;
+    }
+
+    /**
+     * Gets the number of acquire() calls which reused a pooled context.
+     */
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of acquire() calls which created a new context.
+     */
+    public static long getMisses() {
+        return misses.sum();
+    }
+}
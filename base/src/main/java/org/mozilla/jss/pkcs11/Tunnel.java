@@ -17,6 +17,11 @@ final class Tunnel {
         constructSignature(SignatureAlgorithm alg, SignatureSpi engine) {
             return ConstructSignature(alg, engine);
         }
+
+        public static SignatureSpi
+        getSignatureEngine(Signature sig) {
+            return GetSignatureEngine(sig);
+        }
     }
 
     private static class UtilTunnel extends org.mozilla.jss.util.Tunnel
@@ -32,6 +37,11 @@ final class Tunnel {
         return CryptoTunnel.constructSignature(alg, engine);
     }
 
+    static SignatureSpi
+    getSignatureEngine(Signature sig) {
+        return CryptoTunnel.getSignatureEngine(sig);
+    }
+
     static byte[]
     getPasswordByteCopy(Password pw) {
         return UtilTunnel.getPasswordByteCopy(pw);
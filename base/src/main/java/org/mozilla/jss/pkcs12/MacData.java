@@ -166,6 +166,50 @@ public class MacData implements ASN1Value {
             throw new TokenException("Failed to compute PBMAC1: " + e.getMessage(), e);
         }
 
+        try {
+            // perform the digesting
+            JSSMessageDigest digest = createHMAC(password, macSalt, iterations, algID);
+            byte[] digestBytes = digest.digest(toBeMACed);
+
+            // put everything into a DigestInfo
+            this.mac = new DigestInfo(algID, new OCTET_STRING(digestBytes));
+            this.macSalt = new OCTET_STRING(macSalt);
+            this.macIterationCount = new INTEGER(iterations);
+
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("HMAC algorithm not found on internal " +
+                    "token: " + e.getMessage(), e);
+
+        } catch (InvalidAlgorithmParameterException e) {
+            throw new RuntimeException("Invalid PBE algorithm parameters: " + e.getMessage(), e);
+
+        } catch (java.lang.IllegalStateException e) {
+            throw new RuntimeException("Illegal state: " + e.getMessage(), e);
+
+        } catch (InvalidKeyException e) {
+            throw new RuntimeException("Invalid key: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates an HMAC context keyed for a classic (non-PBMAC1) MacData.
+     * This allows the MAC of data which is produced or consumed
+     * incrementally to be computed without holding all of it in memory:
+     * pass the data to update() and call digest() at the end.
+     *
+     * @param password The password used to generate a key using a PBE mechanism.
+     * @param macSalt The salt used as input to the PBE key generation mechanism.
+     * @param iterations The iteration count for creating the PBE key.
+     * @param algID The digest algorithm of the HMAC.
+     */
+    public static JSSMessageDigest createHMAC(Password password, byte[] macSalt,
+                    int iterations, AlgorithmIdentifier algID)
+        throws NotInitializedException, DigestException, TokenException,
+            CharConversionException, NoSuchAlgorithmException,
+            InvalidAlgorithmParameterException, InvalidKeyException
+    {
+        CryptoToken token = CryptoManager.getInstance().getInternalCryptoToken();
+
         PBEKeyGenParams params = new PBEKeyGenParams(password, macSalt, iterations);
 
         try {
@@ -195,49 +239,61 @@ public class MacData implements ASN1Value {
             kg.initialize(params);
             SymmetricKey key = kg.generate();
 
-            // perform the digesting
             digest.initHMAC(key);
-            byte[] digestBytes = digest.digest(toBeMACed);
+            return digest;
 
-            // put everything into a DigestInfo
-            this.mac = new DigestInfo(algID, new OCTET_STRING(digestBytes));
-            this.macSalt = new OCTET_STRING(macSalt);
-            this.macIterationCount = new INTEGER(iterations);
+        } finally {
+            params.clear();
+        }
+    }
 
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("HMAC algorithm not found on internal " +
-                    "token: " + e.getMessage(), e);
+    /**
+     * Creates an HMAC context keyed for a PBMAC1 MacData (RFC 9879). The
+     * key is derived with PBKDF2 using the parameters of the PBMAC1
+     * AlgorithmIdentifier. Like createHMAC(), this allows the MAC to be
+     * computed incrementally: pass the data to update() and call digest()
+     * at the end. The MacData of a PBMAC1 MAC has the PBKDF2 salt as its
+     * macSalt and an iteration count of 1.
+     *
+     * @param password The password for PBKDF2 key derivation.
+     * @param algID The PBMAC1 AlgorithmIdentifier containing KDF and MAC params.
+     */
+    public static JSSMessageDigest createPBMAC1(Password password, AlgorithmIdentifier algID)
+        throws NotInitializedException, DigestException, TokenException,
+            CharConversionException, NoSuchAlgorithmException,
+            InvalidBERException, InvalidKeyException
+    {
+        CryptoToken token = CryptoManager.getInstance().getInternalCryptoToken();
 
-        } catch (InvalidAlgorithmParameterException e) {
-            throw new RuntimeException("Invalid PBE algorithm parameters: " + e.getMessage(), e);
+        PBMAC1Params pbmac1Params = getPBMAC1Params(algID);
 
-        } catch (java.lang.IllegalStateException e) {
-            throw new RuntimeException("Illegal state: " + e.getMessage(), e);
+        // Fail early on parameters which PK11_PBEKeyGen would reject.
+        getPBKDF2Params(pbmac1Params);
+        HMACAlgorithm hmacAlgorithm = HMACAlgorithm.fromOID(
+                pbmac1Params.getMessageAuthScheme().getOID());
 
-        } catch (InvalidKeyException e) {
-            throw new RuntimeException("Invalid key: " + e.getMessage(), e);
+        char[] passwordChars = password.getCharCopy();
+        byte[] passwordBytes = null;
+
+        try {
+            passwordBytes = UTF8Converter.UnicodeToUTF8(passwordChars);
+            SymmetricKey key = derivePBMAC1Key(token, passwordBytes, ASN1Util.encode(algID));
+
+            JSSMessageDigest digest = token.getDigestContext(hmacAlgorithm);
+            digest.initHMAC(key);
+            return digest;
 
         } finally {
-            params.clear();
+            if (passwordBytes != null) {
+                Password.wipeBytes(passwordBytes);
+            }
+            Password.wipeChars(passwordChars);
         }
     }
 
-    /**
-    * Computes a PBMAC1 MAC per RFC 9879 using NSS native crypto.
-    *
-    * @param token The crypto token for key derivation and HMAC
-    * @param password The password for PBKDF2 key derivation
-    * @param data The data to authenticate
-    * @param algID The PBMAC1 AlgorithmIdentifier containing KDF and MAC params
-    * @throws Exception if MAC computation fails
-    */
-    private void computePBMAC1(CryptoToken token, Password password,
-                           byte[] data, AlgorithmIdentifier algID)
-        throws Exception
+    private static PBMAC1Params getPBMAC1Params(AlgorithmIdentifier algID)
+        throws InvalidBERException
     {
-        // Parse PBMAC1 parameters to extract KDF and MAC algorithms
-
-        PBMAC1Params pbmac1Params;
         ASN1Value params =  algID.getParameters();
 
         if (params == null) {
@@ -246,21 +302,19 @@ public class MacData implements ASN1Value {
 
         if (params instanceof PBMAC1Params) {
            // Already decoded (create/write path)
-           pbmac1Params = (PBMAC1Params) params;
+           return (PBMAC1Params) params;
         } else if (params instanceof ANY) {
           // Needs decoding (read from file path)
-          pbmac1Params = (PBMAC1Params) ((ANY) params).decodeWith(PBMAC1Params.getTemplate());
+          return (PBMAC1Params) ((ANY) params).decodeWith(PBMAC1Params.getTemplate());
         } else {
             throw new InvalidBERException("Unexpected PBMAC1 parameter type: " + params.getClass().getName());
         }
+    }
 
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-
-        algID.encode(bos);
-        byte[] pbmac1AlgIDBytes = bos.toByteArray();
-
+    private static PBKDF2Params getPBKDF2Params(PBMAC1Params pbmac1Params)
+        throws InvalidBERException
+    {
         AlgorithmIdentifier kdfAlg = pbmac1Params.getKeyDerivationFunc();
-        AlgorithmIdentifier macAlg = pbmac1Params.getMessageAuthScheme();
 
         ASN1Value kdfParams = kdfAlg.getParameters();
         if (kdfParams == null) {
@@ -282,11 +336,39 @@ public class MacData implements ASN1Value {
             throw new InvalidBERException("Unexpected PBKDF2 parameter type: " + kdfParams.getClass().getName());
         }
 
-        byte[] kdfSalt = pbkdf2Params.getSalt();
-        if(kdfSalt == null) {
+        if(pbkdf2Params.getSalt() == null) {
             throw new InvalidBERException("PBKDF2 otherSource salt not supported");
         }
 
+        return pbkdf2Params;
+    }
+
+    /**
+    * Computes a PBMAC1 MAC per RFC 9879 using NSS native crypto.
+    *
+    * @param token The crypto token for key derivation and HMAC
+    * @param password The password for PBKDF2 key derivation
+    * @param data The data to authenticate
+    * @param algID The PBMAC1 AlgorithmIdentifier containing KDF and MAC params
+    * @throws Exception if MAC computation fails
+    */
+    private void computePBMAC1(CryptoToken token, Password password,
+                           byte[] data, AlgorithmIdentifier algID)
+        throws Exception
+    {
+        // Parse PBMAC1 parameters to extract KDF and MAC algorithms
+
+        PBMAC1Params pbmac1Params = getPBMAC1Params(algID);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        algID.encode(bos);
+        byte[] pbmac1AlgIDBytes = bos.toByteArray();
+
+        AlgorithmIdentifier macAlg = pbmac1Params.getMessageAuthScheme();
+
+        byte[] kdfSalt = getPBKDF2Params(pbmac1Params).getSalt();
+
         // Get HMAC OID from MAC AlgorithmIdentifier
         OBJECT_IDENTIFIER macOID = macAlg.getOID();
 
@@ -345,6 +427,20 @@ public class MacData implements ASN1Value {
         HMACAlgorithm hmacAlgorithm
     ) throws Exception;
 
+    /**
+     * Native method to derive the PBKDF2 key of a PBMAC1 MAC using NSS.
+     *
+     * @param token the crypto token
+     * @param password password bytes
+     * @param pbmac1AlgID PBMAC1 algorithm identifier
+     * @return HMAC key
+     */
+    private static native SymmetricKey derivePBMAC1Key(
+        CryptoToken token,
+        byte[] password,
+        byte[] pbmac1AlgID
+    ) throws TokenException;
+
     ///////////////////////////////////////////////////////////////////////
     // DER encoding
     ///////////////////////////////////////////////////////////////////////
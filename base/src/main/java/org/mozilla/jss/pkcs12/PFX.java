@@ -263,18 +263,35 @@ public class PFX implements ASN1Value {
             rand.nextBytes(salt);
         }
 
-        if (macType == MacType.PBMAC1) {
-            // Create PBMAC1 AlgorithmIdentifier with PBKDF2 parameters
-            algID = createPBMAC1AlgorithmID(salt, iterationCount, macDigest);
-        } else {
-            // Legacy: Use configured digest
-            algID = new AlgorithmIdentifier(macDigest.toOID());
-        }
+        algID = createMacAlgorithmID(macType, macDigest, salt, iterationCount);
 
         macData = new MacData(password, salt, iterationCount,
             ASN1Util.encode(authSafes), algID);
     }
 
+    /**
+    * Creates the AlgorithmIdentifier of a MacData of the given type.
+    *
+    * @param type The MAC type (CLASSIC or PBMAC1)
+    * @param digest The digest algorithm for HMAC
+    * @param salt The salt for PBKDF2 key derivation (PBMAC1 only)
+    * @param iterationCount The PBKDF2 iteration count (PBMAC1 only)
+    * @return The MAC AlgorithmIdentifier
+    * @throws NoSuchAlgorithmException if the digest is unsupported
+    */
+    public static AlgorithmIdentifier createMacAlgorithmID(MacType type,
+        DigestAlgorithm digest, byte[] salt, int iterationCount)
+        throws NoSuchAlgorithmException
+    {
+        if (type == MacType.PBMAC1) {
+            // Create PBMAC1 AlgorithmIdentifier with PBKDF2 parameters
+            return createPBMAC1AlgorithmID(salt, iterationCount, digest);
+        }
+
+        // Legacy: Use configured digest
+        return new AlgorithmIdentifier(digest.toOID());
+    }
+
     /**
     * Creates a PBMAC1 AlgorithmIdentifier with PBKDF2 parameters per RFC 9879.
     *
@@ -284,7 +301,7 @@ public class PFX implements ASN1Value {
     * @return The PBMAC1 AlgorithmIdentifier
     * @throws NoSuchAlgorithmException if the digest is unsupported
     */
-    private AlgorithmIdentifier createPBMAC1AlgorithmID(
+    private static AlgorithmIdentifier createPBMAC1AlgorithmID(
         byte[] salt, int iterationCount, DigestAlgorithm digest)
         throws NoSuchAlgorithmException
     {
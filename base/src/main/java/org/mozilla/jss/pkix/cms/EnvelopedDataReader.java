@@ -0,0 +1,354 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.mozilla.jss.pkix.cms;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import javax.crypto.BadPaddingException;
+
+import org.mozilla.jss.asn1.ANY;
+import org.mozilla.jss.asn1.ASN1Header;
+import org.mozilla.jss.asn1.ASN1Value;
+import org.mozilla.jss.asn1.BERInputStream;
+import org.mozilla.jss.asn1.BEROutputStream;
+import org.mozilla.jss.asn1.Form;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.InvalidBERException;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.asn1.Tag;
+import org.mozilla.jss.crypto.Cipher;
+import org.mozilla.jss.crypto.EncryptionAlgorithm;
+import org.mozilla.jss.crypto.IllegalBlockSizeException;
+import org.mozilla.jss.crypto.IVParameterSpec;
+import org.mozilla.jss.crypto.SymmetricKey;
+import org.mozilla.jss.crypto.TokenException;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+
+/**
+ * Reads a CMS <i>EnvelopedData</i>, wrapped in a ContentInfo, from an
+ * input stream, decrypting its content as it is read.
+ *
+ * <p>The constructor reads the EnvelopedData up to the encrypted content,
+ * so the caller can find its RecipientInfo and recover the
+ * content-encryption key. getContent() then returns a stream which
+ * decrypts the content one segment at a time through Cipher.update(),
+ * so memory use does not depend on the size of the content.
+ *
+ * <p>Definite and indefinite length encodings are both accepted, as well
+ * as encrypted content in a primitive or constructed OCTET STRING, so
+ * this reads the output of EnvelopedDataWriter as well as DER-encoded
+ * EnvelopedData.
+ *
+ * @see EnvelopedDataWriter
+ */
+public class EnvelopedDataReader {
+
+    /**
+     * Decrypts the content one segment at a time. The last block of
+     * ciphertext is held back until the end of the content so that the
+     * padding can be removed.
+     */
+    private class ContentInputStream extends InputStream {
+
+        private final InputStream source;
+        private final Cipher cipher;
+
+        private final byte[] encrypted;
+        private int count;
+
+        private final byte[] decrypted;
+        private int position;
+        private int limit;
+
+        private boolean eof;
+        private boolean cipherClosed;
+
+        ContentInputStream(InputStream source, Cipher cipher) {
+            this.source = source;
+            this.cipher = cipher;
+            encrypted = new byte[BEROutputStream.SEGMENT_SIZE + blockSize];
+            decrypted = new byte[encrypted.length + 2 * blockSize];
+        }
+
+        /**
+         * Decrypts more content, or returns false at the end of the
+         * content.
+         */
+        private boolean fill() throws IOException {
+            while (position == limit) {
+                if (eof) {
+                    return false;
+                }
+
+                int n = source.read(encrypted, count, encrypted.length - count);
+                if (n == -1) {
+                    eof = true;
+                    decryptLast();
+                    continue;
+                }
+
+                count += n;
+                if (count < encrypted.length) {
+                    continue;
+                }
+
+                // keep at least one block for decryptLast()
+                int length = count - blockSize;
+                try {
+                    limit = cipher.update(encrypted, 0, length, decrypted, 0);
+                } catch (GeneralSecurityException | TokenException e) {
+                    throw new IOException("Unable to decrypt content: " + e.getMessage(), e);
+                }
+                position = 0;
+
+                System.arraycopy(encrypted, length, encrypted, 0, count - length);
+                count -= length;
+            }
+            return true;
+        }
+
+        private void decryptLast() throws IOException {
+            try {
+                limit = cipher.doFinal(encrypted, 0, count, decrypted, 0);
+                if (pad) {
+                    if (limit < blockSize) {
+                        throw new BadPaddingException("Encrypted content is not a multiple of the block size");
+                    }
+                    byte[] last = Arrays.copyOfRange(decrypted, limit - blockSize, limit);
+                    limit -= blockSize - Cipher.unPad(last, blockSize).length;
+                }
+            } catch (GeneralSecurityException | IllegalBlockSizeException | TokenException e) {
+                throw new IOException("Unable to decrypt content: " + e.getMessage(), e);
+            } finally {
+                closeCipher();
+            }
+            position = 0;
+            count = 0;
+        }
+
+        /**
+         * Releases the cipher context once no more content is decrypted.
+         */
+        private void closeCipher() throws IOException {
+            if (cipherClosed) {
+                return;
+            }
+            cipherClosed = true;
+
+            if (cipher instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException("Unable to close cipher: " + e.getMessage(), e);
+                }
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return decrypted[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, limit - position);
+            System.arraycopy(decrypted, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+
+        /**
+         * Skips the rest of the content without decrypting it, and
+         * releases the cipher context.
+         */
+        @Override
+        public void close() throws IOException {
+            position = limit;
+            eof = true;
+            try {
+                closeCipher();
+            } finally {
+                source.close();
+            }
+        }
+    }
+
+    private final BERInputStream in;
+
+    private final ASN1Header encryptedContent; // null if the content is absent
+
+    private final INTEGER version;
+    private final SET recipientInfos;
+    private final OBJECT_IDENTIFIER contentType;
+    private final AlgorithmIdentifier contentEncryptionAlgorithm;
+
+    private int blockSize;
+    private boolean pad;
+    private ContentInputStream content;
+
+    /**
+     * Reads a ContentInfo containing an EnvelopedData up to the encrypted
+     * content. An originatorInfo, if present, is skipped.
+     *
+     * @param istream The stream from which the ContentInfo is read.
+     * @exception IOException If an error occurs reading the stream.
+     * @exception InvalidBERException If the ContentInfo is invalid or does
+     *      not contain an EnvelopedData.
+     */
+    public EnvelopedDataReader(InputStream istream) throws IOException, InvalidBERException {
+
+        in = new BERInputStream(istream);
+
+        ASN1Header contentInfo = in.readHeader();
+        contentInfo.validate(ContentInfo.TAG, Form.CONSTRUCTED);
+
+        OBJECT_IDENTIFIER type = (OBJECT_IDENTIFIER) in.decode(
+                in.readHeader(), OBJECT_IDENTIFIER.getTemplate());
+        if (!type.equals(ContentInfo.ENVELOPED_DATA)) {
+            throw new InvalidBERException("ContentInfo does not contain an EnvelopedData: " + type);
+        }
+
+        ASN1Header explicit = in.readHeader();
+        explicit.validate(new Tag(0), Form.CONSTRUCTED);
+
+        ASN1Header envelopedData = in.readHeader();
+        envelopedData.validate(EnvelopedData.TAG, Form.CONSTRUCTED);
+
+        version = (INTEGER) in.decode(in.readHeader(), INTEGER.getTemplate());
+
+        ASN1Header header = in.readHeader();
+        if (header.getTag().equals(new Tag(0))) {
+            // originatorInfo [0] IMPLICIT OriginatorInfo OPTIONAL
+            in.readElement(header);
+            header = in.readHeader();
+        }
+
+        recipientInfos = (SET) in.decode(header,
+                new SET.OF_Template(RecipientInfo.getTemplate()));
+
+        ASN1Header encryptedContentInfo = in.readHeader();
+        encryptedContentInfo.validate(SEQUENCE.TAG, Form.CONSTRUCTED);
+        long encryptedContentInfoEnd = in.getEnd(encryptedContentInfo);
+
+        contentType = (OBJECT_IDENTIFIER) in.decode(
+                in.readHeader(), OBJECT_IDENTIFIER.getTemplate());
+        contentEncryptionAlgorithm = (AlgorithmIdentifier) in.decode(
+                in.readHeader(), AlgorithmIdentifier.getTemplate());
+
+        header = in.nextHeader(encryptedContentInfoEnd);
+        if (header != null) {
+            // [0] IMPLICIT OCTET STRING, primitive or constructed
+            header.validate(new Tag(0));
+        }
+        encryptedContent = header;
+    }
+
+    /**
+     * Returns the version of the EnvelopedData.
+     */
+    public INTEGER getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the recipients of the EnvelopedData, a SET of
+     * RecipientInfos.
+     */
+    public SET getRecipientInfos() {
+        return recipientInfos;
+    }
+
+    /**
+     * Returns the type of the encrypted content.
+     */
+    public OBJECT_IDENTIFIER getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Returns the algorithm used to encrypt the content, including the IV.
+     */
+    public AlgorithmIdentifier getContentEncryptionAlgorithm() {
+        return contentEncryptionAlgorithm;
+    }
+
+    /**
+     * Returns <code>true</code> if the EnvelopedData contains the
+     * encrypted content.
+     */
+    public boolean hasContent() {
+        return encryptedContent != null;
+    }
+
+    /**
+     * Returns the decrypted content. Can only be called once. Closing the
+     * returned stream skips the rest of the content.
+     *
+     * @param key The content-encryption key, recovered from one of the
+     *      RecipientInfos.
+     * @return Content.
+     * @exception NoSuchAlgorithmException If the content-encryption
+     *      algorithm is not supported.
+     * @exception InvalidAlgorithmParameterException If the IV is invalid.
+     * @exception IllegalStateException If the content is absent, or has
+     *      already been read.
+     */
+    public InputStream getContent(SymmetricKey key)
+            throws NoSuchAlgorithmException, InvalidKeyException,
+            InvalidAlgorithmParameterException, TokenException,
+            InvalidBERException, IOException {
+
+        if (encryptedContent == null) {
+            throw new IllegalStateException("EnvelopedData has no encrypted content");
+        }
+        if (content != null) {
+            throw new IllegalStateException("EnvelopedData content has already been read");
+        }
+
+        EncryptionAlgorithm alg = EncryptionAlgorithm.fromOID(contentEncryptionAlgorithm.getOID());
+        blockSize = alg.getBlockSize();
+        pad = blockSize > 1 && !alg.isPadded();
+
+        IVParameterSpec params = null;
+        if (EnvelopedDataWriter.takesIV(alg)) {
+            ASN1Value parameters = contentEncryptionAlgorithm.getParameters();
+            if (parameters == null) {
+                throw new InvalidAlgorithmParameterException("Missing IV");
+            }
+            OCTET_STRING iv = (OCTET_STRING) ((ANY) parameters).decodeWith(OCTET_STRING.getTemplate());
+            params = new IVParameterSpec(iv.toByteArray());
+        }
+
+        Cipher cipher = key.getOwningToken().getCipherContext(alg);
+        cipher.initDecrypt(key, params);
+
+        content = new ContentInputStream(in.openOctetString(encryptedContent), cipher);
+        return content;
+    }
+}
@@ -0,0 +1,302 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.mozilla.jss.pkix.cms;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.asn1.BEROutputStream;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.asn1.Tag;
+import org.mozilla.jss.crypto.Cipher;
+import org.mozilla.jss.crypto.EncryptionAlgorithm;
+import org.mozilla.jss.crypto.IllegalBlockSizeException;
+import org.mozilla.jss.crypto.IVParameterSpec;
+import org.mozilla.jss.crypto.SymmetricKey;
+import org.mozilla.jss.crypto.TokenException;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+
+/**
+ * Writes a CMS <i>EnvelopedData</i> to an output stream, encrypting its
+ * content as it is written.
+ *
+ * <p>EncryptedContentInfo holds the encrypted content in a single
+ * OCTET_STRING, produced by one call to Cipher.doFinal(), so encrypting
+ * a large payload needs several copies of it in memory. This writer
+ * instead passes the content through Cipher.update() one segment at a
+ * time and writes each encrypted segment as soon as it is available, as
+ * part of a constructed OCTET STRING. Memory use does not depend on the
+ * size of the content.
+ *
+ * <p>The caller supplies the content-encryption key and a RecipientInfo
+ * with the key encrypted for each recipient. Block ciphers are used in
+ * CBC mode with PKCS padding, as required by CMS; the padding is added
+ * here unless the algorithm pads by itself.
+ *
+ * <p>The EnvelopedData is wrapped in a ContentInfo and written with BER
+ * indefinite-length encoding. It can be read with EnvelopedDataReader.
+ * The output stream is not closed.
+ *
+ * @see EnvelopedDataReader
+ */
+public class EnvelopedDataWriter implements AutoCloseable {
+
+    /**
+     * Encrypts the content one segment at a time. The segment size is a
+     * multiple of the block size of every block cipher.
+     */
+    private class ContentOutputStream extends BEROutputStream.SegmentOutputStream {
+
+        @Override
+        protected void writeSegment(byte[] b, int len) throws IOException {
+            try {
+                writeEncrypted(cipher.update(b, 0, len, encrypted, 0));
+            } catch (GeneralSecurityException | TokenException e) {
+                throw new IOException("Unable to encrypt content: " + e.getMessage(), e);
+            }
+        }
+
+        void encryptLastSegment() throws IOException {
+            try {
+                if (pad) {
+                    byte[] padded = Cipher.pad(Arrays.copyOf(segment, count), blockSize);
+                    writeEncrypted(cipher.doFinal(padded, 0, padded.length, encrypted, 0));
+                } else {
+                    writeEncrypted(cipher.doFinal(segment, 0, count, encrypted, 0));
+                }
+            } catch (GeneralSecurityException | IllegalBlockSizeException | TokenException e) {
+                throw new IOException("Unable to encrypt content: " + e.getMessage(), e);
+            }
+            count = 0;
+        }
+
+        private void writeEncrypted(int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+            out.writeOctetString(encrypted, 0, length);
+        }
+    }
+
+    private final BEROutputStream out;
+    private final OBJECT_IDENTIFIER contentType;
+    private final AlgorithmIdentifier contentEncryptionAlgorithm;
+    private final Cipher cipher;
+    private final int blockSize;
+    private final boolean pad;
+    private final byte[] encrypted;
+
+    private final SET recipientInfos = new SET();
+
+    private ContentOutputStream content;
+    private boolean closed;
+
+    /**
+     * Creates a writer for an EnvelopedData.
+     *
+     * @param out The stream to which the ContentInfo is written.
+     * @param contentType The type of the content being encrypted, usually
+     *      ContentInfo.DATA.
+     * @param encryptionAlg The content-encryption algorithm, such as
+     *      EncryptionAlgorithm.AES_256_CBC.
+     * @param key The content-encryption key.
+     * @param iv The initialization vector, or null to generate a random
+     *      one if the algorithm takes an IV.
+     * @exception NoSuchAlgorithmException If the algorithm is not
+     *      supported or has no OID.
+     */
+    public EnvelopedDataWriter(OutputStream out, OBJECT_IDENTIFIER contentType,
+            EncryptionAlgorithm encryptionAlg, SymmetricKey key, byte[] iv)
+            throws NoSuchAlgorithmException, InvalidKeyException,
+            InvalidAlgorithmParameterException, TokenException {
+
+        if (out == null || contentType == null || encryptionAlg == null || key == null) {
+            throw new IllegalArgumentException();
+        }
+
+        this.out = new BEROutputStream(out);
+        this.contentType = contentType;
+
+        OBJECT_IDENTIFIER oid = encryptionAlg.toOID();
+
+        blockSize = encryptionAlg.getBlockSize();
+        pad = blockSize > 1 && !encryptionAlg.isPadded();
+
+        // room for the padded last segment to be encrypted in place
+        encrypted = new byte[BEROutputStream.SEGMENT_SIZE + 3 * blockSize];
+
+        IVParameterSpec params = null;
+        if (takesIV(encryptionAlg)) {
+            if (iv == null) {
+                iv = new byte[blockSize];
+                try {
+                    CryptoManager.getInstance().getSecureRNG().nextBytes(iv);
+                } catch (Exception e) {
+                    throw new TokenException("Unable to generate IV: " + e.getMessage(), e);
+                }
+            }
+            params = new IVParameterSpec(iv);
+            contentEncryptionAlgorithm = new AlgorithmIdentifier(oid, new OCTET_STRING(iv));
+        } else {
+            contentEncryptionAlgorithm = new AlgorithmIdentifier(oid);
+        }
+
+        cipher = key.getOwningToken().getCipherContext(encryptionAlg);
+        cipher.initEncrypt(key, params);
+    }
+
+    /**
+     * Returns <code>true</code> if the algorithm is initialized with an
+     * IV, which is then carried in the parameters of the
+     * contentEncryptionAlgorithm.
+     */
+    static boolean takesIV(EncryptionAlgorithm alg) {
+        return alg.isValidParameterObject(new IVParameterSpec(new byte[alg.getBlockSize()]));
+    }
+
+    /**
+     * Returns the contentEncryptionAlgorithm of the EncryptedContentInfo,
+     * including the IV.
+     */
+    public AlgorithmIdentifier getContentEncryptionAlgorithm() {
+        return contentEncryptionAlgorithm;
+    }
+
+    /**
+     * Adds a recipient. Recipients must be added before the content is
+     * written.
+     *
+     * @param recipientInfo The content-encryption key encrypted for the
+     *      recipient.
+     */
+    public void addRecipient(RecipientInfo recipientInfo) {
+        if (content != null || closed) {
+            throw new IllegalStateException("Recipients must be added before the content");
+        }
+        if (recipientInfo == null) {
+            throw new IllegalArgumentException();
+        }
+        recipientInfos.addElement(recipientInfo);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("EnvelopedData writer is closed");
+        }
+    }
+
+    /**
+     * Returns the stream to which the content is written. The first call
+     * writes the beginning of the EnvelopedData, after which no more
+     * recipients can be added. Closing the returned stream has no effect.
+     *
+     * @return Content stream.
+     * @exception IOException If an error occurs writing to the output
+     *      stream.
+     */
+    public OutputStream getContentStream() throws IOException {
+        checkOpen();
+
+        if (content != null) {
+            return content;
+        }
+
+        if (recipientInfos.size() == 0) {
+            throw new IllegalStateException("EnvelopedData has no recipients");
+        }
+
+        // version is 0 unless a RecipientInfo has another version
+        INTEGER version = new INTEGER(0);
+        for (int i = 0; i < recipientInfos.size(); i++) {
+            INTEGER v = ((RecipientInfo) recipientInfos.elementAt(i)).getVersion();
+            if (v != null && v.signum() != 0) {
+                version = new INTEGER(2);
+            }
+        }
+
+        // ContentInfo ::= SEQUENCE { envelopedData, [0] EXPLICIT EnvelopedData }
+        out.writeHeader(SEQUENCE.TAG);
+        ContentInfo.ENVELOPED_DATA.encode(out);
+        out.writeHeader(new Tag(0));
+
+        // EnvelopedData ::= SEQUENCE { version, recipientInfos,
+        //     encryptedContentInfo }
+        out.writeHeader(SEQUENCE.TAG);
+        version.encode(out);
+        recipientInfos.encode(out);
+
+        // EncryptedContentInfo ::= SEQUENCE { contentType,
+        //     contentEncryptionAlgorithm, encryptedContent [0] IMPLICIT
+        //     OCTET STRING OPTIONAL }
+        out.writeHeader(SEQUENCE.TAG);
+        contentType.encode(out);
+        contentEncryptionAlgorithm.encode(out);
+        out.writeHeader(new Tag(0));
+
+        content = new ContentOutputStream();
+        return content;
+    }
+
+    /**
+     * Writes content read from an input stream until end-of-file. May be
+     * called more than once, and mixed with writes to getContentStream().
+     *
+     * @param in Content.
+     * @exception IOException If an error occurs reading the content or
+     *      writing the EnvelopedData.
+     */
+    public void write(InputStream in) throws IOException {
+        in.transferTo(getContentStream());
+    }
+
+    /**
+     * Writes content read from a file channel, from its current position
+     * until end-of-file.
+     *
+     * @param channel Content.
+     * @exception IOException If an error occurs reading the content or
+     *      writing the EnvelopedData.
+     */
+    public void write(FileChannel channel) throws IOException {
+        getContentStream();
+        content.transferFrom(channel);
+    }
+
+    /**
+     * Encrypts the rest of the content and writes the end of the
+     * EnvelopedData. If no content was written, the content is empty.
+     *
+     * @exception IOException If an error occurs encrypting the content or
+     *      writing the EnvelopedData.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (closed) {
+            return;
+        }
+
+        getContentStream();
+        closed = true;
+
+        content.encryptLastSegment();
+
+        // end of encryptedContent, EncryptedContentInfo, EnvelopedData,
+        // [0] and ContentInfo
+        out.writeEnd(5);
+        out.flush();
+    }
+}
@@ -42,7 +42,7 @@ public class SignedData implements ASN1Value {
     private SET         signerInfos;
 
     // This class implements version 3 of the spec.
-    private static final INTEGER VERSION = new INTEGER(3);
+    static final INTEGER VERSION = new INTEGER(3);
 
     ///////////////////////////////////////////////////////////////////////
     ///////////////////////////////////////////////////////////////////////
@@ -114,6 +114,9 @@ public class SignedData implements ASN1Value {
      * X.509 certificates (org.mozilla.jss.pkix.cert.Certificate).
      * PKCS #6 Extended Certificates are not supported by this implementation.
      * Returns <code>null</code> if this optional field is not present.
+     * <p>If this SignedData was decoded, each certificate is decoded when it
+     * is first accessed with <code>elementAt()</code>, which throws a
+     * RuntimeException if the certificate is invalid.
      *
      */
     public SET getCertificates() {
@@ -357,9 +360,10 @@ public class SignedData implements ASN1Value {
             seqt.addElement(EncapsulatedContentInfo.getTemplate());
 
             // [0] IMPLICIT certificates OPTIONAL
+            // decoded when accessed, since callers often don't need them
             seqt.addOptionalElement(
                         new Tag(0),
-                        new SET.OF_Template(Certificate.getTemplate()));
+                        SET.OF_Template.makeLazyOFTemplate(Certificate.getTemplate()));
 
             // [1] IMPLICIT CertificateRevocationLists OPTIONAL
             seqt.addOptionalElement(
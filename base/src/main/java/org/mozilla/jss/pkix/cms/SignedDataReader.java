@@ -0,0 +1,458 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.mozilla.jss.pkix.cms;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.mozilla.jss.NotInitializedException;
+import org.mozilla.jss.asn1.ANY;
+import org.mozilla.jss.asn1.ASN1Header;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.BERInputStream;
+import org.mozilla.jss.asn1.Form;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.InvalidBERException;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.asn1.Tag;
+import org.mozilla.jss.crypto.DigestAlgorithm;
+import org.mozilla.jss.crypto.ObjectNotFoundException;
+import org.mozilla.jss.crypto.TokenException;
+import org.mozilla.jss.pkix.cert.Certificate;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+
+/**
+ * Reads a CMS <i>SignedData</i>, wrapped in a ContentInfo, from an input
+ * stream without holding its content in memory.
+ *
+ * <p>The constructor reads the SignedData up to its content and prepares
+ * a digest for each of its digest algorithms. Encapsulated content is then
+ * read from getContent(), and detached content is passed to digest(); in
+ * both cases it is digested on the way. The certificates, CRLs and
+ * SignerInfos, which follow the content, are read when they are first
+ * requested, after which the signatures can be verified against the
+ * digests.
+ *
+ * <p>Definite and indefinite length encodings are both accepted, so this
+ * reads the output of SignedDataWriter as well as DER-encoded SignedData.
+ *
+ * @see SignedDataWriter
+ */
+public class SignedDataReader {
+
+    private static final int BUFFER_SIZE = 16384;
+
+    /**
+     * Passes the content read to the digests.
+     */
+    private class DigestInputStream extends FilterInputStream {
+
+        DigestInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                update(new byte[] { (byte) b }, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                update(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // skipped content must still be digested
+            byte[] buffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+            long skipped = 0;
+            while (skipped < n) {
+                int r = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+                if (r == -1) {
+                    break;
+                }
+                skipped += r;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /**
+         * Reads and digests the rest of the content.
+         */
+        @Override
+        public void close() throws IOException {
+            while (skip(Long.MAX_VALUE) > 0) {
+            }
+            in.close();
+        }
+    }
+
+    private final BERInputStream in;
+
+    private final ASN1Header contentInfo;
+    private final ASN1Header explicit;
+    private final ASN1Header signedData;
+    private final long signedDataEnd;
+    private final ASN1Header encapContentInfo;
+    private ASN1Header eContent; // null if the content is detached
+
+    private final INTEGER version;
+    private final SET digestAlgorithms;
+    private final OBJECT_IDENTIFIER contentType;
+    private final Map<DigestAlgorithm, MessageDigest> digests = new LinkedHashMap<>();
+
+    private DigestInputStream content;
+    private Map<DigestAlgorithm, byte[]> messageDigests;
+
+    private SET certificates; // [0] optional, may be null
+    private SET crls;         // [1] optional, may be null
+    private SET signerInfos;
+
+    /**
+     * Reads a ContentInfo containing a SignedData up to the content.
+     * Digest algorithms which are not supported are ignored; signers
+     * using them fail to verify.
+     *
+     * @param istream The stream from which the ContentInfo is read.
+     * @exception IOException If an error occurs reading the stream.
+     * @exception InvalidBERException If the ContentInfo is invalid or does
+     *      not contain a SignedData.
+     */
+    public SignedDataReader(InputStream istream) throws IOException, InvalidBERException {
+
+        in = new BERInputStream(istream);
+
+        contentInfo = in.readHeader();
+        contentInfo.validate(ContentInfo.TAG, Form.CONSTRUCTED);
+
+        OBJECT_IDENTIFIER type = (OBJECT_IDENTIFIER) in.decode(
+                in.readHeader(), OBJECT_IDENTIFIER.getTemplate());
+        if (!type.equals(ContentInfo.SIGNED_DATA)) {
+            throw new InvalidBERException("ContentInfo does not contain a SignedData: " + type);
+        }
+
+        explicit = in.readHeader();
+        explicit.validate(new Tag(0), Form.CONSTRUCTED);
+
+        signedData = in.readHeader();
+        signedData.validate(SignedData.TAG, Form.CONSTRUCTED);
+        signedDataEnd = in.getEnd(signedData);
+
+        version = (INTEGER) in.decode(in.readHeader(), INTEGER.getTemplate());
+        digestAlgorithms = (SET) in.decode(in.readHeader(),
+                new SET.OF_Template(AlgorithmIdentifier.getTemplate()));
+
+        for (int i = 0; i < digestAlgorithms.size(); i++) {
+            AlgorithmIdentifier algID = (AlgorithmIdentifier) digestAlgorithms.elementAt(i);
+            try {
+                DigestAlgorithm alg = DigestAlgorithm.fromOID(algID.getOID());
+                if (!digests.containsKey(alg)) {
+                    digests.put(alg, MessageDigest.getInstance(alg.toString()));
+                }
+            } catch (NoSuchAlgorithmException e) {
+                // not needed unless a signer uses it
+            }
+        }
+
+        encapContentInfo = in.readHeader();
+        encapContentInfo.validate(EncapsulatedContentInfo.TAG, Form.CONSTRUCTED);
+        long encapContentInfoEnd = in.getEnd(encapContentInfo);
+
+        contentType = (OBJECT_IDENTIFIER) in.decode(
+                in.readHeader(), OBJECT_IDENTIFIER.getTemplate());
+
+        ASN1Header header = in.nextHeader(encapContentInfoEnd);
+        if (header != null) {
+            header.validate(new Tag(0), Form.CONSTRUCTED);
+            eContent = header;
+        }
+        // otherwise the content is detached, and the end of the
+        // EncapsulatedContentInfo has been read
+    }
+
+    /**
+     * Returns the version of the SignedData.
+     */
+    public INTEGER getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the digest algorithms of the SignedData, a SET of
+     * AlgorithmIdentifiers.
+     */
+    public SET getDigestAlgorithmIdentifiers() {
+        return digestAlgorithms;
+    }
+
+    /**
+     * Returns the type of the signed content.
+     */
+    public OBJECT_IDENTIFIER getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Returns <code>true</code> if the content is encapsulated in the
+     * SignedData, and <code>false</code> if it is detached.
+     */
+    public boolean hasContent() {
+        return eContent != null;
+    }
+
+    /**
+     * Returns the encapsulated content. It is digested as it is read, and
+     * closing the stream reads and digests the rest of it. Can only be
+     * called once.
+     *
+     * @return Content.
+     * @exception IOException If an error occurs reading the stream.
+     * @exception InvalidBERException If the content is not an OCTET STRING.
+     * @exception IllegalStateException If the content is detached, or has
+     *      already been read.
+     */
+    public InputStream getContent() throws IOException, InvalidBERException {
+
+        if (eContent == null) {
+            throw new IllegalStateException("SignedData content is detached");
+        }
+        if (content != null) {
+            throw new IllegalStateException("SignedData content has already been read");
+        }
+
+        ASN1Header octetString = in.readHeader();
+        octetString.validate(OCTET_STRING.TAG);
+
+        content = new DigestInputStream(in.openOctetString(octetString));
+        return content;
+    }
+
+    /**
+     * Digests detached content read from an input stream until
+     * end-of-file. May be called more than once for content in several
+     * parts.
+     *
+     * @param istream Detached content.
+     * @exception IOException If an error occurs reading the content.
+     * @exception IllegalStateException If the content is not detached.
+     */
+    public void digest(InputStream istream) throws IOException {
+        checkDetached();
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = istream.read(buffer)) != -1) {
+            update(buffer, 0, n);
+        }
+    }
+
+    /**
+     * Digests detached content read from a file channel, from its current
+     * position until end-of-file.
+     *
+     * @param channel Detached content.
+     * @exception IOException If an error occurs reading the content.
+     * @exception IllegalStateException If the content is not detached.
+     */
+    public void digest(FileChannel channel) throws IOException {
+        checkDetached();
+
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        while (channel.read(buffer) != -1) {
+            update(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+    }
+
+    private void checkDetached() {
+        if (eContent != null) {
+            throw new IllegalStateException("SignedData content is not detached");
+        }
+        if (messageDigests != null) {
+            throw new IllegalStateException("SignedData content has already been digested");
+        }
+    }
+
+    private void update(byte[] b, int off, int len) {
+        for (MessageDigest digest : digests.values()) {
+            digest.update(b, off, len);
+        }
+    }
+
+    /**
+     * Reads the rest of the SignedData, after the content.
+     */
+    private void readSignerInfos() throws IOException, InvalidBERException {
+
+        if (signerInfos != null) {
+            return;
+        }
+
+        if (eContent != null) {
+            if (content == null) {
+                getContent();
+            }
+            content.close();
+            in.readEnd(eContent);
+            in.readEnd(encapContentInfo);
+        }
+
+        ASN1Header header;
+        while ((header = in.nextHeader(signedDataEnd)) != null) {
+
+            if (header.getTag().equals(new Tag(0))) {
+                // decoded when accessed, like in SignedData.Template
+                certificates = (SET) ASN1Util.decode(new Tag(0),
+                        SET.OF_Template.makeLazyOFTemplate(Certificate.getTemplate()),
+                        in.readElement(header));
+
+            } else if (header.getTag().equals(new Tag(1))) {
+                crls = (SET) ASN1Util.decode(new Tag(1),
+                        new SET.OF_Template(ANY.getTemplate()),
+                        in.readElement(header));
+
+            } else if (header.getTag().equals(SET.TAG)) {
+                signerInfos = (SET) in.decode(header,
+                        new SET.OF_Template(SignerInfo.getTemplate()));
+
+            } else {
+                throw new InvalidBERException("Unexpected element in SignedData: " + header.getTag());
+            }
+        }
+
+        if (signerInfos == null) {
+            throw new InvalidBERException("SignedData does not contain signerInfos");
+        }
+
+        in.readEnd(explicit);
+        in.readEnd(contentInfo);
+    }
+
+    /**
+     * Returns the certificates field, or <code>null</code> if it is not
+     * present. Each certificate is decoded when it is first accessed with
+     * <code>elementAt()</code>. Any encapsulated content which has not
+     * been read yet is read and digested first.
+     */
+    public SET getCertificates() throws IOException, InvalidBERException {
+        readSignerInfos();
+        return certificates;
+    }
+
+    /**
+     * Returns the crls field, a SET of ANYs, or <code>null</code> if it is
+     * not present. Any encapsulated content which has not been read yet is
+     * read and digested first.
+     */
+    public SET getCrls() throws IOException, InvalidBERException {
+        readSignerInfos();
+        return crls;
+    }
+
+    /**
+     * Returns the signerInfos field, a SET of SignerInfos. Any
+     * encapsulated content which has not been read yet is read and
+     * digested first.
+     */
+    public SET getSignerInfos() throws IOException, InvalidBERException {
+        readSignerInfos();
+        return signerInfos;
+    }
+
+    /**
+     * Returns the digest of the content with the given algorithm. The
+     * SignedData is read up to the end first, so detached content must
+     * have been passed to digest() before this is called.
+     *
+     * @param digestAlgorithm A digest algorithm of the SignedData.
+     * @return Message digest.
+     * @exception NoSuchAlgorithmException If the algorithm is not among
+     *      the digest algorithms of the SignedData, or not supported.
+     */
+    public byte[] getDigest(AlgorithmIdentifier digestAlgorithm)
+            throws IOException, InvalidBERException, NoSuchAlgorithmException {
+
+        readSignerInfos();
+
+        if (messageDigests == null) {
+            messageDigests = new LinkedHashMap<>();
+            for (Map.Entry<DigestAlgorithm, MessageDigest> entry : digests.entrySet()) {
+                messageDigests.put(entry.getKey(), entry.getValue().digest());
+            }
+        }
+
+        byte[] digest = messageDigests.get(DigestAlgorithm.fromOID(digestAlgorithm.getOID()));
+        if (digest == null) {
+            throw new NoSuchAlgorithmException(
+                    "Content was not digested with " + digestAlgorithm.getOID());
+        }
+        return digest.clone();
+    }
+
+    /**
+     * Verifies the signature of every SignerInfo, finding the certificate
+     * of each signer by its issuer and serial number as described in
+     * SignerInfo.verify(byte[], OBJECT_IDENTIFIER).
+     *
+     * @exception SignatureException If a signature is not valid, or there
+     *      are no SignerInfos.
+     */
+    public void verify()
+            throws IOException, InvalidBERException, NotInitializedException,
+            NoSuchAlgorithmException, InvalidKeyException, TokenException,
+            SignatureException, ObjectNotFoundException {
+
+        SET infos = getSignerInfos();
+        if (infos.size() == 0) {
+            throw new SignatureException("SignedData has no signers");
+        }
+
+        for (int i = 0; i < infos.size(); i++) {
+            SignerInfo signerInfo = (SignerInfo) infos.elementAt(i);
+            signerInfo.verify(getDigest(signerInfo.getDigestAlgorithmIdentifer()), contentType);
+        }
+    }
+
+    /**
+     * Verifies the signature of one SignerInfo with the given public key,
+     * as described in SignerInfo.verify(byte[], OBJECT_IDENTIFIER,
+     * PublicKey).
+     *
+     * @param signerInfo A SignerInfo returned by getSignerInfos().
+     * @param publicKey The public key of the signer.
+     * @exception SignatureException If the signature is not valid.
+     */
+    public void verify(SignerInfo signerInfo, PublicKey publicKey)
+            throws IOException, InvalidBERException, NotInitializedException,
+            NoSuchAlgorithmException, InvalidKeyException, TokenException,
+            SignatureException {
+        signerInfo.verify(getDigest(signerInfo.getDigestAlgorithmIdentifer()),
+                contentType, publicKey);
+    }
+}
@@ -0,0 +1,329 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.mozilla.jss.pkix.cms;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mozilla.jss.asn1.ASN1Value;
+import org.mozilla.jss.asn1.BEROutputStream;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.asn1.Tag;
+import org.mozilla.jss.crypto.DigestAlgorithm;
+import org.mozilla.jss.crypto.PrivateKey;
+import org.mozilla.jss.crypto.SignatureAlgorithm;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+
+/**
+ * Writes a CMS <i>SignedData</i> to an output stream while its content is
+ * being digested.
+ *
+ * <p>A SignedData built with the SignedData constructor holds its content
+ * in an OCTET_STRING, and its SignerInfos need the digest of the content
+ * before the SignedData can be encoded. This writer instead passes the
+ * content through the digests of all signers as it is written, so content
+ * of any size can be signed in one pass with constant memory. The content
+ * is either encapsulated in the SignedData, in OCTET STRING segments, or
+ * left out of it (detached) and only digested.
+ *
+ * <p>The SignedData is wrapped in a ContentInfo and written with BER
+ * indefinite-length encoding, since the length of the content is not
+ * known in advance. It can be read with SignedDataReader, or decoded with
+ * ContentInfo.getTemplate() if it fits in memory.
+ *
+ * <p>Signers are added before the content is written, since the digest
+ * algorithms precede the content in the encoding. Certificates and CRLs
+ * can be added until close(), which signs the digests and writes the
+ * SignerInfos. The output stream is not closed.
+ *
+ * @see SignedDataReader
+ */
+public class SignedDataWriter implements AutoCloseable {
+
+    private static class Signer {
+        SignerIdentifier signerIdentifier;
+        SET signedAttributes;
+        SET unsignedAttributes;
+        SignatureAlgorithm signingAlg;
+        PrivateKey signingKey;
+        DigestAlgorithm digestAlg;
+    }
+
+    /**
+     * Digests the content and, unless it is detached, writes it as a
+     * series of primitive OCTET STRING segments.
+     */
+    private class ContentOutputStream extends BEROutputStream.SegmentOutputStream {
+
+        @Override
+        protected void writeSegment(byte[] b, int len) throws IOException {
+            for (MessageDigest digest : digests.values()) {
+                digest.update(b, 0, len);
+            }
+
+            if (!detached) {
+                out.writeOctetString(b, 0, len);
+            }
+        }
+    }
+
+    private final BEROutputStream out;
+    private final OBJECT_IDENTIFIER contentType;
+    private final boolean detached;
+
+    private final SET digestAlgorithms = new SET();
+    private final Map<DigestAlgorithm, MessageDigest> digests = new LinkedHashMap<>();
+    private final List<Signer> signers = new ArrayList<>();
+    private SET certificates; // [0] optional, may be null
+    private SET crls;         // [1] optional, may be null
+
+    private ContentOutputStream content;
+    private boolean closed;
+
+    /**
+     * Creates a writer for a SignedData.
+     *
+     * @param out The stream to which the ContentInfo is written.
+     * @param contentType The type of the content being signed, usually
+     *      ContentInfo.DATA.
+     * @param detached <code>true</code> if the content is only digested,
+     *      and not included in the SignedData.
+     */
+    public SignedDataWriter(OutputStream out, OBJECT_IDENTIFIER contentType, boolean detached) {
+        if (out == null || contentType == null) {
+            throw new IllegalArgumentException();
+        }
+        this.out = new BEROutputStream(out);
+        this.contentType = contentType;
+        this.detached = detached;
+    }
+
+    /**
+     * Adds a signer with no additional signed or unsigned attributes.
+     *
+     * @see #addSigner(SignerIdentifier, SET, SET, SignatureAlgorithm, PrivateKey)
+     */
+    public void addSigner(SignerIdentifier signerIdentifier,
+            SignatureAlgorithm signingAlg, PrivateKey signingKey)
+            throws NoSuchAlgorithmException {
+        addSigner(signerIdentifier, null, null, signingAlg, signingKey);
+    }
+
+    /**
+     * Adds a signer. Its SignerInfo is created in close(), with the
+     * digest of the content, as described in the SignerInfo constructor.
+     * Signers must be added before the content is written.
+     *
+     * @param signerIdentifier Identifies the certificate of the signer.
+     * @param signedAttributes Attributes signed along with the content.
+     *      May be null.
+     * @param unsignedAttributes Attributes included in the SignerInfo but
+     *      not signed. May be null.
+     * @param signingAlg The algorithm used to sign the content.
+     * @param signingKey The private key of the signer.
+     * @exception NoSuchAlgorithmException If the digest algorithm of the
+     *      signing algorithm is not available.
+     */
+    public void addSigner(SignerIdentifier signerIdentifier,
+            SET signedAttributes, SET unsignedAttributes,
+            SignatureAlgorithm signingAlg, PrivateKey signingKey)
+            throws NoSuchAlgorithmException {
+
+        if (content != null || closed) {
+            throw new IllegalStateException("Signers must be added before the content");
+        }
+        if (signerIdentifier == null || signingAlg == null || signingKey == null) {
+            throw new IllegalArgumentException();
+        }
+
+        AlgorithmIdentifier digestAlgID = SignerInfo.createDigestAlgorithm(signingAlg);
+        DigestAlgorithm digestAlg = DigestAlgorithm.fromOID(digestAlgID.getOID());
+
+        if (!digests.containsKey(digestAlg)) {
+            digests.put(digestAlg, MessageDigest.getInstance(digestAlg.toString()));
+            digestAlgorithms.addElement(digestAlgID);
+        }
+
+        Signer signer = new Signer();
+        signer.signerIdentifier = signerIdentifier;
+        signer.signedAttributes = signedAttributes;
+        signer.unsignedAttributes = unsignedAttributes;
+        signer.signingAlg = signingAlg;
+        signer.signingKey = signingKey;
+        signer.digestAlg = digestAlg;
+        signers.add(signer);
+    }
+
+    /**
+     * Adds a certificate to the certificates field.
+     *
+     * @param certificate An org.mozilla.jss.pkix.cert.Certificate, or an
+     *      ANY containing the encoding of a certificate.
+     */
+    public void addCertificate(ASN1Value certificate) {
+        checkOpen();
+        if (certificates == null) {
+            certificates = new SET();
+        }
+        certificates.addElement(certificate);
+    }
+
+    /**
+     * Adds a certificate revocation list to the crls field.
+     *
+     * @param crl An ASN1Value which encodes to a CertificateRevocationList.
+     */
+    public void addCrl(ASN1Value crl) {
+        checkOpen();
+        if (crls == null) {
+            crls = new SET();
+        }
+        crls.addElement(crl);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("SignedData writer is closed");
+        }
+    }
+
+    /**
+     * Returns the stream to which the content is written. The first call
+     * writes the beginning of the SignedData, after which no more signers
+     * can be added. Closing the returned stream has no effect.
+     *
+     * @return Content stream.
+     * @exception IOException If an error occurs writing to the output
+     *      stream.
+     */
+    public OutputStream getContentStream() throws IOException {
+        checkOpen();
+
+        if (content != null) {
+            return content;
+        }
+
+        // ContentInfo ::= SEQUENCE { signedData, [0] EXPLICIT SignedData }
+        out.writeHeader(SEQUENCE.TAG);
+        ContentInfo.SIGNED_DATA.encode(out);
+        out.writeHeader(new Tag(0));
+
+        // SignedData ::= SEQUENCE { version, digestAlgorithms,
+        //     encapContentInfo, certificates, crls, signerInfos }
+        out.writeHeader(SEQUENCE.TAG);
+        SignedData.VERSION.encode(out);
+        digestAlgorithms.encode(out);
+
+        // EncapsulatedContentInfo ::= SEQUENCE { eContentType,
+        //     eContent [0] EXPLICIT OCTET STRING OPTIONAL }
+        out.writeHeader(SEQUENCE.TAG);
+        contentType.encode(out);
+        if (!detached) {
+            out.writeHeader(new Tag(0));
+            out.writeHeader(OCTET_STRING.TAG);
+        }
+
+        content = new ContentOutputStream();
+        return content;
+    }
+
+    /**
+     * Writes content read from an input stream until end-of-file. May be
+     * called more than once, and mixed with writes to getContentStream().
+     *
+     * @param in Content.
+     * @exception IOException If an error occurs reading the content or
+     *      writing the SignedData.
+     */
+    public void write(InputStream in) throws IOException {
+        in.transferTo(getContentStream());
+    }
+
+    /**
+     * Writes content read from a file channel, from its current position
+     * until end-of-file.
+     *
+     * @param channel Content.
+     * @exception IOException If an error occurs reading the content or
+     *      writing the SignedData.
+     */
+    public void write(FileChannel channel) throws IOException {
+        getContentStream();
+        content.transferFrom(channel);
+    }
+
+    /**
+     * Finishes the content, creates a SignerInfo for each signer, and
+     * writes the rest of the SignedData. If no content was written, the
+     * content is empty.
+     *
+     * @exception IOException If an error occurs writing the SignedData.
+     * @exception GeneralSecurityException If a signature cannot be created.
+     */
+    @Override
+    public void close() throws IOException, GeneralSecurityException {
+
+        if (closed) {
+            return;
+        }
+
+        getContentStream();
+        closed = true;
+
+        content.flushSegment();
+        if (!detached) {
+            // end of OCTET STRING and [0]
+            out.writeEnd(2);
+        }
+        // end of EncapsulatedContentInfo
+        out.writeEnd();
+
+        if (certificates != null) {
+            certificates.encode(new Tag(0), out);
+        }
+        if (crls != null) {
+            crls.encode(new Tag(1), out);
+        }
+
+        Map<DigestAlgorithm, byte[]> messageDigests = new LinkedHashMap<>();
+        for (Map.Entry<DigestAlgorithm, MessageDigest> entry : digests.entrySet()) {
+            messageDigests.put(entry.getKey(), entry.getValue().digest());
+        }
+
+        SET signerInfos = new SET();
+        for (Signer signer : signers) {
+            try {
+                signerInfos.addElement(new SignerInfo(
+                        signer.signerIdentifier,
+                        signer.signedAttributes,
+                        signer.unsignedAttributes,
+                        contentType,
+                        messageDigests.get(signer.digestAlg),
+                        signer.signingAlg,
+                        signer.signingKey));
+            } catch (GeneralSecurityException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new GeneralSecurityException("Unable to sign content: " + e.getMessage(), e);
+            }
+        }
+        signerInfos.encode(out);
+
+        // end of SignedData, [0] and ContentInfo
+        out.writeEnd(3);
+        out.flush();
+    }
+}
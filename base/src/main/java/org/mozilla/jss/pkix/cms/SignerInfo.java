@@ -225,18 +225,11 @@ public class SignerInfo implements ASN1Value {
         } else {
             throw new IllegalArgumentException("Unexpected SignerIdentifier type");
         }
-        if(signingAlg.equals(SignatureAlgorithm.MLDSA44) ||
-                signingAlg.equals(SignatureAlgorithm.MLDSA65) ||
-                signingAlg.equals(SignatureAlgorithm.MLDSA87)) {
-            // Per RFC 9882 Section 4, for ML-DSA the digestAlgorithm MUST be
-            // id-sha512 and the parameters MUST be absent.
-            this.digestAlgorithm =
-                    new AlgorithmIdentifier(DigestAlgorithm.SHA512.toOID());
+        this.digestAlgorithm = createDigestAlgorithm(signingAlg);
+        if(isMLDSA(signingAlg)) {
             this.digestEncryptionAlgorithm = new AlgorithmIdentifier(
                 signingAlg.toOID());
         } else {
-            this.digestAlgorithm =
-                    new AlgorithmIdentifier(signingAlg.getDigestAlg().toOID(),null);
             this.digestEncryptionAlgorithm = new AlgorithmIdentifier(
                 signingAlg.toOID(), null);
         }
@@ -300,6 +293,27 @@ public class SignerInfo implements ASN1Value {
         }
     }
 
+    private static boolean isMLDSA(SignatureAlgorithm signingAlg) {
+        return signingAlg.equals(SignatureAlgorithm.MLDSA44) ||
+                signingAlg.equals(SignatureAlgorithm.MLDSA65) ||
+                signingAlg.equals(SignatureAlgorithm.MLDSA87);
+    }
+
+    /**
+     * Returns the digestAlgorithm of a SignerInfo created with the given
+     * signing algorithm. The content must be digested with this algorithm.
+     */
+    static AlgorithmIdentifier createDigestAlgorithm(SignatureAlgorithm signingAlg)
+        throws NoSuchAlgorithmException
+    {
+        if(isMLDSA(signingAlg)) {
+            // Per RFC 9882 Section 4, for ML-DSA the digestAlgorithm MUST be
+            // id-sha512 and the parameters MUST be absent.
+            return new AlgorithmIdentifier(DigestAlgorithm.SHA512.toOID());
+        }
+        return new AlgorithmIdentifier(signingAlg.getDigestAlg().toOID(),null);
+    }
+
     /**
      * A constructor for creating a new SignerInfo from its decoding.
      */
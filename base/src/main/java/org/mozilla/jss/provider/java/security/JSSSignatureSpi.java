@@ -23,6 +23,8 @@ import org.mozilla.jss.crypto.SignatureAlgorithm;
 import org.mozilla.jss.crypto.TokenException;
 import org.mozilla.jss.crypto.TokenSupplierManager;
 import org.mozilla.jss.pkcs11.KeyType;
+import org.mozilla.jss.pkcs11.PK11SignaturePool;
+import org.mozilla.jss.pkcs11.PK11Token;
 import org.mozilla.jss.pkix.primitive.SubjectPublicKeyInfo;
 
 public class JSSSignatureSpi extends java.security.SignatureSpi {
@@ -31,6 +33,14 @@ public class JSSSignatureSpi extends java.security.SignatureSpi {
     SignatureAlgorithm alg;
     AlgorithmParameterSpec paramSpec;
 
+    // What the context was initialized with, to restart the operation
+    // after sign() or verify() has returned the context to the pool.
+    CryptoToken sigToken;
+    SignatureAlgorithm sigAlg;
+    PrivateKey signKey;
+    PublicKey verifyKey;
+    org.mozilla.jss.crypto.Signature released;
+
     protected JSSSignatureSpi(SignatureAlgorithm alg) {
         this.alg = alg;
     }
@@ -58,6 +68,7 @@ public class JSSSignatureSpi extends java.security.SignatureSpi {
                 sig.setParameter(paramSpec);
             }
             sig.initSign((PrivateKey)privateKey);
+            signKey = (PrivateKey)privateKey;
         } catch(java.security.NoSuchAlgorithmException e) {
             throw new InvalidKeyException("Algorithm not supported: " + e.getMessage(), e);
         } catch(TokenException e) {
@@ -99,7 +110,78 @@ public class JSSSignatureSpi extends java.security.SignatureSpi {
         if (effectiveAlg == null) {
             throw new NoSuchAlgorithmException("Signature algorithm not defined");
         }
-        return token.getSignatureContext(effectiveAlg);
+        return acquireSignature(token, effectiveAlg);
+    }
+
+    /**
+     * Gets a signature context from the current thread's pool, returning
+     * the previous one (if any) to the pool first.
+     */
+    private org.mozilla.jss.crypto.Signature
+    acquireSignature(CryptoToken token, SignatureAlgorithm algorithm)
+        throws NoSuchAlgorithmException, TokenException
+    {
+        releaseSignature();
+        released = null;
+        signKey = null;
+        verifyKey = null;
+        sigToken = token;
+        sigAlg = algorithm;
+        if (token instanceof PK11Token pk11Token) {
+            return PK11SignaturePool.acquire(pk11Token, algorithm);
+        }
+        return token.getSignatureContext(algorithm);
+    }
+
+    private void releaseSignature() {
+        if (sig != null) {
+            PK11SignaturePool.release(sig);
+            released = sig;
+            sig = null;
+        }
+    }
+
+    /**
+     * Makes sure a context is ready for update(), sign() or verify().
+     * After sign() or verify() the operation is restarted with the same
+     * key, taking back the context just returned to the pool if it is
+     * still there, which restarts its NSS context instead of creating a
+     * new one.
+     */
+    private void checkInitialized() throws SignatureException {
+        if (sig != null) {
+            return;
+        }
+        if (signKey == null && verifyKey == null) {
+            throw new SignatureException("Signature is not initialized");
+        }
+
+        try {
+            org.mozilla.jss.crypto.Signature spare = released;
+            PrivateKey privk = signKey;
+            PublicKey pubk = verifyKey;
+            if (spare != null && PK11SignaturePool.reclaim(spare)) {
+                sig = spare;
+            } else {
+                sig = acquireSignature(sigToken, sigAlg);
+            }
+            released = null;
+
+            if (privk != null) {
+                if (paramSpec != null) {
+                    sig.setParameter(paramSpec);
+                }
+                sig.initSign(privk);
+                signKey = privk;
+            } else {
+                sig.initVerify(pubk);
+                verifyKey = pubk;
+            }
+        } catch (NoSuchAlgorithmException | InvalidKeyException
+                | InvalidAlgorithmParameterException | TokenException e) {
+            sig = null;
+            throw new SignatureException("Unable to restart signature: " + e.getMessage(), e);
+        }
     }
 
     @Override
@@ -137,8 +219,9 @@ public class JSSSignatureSpi extends java.security.SignatureSpi {
             if (effectiveAlg == null) {
               throw new NoSuchAlgorithmException("Signature algorithm not defined");
             }
-            sig = token.getSignatureContext(effectiveAlg);
+            sig = acquireSignature(token, effectiveAlg);
             sig.initVerify(publicKey);
+            verifyKey = publicKey;
         } catch(NoSuchProviderException | java.security.spec.InvalidKeySpecException e) {
             throw new InvalidKeyException("Unable to convert non-JSS key to JSS key: " + e.getMessage(), e);
         } catch(java.security.NoSuchAlgorithmException e) {
@@ -152,6 +235,7 @@ public class JSSSignatureSpi extends java.security.SignatureSpi {
     public void engineUpdate(byte b)
         throws SignatureException
     {
+        checkInitialized();
         try {
             sig.update(b);
         } catch( TokenException e) {
@@ -163,6 +247,7 @@ public class JSSSignatureSpi extends java.security.SignatureSpi {
     public void engineUpdate(byte[] b, int off, int len)
         throws SignatureException
     {
+        checkInitialized();
         try {
             sig.update(b, off, len);
         } catch( TokenException e) {
@@ -172,10 +257,13 @@ public class JSSSignatureSpi extends java.security.SignatureSpi {
 
     @Override
     public byte[] engineSign() throws SignatureException {
+        checkInitialized();
         try {
             return sig.sign();
         } catch(TokenException e) {
             throw new SignatureException("TokenException: "+e.toString());
+        } finally {
+            releaseSignature();
         }
     }
 
@@ -183,19 +271,25 @@ public class JSSSignatureSpi extends java.security.SignatureSpi {
     public int engineSign(byte[] outbuf, int offset, int len)
         throws SignatureException
     {
+        checkInitialized();
         try {
             return sig.sign(outbuf, offset, len);
         } catch(TokenException e) {
             throw new SignatureException("TokenException: "+e.toString());
+        } finally {
+            releaseSignature();
         }
     }
 
     @Override
     public boolean engineVerify(byte[] sigBytes) throws SignatureException {
+        checkInitialized();
         try {
             return sig.verify(sigBytes);
         } catch( TokenException  e) {
             throw new SignatureException("TokenException: "+e.toString());
+        } finally {
+            releaseSignature();
         }
     }
 
@@ -331,13 +331,17 @@ public class JSSCipherSpi extends javax.crypto.CipherSpi {
     public int engineUpdate(byte[] input, int inputOffset, int inputLen,
         byte[] output, int outputOffset) throws ShortBufferException
     {
-        byte[] bytes = engineUpdate(input, inputOffset, inputLen);
-        if( bytes.length > output.length-outputOffset ) {
-            throw new ShortBufferException(bytes.length +  " needed, " +
-                (output.length-outputOffset) + " supplied");
+        if(cipher == null) {
+            // Cipher is supposed to catch an illegal state, so we should never
+            // get here
+            throw new IllegalStateException();
+        }
+        try {
+            return cipher.update(input, inputOffset, inputLen, output,
+                outputOffset);
+        } catch(TokenException te) {
+            throw new TokenRuntimeException(te.getMessage());
         }
-        System.arraycopy(bytes, 0, output, outputOffset, bytes.length);
-        return bytes.length;
     }
 
     @Override
@@ -370,13 +374,21 @@ public class JSSCipherSpi extends javax.crypto.CipherSpi {
             throws ShortBufferException, IllegalBlockSizeException,
             BadPaddingException
     {
-        byte[] bytes = engineDoFinal(input, inputOffset, inputLen);
-        if( bytes.length > output.length-outputOffset ) {
-            throw new ShortBufferException(bytes.length +  " needed, " +
-                (output.length-outputOffset) + " supplied");
+        if( cipher == null ) {
+            // Cipher is supposed to catch an illegal state, so we should never
+            // get here
+            throw new IllegalStateException();
+        }
+        try {
+            return cipher.doFinal(input, inputOffset, inputLen, output,
+                outputOffset);
+        } catch(IllegalStateException ise) {
+            throw ise;
+        } catch(org.mozilla.jss.crypto.IllegalBlockSizeException ibse) {
+            throw new IllegalBlockSizeException(ibse.getMessage());
+        } catch(TokenException te) {
+            throw new TokenRuntimeException(te.getMessage());
         }
-        System.arraycopy(bytes, 0, output, outputOffset, bytes.length);
-        return bytes.length;
     }
 
     @Override
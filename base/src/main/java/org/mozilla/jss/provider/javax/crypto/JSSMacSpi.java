@@ -4,6 +4,7 @@
 
 package org.mozilla.jss.provider.javax.crypto;
 
+import java.nio.ByteBuffer;
 import java.security.DigestException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
@@ -32,6 +33,9 @@ public class JSSMacSpi extends javax.crypto.MacSpi {
     private DigestAlgorithm alg;
     private String keyName;
 
+    // Reused to stage data from direct ByteBuffers; see engineUpdate.
+    private byte[] scratch;
+
     protected JSSMacSpi(DigestAlgorithm alg, String keyName) {
       try {
         this.alg = alg;
@@ -116,6 +120,33 @@ public class JSSMacSpi extends javax.crypto.MacSpi {
       }
     }
 
+    @Override
+    public void engineUpdate(ByteBuffer input) {
+      // MacSpi's default allocates a new array for every direct buffer;
+      // pass heap buffers through directly and stage direct buffers through
+      // a single reused array instead.
+      try {
+        if (input.hasArray()) {
+            int pos = input.position();
+            int len = input.remaining();
+            digest.update(input.array(), input.arrayOffset() + pos, len);
+            input.position(pos + len);
+            return;
+        }
+
+        if (scratch == null) {
+            scratch = new byte[4096];
+        }
+        while (input.hasRemaining()) {
+            int len = Math.min(scratch.length, input.remaining());
+            input.get(scratch, 0, len);
+            digest.update(scratch, 0, len);
+        }
+      } catch(DigestException de) {
+        throw new TokenRuntimeException("DigestException: " + de.getMessage());
+      }
+    }
+
     @Override
     public byte[] engineDoFinal() {
       try {
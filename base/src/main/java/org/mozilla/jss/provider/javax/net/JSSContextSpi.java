@@ -120,19 +120,19 @@ public class JSSContextSpi extends SSLContextSpi {
         return params;
     }
 
-    public class TLSv11 extends JSSContextSpi {
+    public static class TLSv11 extends JSSContextSpi {
         public TLSv11() {
             protocol_version = SSLVersion.TLS_1_1;
         }
     }
 
-    public class TLSv12 extends JSSContextSpi {
+    public static class TLSv12 extends JSSContextSpi {
         public TLSv12() {
             protocol_version = SSLVersion.TLS_1_2;
         }
     }
 
-    public class TLSv13 extends JSSContextSpi {
+    public static class TLSv13 extends JSSContextSpi {
         public TLSv13() {
             protocol_version = SSLVersion.TLS_1_3;
         }
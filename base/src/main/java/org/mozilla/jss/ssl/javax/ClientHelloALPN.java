@@ -0,0 +1,174 @@
+package org.mozilla.jss.ssl.javax;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.mozilla.jss.nss.SSL;
+
+/**
+ * Collects the first ClientHello a server receives from the TLS records
+ * passed to JSSEngine.unwrap(...), and extracts the application protocols
+ * offered in its ALPN extension.
+ *
+ * Once a client has offered protocols, NSS's ALPN callback must select
+ * one of them or fail the handshake. To let a handshake application
+ * protocol selector decline ALPN instead, JSSEngine calls the selector
+ * with the offered protocols before NSS processes the ClientHello, and
+ * configures NSS with the selected protocol alone, if any.
+ */
+class ClientHelloALPN {
+
+    private static final int RECORD_HEADER_LENGTH = 5;
+    private static final int HANDSHAKE_HEADER_LENGTH = 4;
+
+    private static final int CONTENT_TYPE_HANDSHAKE = 22;
+    private static final int HANDSHAKE_CLIENT_HELLO = 1;
+    private static final int EXTENSION_ALPN = 16;
+
+    /**
+     * Give up on ClientHellos larger than this; they still reach NSS.
+     */
+    private static final int MAX_CLIENT_HELLO_LENGTH = 1 << 17;
+
+    private final byte[] recordHeader = new byte[RECORD_HEADER_LENGTH];
+    private int recordHeaderLength;
+    private int recordRemaining;
+
+    private final ByteArrayOutputStream message = new ByteArrayOutputStream();
+    private int messageLength = -1;
+
+    private boolean complete;
+    private List<String> protocols;
+
+    /**
+     * Passes bytes received from the client. Returns true once the whole
+     * ClientHello has been seen, or once it is clear that the data isn't
+     * a ClientHello which can be parsed.
+     */
+    boolean update(byte[] data, int offset, int length) {
+        int end = offset + length;
+
+        while (!complete && offset < end) {
+            if (recordRemaining == 0) {
+                int n = Math.min(RECORD_HEADER_LENGTH - recordHeaderLength, end - offset);
+                System.arraycopy(data, offset, recordHeader, recordHeaderLength, n);
+                recordHeaderLength += n;
+                offset += n;
+
+                if (recordHeaderLength < RECORD_HEADER_LENGTH) {
+                    break;
+                }
+
+                recordHeaderLength = 0;
+                if (recordHeader[0] != CONTENT_TYPE_HANDSHAKE) {
+                    // Not a handshake record (or an SSLv2 ClientHello).
+                    complete = true;
+                    break;
+                }
+
+                recordRemaining = ((recordHeader[3] & 0xFF) << 8) | (recordHeader[4] & 0xFF);
+                continue;
+            }
+
+            int n = Math.min(recordRemaining, end - offset);
+            message.write(data, offset, n);
+            recordRemaining -= n;
+            offset += n;
+
+            checkMessage();
+        }
+
+        return complete;
+    }
+
+    private void checkMessage() {
+        if (messageLength < 0) {
+            if (message.size() < HANDSHAKE_HEADER_LENGTH) {
+                return;
+            }
+
+            byte[] header = message.toByteArray();
+            if (header[0] != HANDSHAKE_CLIENT_HELLO) {
+                complete = true;
+                return;
+            }
+
+            messageLength = ((header[1] & 0xFF) << 16) | ((header[2] & 0xFF) << 8) | (header[3] & 0xFF);
+            if (messageLength > MAX_CLIENT_HELLO_LENGTH) {
+                complete = true;
+                return;
+            }
+        }
+
+        if (message.size() < HANDSHAKE_HEADER_LENGTH + messageLength) {
+            return;
+        }
+
+        complete = true;
+
+        try {
+            protocols = parse(ByteBuffer.wrap(message.toByteArray(),
+                    HANDSHAKE_HEADER_LENGTH, messageLength));
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            // Leave malformed ClientHellos for NSS to reject.
+            protocols = null;
+        }
+    }
+
+    private static List<String> parse(ByteBuffer hello) {
+        // legacy_version and random
+        skip(hello, 2 + 32);
+
+        // legacy_session_id, cipher_suites, legacy_compression_methods
+        skip(hello, hello.get() & 0xFF);
+        skip(hello, hello.getShort() & 0xFFFF);
+        skip(hello, hello.get() & 0xFF);
+
+        if (!hello.hasRemaining()) {
+            // no extensions
+            return null;
+        }
+
+        ByteBuffer extensions = slice(hello, hello.getShort() & 0xFFFF);
+        while (extensions.hasRemaining()) {
+            int type = extensions.getShort() & 0xFFFF;
+            ByteBuffer extension = slice(extensions, extensions.getShort() & 0xFFFF);
+
+            if (type == EXTENSION_ALPN) {
+                ByteBuffer list = slice(extension, extension.getShort() & 0xFFFF);
+                byte[] encoded = new byte[list.remaining()];
+                list.get(encoded);
+                return SSL.DecodeApplicationProtocols(encoded);
+            }
+        }
+
+        return null;
+    }
+
+    private static void skip(ByteBuffer buffer, int length) {
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        buffer.position(buffer.position() + length);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int length) {
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        ByteBuffer result = buffer.slice();
+        result.limit(length);
+        buffer.position(buffer.position() + length);
+        return result;
+    }
+
+    /**
+     * Returns the protocols offered by the client, or null if it offered
+     * none or the ClientHello couldn't be parsed.
+     */
+    List<String> getProtocols() {
+        return protocols;
+    }
+}
@@ -6,8 +6,12 @@ import java.util.Collection;
 import java.util.EventListener;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
 
+import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLEngineResult;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLParameters;
@@ -78,6 +82,17 @@ public abstract class JSSEngine extends javax.net.ssl.SSLEngine {
      */
     protected int bufferSize = Integer.getInteger("jdk.tls.maxHandshakeMessageSize", DEFAULT_BUFFER_SIZE);
 
+    /**
+     * Initial size of the underlying BUFFERs when they are elastic.
+     *
+     * When positive (via the java property 'jss.engine.initialBufferSize'),
+     * buffers are allocated lazily at this size, grow up to bufferSize on
+     * demand, and are released while the connection is idle. When zero (the
+     * default), buffers of bufferSize bytes are allocated up front and kept
+     * for the lifetime of the engine.
+     */
+    protected int initialBufferSize = Integer.getInteger("jss.engine.initialBufferSize", 0);
+
     /**
      * Whether or not this SSLEngine is acting as the client end of the
      * handshake.
@@ -104,6 +119,12 @@ public abstract class JSSEngine extends javax.net.ssl.SSLEngine {
      */
     protected List<Pair<PK11Cert, PK11PrivKey>> certs;
 
+    /**
+     * Shared key materials the certs above come from, when they were set
+     * with setKeyMaterials(JSSKeyMaterials); null otherwise.
+     */
+    protected JSSKeyMaterials key_materials;
+
     /**
      * A list of all KeyManagers available to this JSSEngine instance.
      *
@@ -209,7 +230,50 @@ public abstract class JSSEngine extends javax.net.ssl.SSLEngine {
      * Set of cached server sockets based on the PK11Cert they were
      * initialized with.
      */
-    protected static HashMap<List<Pair<PK11Cert, PK11PrivKey>>, SSLFDProxy> serverTemplates = new HashMap<>();
+    protected static ConcurrentHashMap<List<Pair<PK11Cert, PK11PrivKey>>, SSLFDProxy> serverTemplates = new ConcurrentHashMap<>();
+
+    /**
+     * Server templates carrying stapled OCSP responses; see
+     * getServerTemplate(List, OCSPStapler).
+     */
+    private static ConcurrentHashMap<List<Pair<PK11Cert, PK11PrivKey>>, StapledTemplate> stapledServerTemplates = new ConcurrentHashMap<>();
+
+    /**
+     * Source of OCSP responses to staple when acting as a server; null
+     * when stapling is disabled.
+     */
+    protected OCSPStapler ocsp_stapler;
+
+    /**
+     * Cache of session tickets to resume client sessions from; see
+     * getSessionTicketCache().
+     */
+    protected JSSSessionTicketCache ticket_cache;
+
+    /**
+     * Application protocols to offer (as a client) or select from (as a
+     * server) via ALPN, in order of preference; null when not using ALPN.
+     */
+    protected String[] application_protocols;
+
+    /**
+     * Callback selecting the application protocol as a server, replacing
+     * selection from application_protocols; see
+     * setHandshakeApplicationProtocolSelector(...).
+     */
+    protected BiFunction<SSLEngine, List<String>, String> alpn_selector;
+
+    /**
+     * Application protocol negotiated by the last completed handshake:
+     * null until then, and the empty string when ALPN wasn't used.
+     */
+    protected String application_protocol;
+
+    /**
+     * Number of completed full and resumed handshakes across all engines.
+     */
+    private static final LongAdder fullHandshakes = new LongAdder();
+    private static final LongAdder resumedHandshakes = new LongAdder();
 
     /**
      * Whether or not the session cache has been initialized already.
@@ -336,9 +400,10 @@ public abstract class JSSEngine extends javax.net.ssl.SSLEngine {
      *  - cipher suites
      *  - protocols
      *  - need/want client auth
-     *  - certificate alias
+     *  - certificate alias and key materials
      *  - peer's hostname
      *  - ALPN protocols
+     *  - session ticket enablement and cache
      */
     @Override
     public JSSParameters getSSLParameters() {
@@ -353,8 +418,19 @@ public abstract class JSSEngine extends javax.net.ssl.SSLEngine {
         }
 
         ret.setAliases(certAliases);
+        ret.setKeyMaterials(key_materials);
         ret.setHostname(hostname);
         ret.setListeners(listeners);
+        ret.setOCSPStapler(ocsp_stapler);
+
+        if (config.containsKey(SSL.ENABLE_SESSION_TICKETS)) {
+            ret.setEnableSessionTickets(getEnableSessionTickets());
+        }
+        ret.setSessionTicketCache(ticket_cache);
+
+        if (application_protocols != null) {
+            ret.setApplicationProtocols(application_protocols);
+        }
 
         return ret;
     }
@@ -376,7 +452,8 @@ public abstract class JSSEngine extends javax.net.ssl.SSLEngine {
      *
      * Unlike the parent, this also understands:
      *  - setCertFromAlias when getAlias is non-null,
-     * - setHostname when getHostname is non-null.
+     * - setHostname when getHostname is non-null, and
+     * - setApplicationProtocols when getApplicationProtocols is non-empty.
      *
      * Note: this implementation overrides the one in SSLEngine so that we
      * create a JSSParameters object from the passed SSLParameters (if it is
@@ -418,10 +495,14 @@ public abstract class JSSEngine extends javax.net.ssl.SSLEngine {
         // In the event we haven't explicitly set cert and key, try and infer
         // them from the alias specified... We assume that when the SSLEngine
         // has a certificate already, we want to use them, even if parsed has
-        // a null certificate.
-        if (parsed.getAliases() != null && !parsed.getAliases().isEmpty() && key_managers != null && key_managers.length > 0
-                && (certs == null || certs.isEmpty())) {
-            setCertFromAliases(parsed.getAliases());
+        // a null certificate. Key materials resolved ahead of time are
+        // preferred over looking the aliases up again.
+        if (certs == null || certs.isEmpty()) {
+            if (parsed.getKeyMaterials() != null) {
+                setKeyMaterials(parsed.getKeyMaterials());
+            } else if (parsed.getAliases() != null && !parsed.getAliases().isEmpty() && key_managers != null && key_managers.length > 0) {
+                setCertFromAliases(parsed.getAliases());
+            }
         }
 
         // When we have a value for the peer hostname, we should try and use
@@ -434,6 +515,23 @@ public abstract class JSSEngine extends javax.net.ssl.SSLEngine {
         if (parsed.getListeners() != null) {
             setListeners(parsed.getListeners());
         }
+
+        if (parsed.getOCSPStapler() != null) {
+            setOCSPStapler(parsed.getOCSPStapler());
+        }
+
+        if (parsed.getEnableSessionTickets() != null) {
+            setEnableSessionTickets(parsed.getEnableSessionTickets());
+        }
+
+        if (parsed.getSessionTicketCache() != null) {
+            setSessionTicketCache(parsed.getSessionTicketCache());
+        }
+
+        String[] protocols = parsed.getApplicationProtocols();
+        if (protocols != null && protocols.length > 0) {
+            setApplicationProtocols(protocols);
+        }
     }
 
     /**
@@ -474,62 +572,29 @@ public abstract class JSSEngine extends javax.net.ssl.SSLEngine {
         setCertFromAliases(aliases);
     }
     
+    /**
+     * Choose the certificates to give to the peer from the specified
+     * aliases, looking each of them up in the KeyManagers; see
+     * JSSKeyMaterials.fromAliases(...).
+     *
+     * When aliases is null or empty, this clears all previous certs and
+     * keys.
+     *
+     * Each call searches NSS again; when many engines use the same
+     * aliases, resolve them once and call
+     * setKeyMaterials(JSSKeyMaterials) instead.
+     */
     public void setCertFromAliases(List<String> aliases) throws IllegalArgumentException {
         if (aliases == null || aliases.isEmpty()) {
             // Per calling, semantics, get rid of any existing cert/key we
             // might have.
             certAliases = null;
             certs = null;
+            key_materials = null;
             return;
         }
 
-        certAliases = aliases;
-        certs = new ArrayList<>();
-
-        if (key_managers == null || key_managers.length == 0) {
-            String msg = "Missing or null KeyManagers; refusing to search ";
-            msg += "for cert";
-            throw new IllegalArgumentException(msg);
-        }
-
-        for (String alias: certAliases) {
-            for (X509KeyManager key_manager : key_managers) {
-                if (key_manager == null) {
-                    // Skip this key_manager. This case could occur when
-                    // setKeyManagers(...) is passed an array containing the value
-                    // null, but otherwise shouldn't happen.
-                    continue;
-                }
-
-                if (!(key_manager instanceof JSSKeyManager)) {
-                    // We're explicitly looking for a JSSKeyManager; skip this if
-                    // it doesn't match.
-                    continue;
-                }
-
-                JSSKeyManager jkm = (JSSKeyManager) key_manager;
-
-                // While the return type of CryptoManager.findCertByNickname is
-                // technically org.mozilla.jss.crypto.X509Certificate, in practice
-                // they are always PK11Cert instances. We're going to need an
-                // instance of PK11Cert anyways, in order to correctly pass it to
-                // the native layer.
-                PK11Cert cert = (PK11Cert) jkm.getCertificate(alias);
-                PK11PrivKey key = (PK11PrivKey) jkm.getPrivateKey(alias);
-
-                if (cert != null && key != null) {
-                    // Found a cert and key matching our alias; exit.
-                    certs.add(ImmutablePair.of(cert, key));
-                    updateBufferSizeForPQCKeys(key);
-                    break;
-                }
-            }
-        }
-        if (certs.isEmpty()) {
-            String msg = "JSSEngine.setCertFromAlias: Unable to find ";
-            msg += "certificate and key for specified alias!";
-            throw new IllegalArgumentException(msg);
-        }
+        setKeyMaterials(JSSKeyMaterials.fromAliases(aliases, key_managers));
     }
 
     /**
@@ -799,11 +864,41 @@ public abstract class JSSEngine extends javax.net.ssl.SSLEngine {
 
         if (certs == null) {
             certs = new ArrayList<>();
+        } else if (key_materials != null) {
+            // Don't modify the shared list.
+            certs = new ArrayList<>(certs);
+            key_materials = null;
         }
         certs.add(ImmutablePair.of(our_cert, our_key));
         updateBufferSizeForPQCKeys(our_key);
     }
 
+    /**
+     * Use certificates and keys resolved ahead of time, replacing all
+     * previous ones. The key materials are shared rather than copied,
+     * including the model SSL PRFileDesc server engines are created from,
+     * so no lookups happen here.
+     *
+     * Passing null clears all previous certs and keys.
+     */
+    public void setKeyMaterials(JSSKeyMaterials materials) {
+        logger.debug("JSSEngine: setKeyMaterials(" + (materials == null ? null : materials.getAliases()) + ")");
+
+        key_materials = materials;
+
+        if (materials == null) {
+            certAliases = null;
+            certs = null;
+            return;
+        }
+
+        certAliases = materials.getAliases();
+        certs = materials.getCertificates();
+        if (materials.hasPQCKeys()) {
+            useBufferSizeForPQCKeys();
+        }
+    }
+
     /**
      * Set the internal KeyManager, when present, replacing all previous
      * KeyManagers.
@@ -1000,6 +1095,185 @@ public abstract class JSSEngine extends javax.net.ssl.SSLEngine {
         return listeners;
     }
 
+    /**
+     * Set the OCSPStapler providing OCSP responses to staple to the
+     * server's certificates, or null to disable stapling. Only used when
+     * acting as a server; must be called before the handshake begins.
+     */
+    public void setOCSPStapler(OCSPStapler stapler) {
+        ocsp_stapler = stapler;
+    }
+
+    /**
+     * Gets the OCSPStapler used by this engine, if any.
+     */
+    public OCSPStapler getOCSPStapler() {
+        return ocsp_stapler;
+    }
+
+    /**
+     * Set the application protocols to negotiate via ALPN, in order of
+     * preference, or null to disable ALPN. As a client, these are offered
+     * to the server; as a server, the first protocol offered by the client
+     * which is also in this list is selected, unless a selector has been set
+     * via setHandshakeApplicationProtocolSelector(...). Must be called
+     * before the handshake begins.
+     */
+    public void setApplicationProtocols(String[] protocols) {
+        if (protocols == null || protocols.length == 0) {
+            application_protocols = null;
+            return;
+        }
+
+        application_protocols = protocols.clone();
+    }
+
+    /**
+     * Gets the application protocols to negotiate via ALPN, if any.
+     */
+    public String[] getApplicationProtocols() {
+        if (application_protocols == null) {
+            return null;
+        }
+
+        return application_protocols.clone();
+    }
+
+    /**
+     * Gets the application protocol negotiated via ALPN: null until the
+     * handshake has completed, and the empty string when ALPN wasn't used.
+     */
+    @Override
+    public String getApplicationProtocol() {
+        return application_protocol;
+    }
+
+    /**
+     * Gets the application protocol negotiated via ALPN during the current
+     * handshake, or null when not handshaking or when it isn't known yet.
+     */
+    @Override
+    public String getHandshakeApplicationProtocol() {
+        if (ssl_fd == null || handshake_state == SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING) {
+            return null;
+        }
+
+        return SSL.GetApplicationProtocol(ssl_fd);
+    }
+
+    /**
+     * Set a callback selecting the application protocol as a server, given
+     * the protocols offered by the client. Returning null or the empty
+     * string fails the handshake with a no_application_protocol alert: once
+     * the client has offered protocols, NSS requires that one be chosen.
+     * Must be called before the handshake begins.
+     */
+    @Override
+    public void setHandshakeApplicationProtocolSelector(BiFunction<SSLEngine, List<String>, String> selector) {
+        alpn_selector = selector;
+    }
+
+    @Override
+    public BiFunction<SSLEngine, List<String>, String> getHandshakeApplicationProtocolSelector() {
+        return alpn_selector;
+    }
+
+    /**
+     * Enable or disable session tickets, overriding the NSS default. Must
+     * be called before the handshake begins.
+     *
+     * Servers issue tickets to clients which enable them. Clients with
+     * tickets enabled and a known peer (see JSSEngine(String, int)) store
+     * the tickets they receive in their session ticket cache, and resume
+     * from them on the next connection to the same peer.
+     */
+    public void setEnableSessionTickets(boolean enabled) {
+        config.put(SSL.ENABLE_SESSION_TICKETS, enabled ? 1 : 0);
+    }
+
+    /**
+     * Query whether or not session tickets have been enabled on this
+     * engine via setEnableSessionTickets(...).
+     */
+    public boolean getEnableSessionTickets() {
+        Integer value = config.get(SSL.ENABLE_SESSION_TICKETS);
+        return value != null && value != 0;
+    }
+
+    /**
+     * Set the cache holding session tickets for client connections, to
+     * share tickets between a particular set of engines. Only used when
+     * acting as a client.
+     */
+    public void setSessionTicketCache(JSSSessionTicketCache cache) {
+        ticket_cache = cache;
+    }
+
+    /**
+     * Gets the session ticket cache used by this engine: the one set via
+     * setSessionTicketCache(...), else the process-wide default cache
+     * when session tickets are enabled, else null.
+     */
+    public JSSSessionTicketCache getSessionTicketCache() {
+        if (ticket_cache != null) {
+            return ticket_cache;
+        }
+
+        if (getEnableSessionTickets()) {
+            return JSSSessionTicketCache.getDefault();
+        }
+
+        return null;
+    }
+
+    /**
+     * Record the outcome of a completed handshake in the process-wide
+     * handshake counts.
+     *
+     * To be used by other implementations of JSSEngine.
+     */
+    protected static void recordHandshake(boolean resumed) {
+        if (resumed) {
+            resumedHandshakes.increment();
+        } else {
+            fullHandshakes.increment();
+        }
+    }
+
+    /**
+     * Gets the number of full (non-resumed) handshakes completed by all
+     * JSSEngine instances.
+     */
+    public static long getFullHandshakeCount() {
+        return fullHandshakes.sum();
+    }
+
+    /**
+     * Gets the number of resumed handshakes completed by all JSSEngine
+     * instances.
+     */
+    public static long getResumedHandshakeCount() {
+        return resumedHandshakes.sum();
+    }
+
+    /**
+     * Gets the fraction of completed handshakes which were resumed, or 0
+     * if none have completed.
+     */
+    public static double getResumptionRate() {
+        long resumed = getResumedHandshakeCount();
+        long total = resumed + getFullHandshakeCount();
+        return total == 0 ? 0 : (double) resumed / total;
+    }
+
+    /**
+     * Reset the process-wide handshake counts.
+     */
+    public static void resetHandshakeCounts() {
+        fullHandshakes.reset();
+        resumedHandshakes.reset();
+    }
+
     /**
      * Fires any and all SSLSocketListeners on the specified alert received event.
      *
@@ -1127,25 +1401,114 @@ public abstract class JSSEngine extends javax.net.ssl.SSLEngine {
             return null;
         }
 
-        SSLFDProxy fd = serverTemplates.get(lstCerts);
-        if (fd == null) {
-            PRFDProxy base = PR.NewTCPSocket();
-            fd = SSL.ImportFD(null, base);
-            for(Pair<PK11Cert, PK11PrivKey> pairKey: lstCerts) {
-                if (SSL.ConfigServerCert(fd, pairKey.getLeft(), pairKey.getRight()) != SSL.SECSuccess) {
-                    String msg = "Unable to configure certificate and key on ";
-                    msg += "model SSL PRFileDesc proxy: ";
-                    msg += errorText(PR.GetError());
-                    throw new RuntimeException(msg);
-                }
+        return serverTemplates.computeIfAbsent(lstCerts, JSSEngine::newServerTemplate);
+    }
+
+    /**
+     * Creates a model SSL PRFileDesc configured with the certificates and
+     * keys, without caching it.
+     */
+    static SSLFDProxy newServerTemplate(List<Pair<PK11Cert, PK11PrivKey>> lstCerts) {
+        PRFDProxy base = PR.NewTCPSocket();
+        SSLFDProxy fd = SSL.ImportFD(null, base);
+        for(Pair<PK11Cert, PK11PrivKey> pairKey: lstCerts) {
+            if (SSL.ConfigServerCert(fd, pairKey.getLeft(), pairKey.getRight()) != SSL.SECSuccess) {
+                String msg = "Unable to configure certificate and key on ";
+                msg += "model SSL PRFileDesc proxy: ";
+                msg += errorText(PR.GetError());
+                throw new RuntimeException(msg);
             }
- 
-            serverTemplates.put(lstCerts, fd);
         }
-
         return fd;
     }
 
+    /**
+     * Returns the templated server certificate with the current OCSP
+     * responses from stapler attached, if one exists. The template is
+     * rebuilt whenever the stapler has refreshed one of the responses.
+     */
+    protected static SSLFDProxy getServerTemplate(List<Pair<PK11Cert, PK11PrivKey>> lstCerts, OCSPStapler stapler) {
+        if (stapler == null) {
+            return getServerTemplate(lstCerts);
+        }
+
+        if (lstCerts == null || lstCerts.isEmpty()) {
+            return null;
+        }
+
+        byte[][] responses = new byte[lstCerts.size()][];
+        for (int i = 0; i < responses.length; i++) {
+            responses[i] = stapler.getResponse(lstCerts.get(i).getLeft());
+        }
+
+        StapledTemplate template = stapledServerTemplates.get(lstCerts);
+        if (template != null && template.matches(responses)) {
+            return template.fd;
+        }
+
+        // Only one engine rebuilds the template for the certificates; the
+        // others wait and reuse it.
+        template = stapledServerTemplates.compute(lstCerts, (certs, current) -> {
+            if (current != null && current.matches(responses)) {
+                return current;
+            }
+            return newServerTemplate(certs, responses);
+        });
+
+        return template.fd;
+    }
+
+    /**
+     * Creates a model SSL PRFileDesc configured with the certificates, keys
+     * and OCSP responses, without caching it.
+     */
+    private static StapledTemplate newServerTemplate(List<Pair<PK11Cert, PK11PrivKey>> lstCerts, byte[][] responses) {
+        // The template being replaced isn't closed: another engine could be
+        // importing from it right now. It is released once unreachable.
+        PRFDProxy base = PR.NewTCPSocket();
+        SSLFDProxy fd = SSL.ImportFD(null, base);
+        for (int i = 0; i < responses.length; i++) {
+            Pair<PK11Cert, PK11PrivKey> pairKey = lstCerts.get(i);
+            if (SSL.ConfigServerCertWithOCSP(fd, pairKey.getLeft(), pairKey.getRight(), responses[i]) != SSL.SECSuccess) {
+                String msg = "Unable to configure certificate, key, and ";
+                msg += "OCSP response on model SSL PRFileDesc proxy: ";
+                msg += errorText(PR.GetError());
+                throw new RuntimeException(msg);
+            }
+        }
+
+        return new StapledTemplate(fd, responses);
+    }
+
+    /**
+     * A server template along with the OCSP responses configured on it.
+     */
+    private static class StapledTemplate {
+        final SSLFDProxy fd;
+        final byte[][] responses;
+
+        StapledTemplate(SSLFDProxy fd, byte[][] responses) {
+            this.fd = fd;
+            this.responses = responses;
+        }
+
+        boolean matches(byte[][] current) {
+            if (current.length != responses.length) {
+                return false;
+            }
+
+            // OCSPStapler hands out the same array until a refresh, so
+            // identity is enough here.
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] != responses[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
     /**
      * Calls cleanup only if both inbound and outbound data streams are
      * closed.
@@ -1167,10 +1530,14 @@ public abstract class JSSEngine extends javax.net.ssl.SSLEngine {
      */
     private void updateBufferSizeForPQCKeys(PK11PrivKey key) {
         if (key != null && key.getKeyType() == KeyType.MLDSA) {
-            bufferSize = Integer.getInteger("jdk.tls.maxHandshakeMessageSize", DEFAULT_PQC_BUFFER_SIZE);
-            if (session != null) {
-                session.setPacketBufferSize(bufferSize);
-            }
+            useBufferSizeForPQCKeys();
+        }
+    }
+
+    private void useBufferSizeForPQCKeys() {
+        bufferSize = Integer.getInteger("jdk.tls.maxHandshakeMessageSize", DEFAULT_PQC_BUFFER_SIZE);
+        if (session != null) {
+            session.setPacketBufferSize(bufferSize);
         }
     }
 }
@@ -161,6 +161,12 @@ public class JSSEngineReferenceImpl extends JSSEngine {
      */
     private CertValidationTask task;
 
+    /**
+     * Parser for the first ClientHello, when a server has a handshake
+     * application protocol selector; null once it has been parsed.
+     */
+    private ClientHelloALPN client_hello;
+
     public JSSEngineReferenceImpl() {
         super();
 
@@ -263,6 +269,7 @@ public class JSSEngineReferenceImpl extends JSSEngine {
         }
 
         ssl_fd = null;
+        application_protocol = null;
 
         // Create buffers for interacting with NSS.
         createBuffers();
@@ -280,12 +287,19 @@ public class JSSEngineReferenceImpl extends JSSEngine {
         applyCiphers();
         applyConfig();
 
+        // Apply ALPN configuration, if any.
+        applyApplicationProtocols();
+
         // Apply hostname information (via setURL). Note that this is an
         // extension to SSLEngine for use with NSS; we don't always get this
         // information and so need to work around it sometimes. See
         // initClient() for the workaround.
         applyHosts();
 
+        // Offer a cached session ticket for this peer, if any. This must
+        // come after the hostname has been applied.
+        applySessionTickets();
+
         // Apply TrustManager(s) information for validating the peer's
         // certificate.
         applyTrustManagers();
@@ -302,12 +316,39 @@ public class JSSEngineReferenceImpl extends JSSEngine {
         if (read_buf != null) {
             Buffer.Free(read_buf);
         }
-        read_buf = Buffer.Create(bufferSize);
+        read_buf = newBuffer();
 
         if (write_buf != null) {
             Buffer.Free(write_buf);
         }
-        write_buf = Buffer.Create(bufferSize);
+        write_buf = newBuffer();
+    }
+
+    private BufferProxy newBuffer() {
+        // Elastic buffers start unallocated and grow to bufferSize only when
+        // a record needs it; see releaseIdleBuffers().
+        if (initialBufferSize > 0 && initialBufferSize < bufferSize) {
+            return Buffer.CreateElastic(initialBufferSize, bufferSize);
+        }
+
+        return Buffer.Create(bufferSize);
+    }
+
+    private void releaseIdleBuffers() {
+        // Once the handshake is complete, an empty buffer holds nothing NSS
+        // needs; hand its memory back until the next record arrives. This
+        // is a no-op for fixed-size buffers and for non-empty buffers.
+        if (ssl_fd == null || !ssl_fd.handshakeComplete) {
+            return;
+        }
+
+        if (read_buf != null && Buffer.Release(read_buf)) {
+            debug("JSSEngine: released idle read_buf");
+        }
+
+        if (write_buf != null && Buffer.Release(write_buf)) {
+            debug("JSSEngine: released idle write_buf");
+        }
     }
 
     private void createBufferFD() throws SSLException {
@@ -335,8 +376,14 @@ public class JSSEngineReferenceImpl extends JSSEngine {
             // (containing the desired key and certificate) rather than
             // re-creating it from scratch. This saves a significant amount of
             // time during construction. The implementation lives in JSSEngine,
-            // to be shared by all other JSSEngine implementations.
-            model = getServerTemplate(certs);
+            // to be shared by all other JSSEngine implementations. When
+            // stapling, the template also carries the OCSP responses. Shared
+            // key materials keep their own template.
+            if (key_materials != null) {
+                model = key_materials.getServerTemplate(ocsp_stapler);
+            } else {
+                model = getServerTemplate(certs, ocsp_stapler);
+            }
         }
 
         // Initialize ssl_fd from the model Buffer-backed PRFileDesc.
@@ -544,6 +591,78 @@ public class JSSEngineReferenceImpl extends JSSEngine {
         }
     }
 
+    private void applyApplicationProtocols() throws SSLException {
+        debug("JSSEngine: applyApplicationProtocols()");
+
+        if (as_server && alpn_selector != null) {
+            // The selector is called once the ClientHello has been
+            // received; see selectApplicationProtocol(...).
+            client_hello = new ClientHelloALPN();
+            return;
+        }
+
+        if (application_protocols == null) {
+            return;
+        }
+
+        String[] protocols = application_protocols;
+        if (!as_server && protocols.length > 1) {
+            // A client treats the first protocol as the NPN fallback and
+            // sends it last. Move our last protocol to the front, so that
+            // the protocols are sent in our order of preference.
+            protocols = new String[application_protocols.length];
+            protocols[0] = application_protocols[application_protocols.length - 1];
+            System.arraycopy(application_protocols, 0, protocols, 1, application_protocols.length - 1);
+        }
+
+        configureApplicationProtocols(protocols);
+    }
+
+    private void configureApplicationProtocols(String[] protocols) throws SSLException {
+        if (SSL.OptionSet(ssl_fd, SSL.ENABLE_ALPN, 1) != SSL.SECSuccess) {
+            throw new SSLException("Unable to enable ALPN: " + errorText(PR.GetError()));
+        }
+
+        try {
+            if (SSL.SetApplicationProtocols(ssl_fd, protocols) != SSL.SECSuccess) {
+                throw new SSLException("Unable to configure ALPN protocols: " + errorText(PR.GetError()));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new SSLException("Invalid ALPN protocols: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Passes data received by a server with a handshake application
+     * protocol selector to the ClientHello parser. Once the whole
+     * ClientHello has been received, and before NSS processes it, calls
+     * the selector with the protocols offered by the client, and enables
+     * ALPN with the selected protocol. When the selector returns null or
+     * the empty string, ALPN isn't used.
+     */
+    private void selectApplicationProtocol(byte[] data, int length) throws SSLException {
+        if (!client_hello.update(data, 0, length)) {
+            return;
+        }
+
+        List<String> offered = client_hello.getProtocols();
+        client_hello = null;
+
+        if (offered == null || offered.isEmpty()) {
+            debug("JSSEngine.selectApplicationProtocol(): no protocols offered");
+            return;
+        }
+
+        String selected = alpn_selector.apply(this, offered);
+        debug("JSSEngine.selectApplicationProtocol(): offered " + offered + ", selected " + selected);
+
+        if (selected == null || selected.isEmpty()) {
+            return;
+        }
+
+        configureApplicationProtocols(new String[] { selected });
+    }
+
     private void applyHosts() throws SSLException {
         debug("JSSEngine: applyHosts()");
 
@@ -556,6 +675,36 @@ public class JSSEngineReferenceImpl extends JSSEngine {
         }
     }
 
+    private void applySessionTickets() throws SSLException {
+        debug("JSSEngine: applySessionTickets()");
+
+        JSSSessionTicketCache cache = getSessionTicketCache();
+        if (as_server || cache == null) {
+            return;
+        }
+
+        // Tickets are only useful to a later connection to the same peer,
+        // so we need to know who that is.
+        String host = session.getPeerHost();
+        int port = session.getPeerPort();
+        if (host == null || port == 0) {
+            debug("JSSEngine: no peer information; not caching session tickets.");
+            return;
+        }
+
+        ssl_fd.resumptionTokenHandler = ticket -> cache.put(host, port, ticket);
+        if (SSL.EnableResumptionTokenCallback(ssl_fd) != SSL.SECSuccess) {
+            throw new SSLException("Unable to enable session ticket callback: " + errorText(PR.GetError()));
+        }
+
+        byte[] ticket = cache.take(host, port);
+        if (ticket != null && SSL.SetResumptionToken(ssl_fd, ticket) != SSL.SECSuccess) {
+            // Not fatal: NSS rejects expired tickets, for instance. We'll
+            // perform a full handshake instead.
+            debug("JSSEngine: unable to use cached session ticket: " + errorText(PR.GetError()));
+        }
+    }
+
     private void applyTrustManagers() throws SSLException {
         debug("JSSEngine: applyTrustManagers()");
 
@@ -1137,6 +1286,10 @@ public class JSSEngineReferenceImpl extends JSSEngine {
 
             // Also update our session information here.
             session.refreshData();
+            recordHandshake(session.isResumed());
+
+            String protocol = SSL.GetApplicationProtocol(ssl_fd);
+            application_protocol = protocol == null ? "" : protocol;
 
             // Finally, fire any handshake completed event listeners now.
             fireHandshakeComplete(new SSLHandshakeCompletedEvent(this));
@@ -1274,6 +1427,10 @@ public class JSSEngineReferenceImpl extends JSSEngine {
 
                     wire_data += this_src_write;
                     debug("JSSEngine.unwrap(): Wrote " + this_src_write + " bytes to read_buf.");
+
+                    if (client_hello != null) {
+                        selectApplicationProtocol(wire_buffer, this_src_write);
+                    }
                 }
             }
 
@@ -1344,6 +1501,7 @@ public class JSSEngineReferenceImpl extends JSSEngine {
             returned_finished = true;
         }
 
+        releaseIdleBuffers();
         tryCleanup();
         Reference.reachabilityFence(this);
         return new SSLEngineResult(handshake_status, handshake_state, wire_data, app_data);
@@ -1665,6 +1823,7 @@ public class JSSEngineReferenceImpl extends JSSEngine {
             returned_finished = true;
         }
 
+        releaseIdleBuffers();
         tryCleanup();
         Reference.reachabilityFence(this);
         return new SSLEngineResult(handshake_status, handshake_state, app_data, wire_data);
@@ -0,0 +1,163 @@
+package org.mozilla.jss.ssl.javax;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.net.ssl.KeyManager;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.mozilla.jss.nss.SSLFDProxy;
+import org.mozilla.jss.pkcs11.KeyType;
+import org.mozilla.jss.pkcs11.PK11Cert;
+import org.mozilla.jss.pkcs11.PK11PrivKey;
+import org.mozilla.jss.provider.javax.crypto.JSSKeyManager;
+
+/**
+ * JSSKeyMaterials holds the certificates and private keys found for a
+ * list of aliases, resolved once and shared by many JSSEngines.
+ *
+ * Calling JSSEngine.setCertFromAliases(...) looks up every certificate
+ * and key in NSS again and creates new PK11Cert and PK11PrivKey objects.
+ * A server creating an engine per connection should instead resolve the
+ * aliases once, when its SSLContext is initialized, and pass the result
+ * to each engine with JSSEngine.setKeyMaterials(JSSKeyMaterials) or via
+ * JSSParameters.setKeyMaterials(...). The engines then share the model
+ * SSL PRFileDesc configured with these certificates, so setting up a
+ * connection does no lookups.
+ *
+ * Instances are immutable; to pick up renewed certificates, resolve the
+ * aliases again.
+ */
+public final class JSSKeyMaterials {
+
+    private final List<String> aliases;
+    private final List<Pair<PK11Cert, PK11PrivKey>> certs;
+    private final boolean hasPQCKeys;
+
+    /**
+     * Model SSL PRFileDesc configured with the certificates and keys;
+     * created the first time a server engine needs it.
+     */
+    private volatile SSLFDProxy serverTemplate;
+
+    private JSSKeyMaterials(List<String> aliases, List<Pair<PK11Cert, PK11PrivKey>> certs) {
+        this.aliases = Collections.unmodifiableList(new ArrayList<>(aliases));
+        this.certs = Collections.unmodifiableList(certs);
+
+        boolean pqc = false;
+        for (Pair<PK11Cert, PK11PrivKey> pair : certs) {
+            if (pair.getRight().getKeyType() == KeyType.MLDSA) {
+                pqc = true;
+            }
+        }
+        hasPQCKeys = pqc;
+    }
+
+    /**
+     * Find the certificate and key for each alias, using the first
+     * JSSKeyManager which has both. Aliases without a certificate and key
+     * are skipped.
+     *
+     * @param aliases certificate nicknames to look up.
+     * @param keyManagers KeyManagers to search; those which aren't
+     *        JSSKeyManagers are ignored.
+     * @throws IllegalArgumentException if no aliases or KeyManagers are
+     *         given, or no certificate and key was found for any alias.
+     */
+    public static JSSKeyMaterials fromAliases(List<String> aliases, KeyManager[] keyManagers) throws IllegalArgumentException {
+        if (aliases == null || aliases.isEmpty()) {
+            throw new IllegalArgumentException("JSSKeyMaterials: missing certificate aliases");
+        }
+
+        if (keyManagers == null || keyManagers.length == 0) {
+            String msg = "Missing or null KeyManagers; refusing to search ";
+            msg += "for cert";
+            throw new IllegalArgumentException(msg);
+        }
+
+        List<Pair<PK11Cert, PK11PrivKey>> certs = new ArrayList<>();
+
+        for (String alias : aliases) {
+            for (KeyManager key_manager : keyManagers) {
+                if (!(key_manager instanceof JSSKeyManager)) {
+                    // We're explicitly looking for a JSSKeyManager; skip this
+                    // if it doesn't match (or is null).
+                    continue;
+                }
+
+                JSSKeyManager jkm = (JSSKeyManager) key_manager;
+
+                // While the return type of CryptoManager.findCertByNickname is
+                // technically org.mozilla.jss.crypto.X509Certificate, in practice
+                // they are always PK11Cert instances. We're going to need an
+                // instance of PK11Cert anyways, in order to correctly pass it to
+                // the native layer.
+                PK11Cert cert = (PK11Cert) jkm.getCertificate(alias);
+                PK11PrivKey key = (PK11PrivKey) jkm.getPrivateKey(alias);
+
+                if (cert != null && key != null) {
+                    // Found a cert and key matching our alias; exit.
+                    certs.add(ImmutablePair.of(cert, key));
+                    break;
+                }
+            }
+        }
+
+        if (certs.isEmpty()) {
+            String msg = "JSSKeyMaterials: Unable to find ";
+            msg += "certificate and key for specified alias!";
+            throw new IllegalArgumentException(msg);
+        }
+
+        return new JSSKeyMaterials(aliases, certs);
+    }
+
+    /**
+     * Aliases these key materials were resolved from.
+     */
+    public List<String> getAliases() {
+        return aliases;
+    }
+
+    /**
+     * Certificates and their keys, in the order of the aliases; the list
+     * can't be modified.
+     */
+    public List<Pair<PK11Cert, PK11PrivKey>> getCertificates() {
+        return certs;
+    }
+
+    /**
+     * Whether any of the keys is a post-quantum key, requiring larger
+     * handshake buffers.
+     */
+    boolean hasPQCKeys() {
+        return hasPQCKeys;
+    }
+
+    /**
+     * Returns the model SSL PRFileDesc for server engines. Without a
+     * stapler it is created once and kept here; with one, it comes from
+     * the templates shared by all engines since it changes whenever the
+     * OCSP responses are refreshed.
+     */
+    SSLFDProxy getServerTemplate(OCSPStapler stapler) {
+        if (stapler != null) {
+            return JSSEngine.getServerTemplate(certs, stapler);
+        }
+
+        SSLFDProxy fd = serverTemplate;
+        if (fd == null) {
+            synchronized (this) {
+                fd = serverTemplate;
+                if (fd == null) {
+                    fd = JSSEngine.newServerTemplate(certs);
+                    serverTemplate = fd;
+                }
+            }
+        }
+        return fd;
+    }
+}
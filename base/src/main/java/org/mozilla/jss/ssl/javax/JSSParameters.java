@@ -29,8 +29,12 @@ public class JSSParameters extends SSLParameters {
     private SSLCipher[] suites;
     private SSLVersionRange range;
     private List<String> aliases;
+    private JSSKeyMaterials keyMaterials;
     private String hostname;
     private Collection<? extends EventListener> listeners;
+    private OCSPStapler ocspStapler;
+    private Boolean sessionTickets;
+    private JSSSessionTicketCache ticketCache;
 
     public JSSParameters() {
         // Choose our default set of SSLParameters here; default to null
@@ -52,6 +56,7 @@ public class JSSParameters extends SSLParameters {
         setServerNames(downcast.getServerNames());
         setSNIMatchers(downcast.getSNIMatchers());
         setUseCipherSuitesOrder(downcast.getUseCipherSuitesOrder());
+        setApplicationProtocols(downcast.getApplicationProtocols());
 
         if (downcast.getWantClientAuth()) {
             setWantClientAuth(downcast.getWantClientAuth());
@@ -192,6 +197,19 @@ public class JSSParameters extends SSLParameters {
         aliases = certAliases;
     }
 
+    public JSSKeyMaterials getKeyMaterials() {
+        return keyMaterials;
+    }
+
+    /**
+     * Set certificates and keys already resolved from their aliases; when
+     * present, JSSEngine uses them instead of looking up the aliases. See
+     * JSSEngine.setKeyMaterials(JSSKeyMaterials).
+     */
+    public void setKeyMaterials(JSSKeyMaterials materials) {
+        keyMaterials = materials;
+    }
+
     public String getHostname() {
         return hostname;
     }
@@ -207,4 +225,44 @@ public class JSSParameters extends SSLParameters {
     public void setListeners(Collection<? extends EventListener> new_listeners) {
         listeners = new_listeners;
     }
+
+    public OCSPStapler getOCSPStapler() {
+        return ocspStapler;
+    }
+
+    /**
+     * Set the OCSPStapler providing OCSP responses for a server's
+     * certificates; see JSSEngine.setOCSPStapler(...).
+     */
+    public void setOCSPStapler(OCSPStapler stapler) {
+        ocspStapler = stapler;
+    }
+
+    /**
+     * Whether session tickets are enabled; null when this hasn't been set
+     * and the NSS default applies.
+     */
+    public Boolean getEnableSessionTickets() {
+        return sessionTickets;
+    }
+
+    /**
+     * Enable or disable session tickets; see
+     * JSSEngine.setEnableSessionTickets(...).
+     */
+    public void setEnableSessionTickets(boolean enabled) {
+        sessionTickets = enabled;
+    }
+
+    public JSSSessionTicketCache getSessionTicketCache() {
+        return ticketCache;
+    }
+
+    /**
+     * Set the cache holding session tickets for client connections; see
+     * JSSEngine.setSessionTicketCache(...).
+     */
+    public void setSessionTicketCache(JSSSessionTicketCache cache) {
+        ticketCache = cache;
+    }
 }
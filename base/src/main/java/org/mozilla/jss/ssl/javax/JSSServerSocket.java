@@ -255,6 +255,16 @@ public class JSSServerSocket extends SSLServerSocket {
         engine.setKeyMaterials(our_cert, our_key);
     }
 
+    /**
+     * Set the certificates this SSLSocket will utilize from key materials
+     * resolved ahead of time; accepted sockets share them.
+     *
+     * @see JSSEngine#setKeyMaterials(JSSKeyMaterials)
+     */
+    public void setKeyMaterials(JSSKeyMaterials materials) {
+        engine.setKeyMaterials(materials);
+    }
+
     /**
      * Set the KeyManager this SSLSocket will utilize to select a key.
      *
@@ -312,6 +322,26 @@ public class JSSServerSocket extends SSLServerSocket {
         return engine.getListeners();
     }
 
+    /**
+     * Set the OCSPStapler providing OCSP responses to staple to this
+     * server's certificate.
+     *
+     * @see JSSEngine#setOCSPStapler(OCSPStapler)
+     */
+    public void setOCSPStapler(OCSPStapler stapler) {
+        engine.setOCSPStapler(stapler);
+    }
+
+    /**
+     * Gets the OCSPStapler used by sockets accepted from this server
+     * socket, if any.
+     *
+     * @see JSSEngine#getOCSPStapler()
+     */
+    public OCSPStapler getOCSPStapler() {
+        return engine.getOCSPStapler();
+    }
+
     /* == stubs over SSLServerSocket == */
 
     /**
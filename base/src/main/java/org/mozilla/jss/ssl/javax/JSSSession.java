@@ -11,6 +11,7 @@ import javax.net.ssl.SSLSessionBindingListener;
 import javax.net.ssl.SSLSessionContext;
 import javax.security.cert.X509Certificate;
 
+import org.mozilla.jss.crypto.ObjectNotFoundException;
 import org.mozilla.jss.nss.SSL;
 import org.mozilla.jss.nss.SSLChannelInfo;
 import org.mozilla.jss.nss.SSLFDProxy;
@@ -33,6 +34,7 @@ public class JSSSession implements SSLSession, AutoCloseable {
     private long lastAccessTime;
     private long expirationTime;
     private byte[] sessionID;
+    private boolean resumed;
 
     private HashMap<String, Object> appDataMap;
 
@@ -149,6 +151,12 @@ public class JSSSession implements SSLSession, AutoCloseable {
 
             setCipherSuite(info.getCipherSuite());
             setProtocol(info.getProtocolVersion());
+
+            try {
+                setResumed(info.getResumed());
+            } catch (ObjectNotFoundException e) {
+                // NSS is too old to tell us; assume a full handshake.
+            }
         }
     }
 
@@ -156,6 +164,19 @@ public class JSSSession implements SSLSession, AutoCloseable {
         expirationTime = when;
     }
 
+    /**
+     * Whether or not the handshake establishing this session resumed a
+     * previous session (from a session ID or ticket), rather than being a
+     * full handshake.
+     */
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    protected void setResumed(boolean resumed) {
+        this.resumed = resumed;
+    }
+
     @Override
     public boolean isValid() {
         return !closed && System.currentTimeMillis() < getExpirationTime();
@@ -0,0 +1,183 @@
+package org.mozilla.jss.ssl.javax;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Client-side cache of TLS session tickets (NSS resumption tokens), keyed
+ * by the peer's host and port.
+ *
+ * Tickets are stored here when a server issues them to a client JSSEngine
+ * and handed to the next client JSSEngine connecting to the same peer, so
+ * that it can resume the session instead of performing a full handshake.
+ * Unlike the state of any individual JSSEngine, the cache survives the
+ * engine's teardown.
+ *
+ * Each ticket is used at most once: TLS 1.3 servers issue several tickets
+ * per connection precisely so that clients don't reuse them. When a peer
+ * has more than maxTicketsPerPeer tickets cached, the oldest is dropped;
+ * when more than maxPeers peers have tickets cached, the least recently
+ * used peer is dropped. Expired tickets are rejected by NSS on use, after
+ * which a full handshake occurs.
+ *
+ * This class is thread-safe.
+ */
+public class JSSSessionTicketCache {
+    public static final int DEFAULT_MAX_PEERS = 1024;
+    public static final int DEFAULT_MAX_TICKETS_PER_PEER = 4;
+
+    private static final JSSSessionTicketCache defaultCache = new JSSSessionTicketCache();
+
+    private int maxPeers;
+    private int maxTicketsPerPeer;
+
+    private final LinkedHashMap<String, ArrayDeque<byte[]>> tickets;
+
+    private long hits;
+    private long misses;
+
+    public JSSSessionTicketCache() {
+        this(DEFAULT_MAX_PEERS, DEFAULT_MAX_TICKETS_PER_PEER);
+    }
+
+    public JSSSessionTicketCache(int maxPeers, int maxTicketsPerPeer) {
+        if (maxPeers < 1 || maxTicketsPerPeer < 1) {
+            throw new IllegalArgumentException("Cache limits must be positive: " + maxPeers + ", " + maxTicketsPerPeer);
+        }
+
+        this.maxPeers = maxPeers;
+        this.maxTicketsPerPeer = maxTicketsPerPeer;
+
+        // Access ordering makes the eldest entry the least recently used.
+        tickets = new LinkedHashMap<String, ArrayDeque<byte[]>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ArrayDeque<byte[]>> eldest) {
+                return size() > JSSSessionTicketCache.this.maxPeers;
+            }
+        };
+    }
+
+    /**
+     * Gets the process-wide cache used by client JSSEngines which have
+     * session tickets enabled but no cache of their own.
+     */
+    public static JSSSessionTicketCache getDefault() {
+        return defaultCache;
+    }
+
+    private static String key(String host, int port) {
+        return host + ":" + port;
+    }
+
+    /**
+     * Store a ticket received from the given peer.
+     */
+    public synchronized void put(String host, int port, byte[] ticket) {
+        if (host == null || ticket == null || ticket.length == 0) {
+            return;
+        }
+
+        ArrayDeque<byte[]> queue = tickets.computeIfAbsent(key(host, port), k -> new ArrayDeque<>());
+        queue.addLast(ticket);
+        while (queue.size() > maxTicketsPerPeer) {
+            queue.removeFirst();
+        }
+    }
+
+    /**
+     * Remove and return the most recently received ticket for the given
+     * peer, or null if none is cached.
+     */
+    public synchronized byte[] take(String host, int port) {
+        if (host == null) {
+            return null;
+        }
+
+        String key = key(host, port);
+        ArrayDeque<byte[]> queue = tickets.get(key);
+        if (queue == null) {
+            misses += 1;
+            return null;
+        }
+
+        byte[] ticket = queue.removeLast();
+        if (queue.isEmpty()) {
+            tickets.remove(key);
+        }
+
+        hits += 1;
+        return ticket;
+    }
+
+    /**
+     * Remove all tickets cached for the given peer.
+     */
+    public synchronized void remove(String host, int port) {
+        tickets.remove(key(host, port));
+    }
+
+    /**
+     * Remove all cached tickets.
+     */
+    public synchronized void clear() {
+        tickets.clear();
+    }
+
+    /**
+     * Gets the number of peers with cached tickets.
+     */
+    public synchronized int size() {
+        return tickets.size();
+    }
+
+    /**
+     * Gets the number of calls to take(...) which returned a ticket.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of calls to take(...) which found no ticket.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int getMaxPeers() {
+        return maxPeers;
+    }
+
+    /**
+     * Set the maximum number of peers to cache tickets for, evicting the
+     * least recently used peers as necessary.
+     */
+    public synchronized void setMaxPeers(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("Maximum number of peers must be positive: " + max);
+        }
+
+        maxPeers = max;
+        while (tickets.size() > maxPeers) {
+            String eldest = tickets.keySet().iterator().next();
+            tickets.remove(eldest);
+        }
+    }
+
+    public synchronized int getMaxTicketsPerPeer() {
+        return maxTicketsPerPeer;
+    }
+
+    /**
+     * Set the maximum number of tickets cached for a single peer. Takes
+     * effect as new tickets are stored.
+     */
+    public synchronized void setMaxTicketsPerPeer(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("Maximum number of tickets must be positive: " + max);
+        }
+
+        maxTicketsPerPeer = max;
+    }
+}
@@ -15,7 +15,9 @@ import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EventListener;
+import java.util.List;
 import java.util.Set;
+import java.util.function.BiFunction;
 
 import javax.net.ssl.HandshakeCompletedEvent;
 import javax.net.ssl.HandshakeCompletedListener;
@@ -94,6 +96,11 @@ public class JSSSocket extends SSLSocket {
      */
     private ArrayList<HandshakeCompletedListener> handshakeCallbacks = new ArrayList<>();
 
+    /**
+     * Selector passed to setHandshakeApplicationProtocolSelector(...).
+     */
+    private BiFunction<javax.net.ssl.SSLSocket, List<String>, String> alpnSelector;
+
     /**
      * The socket this JSSSocket was created over; all read/write operations
      * go through this socket and all information exposed via Socket members
@@ -733,6 +740,50 @@ public class JSSSocket extends SSLSocket {
         engine.setSSLParameters(params);
     }
 
+    /**
+     * Get the application protocol negotiated via ALPN.
+     *
+     * @see JSSEngine#getApplicationProtocol()
+     * @see javax.net.ssl.SSLSocket#getApplicationProtocol()
+     */
+    @Override
+    public String getApplicationProtocol() {
+        return engine.getApplicationProtocol();
+    }
+
+    /**
+     * Get the application protocol negotiated via ALPN during the current
+     * handshake.
+     *
+     * @see JSSEngine#getHandshakeApplicationProtocol()
+     * @see javax.net.ssl.SSLSocket#getHandshakeApplicationProtocol()
+     */
+    @Override
+    public String getHandshakeApplicationProtocol() {
+        return engine.getHandshakeApplicationProtocol();
+    }
+
+    /**
+     * Set the callback selecting the application protocol as a server.
+     *
+     * @see JSSEngine#setHandshakeApplicationProtocolSelector(BiFunction)
+     * @see javax.net.ssl.SSLSocket#setHandshakeApplicationProtocolSelector(BiFunction)
+     */
+    @Override
+    public void setHandshakeApplicationProtocolSelector(BiFunction<javax.net.ssl.SSLSocket, List<String>, String> selector) {
+        alpnSelector = selector;
+        if (selector == null) {
+            engine.setHandshakeApplicationProtocolSelector(null);
+        } else {
+            engine.setHandshakeApplicationProtocolSelector((eng, protocols) -> selector.apply(this, protocols));
+        }
+    }
+
+    @Override
+    public BiFunction<javax.net.ssl.SSLSocket, List<String>, String> getHandshakeApplicationProtocolSelector() {
+        return alpnSelector;
+    }
+
     /* == stubs over Socket == */
 
     @Override
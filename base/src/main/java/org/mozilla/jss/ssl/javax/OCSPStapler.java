@@ -0,0 +1,441 @@
+package org.mozilla.jss.ssl.javax;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.mozilla.jss.netscape.security.util.ObjectIdentifier;
+import org.mozilla.jss.nss.Cert;
+import org.mozilla.jss.nss.PR;
+import org.mozilla.jss.pkcs11.PK11Cert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * OCSPStapler keeps OCSP responses for server certificates so that a
+ * server-side JSSEngine can staple them to its handshakes.
+ *
+ * Responses are fetched in the background: the first time a certificate is
+ * seen, and again before the previous response's nextUpdate time. A
+ * handshake never waits on the OCSP responder; until the first response
+ * arrives (or after the last one expires), handshakes proceed without a
+ * stapled response and the client falls back to its own checking.
+ *
+ * Responses come from a Fetcher. The default one asks NSS to query the
+ * responder from the certificate's Authority Information Access extension
+ * (or a fixed responder URL); tests and other callers can supply their own.
+ *
+ * A single OCSPStapler is meant to be shared by every JSSEngine using the
+ * same certificates, for example via JSSParameters.setOCSPStapler(...).
+ */
+public class OCSPStapler implements AutoCloseable {
+
+    public static Logger logger = LoggerFactory.getLogger(OCSPStapler.class);
+
+    /**
+     * Source of DER-encoded OCSP responses for a certificate.
+     */
+    @FunctionalInterface
+    public interface Fetcher {
+        /**
+         * Returns the DER encoding of an OCSPResponse for cert. Called from
+         * the stapler's scheduler thread, never from a handshake.
+         */
+        byte[] fetch(PK11Cert cert) throws Exception;
+    }
+
+    /**
+     * Default interval between fetches when a response has no nextUpdate
+     * time: one hour.
+     */
+    public static final long DEFAULT_REFRESH_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Default lower bound on the interval between fetches: one minute.
+     */
+    public static final long DEFAULT_MIN_REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Default interval between attempts after a failed fetch: one minute.
+     */
+    public static final long DEFAULT_RETRY_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private static final ObjectIdentifier BASIC_RESPONSE_OID =
+        new ObjectIdentifier("1.3.6.1.5.5.7.48.1.1");
+
+    private final Fetcher fetcher;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+
+    private volatile long refreshInterval = DEFAULT_REFRESH_INTERVAL;
+    private volatile long minRefreshInterval = DEFAULT_MIN_REFRESH_INTERVAL;
+    private volatile long retryInterval = DEFAULT_RETRY_INTERVAL;
+
+    private final Map<PK11Cert, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * Creates a stapler which fetches responses through NSS from the
+     * responder named in each certificate.
+     */
+    public OCSPStapler() {
+        this((String) null);
+    }
+
+    /**
+     * Creates a stapler which fetches responses through NSS from the given
+     * responder, or from the responder named in each certificate when
+     * responderURL is null.
+     */
+    public OCSPStapler(String responderURL) {
+        this(cert -> fetchFromNSS(cert, responderURL), null);
+    }
+
+    /**
+     * Creates a stapler using the given fetcher and scheduler. When
+     * scheduler is null, the stapler creates (and on close, shuts down) a
+     * single daemon thread of its own.
+     */
+    public OCSPStapler(Fetcher fetcher, ScheduledExecutorService scheduler) {
+        if (fetcher == null) {
+            throw new IllegalArgumentException("OCSPStapler: fetcher must not be null");
+        }
+
+        this.fetcher = fetcher;
+        if (scheduler == null) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "JSS OCSP stapling");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.ownsScheduler = true;
+        } else {
+            this.scheduler = scheduler;
+            this.ownsScheduler = false;
+        }
+    }
+
+    /**
+     * Set the interval, in milliseconds, between fetches for responses
+     * which don't carry a nextUpdate time.
+     */
+    public void setRefreshInterval(long millis) {
+        refreshInterval = millis;
+    }
+
+    public long getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    /**
+     * Set the minimum interval, in milliseconds, between fetches for a
+     * single certificate, regardless of how soon its response expires.
+     */
+    public void setMinRefreshInterval(long millis) {
+        minRefreshInterval = millis;
+    }
+
+    public long getMinRefreshInterval() {
+        return minRefreshInterval;
+    }
+
+    /**
+     * Set the interval, in milliseconds, before retrying a failed fetch.
+     */
+    public void setRetryInterval(long millis) {
+        retryInterval = millis;
+    }
+
+    public long getRetryInterval() {
+        return retryInterval;
+    }
+
+    /**
+     * Start keeping responses for the given certificate, if not already
+     * doing so. The first fetch happens in the background.
+     */
+    public void register(PK11Cert cert) {
+        getEntry(cert);
+    }
+
+    /**
+     * Start keeping responses for each of the given certificates.
+     */
+    public void register(Collection<PK11Cert> certs) {
+        for (PK11Cert cert : certs) {
+            register(cert);
+        }
+    }
+
+    /**
+     * Stop keeping responses for the given certificate.
+     */
+    public void unregister(PK11Cert cert) {
+        Entry entry = entries.remove(cert);
+        if (entry != null) {
+            entry.cancel();
+        }
+    }
+
+    /**
+     * Get the current DER-encoded OCSPResponse to staple for cert, or null
+     * if none is available or the last one has expired. This never blocks;
+     * a certificate seen for the first time is registered and null is
+     * returned until its first response arrives.
+     *
+     * The same array is returned until the response is refreshed; callers
+     * must not modify it.
+     */
+    public byte[] getResponse(PK11Cert cert) {
+        if (cert == null || closed) {
+            return null;
+        }
+
+        Entry entry = getEntry(cert);
+        Response current = entry.current;
+        if (current == null) {
+            return null;
+        }
+
+        if (current.nextUpdate != null && current.nextUpdate.getTime() <= System.currentTimeMillis()) {
+            // Expired; don't staple it. A fetch is already scheduled.
+            return null;
+        }
+
+        return current.encoded;
+    }
+
+    /**
+     * Fetch a new response for cert in the background, regardless of when
+     * the next refresh was due.
+     */
+    public void refresh(PK11Cert cert) {
+        getEntry(cert).schedule(0);
+    }
+
+    /**
+     * Stop all background fetches. When the stapler created its own
+     * scheduler, it is shut down.
+     */
+    @Override
+    public void close() {
+        closed = true;
+
+        for (Entry entry : entries.values()) {
+            entry.cancel();
+        }
+        entries.clear();
+
+        if (ownsScheduler) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private Entry getEntry(PK11Cert cert) {
+        return entries.computeIfAbsent(cert, c -> {
+            Entry entry = new Entry(c);
+            entry.schedule(0);
+            return entry;
+        });
+    }
+
+    private static byte[] fetchFromNSS(PK11Cert cert, String responderURL) throws IOException {
+        byte[] result = Cert.GetEncodedOCSPResponse(cert, responderURL);
+        if (result == null) {
+            String msg = "Unable to fetch OCSP response for " + cert.getSubjectDN() + ": ";
+            msg += PR.ErrorToName(PR.GetError());
+            throw new IOException(msg);
+        }
+
+        return result;
+    }
+
+    /**
+     * State kept for a single certificate.
+     */
+    private class Entry implements Runnable {
+        private final PK11Cert cert;
+        private volatile Response current;
+        private ScheduledFuture<?> task;
+        private boolean cancelled;
+
+        Entry(PK11Cert cert) {
+            this.cert = cert;
+        }
+
+        synchronized void schedule(long delay) {
+            // A fetch already running when the entry was cancelled must
+            // not reschedule itself.
+            if (closed || cancelled) {
+                return;
+            }
+
+            if (task != null) {
+                task.cancel(false);
+            }
+
+            task = scheduler.schedule(this, delay, TimeUnit.MILLISECONDS);
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+
+            if (task != null) {
+                task.cancel(false);
+                task = null;
+            }
+        }
+
+        @Override
+        public void run() {
+            long delay;
+
+            try {
+                Response response = Response.parse(fetcher.fetch(cert), cert.getSerialNumber());
+                current = response;
+                delay = nextDelay(response);
+
+                logger.debug("OCSPStapler: refreshed response for " + cert.getSubjectDN() +
+                             "; next refresh in " + delay + "ms");
+            } catch (Exception e) {
+                // Keep stapling the previous response, if any, until it
+                // expires.
+                delay = retryInterval;
+                logger.warn("OCSPStapler: unable to refresh response for " +
+                            cert.getSubjectDN() + ": " + e.getMessage(), e);
+            }
+
+            schedule(delay);
+        }
+    }
+
+    private long nextDelay(Response response) {
+        if (response.nextUpdate == null) {
+            return refreshInterval;
+        }
+
+        // Refresh halfway through the response's remaining lifetime, so a
+        // failed fetch still leaves time to retry before it expires.
+        long now = System.currentTimeMillis();
+        long remaining = response.nextUpdate.getTime() - now;
+        return Math.max(minRefreshInterval, remaining / 2);
+    }
+
+    /**
+     * The parts of an OCSPResponse needed for stapling (RFC 6960).
+     */
+    static class Response {
+        final byte[] encoded;
+        final Date thisUpdate;
+        final Date nextUpdate;
+
+        Response(byte[] encoded, Date thisUpdate, Date nextUpdate) {
+            this.encoded = encoded;
+            this.thisUpdate = thisUpdate;
+            this.nextUpdate = nextUpdate;
+        }
+
+        /**
+         * Parses a DER-encoded OCSPResponse, checking that it was
+         * successful and has a SingleResponse for the given serial number.
+         *
+         * The signature isn't verified here; that is up to the client
+         * receiving the stapled response.
+         */
+        static Response parse(byte[] encoded, BigInteger serial) throws IOException {
+            if (encoded == null) {
+                throw new IOException("OCSPStapler: no response");
+            }
+
+            // OCSPResponse ::= SEQUENCE {
+            //     responseStatus  OCSPResponseStatus,
+            //     responseBytes   [0] EXPLICIT ResponseBytes OPTIONAL }
+            DerValue ocspResponse = new DerValue(encoded);
+            if (ocspResponse.tag != DerValue.tag_Sequence) {
+                throw new IOException("OCSPStapler: response is not a SEQUENCE");
+            }
+
+            int status = ocspResponse.data.getDerValue().getEnumerated();
+            if (status != 0) {
+                throw new IOException("OCSPStapler: responder returned status " + status);
+            }
+
+            if (ocspResponse.data.available() == 0) {
+                throw new IOException("OCSPStapler: successful response without responseBytes");
+            }
+
+            // ResponseBytes ::= SEQUENCE {
+            //     responseType  OBJECT IDENTIFIER,
+            //     response      OCTET STRING }
+            DerValue wrapper = ocspResponse.data.getDerValue();
+            if (!wrapper.isContextSpecific((byte) 0)) {
+                throw new IOException("OCSPStapler: unexpected responseBytes tag");
+            }
+            DerValue responseBytes = wrapper.data.getDerValue();
+            ObjectIdentifier type = responseBytes.data.getOID();
+            if (!BASIC_RESPONSE_OID.equals(type)) {
+                throw new IOException("OCSPStapler: unsupported response type " + type);
+            }
+
+            // BasicOCSPResponse ::= SEQUENCE {
+            //     tbsResponseData  ResponseData, ... }
+            DerValue basic = new DerValue(responseBytes.data.getOctetString());
+            DerValue tbs = basic.data.getDerValue();
+
+            // ResponseData ::= SEQUENCE {
+            //     version      [0] EXPLICIT Version DEFAULT v1,
+            //     responderID  ResponderID,
+            //     producedAt   GeneralizedTime,
+            //     responses    SEQUENCE OF SingleResponse, ... }
+            if (tbs.data.getDerValue().isContextSpecific((byte) 0)) {
+                // That was the version; skip the responderID too.
+                tbs.data.getDerValue();
+            }
+            tbs.data.getGeneralizedTime();
+
+            DerValue[] responses = tbs.data.getSequence(1);
+            for (DerValue single : responses) {
+                // SingleResponse ::= SEQUENCE {
+                //     certID      CertID,
+                //     certStatus  CertStatus,
+                //     thisUpdate  GeneralizedTime,
+                //     nextUpdate  [0] EXPLICIT GeneralizedTime OPTIONAL, ... }
+                DerValue certID = single.data.getDerValue();
+
+                // CertID ::= SEQUENCE {
+                //     hashAlgorithm, issuerNameHash, issuerKeyHash,
+                //     serialNumber  CertificateSerialNumber }
+                certID.data.getDerValue();
+                certID.data.getDerValue();
+                certID.data.getDerValue();
+                BigInteger responseSerial = certID.data.getInteger().toBigInteger();
+                if (serial != null && !serial.equals(responseSerial)) {
+                    continue;
+                }
+
+                // Any status is stapled; it's for the client to act on.
+                single.data.getDerValue();
+                Date thisUpdate = single.data.getGeneralizedTime();
+                Date nextUpdate = null;
+                if (single.data.available() > 0) {
+                    DerValue next = single.data.getDerValue();
+                    if (next.isContextSpecific((byte) 0)) {
+                        nextUpdate = next.data.getGeneralizedTime();
+                    }
+                }
+
+                return new Response(encoded, thisUpdate, nextUpdate);
+            }
+
+            throw new IOException("OCSPStapler: response does not cover serial number " + serial);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+
+package org.mozilla.jss.symkey;
+
+import org.mozilla.jss.pkcs11.PK11SymKey;
+
+/**
+ * The keys and cryptograms needed to open an SCP01 secure channel with a
+ * card, as computed by SessionKey.ComputeSecureChannelKeys().
+ *
+ * The MAC and encryption session keys are wrapped with the shared secret
+ * transport key, exactly as returned by SessionKey.ComputeSessionKey() and
+ * SessionKey.ComputeEncSessionKey(). The KEK is the card's key encryption
+ * key, as returned by SessionKey.ComputeKekKey(). The cryptograms are those
+ * returned by SessionKey.ComputeCryptogram() with type 0 (host) and
+ * type 1 (card).
+ */
+public class SecureChannelKeys {
+
+    private final byte[] macSessionKey;
+    private final byte[] encSessionKey;
+    private final PK11SymKey kekKey;
+    private final byte[] hostCryptogram;
+    private final byte[] cardCryptogram;
+
+    SecureChannelKeys(Object[] keys) {
+        macSessionKey = (byte[]) keys[0];
+        encSessionKey = (byte[]) keys[1];
+        kekKey = (PK11SymKey) keys[2];
+        hostCryptogram = (byte[]) keys[3];
+        cardCryptogram = (byte[]) keys[4];
+    }
+
+    /**
+     * Gets the MAC session key wrapped with the shared secret.
+     */
+    public byte[] getMacSessionKey() {
+        return macSessionKey;
+    }
+
+    /**
+     * Gets the encryption session key wrapped with the shared secret.
+     */
+    public byte[] getEncSessionKey() {
+        return encSessionKey;
+    }
+
+    /**
+     * Gets the card's key encryption key.
+     */
+    public PK11SymKey getKekKey() {
+        return kekKey;
+    }
+
+    /**
+     * Gets the host cryptogram the card expects in EXTERNAL AUTHENTICATE.
+     */
+    public byte[] getHostCryptogram() {
+        return hostCryptogram;
+    }
+
+    /**
+     * Gets the card cryptogram to compare with the one returned by
+     * INITIALIZE UPDATE.
+     */
+    public byte[] getCardCryptogram() {
+        return cardCryptogram;
+    }
+}
@@ -162,6 +162,98 @@ public class SessionKey {
             byte[] authKeyArray,
             String useSoftToken, String keySet);
 
+    // Computes the MAC and enc session keys, the KEK and both cryptograms
+    // of an SCP01 secure channel in one call, looking up the token, master
+    // key and shared secret once. authKeyArray serves as the enc developer
+    // key as well, since both are the "auth" key of the key set.
+    public static SecureChannelKeys ComputeSecureChannelKeys(String tokenName,
+            String keyName,
+            byte[] card_challenge,
+            byte[] host_challenge,
+            byte[] keyInfo,
+            byte nistSP800_108KdfOnKeyVersion,
+            boolean nistSP800_108KdfUseCuidAsKdd,
+            byte[] CUID,
+            byte[] KDD,
+            byte[] macKeyArray,
+            byte[] authKeyArray,
+            byte[] kekKeyArray,
+            String useSoftToken,
+            String keySet,
+            String sharedSecretKeyName) {
+
+        SecureChannelKeys[] keys = ComputeSecureChannelKeys(tokenName, keyName,
+                new byte[][] { card_challenge }, new byte[][] { host_challenge },
+                new byte[][] { keyInfo },
+                nistSP800_108KdfOnKeyVersion, nistSP800_108KdfUseCuidAsKdd,
+                new byte[][] { CUID }, new byte[][] { KDD },
+                macKeyArray, authKeyArray, kekKeyArray,
+                useSoftToken, keySet, sharedSecretKeyName);
+
+        return keys == null ? null : keys[0];
+    }
+
+    // Batch variant for many cards sharing a key set: element i of the
+    // result is computed from element i of each array, and is null if the
+    // keys for that card could not be computed. Returns null if the token
+    // or shared secret can't be found.
+    public static SecureChannelKeys[] ComputeSecureChannelKeys(String tokenName,
+            String keyName,
+            byte[][] card_challenges,
+            byte[][] host_challenges,
+            byte[][] keyInfos,
+            byte nistSP800_108KdfOnKeyVersion,
+            boolean nistSP800_108KdfUseCuidAsKdd,
+            byte[][] CUIDs,
+            byte[][] KDDs,
+            byte[] macKeyArray,
+            byte[] authKeyArray,
+            byte[] kekKeyArray,
+            String useSoftToken,
+            String keySet,
+            String sharedSecretKeyName) {
+
+        int count = card_challenges.length;
+        if (host_challenges.length != count || keyInfos.length != count
+                || CUIDs.length != count || KDDs.length != count) {
+            throw new IllegalArgumentException("Card parameter arrays differ in length");
+        }
+
+        Object[] results = ComputeSecureChannelKeysNative(tokenName, keyName,
+                card_challenges, host_challenges, keyInfos,
+                nistSP800_108KdfOnKeyVersion, nistSP800_108KdfUseCuidAsKdd,
+                CUIDs, KDDs, macKeyArray, authKeyArray, kekKeyArray,
+                useSoftToken, keySet, sharedSecretKeyName);
+
+        if (results == null) {
+            return null;
+        }
+
+        SecureChannelKeys[] keys = new SecureChannelKeys[count];
+        for (int i = 0; i < count; i++) {
+            if (results[i] != null) {
+                keys[i] = new SecureChannelKeys((Object[]) results[i]);
+            }
+        }
+        return keys;
+    }
+
+    private static native Object[] ComputeSecureChannelKeysNative(String tokenName,
+            String keyName,
+            byte[][] card_challenges,
+            byte[][] host_challenges,
+            byte[][] keyInfos,
+            byte nistSP800_108KdfOnKeyVersion,
+            boolean nistSP800_108KdfUseCuidAsKdd,
+            byte[][] CUIDs,
+            byte[][] KDDs,
+            byte[] macKeyArray,
+            byte[] authKeyArray,
+            byte[] kekKeyArray,
+            String useSoftToken,
+            String keySet,
+            String sharedSecretKeyName);
+
     public static native byte[] EncryptData(String tokenName,
             String keyName,
             byte[] in,
@@ -192,6 +284,7 @@ public class SessionKey {
     public static native String GenMasterKey(String token,
             String keyName);
 
+    // Deletes the named key from the token and from the key cache.
     public static native String DeleteSymmetricKey(String token,
             String keyName);
 
@@ -201,6 +294,11 @@ public class SessionKey {
     //  get when called from the RA to create session key
     public static native void SetDefaultPrefix(String masterPrefix);
 
+    // Slot and master key handles are cached across calls. Keys deleted
+    // with DeleteSymmetricKey are dropped from the cache; call this after
+    // creating, deleting or renaming keys on a token by other means.
+    public static native void ClearKeyCache();
+
     // Functions that the TPS may use during processing to manipulate sym keys in such a way not available in JSS
 
     // Return a names Sym Key, in this case will be the shared secret in practice.
@@ -16,11 +16,13 @@ import java.util.Arrays;
 
 /**
  * Reads in base-64 encoded input and spits out the raw binary decoding.
+ *
+ * The encoded input is read from the underlying stream in blocks and
+ * decoded a whole 4-character block at a time where it has no whitespace,
+ * so this stream may read past the end of the base-64 data.
  */
 public class Base64InputStream extends FilterInputStream {
 
-    private static final int WOULD_BLOCK = -2;
-
     //
     // decoding table
     //
@@ -60,6 +62,15 @@ public class Base64InputStream extends FilterInputStream {
     // whitespace).
     private int state = 1, savedState;
 
+    // Encoded characters read from the in stream but not yet decoded,
+    // between position and limit. Input is read in blocks so that whole
+    // blocks can be decoded at once.
+    private final byte[] buffer = new byte[8192];
+    private int position, limit;
+    private byte[] savedBuffer;
+
+    private final byte[] single = new byte[1];
+
     public Base64InputStream(InputStream in) {
         super(in);
     }
@@ -67,30 +78,74 @@ public class Base64InputStream extends FilterInputStream {
     @Override
     public long skip(long n) throws IOException {
         long count = 0;
-        while ((count < n) && (read() != -1)) {
-            ++count;
+        if (n <= 0) {
+            return count;
+        }
+        byte[] skipped = new byte[(int) Math.min(n, buffer.length)];
+        while (count < n) {
+            int len = read(skipped, 0, (int) Math.min(n - count, skipped.length));
+            if (len == -1) {
+                break;
+            }
+            count += len;
         }
         return count;
     }
 
     /**
-     * param block Whether or not to block waiting for input.
+     * Reads more encoded characters into the buffer.
+     *
+     * @param block Whether or not to block waiting for input.
+     * @return false if there is no input available without blocking, or
+     *         at the end of the stream.
+     */
+    private boolean fill(boolean block) throws IOException {
+        if (in.available() < 1 && !block) {
+            return false;
+        }
+        int n = in.read(buffer, 0, buffer.length);
+        if (n == -1) {
+            if (state >= 2 && state <= 4) {
+                state = 5;
+                throw new EOFException("Unexpected end-of-file");
+            }
+            state = 5;
+            return false;
+        }
+        position = 0;
+        limit = n;
+        return true;
+    }
+
+    /**
+     * Decodes characters from the buffer into b until len bytes have been
+     * decoded, the buffer is empty, or the end of the data is reached.
+     *
+     * @return the number of bytes decoded.
      */
-    private int read(boolean block) throws IOException {
-        int cur, ret = 0;
-        boolean done = false;
-        while (!done) {
-            if (in.available() < 1 && !block) {
-                return WOULD_BLOCK;
+    private int decode(byte[] b, int off, int len) throws IOException {
+        int count = 0;
+        while (count < len && position < limit && state != 5) {
+
+            // decode a whole block at once when possible
+            if (state == 1 && limit - position >= 4 && len - count >= 3) {
+                int c0 = table[buffer[position] & 0xff];
+                int c1 = table[buffer[position + 1] & 0xff];
+                int c2 = table[buffer[position + 2] & 0xff];
+                int c3 = table[buffer[position + 3] & 0xff];
+                if ((c0 | c1 | c2 | c3) >= 0) {
+                    b[off + count] = (byte) (c0 << 2 | c1 >> 4);
+                    b[off + count + 1] = (byte) (c1 << 4 | c2 >> 2);
+                    b[off + count + 2] = (byte) (c2 << 6 | c3);
+                    count += 3;
+                    position += 4;
+                    continue;
+                }
             }
-            cur = in.read();
+
+            int cur = buffer[position++] & 0xff;
             switch (state) {
             case 1:
-                if (cur == -1) {
-                    // end of file
-                    state = 5;
-                    return -1;
-                }
                 if (cur == '=') {
                     state = 5;
                     throw new IOException("Invalid pad character");
@@ -101,69 +156,51 @@ public class Base64InputStream extends FilterInputStream {
                 }
                 break;
             case 2:
-                if (cur == -1) {
-                    state = 5;
-                    throw new EOFException("Unexpected end-of-file");
-                }
                 if (cur == '=') {
                     state = 5;
                     throw new IOException("Invalid pad character");
                 }
                 if (table[cur] != -1) {
-                    ret = (table[prev] << 2) | ((table[cur] & 0x30) >> 4);
+                    b[off + count++] = (byte) ((table[prev] << 2) | ((table[cur] & 0x30) >> 4));
                     prev = cur;
                     state = 3;
-                    done = true;
                 }
                 break;
             case 3:
-                if (cur == -1) {
-                    state = 5;
-                    throw new EOFException("Unexpected end-of-file");
-                }
                 if (cur == '=') {
                     // pad character
                     state = 5;
-                    return -1;
+                    break;
                 }
                 if (table[cur] != -1) {
-                    ret = ((table[prev] & 0x0f) << 4) | ((table[cur] & 0x3c) >> 2);
+                    b[off + count++] = (byte) (((table[prev] & 0x0f) << 4) | ((table[cur] & 0x3c) >> 2));
                     prev = cur;
                     state = 4;
-                    done = true;
                 }
                 break;
             case 4:
-                if (cur == -1) {
-                    state = 5;
-                    throw new EOFException("Unexpected end-of-file");
-                }
                 if (cur == '=') {
                     // pad character
                     state = 5;
-                    return -1;
+                    break;
                 }
                 if (table[cur] != -1) {
-                    ret = ((table[prev] & 0x03) << 6) | table[cur];
+                    b[off + count++] = (byte) (((table[prev] & 0x03) << 6) | table[cur]);
                     state = 1;
-                    done = true;
                 }
                 break;
-            case 5:
-                // end of file
-                return -1;
-            //break;
             default:
                 assert (false);
                 break;
             }
         }
-        return ret;
+        return count;
     }
 
     @Override
     public int read() throws IOException {
-        return read(true);
+        int n = read(single, 0, 1);
+        return n == -1 ? -1 : single[0] & 0xff;
     }
 
     @Override
@@ -177,18 +214,16 @@ public class Base64InputStream extends FilterInputStream {
             throw new IndexOutOfBoundsException("off is negative");
         }
 
-        while (count < len) {
-            int cur = read(count == 0);
-            if (cur == -1) {
-                // end-of-file
-                return count == 0 ? -1 : count;
-            }
-            if (cur == WOULD_BLOCK) {
-                assert (count > 0);
-                return count;
+        while (count < len && state != 5) {
+            if (position == limit && !fill(count == 0)) {
+                break;
             }
-            assert (cur >= 0 && cur <= 255);
-            b[off + (count++)] = (byte) cur;
+            count += decode(b, off + count, len - count);
+        }
+
+        if (count == 0 && len > 0 && state == 5) {
+            // end-of-file
+            return -1;
         }
         return count;
     }
@@ -207,7 +242,11 @@ public class Base64InputStream extends FilterInputStream {
 
     @Override
     public synchronized void mark(int readlimit) {
-        in.mark(readlimit);
+        // the stream may read up to a buffer beyond what has been returned
+        int markLimit = readlimit > Integer.MAX_VALUE - buffer.length
+                ? Integer.MAX_VALUE : readlimit + buffer.length;
+        in.mark(markLimit);
+        savedBuffer = Arrays.copyOfRange(buffer, position, limit);
         savedPrev = prev;
         savedState = state;
     }
@@ -220,6 +259,11 @@ public class Base64InputStream extends FilterInputStream {
     @Override
     public synchronized void reset() throws IOException {
         in.reset();
+        if (savedBuffer != null) {
+            System.arraycopy(savedBuffer, 0, buffer, 0, savedBuffer.length);
+            position = 0;
+            limit = savedBuffer.length;
+        }
         prev = savedPrev;
         state = savedState;
     }
@@ -11,11 +11,18 @@ package org.mozilla.jss.util;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Objects;
 
 /**
  * An output stream filter that takes arbitrary bytes and outputs their
  * base64 encoding. Call flush() or close() to write out the final padding.
  * The class also automatically puts line breaks in the output stream.
+ *
+ * Arrays written in one call are encoded in bulk, whole lines at a time,
+ * with java.util.Base64. The output is the same as if the bytes had been
+ * written one at a time.
  */
 public class Base64OutputStream extends FilterOutputStream {
 
@@ -91,14 +98,61 @@ public class Base64OutputStream extends FilterOutputStream {
 
     @Override
     public void write(byte[] buffer, int offset, int count) throws IOException {
-        int i;
-        int byteCount;
+        Objects.checkFromIndexSize(offset, count, buffer.length);
+        int end = offset + count;
+        boolean lineBreaks = doLineBreaks && charsPerLine > 0;
 
-        for (i = offset, byteCount = 0; byteCount < count; i++, byteCount++) {
-            write(buffer[i]);
+        // complete the current atom and line one byte at a time
+        while (offset < end && (inputCount > 0 || lineBreaks && charsOnLine > 0)) {
+            write(buffer[offset++]);
+        }
+
+        if (lineBreaks) {
+            // whole lines, each followed by a line break
+            int bytesPerLine = charsPerLine / 4 * 3;
+            int lines = (end - offset) / bytesPerLine;
+            while (lines > 0) {
+                int n = Math.min(lines, Math.max(1, BULK_SIZE / bytesPerLine));
+                encodeBulk(lineEncoder(), buffer, offset, n * bytesPerLine);
+                ((PrintStream) out).println();
+                offset += n * bytesPerLine;
+                lines -= n;
+            }
+        }
+
+        // whole atoms, less than a line if there are line breaks
+        int atoms = (end - offset) / 3;
+        while (atoms > 0) {
+            int n = Math.min(atoms, BULK_SIZE / 3);
+            encodeBulk(Base64.getEncoder(), buffer, offset, n * 3);
+            if (doLineBreaks) {
+                charsOnLine += n * 4;
+            }
+            offset += n * 3;
+            atoms -= n;
+        }
+
+        while (offset < end) {
+            write(buffer[offset++]);
         }
     }
 
+    private void encodeBulk(Base64.Encoder encoder, byte[] buffer, int offset, int length)
+            throws IOException {
+        ByteBuffer encoded = encoder.encode(ByteBuffer.wrap(buffer, offset, length));
+        out.write(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining());
+    }
+
+    /**
+     * Returns an encoder which separates lines the same way as println().
+     */
+    private Base64.Encoder lineEncoder() {
+        if (lineEncoder == null) {
+            lineEncoder = Base64.getMimeEncoder(charsPerLine, System.lineSeparator().getBytes());
+        }
+        return lineEncoder;
+    }
+
     private final static char encoding[] = {
             //   0   1   2   3   4   5   6   7
             'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', // 0
@@ -118,8 +172,6 @@ public class Base64OutputStream extends FilterOutputStream {
      * of the stream.
      */
     private void outputOneAtom() throws IOException {
-        byte[] output = new byte[4];
-
         if (inputCount == 0) {
             return;
         }
@@ -158,9 +210,12 @@ public class Base64OutputStream extends FilterOutputStream {
     //////////////////////////////////////////////////////////////////////
     private byte[] input; // buffered input, max 3 bytes (after 3 we write
                           // them out base64-encoded)
+    private final byte[] output = new byte[4]; // one encoded atom
     private short inputCount; // number of bytes in input buffer
-    private short charsOnLine; // number of bytes on the current line
+    private int charsOnLine; // number of bytes on the current line
     private int charsPerLine; // maximum characters per line
     private static final int DEFAULT_QUADS_PER_LINE = 16; //64 chars
     private boolean doLineBreaks;
+    private Base64.Encoder lineEncoder; // for whole lines, created on demand
+    private static final int BULK_SIZE = 48 * 1024; // bytes encoded per call
 }
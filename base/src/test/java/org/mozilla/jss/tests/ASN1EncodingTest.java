@@ -0,0 +1,191 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.ASN1Value;
+import org.mozilla.jss.asn1.BIT_STRING;
+import org.mozilla.jss.asn1.BOOLEAN;
+import org.mozilla.jss.asn1.EXPLICIT;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.NULL;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.PrintableString;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.asn1.Tag;
+
+public class ASN1EncodingTest {
+
+    static byte[] bytes(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + 7);
+        }
+        return data;
+    }
+
+    /**
+     * A small structure covering nested SEQUENCE, SET, EXPLICIT and
+     * BIT_STRING values and long-form tags.
+     */
+    static SEQUENCE createSmall() throws Exception {
+        SEQUENCE inner = new SEQUENCE();
+        inner.addElement(NULL.getInstance());
+        inner.addElement(new BOOLEAN(true));
+
+        SET set = new SET();
+        set.addElement(new INTEGER(-129));
+        set.addElement(new OCTET_STRING(new byte[] { 1, 2, 3 }));
+
+        SEQUENCE seq = new SEQUENCE();
+        seq.addElement(new INTEGER(5));
+        seq.addElement(new OBJECT_IDENTIFIER("1.2.840.113549.1.1.11"));
+        seq.addElement(new BIT_STRING(new byte[] { (byte) 0xAB, (byte) 0xC0 }, 4));
+        seq.addElement(new EXPLICIT(new Tag(0), inner));
+        seq.addElement(new Tag(31), new OCTET_STRING(new byte[] { 'x' }));
+        seq.addElement(new EXPLICIT(new Tag(Tag.APPLICATION, 200), new INTEGER(1000)));
+        seq.addElement(new Tag(1), set);
+        seq.addElement(new PrintableString("JSS"));
+        return seq;
+    }
+
+    /**
+     * A structure whose lengths need one, two and three length octets,
+     * nested several levels deep.
+     */
+    static SEQUENCE createLarge() throws Exception {
+        SEQUENCE seq = new SEQUENCE();
+        seq.addElement(new OCTET_STRING(bytes(200)));
+        seq.addElement(new BIT_STRING(bytes(1000), 0));
+        seq.addElement(new Tag(Tag.PRIVATE, 100000), new OCTET_STRING(bytes(70000)));
+
+        SEQUENCE nested = seq;
+        for (int i = 0; i < 5; i++) {
+            SEQUENCE outer = new SEQUENCE();
+            outer.addElement(new INTEGER(i));
+            outer.addElement(new EXPLICIT(new Tag(i), nested));
+
+            SET set = new SET();
+            set.addElement(new OCTET_STRING(bytes(i * 100)));
+            set.addElement(outer);
+
+            nested = new SEQUENCE();
+            nested.addElement(set);
+        }
+        return nested;
+    }
+
+    static void assertLength(ASN1Value value) throws Exception {
+        byte[] encoded = ASN1Util.encode(value);
+        Assertions.assertEquals((long) encoded.length, value.encodedLength());
+
+        // encoding to a stream gives the same bytes
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        value.encode(out);
+        Assertions.assertArrayEquals(encoded, out.toByteArray());
+    }
+
+    @Test
+    public void testEncodedLength() throws Exception {
+        assertLength(new INTEGER(0));
+        assertLength(new INTEGER(-129));
+        assertLength(new OCTET_STRING(bytes(127)));
+        assertLength(new OCTET_STRING(bytes(128)));
+        assertLength(new OCTET_STRING(bytes(256)));
+        assertLength(new BIT_STRING(new byte[0], 0));
+        assertLength(new BIT_STRING(bytes(65536), 3));
+        assertLength(new EXPLICIT(new Tag(30), NULL.getInstance()));
+        assertLength(new EXPLICIT(new Tag(31), NULL.getInstance()));
+        assertLength(new EXPLICIT(new Tag(Tag.APPLICATION, 1L << 20), new OCTET_STRING(bytes(300))));
+        assertLength(createSmall());
+        assertLength(createLarge());
+
+        SEQUENCE seq = createSmall();
+        Tag implicit = new Tag(Tag.CONTEXT_SPECIFIC, 12345);
+        Assertions.assertEquals((long) ASN1Util.encode(implicit, seq).length, seq.encodedLength(implicit));
+    }
+
+    @Test
+    public void testBaselineEncoding() throws Exception {
+        // Encodings produced before lengths were precomputed. (SET elements
+        // are added in DER order here, which the old encoder didn't always
+        // restore.)
+        Assertions.assertEquals(
+                "303802010506092a864886f70d01010b030304abc0a007300505000101ff9f1f01787f"
+                + "814804020203e8a1090202ff7f040301020313034a5353",
+                HexFormat.of().formatHex(ASN1Util.encode(createSmall())));
+
+        byte[] large = ASN1Util.encode(createLarge());
+        Assertions.assertEquals(72351, large.length);
+        Assertions.assertEquals(
+                "ca4db17bab7b6900e63b5e0ae3a8e32a1cf4894e07cc8a5b496d607ae67ec86e",
+                HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(large)));
+    }
+
+    @Test
+    public void testSetOrder() throws Exception {
+        // Differently tagged elements are ordered by tag...
+        SET set = new SET();
+        set.addElement(new OCTET_STRING(new byte[] { 1, 2, 3 }));
+        set.addElement(new INTEGER(5));
+        Assertions.assertEquals("3108020105" + "0403010203", HexFormat.of().formatHex(ASN1Util.encode(set)));
+
+        // ...by class first, then number, regardless of the form: [1]
+        // comes before [2] although a1 is greater than 82.
+        set = new SET();
+        set.addElement(new Tag(31), NULL.getInstance());
+        set.addElement(new Tag(Tag.PRIVATE, 1), NULL.getInstance());
+        set.addElement(new Tag(2), NULL.getInstance());
+        set.addElement(new Tag(0), new INTEGER(7));
+        set.addElement(new EXPLICIT(new Tag(1), new INTEGER(9)));
+        set.addElement(new Tag(Tag.APPLICATION, 3), NULL.getInstance());
+        set.addElement(new INTEGER(5));
+        Assertions.assertEquals(
+                "3114" + "020105" + "4300" + "800107" + "a103020109" + "8200" + "9f1f00" + "c100",
+                HexFormat.of().formatHex(ASN1Util.encode(set)));
+
+        // the order of the SET itself is unchanged
+        Assertions.assertEquals(new Tag(31), set.tagAt(0));
+
+        // Elements with the same tag are ordered by their encodings.
+        set = new SET();
+        set.addElement(new OCTET_STRING(new byte[] { 2 }));
+        set.addElement(new OCTET_STRING(new byte[] { 1, 0 }));
+        set.addElement(new OCTET_STRING(new byte[] { 1 }));
+        Assertions.assertEquals("310a" + "040101" + "040102" + "04020100",
+                HexFormat.of().formatHex(ASN1Util.encode(set)));
+
+        // Many elements added in random order.
+        List<Integer> numbers = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            numbers.add(i);
+        }
+        Collections.shuffle(numbers, new Random(48));
+
+        set = new SET();
+        for (int num : numbers) {
+            set.addElement(new Tag(num), new INTEGER(num));
+        }
+
+        SEQUENCE expected = new SEQUENCE();
+        for (int i = 0; i < 200; i++) {
+            expected.addElement(new Tag(i), new INTEGER(i));
+        }
+
+        byte[] encoding = ASN1Util.encode(set);
+        byte[] sorted = ASN1Util.encode(expected);
+        sorted[0] = 0x31;
+        Assertions.assertArrayEquals(sorted, encoding);
+        Assertions.assertEquals((long) encoding.length, set.encodedLength());
+    }
+}
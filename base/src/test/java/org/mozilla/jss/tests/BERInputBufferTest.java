@@ -0,0 +1,169 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.asn1.ASN1Header;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.BERInputBuffer;
+import org.mozilla.jss.asn1.Form;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.InvalidBERException;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.Tag;
+
+public class BERInputBufferTest {
+
+    static byte[] encodeHeader(Tag tag, Form form, long contentLength) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ASN1Header(tag, form, contentLength).encode(out);
+        return out.toByteArray();
+    }
+
+    static void assertSameHeader(ASN1Header expected, ASN1Header actual) {
+        Assertions.assertEquals(expected.getTag(), actual.getTag());
+        Assertions.assertEquals(expected.getForm(), actual.getForm());
+        Assertions.assertEquals(expected.getContentLength(), actual.getContentLength());
+        Assertions.assertArrayEquals(expected.encode(), actual.encode());
+    }
+
+    /**
+     * Parses a header from an array and from a stream, and checks that
+     * both agree and that the array is only read by peekHeader().
+     */
+    static ASN1Header parse(byte[] encoding) throws Exception {
+        ASN1Header expected = new ASN1Header(new ByteArrayInputStream(encoding));
+
+        BERInputBuffer buffer = new BERInputBuffer(encoding);
+        ASN1Header peeked = buffer.peekHeader();
+        assertSameHeader(expected, peeked);
+        Assertions.assertEquals(0, buffer.getPosition());
+
+        ASN1Header header = new ASN1Header(buffer);
+        assertSameHeader(expected, header);
+        Assertions.assertEquals(expected.encode().length, buffer.getPosition());
+
+        return header;
+    }
+
+    @Test
+    public void testPeekHeader() throws Exception {
+        ASN1Header header = parse(new byte[] { 0x30, 0x03, 0x02, 0x01, 0x05 });
+        Assertions.assertEquals(SEQUENCE.TAG, header.getTag());
+        Assertions.assertEquals(Form.CONSTRUCTED, header.getForm());
+        Assertions.assertEquals(3L, header.getContentLength());
+
+        // lookAhead() neither consumes input nor moves the caller's mark
+        BERInputBuffer buffer = new BERInputBuffer(new byte[] { 0x05, 0x04, 0x00 });
+        buffer.mark(0);
+        buffer.read();
+        ASN1Header ahead = ASN1Header.lookAhead(buffer);
+        Assertions.assertEquals(1, buffer.getPosition());
+        Assertions.assertEquals(0L, ahead.getContentLength());
+        buffer.reset();
+        Assertions.assertEquals(0, buffer.getPosition());
+    }
+
+    @Test
+    public void testLongForm() throws Exception {
+        long[] tags = { 0, 30, 31, 127, 128, 16383, 16384, 100000, 1L << 40 };
+        long[] lengths = { 0, 127, 128, 255, 256, 65535, 65536, 1L << 24, 1L << 40 };
+
+        for (long num : tags) {
+            for (long length : lengths) {
+                Tag tag = new Tag(Tag.PRIVATE, num);
+                byte[] encoding = encodeHeader(tag, Form.PRIMITIVE, length);
+                Assertions.assertEquals(ASN1Header.getHeaderLength(tag, length), encoding.length);
+
+                ASN1Header header = parse(encoding);
+                Assertions.assertEquals(tag, header.getTag());
+                Assertions.assertEquals(length, header.getContentLength());
+            }
+        }
+
+        // indefinite length
+        ASN1Header header = parse(encodeHeader(new Tag(Tag.APPLICATION, 200), Form.CONSTRUCTED, -1));
+        Assertions.assertEquals(-1L, header.getContentLength());
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        byte[] encoding = encodeHeader(new Tag(Tag.CONTEXT_SPECIFIC, 100000), Form.PRIMITIVE, 70000);
+
+        for (int length = 0; length < encoding.length; length++) {
+            byte[] truncated = Arrays.copyOf(encoding, length);
+
+            BERInputBuffer buffer = new BERInputBuffer(truncated);
+            Assertions.assertThrows(InvalidBERException.class, () -> buffer.peekHeader());
+            Assertions.assertThrows(InvalidBERException.class, () -> new ASN1Header(buffer));
+            Assertions.assertEquals(0, buffer.getPosition());
+
+            // the limit applies even if the array continues
+            BERInputBuffer part = new BERInputBuffer(encoding, 0, length);
+            Assertions.assertThrows(InvalidBERException.class, () -> part.peekHeader());
+        }
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        byte[] data = { 9, 1, 2, 3, 4, 9 };
+        BERInputBuffer buffer = new BERInputBuffer(data, 1, 4);
+        byte[] b = new byte[8];
+
+        Assertions.assertEquals(4, buffer.available());
+        Assertions.assertEquals(1, buffer.read());
+        Assertions.assertEquals(0, buffer.read(b, 0, 0));
+        Assertions.assertEquals(3, buffer.read(b, 0, 8));
+        Assertions.assertEquals(4, b[2]);
+
+        // at the end of the buffer
+        Assertions.assertEquals(0, buffer.available());
+        Assertions.assertEquals(-1, buffer.read());
+        Assertions.assertEquals(-1, buffer.read(b, 0, 8));
+        Assertions.assertEquals(0, buffer.read(b, 8, 0));
+        Assertions.assertEquals(0L, buffer.skip(10));
+        Assertions.assertEquals(4, buffer.getPosition());
+    }
+
+    @Test
+    public void testDecodeByteBuffer() throws Exception {
+        SEQUENCE seq = new SEQUENCE();
+        seq.addElement(new INTEGER(1000));
+        seq.addElement(new OCTET_STRING(BERInputBufferTest.class.getName().getBytes()));
+        byte[] encoding = ASN1Util.encode(seq);
+
+        SEQUENCE.Template template = new SEQUENCE.Template();
+        template.addElement(INTEGER.getTemplate());
+        template.addElement(OCTET_STRING.getTemplate());
+
+        byte[] padded = new byte[encoding.length + 10];
+        System.arraycopy(encoding, 0, padded, 3, encoding.length);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(padded.length);
+        direct.put(padded).flip();
+
+        ByteBuffer[] buffers = {
+            ByteBuffer.wrap(padded),
+            ByteBuffer.wrap(padded, 1, padded.length - 1).slice(),
+            direct,
+        };
+        int[] offsets = { 3, 2, 3 };
+
+        for (int i = 0; i < buffers.length; i++) {
+            ByteBuffer buffer = buffers[i];
+            buffer.position(offsets[i]);
+
+            SEQUENCE decoded = (SEQUENCE) ASN1Util.decode(template, buffer);
+            Assertions.assertArrayEquals(encoding, ASN1Util.encode(decoded));
+
+            // the position is advanced past the value only
+            Assertions.assertEquals(offsets[i] + encoding.length, buffer.position());
+            Assertions.assertEquals(7, buffer.remaining());
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package org.mozilla.jss.tests;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.util.Cert;
+import org.mozilla.jss.netscape.security.util.Utils;
+import org.mozilla.jss.util.Base64InputStream;
+import org.mozilla.jss.util.Base64OutputStream;
+
+/**
+ * Checks the bulk Base64 encoding and decoding against the byte at a time
+ * behavior it replaced.
+ */
+public class Base64Test {
+
+    // self-signed certificate for CN=Base64 Test
+    static final String CERT =
+            "-----BEGIN CERTIFICATE-----\n" +
+            "MIIBQzCB66ADAgECAghW+4XS2CwO4jAKBggqhkjOPQQDAzAWMRQwEgYDVQQDEwtC\n" +
+            "YXNlNjQgVGVzdDAgFw0yMDAxMDEwMzI0MDRaGA8yMTE5MTIwODAzMjQwNFowFjEU\n" +
+            "MBIGA1UEAxMLQmFzZTY0IFRlc3QwWTATBgcqhkjOPQIBBggqhkjOPQMBBwNCAAQz\n" +
+            "friGUwK8BGAIAoigs9gxNRKOHud/aLLazuzK8mioYqhbHOvU/KP5tIs/jismYwxj\n" +
+            "iMmSHQoO4D2H32R9rkWWoyEwHzAdBgNVHQ4EFgQUagC7dSngaJtzw9f3rXFlt9ST\n" +
+            "d4QwCgYIKoZIzj0EAwMDRwAwRAIgOe3i9BubZlmFOBdTipX5JuoYxlxDnVsfREVY\n" +
+            "qxcIOkgCICrkrv5JhmhbPtnWqWtAkq/Intta6Ieuy3f6apXqzh6E\n" +
+            "-----END CERTIFICATE-----\n";
+
+    static byte[] bytes(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + 7);
+        }
+        return data;
+    }
+
+    /**
+     * Returns at most max bytes per read, so that 4-character blocks are
+     * split across the decoder's reads.
+     */
+    static class ChunkedInputStream extends FilterInputStream {
+
+        final int max;
+
+        ChunkedInputStream(InputStream in, int max) {
+            super(in);
+            this.max = max;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, max));
+        }
+    }
+
+    static byte[] encodeOneByOne(byte[] data, int quadsPerLine) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream ps = new PrintStream(out);
+        try (Base64OutputStream b64 = quadsPerLine > 0
+                ? new Base64OutputStream(ps, quadsPerLine) : new Base64OutputStream(ps)) {
+            for (byte b : data) {
+                b64.write(b);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] encodeInChunks(byte[] data, int quadsPerLine, int chunk) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream ps = new PrintStream(out);
+        try (Base64OutputStream b64 = quadsPerLine > 0
+                ? new Base64OutputStream(ps, quadsPerLine) : new Base64OutputStream(ps)) {
+            for (int offset = 0; offset < data.length; offset += chunk) {
+                b64.write(data, offset, Math.min(chunk, data.length - offset));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] decodeOneByOne(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Base64InputStream b64 = new Base64InputStream(in)) {
+            int b;
+            while ((b = b64.read()) != -1) {
+                out.write(b);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] decodeInChunks(InputStream in, int chunk) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[chunk];
+        try (Base64InputStream b64 = new Base64InputStream(in)) {
+            int n;
+            while ((n = b64.read(buffer, 0, chunk)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    static void assertDecodes(byte[] expected, String encoded) throws IOException {
+        byte[] input = encoded.getBytes(StandardCharsets.ISO_8859_1);
+
+        Assertions.assertArrayEquals(expected, decodeOneByOne(new ByteArrayInputStream(input)));
+        for (int chunk : new int[] { 1, 2, 3, 4, 5, 1000, 8192, 20000 }) {
+            Assertions.assertArrayEquals(expected, decodeInChunks(new ByteArrayInputStream(input), chunk));
+            Assertions.assertArrayEquals(expected,
+                    decodeInChunks(new ChunkedInputStream(new ByteArrayInputStream(input), 7), chunk));
+        }
+    }
+
+    static void assertDecodeFails(Class<? extends IOException> expected, String encoded) {
+        byte[] input = encoded.getBytes(StandardCharsets.ISO_8859_1);
+
+        Assertions.assertThrows(expected, () -> decodeOneByOne(new ByteArrayInputStream(input)));
+        for (int chunk : new int[] { 1, 3, 1000 }) {
+            Assertions.assertThrows(expected, () -> decodeInChunks(new ByteArrayInputStream(input), chunk));
+        }
+    }
+
+    @Test
+    public void testOutputStream() throws Exception {
+        for (int length : new int[] { 0, 1, 2, 3, 47, 48, 49, 100, 8192, 20000 }) {
+            byte[] data = bytes(length);
+
+            // no line breaks: same as the basic encoder
+            byte[] expected = encodeOneByOne(data, 0);
+            Assertions.assertArrayEquals(Base64.getEncoder().encode(data), expected);
+            for (int chunk : new int[] { 1, 2, 5, 48, 1000, 20000 }) {
+                Assertions.assertArrayEquals(expected, encodeInChunks(data, 0, chunk));
+            }
+
+            // line breaks every 64 characters
+            expected = encodeOneByOne(data, 16);
+            Assertions.assertArrayEquals(data, Base64.getMimeDecoder().decode(expected));
+            for (int chunk : new int[] { 1, 2, 5, 47, 48, 1000, 20000 }) {
+                Assertions.assertArrayEquals(expected, encodeInChunks(data, 16, chunk));
+            }
+        }
+    }
+
+    @Test
+    public void testInputStream() throws Exception {
+        for (int length : new int[] { 0, 1, 2, 3, 100, 6143, 6144, 6145, 20000 }) {
+            byte[] data = bytes(length);
+            String encoded = Base64.getEncoder().encodeToString(data);
+
+            assertDecodes(data, encoded);
+            assertDecodes(data, new String(encodeOneByOne(data, 16), StandardCharsets.ISO_8859_1));
+            assertDecodes(data, Base64.getMimeEncoder(76, "\r\n".getBytes()).encodeToString(data));
+        }
+    }
+
+    @Test
+    public void testInputStreamWhitespace() throws Exception {
+        byte[] data = bytes(7000);
+        String encoded = Base64.getEncoder().encodeToString(data);
+
+        // whitespace inside the 4-character blocks, and a block crossing
+        // the end of the 8192-character buffer
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < encoded.length(); i++) {
+            sb.append(encoded.charAt(i));
+            if (i % 13 == 5) {
+                sb.append(" \t");
+            }
+            if (i % 57 == 56) {
+                sb.append("\r\n");
+            }
+        }
+        assertDecodes(data, sb.toString());
+
+        String padded = "  \n" + encoded.substring(0, 8190) + "\n " + encoded.substring(8190) + "\n\n";
+        assertDecodes(data, padded);
+    }
+
+    @Test
+    public void testInputStreamPadding() throws Exception {
+        byte[] abc = "ABC".getBytes();
+
+        // one or two pad characters end the data
+        assertDecodes(new byte[] { 'A' }, "QQ==");
+        assertDecodes(new byte[] { 'A' }, "QQ=");
+        assertDecodes(new byte[] { 'A', 'B' }, "QUI=");
+        assertDecodes("ABCA".getBytes(), "QUJD\nQQ==QUJD");
+
+        // pad character in the first two characters of a block
+        assertDecodeFails(IOException.class, "=");
+        assertDecodeFails(IOException.class, "QUJD=");
+        assertDecodeFails(IOException.class, "QUJDQ===");
+
+        // missing pad characters
+        assertDecodeFails(EOFException.class, "Q");
+        assertDecodeFails(EOFException.class, "QUJDQQ");
+        assertDecodeFails(EOFException.class, "QUJDQUI\n");
+
+        assertDecodes(abc, "QUJD");
+        assertDecodes(new byte[0], "");
+        assertDecodes(new byte[0], " \r\n");
+    }
+
+    @Test
+    public void testInputStreamMark() throws Exception {
+        byte[] data = bytes(20000);
+        byte[] encoded = new String(encodeOneByOne(data, 16), StandardCharsets.ISO_8859_1).getBytes();
+
+        for (int readLimit : new int[] { 15000, Integer.MAX_VALUE - 10, Integer.MAX_VALUE }) {
+            InputStream in = new BufferedInputStream(new ByteArrayInputStream(encoded), 100);
+            try (Base64InputStream b64 = new Base64InputStream(in)) {
+                Assertions.assertTrue(b64.markSupported());
+
+                byte[] first = new byte[5];
+                Assertions.assertEquals(5, b64.read(first));
+                Assertions.assertArrayEquals(Arrays.copyOf(data, 5), first);
+
+                b64.mark(readLimit);
+
+                // past the end of the encoded characters buffered so far
+                byte[] next = new byte[10000];
+                Assertions.assertEquals(10000, b64.readNBytes(next, 0, next.length));
+                Assertions.assertArrayEquals(Arrays.copyOfRange(data, 5, 10005), next);
+
+                b64.reset();
+
+                Assertions.assertEquals(data[5] & 0xff, b64.read());
+                byte[] rest = b64.readAllBytes();
+                Assertions.assertArrayEquals(Arrays.copyOfRange(data, 6, data.length), rest);
+            }
+        }
+    }
+
+    @Test
+    public void testDecodeBuffer() throws Exception {
+        byte[] data = bytes(1000);
+        String encoded = Base64.getMimeEncoder().encodeToString(data);
+        byte[] bytes = encoded.getBytes(StandardCharsets.ISO_8859_1);
+
+        Assertions.assertArrayEquals(data, Utils.base64decode(encoded));
+        Assertions.assertArrayEquals(data, Utils.base64decode(ByteBuffer.wrap(bytes)));
+
+        // part of a larger array
+        byte[] larger = new byte[bytes.length + 20];
+        Arrays.fill(larger, (byte) '!');
+        System.arraycopy(bytes, 0, larger, 10, bytes.length);
+        ByteBuffer buffer = ByteBuffer.wrap(larger, 10, bytes.length);
+        Assertions.assertArrayEquals(data, Utils.base64decode(buffer));
+        Assertions.assertEquals(10 + bytes.length, buffer.position());
+
+        // a slice, a read-only buffer and a direct buffer
+        buffer = ByteBuffer.wrap(larger, 10, bytes.length).slice();
+        Assertions.assertArrayEquals(data, Utils.base64decode(buffer));
+        Assertions.assertArrayEquals(data, Utils.base64decode(ByteBuffer.wrap(bytes).asReadOnlyBuffer()));
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        Assertions.assertArrayEquals(data, Utils.base64decode(direct));
+
+        // URL-safe encoding
+        String url = Base64.getUrlEncoder().encodeToString(data);
+        Assertions.assertArrayEquals(data, Utils.base64decode(url));
+        Assertions.assertArrayEquals(data,
+                Utils.base64decode(ByteBuffer.wrap(url.getBytes(StandardCharsets.ISO_8859_1))));
+
+        // invalid data decodes to an empty array
+        for (String invalid : new String[] { "QUJDQ", "QQ=A", "QUJD-+" }) {
+            buffer = ByteBuffer.wrap(invalid.getBytes(StandardCharsets.ISO_8859_1));
+            Assertions.assertArrayEquals(Utils.base64decode(invalid), Utils.base64decode(buffer));
+            Assertions.assertEquals(0, Utils.base64decode(buffer.rewind()).length);
+            Assertions.assertEquals(buffer.limit(), buffer.position());
+        }
+    }
+
+    /**
+     * Decodes a certificate the way Cert.mapCert() did before it decoded
+     * the PEM data directly.
+     */
+    static byte[] decodeCert(String pem) {
+        return Utils.base64decode(Cert.normalizeCertStr(Cert.stripCertBrackets(pem.trim())));
+    }
+
+    @Test
+    public void testDecodePEM() throws Exception {
+        byte[] der = decodeCert(CERT);
+        Assertions.assertEquals(0x30, der[0]);
+        Assertions.assertArrayEquals(der, Cert.mapCert(CERT).getEncoded());
+
+        String body = CERT.substring(Cert.HEADER.length() + 1, CERT.length() - Cert.FOOTER.length() - 2);
+        String[] pems = {
+                // CRLF line breaks, and surrounding whitespace
+                CERT.replace("\n", "\r\n"),
+                "\n \t" + CERT + " \r\n",
+                // no brackets
+                body,
+                // no line breaks, quotes and spaces
+                Cert.HEADER + body.replace("\n", "") + Cert.FOOTER,
+                "\"" + body.replace("\n", " ") + "\"",
+                // URL-safe encoding
+                Cert.HEADER + "\n" + body.replace('+', '-').replace('/', '_') + "\n" + Cert.FOOTER,
+                // PKCS #7 brackets
+                Cert.PKCS7_HEADER + "\n" + body + "\n" + Cert.PKCS7_FOOTER,
+        };
+
+        for (String pem : pems) {
+            Assertions.assertArrayEquals(der, decodeCert(pem));
+            Assertions.assertArrayEquals(der, Cert.mapCert(pem).getEncoded());
+        }
+
+        // invalid data maps to no certificate, as before
+        Assertions.assertNull(Cert.mapCert(CERT.replace("MIIB", "MIIB=")));
+    }
+}
@@ -0,0 +1,83 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.netscape.security.util.Cert;
+import org.mozilla.jss.netscape.security.util.Utils;
+import org.mozilla.jss.pkix.primitive.SubjectPublicKeyInfo;
+import org.mozilla.jss.util.Base64InputStream;
+import org.mozilla.jss.util.Base64OutputStream;
+
+/**
+ * Utility for benchmarking the Base-64 and hex codecs used to convert
+ * certificates, CRLs and requests to and from text.
+ *
+ * Usage: BenchmarkBase64 [megabytes]
+ *
+ * Random data from 1 KB to 10 MB is converted with Utils.HexEncode(),
+ * Utils.base64encode() and Utils.base64decode(), and through
+ * Base64OutputStream and Base64InputStream. About the given number of
+ * megabytes (64 by default) is processed for each size. A PEM certificate
+ * is then decoded with Cert.mapCert(). No NSS database is needed.
+ */
+public class BenchmarkBase64 {
+
+    static final int[] SIZES = { 1024, 64 * 1024, 1024 * 1024, 10 * 1024 * 1024 };
+
+    static byte[] encodeStream(byte[] data) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length * 4 / 3 + data.length / 32);
+        try (Base64OutputStream out = new Base64OutputStream(new PrintStream(bytes), 16)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    static byte[] decodeStream(byte[] encoded) throws Exception {
+        try (InputStream in = new Base64InputStream(new ByteArrayInputStream(encoded))) {
+            return in.readAllBytes();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        long volume = (args.length > 0 ? Long.parseLong(args[0]) : 64) * 1024 * 1024;
+
+        for (int size : SIZES) {
+            byte[] data = BenchmarkDEREncoding.randomBytes(size);
+            int iterations = (int) Math.max(2, volume / size);
+
+            String pem = Utils.base64encode(data, true);
+            byte[] encoded = encodeStream(data);
+
+            assert Arrays.equals(Utils.base64decode(pem), data);
+            assert Arrays.equals(decodeStream(encoded), data);
+
+            String label = size >= 1024 * 1024 ? size / 1024 / 1024 + " MB" : size / 1024 + " KB";
+            System.out.println(label + ", " + iterations + " iterations:");
+
+            BenchmarkDEREncoding.report("  HexEncode", () -> Utils.HexEncode(data), iterations);
+            BenchmarkDEREncoding.report("  base64encode", () -> Utils.base64encode(data, true), iterations);
+            BenchmarkDEREncoding.report("  base64decode", () -> Utils.base64decode(pem), iterations);
+            BenchmarkDEREncoding.report("  Base64OutputStream", () -> encodeStream(data), iterations);
+            BenchmarkDEREncoding.report("  Base64InputStream", () -> decodeStream(encoded), iterations);
+        }
+
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+        kpg.initialize(2048);
+        SubjectPublicKeyInfo spki = (SubjectPublicKeyInfo) ASN1Util.decode(
+                SubjectPublicKeyInfo.getTemplate(), kpg.generateKeyPair().getPublic().getEncoded());
+
+        byte[] der = ASN1Util.encode(BenchmarkDERDecoding.createCertificate(1, spki));
+        String cert = Cert.HEADER + "\n" + Utils.base64encode(der, true) + Cert.FOOTER + "\n";
+
+        assert Arrays.equals(Cert.mapCert(cert).getEncoded(), der);
+
+        System.out.println("Certificate: " + der.length + " bytes");
+        BenchmarkDEREncoding.report("Cert.mapCert", () -> Cert.mapCert(cert), 10000);
+    }
+}
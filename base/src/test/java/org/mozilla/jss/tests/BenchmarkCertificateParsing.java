@@ -0,0 +1,55 @@
+package org.mozilla.jss.tests;
+
+import java.lang.management.ManagementFactory;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+import org.mozilla.jss.pkix.primitive.SubjectPublicKeyInfo;
+
+/**
+ * Utility for benchmarking the parsing of X.509 certificates with
+ * X509CertImpl.
+ *
+ * Usage: BenchmarkCertificateParsing [iterations]
+ *
+ * A certificate with an RSA key and a made-up signature is parsed
+ * repeatedly, and the time and the number of bytes allocated per parse
+ * are reported. No NSS database is needed.
+ */
+public class BenchmarkCertificateParsing {
+
+    static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getCurrentThreadAllocatedBytes();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+        kpg.initialize(2048);
+        SubjectPublicKeyInfo spki = (SubjectPublicKeyInfo) ASN1Util.decode(
+                SubjectPublicKeyInfo.getTemplate(), kpg.generateKeyPair().getPublic().getEncoded());
+
+        byte[] der = ASN1Util.encode(BenchmarkDERDecoding.createCertificate(1, spki));
+
+        X509CertImpl cert = new X509CertImpl(der);
+        assert cert.getSerialNumber().intValue() == 1;
+        assert cert.getSubjectName().toString().equals("CN=CA 1");
+        assert Arrays.equals(cert.getEncoded(), der);
+
+        System.out.println("Certificate: " + der.length + " bytes");
+
+        BenchmarkDEREncoding.report("X509CertImpl parse", () -> new X509CertImpl(der), iterations);
+
+        long before = allocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            new X509CertImpl(der);
+        }
+        long allocated = allocatedBytes() - before;
+        System.out.println(String.format("%-30s %12d bytes/op",
+                "X509CertImpl parse", allocated / iterations));
+    }
+}
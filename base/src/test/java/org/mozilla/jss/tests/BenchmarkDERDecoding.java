@@ -0,0 +1,152 @@
+package org.mozilla.jss.tests;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.mozilla.jss.asn1.ANY;
+import org.mozilla.jss.asn1.ASN1Template;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.ASN1Value;
+import org.mozilla.jss.asn1.BIT_STRING;
+import org.mozilla.jss.asn1.EXPLICIT;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.asn1.Tag;
+import org.mozilla.jss.asn1.UTF8String;
+import org.mozilla.jss.pkix.cert.Certificate;
+import org.mozilla.jss.pkix.cert.CertificateInfo;
+import org.mozilla.jss.pkix.cmc.PKIData;
+import org.mozilla.jss.pkix.cms.ContentInfo;
+import org.mozilla.jss.pkix.cms.EncapsulatedContentInfo;
+import org.mozilla.jss.pkix.cms.SignedData;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+import org.mozilla.jss.pkix.primitive.Name;
+import org.mozilla.jss.pkix.primitive.SubjectPublicKeyInfo;
+
+/**
+ * Utility for benchmarking BER decoding of in-memory encodings.
+ *
+ * Usage: BenchmarkDERDecoding [iterations]
+ *
+ * A CMC PKIData and a SEQUENCE OF deeply nested values are decoded from
+ * a byte array with ASN1Util.decode(), which reads the array directly,
+ * and from a BufferedInputStream, which goes through the stream-based
+ * decoder. Both must produce the same values. A SignedData carrying a
+ * certificate chain is decoded with its certificates left undecoded, and
+ * with all of them decoded. No NSS database is needed.
+ */
+public class BenchmarkDERDecoding {
+
+    /**
+     * Returns a template for the values built by
+     * BenchmarkDEREncoding.nested().
+     */
+    static ASN1Template nestedTemplate(int depth) {
+        SEQUENCE.Template seqt = new SEQUENCE.Template();
+        seqt.addElement(new INTEGER.Template());
+        seqt.addElement(new OCTET_STRING.Template());
+        seqt.addElement(new UTF8String.Template());
+        if (depth > 0) {
+            seqt.addElement(new EXPLICIT.Template(new Tag(depth % 4), nestedTemplate(depth - 1)));
+        }
+        return seqt;
+    }
+
+    /**
+     * Returns the encoding of a certificate with a made-up signature.
+     */
+    static ANY createCertificate(int serial) throws Exception {
+        return createCertificate(serial, new SubjectPublicKeyInfo(
+                new AlgorithmIdentifier(new OBJECT_IDENTIFIER("1.2.840.113549.1.1.1")),
+                new BIT_STRING(BenchmarkDEREncoding.randomBytes(270), 0)));
+    }
+
+    static ANY createCertificate(int serial, SubjectPublicKeyInfo spki) throws Exception {
+        AlgorithmIdentifier algID = new AlgorithmIdentifier(
+                new OBJECT_IDENTIFIER("1.2.840.113549.1.1.11"));
+
+        Name issuer = new Name();
+        issuer.addCommonName("CA " + (serial - 1));
+        Name subject = new Name();
+        subject.addCommonName("CA " + serial);
+
+        Date now = new Date(1700000000000L);
+        CertificateInfo info = new CertificateInfo(CertificateInfo.v3, new INTEGER(serial),
+                algID, issuer, now, now, subject, spki);
+
+        SEQUENCE cert = new SEQUENCE();
+        cert.addElement(info);
+        cert.addElement(algID);
+        cert.addElement(new BIT_STRING(BenchmarkDEREncoding.randomBytes(256), 0));
+        return new ANY(ASN1Util.encode(cert));
+    }
+
+    static void check(String name, ASN1Template template, byte[] encoding) throws Exception {
+        ASN1Value fromArray = ASN1Util.decode(template, encoding);
+        ASN1Value fromStream = template.decode(
+                new BufferedInputStream(new ByteArrayInputStream(encoding)));
+
+        assert Arrays.equals(ASN1Util.encode(fromArray), encoding);
+        assert Arrays.equals(ASN1Util.encode(fromStream), encoding);
+
+        System.out.println(name + ": " + encoding.length + " bytes");
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+        byte[] cmc = ASN1Util.encode(BenchmarkDEREncoding.createPKIData(16, 32));
+        ASN1Template cmcTemplate = PKIData.getTemplate();
+
+        SEQUENCE values = new SEQUENCE();
+        for (int i = 0; i < 16; i++) {
+            values.addElement(BenchmarkDEREncoding.nested(32));
+        }
+        byte[] nested = ASN1Util.encode(values);
+        ASN1Template nestedTemplate = new SEQUENCE.OF_Template(nestedTemplate(32));
+
+        SET chain = new SET();
+        for (int i = 1; i <= 50; i++) {
+            chain.addElement(createCertificate(i));
+        }
+        byte[] cms = ASN1Util.encode(new SignedData(null,
+                new EncapsulatedContentInfo(ContentInfo.DATA, new OCTET_STRING(new byte[64])),
+                chain, null, null));
+        ASN1Template cmsTemplate = SignedData.getTemplate();
+
+        check("CMC PKIData", cmcTemplate, cmc);
+        check("Nested values", nestedTemplate, nested);
+        check("SignedData", cmsTemplate, cms);
+
+        // certificates are decoded on access, and are unchanged by it
+        SignedData signedData = (SignedData) ASN1Util.decode(cmsTemplate, cms);
+        assert signedData.getCertificates().size() == 50;
+        assert signedData.getCertificates().elementAt(0) instanceof Certificate;
+        assert Arrays.equals(ASN1Util.encode(signedData), cms);
+
+        BenchmarkDEREncoding.report("PKIData from array",
+                () -> ASN1Util.decode(cmcTemplate, cmc), iterations);
+        BenchmarkDEREncoding.report("PKIData from stream",
+                () -> cmcTemplate.decode(new BufferedInputStream(new ByteArrayInputStream(cmc))),
+                iterations);
+        BenchmarkDEREncoding.report("Nested values from array",
+                () -> ASN1Util.decode(nestedTemplate, nested), iterations);
+        BenchmarkDEREncoding.report("Nested values from stream",
+                () -> nestedTemplate.decode(new BufferedInputStream(new ByteArrayInputStream(nested))),
+                iterations);
+        BenchmarkDEREncoding.report("SignedData",
+                () -> ASN1Util.decode(cmsTemplate, cms), iterations);
+        BenchmarkDEREncoding.report("SignedData, all certificates", () -> {
+            SET certificates = ((SignedData) ASN1Util.decode(cmsTemplate, cms)).getCertificates();
+            for (int i = 0; i < certificates.size(); i++) {
+                certificates.elementAt(i);
+            }
+            return certificates;
+        }, iterations);
+    }
+}
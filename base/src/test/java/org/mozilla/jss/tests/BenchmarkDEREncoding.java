@@ -0,0 +1,161 @@
+package org.mozilla.jss.tests;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.mozilla.jss.asn1.ANY;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.ASN1Value;
+import org.mozilla.jss.asn1.EXPLICIT;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.asn1.Tag;
+import org.mozilla.jss.asn1.UTF8String;
+import org.mozilla.jss.netscape.security.util.ByteArrayLexOrder;
+import org.mozilla.jss.pkix.cmc.PKIData;
+import org.mozilla.jss.pkix.cmc.TaggedAttribute;
+import org.mozilla.jss.pkix.cms.ContentInfo;
+import org.mozilla.jss.pkix.cms.EncapsulatedContentInfo;
+import org.mozilla.jss.pkix.cms.SignedData;
+
+/**
+ * Utility for benchmarking DER encoding of large, nested ASN.1 structures.
+ *
+ * Usage: BenchmarkDEREncoding [iterations]
+ *
+ * Two structures are encoded: a CMC PKIData whose control attributes
+ * carry deeply nested values, and a SignedData carrying a large content
+ * and many certificates. Each is encoded with ASN1Util.encode(), and its
+ * length is computed with encodedLength(). No NSS database is needed.
+ *
+ * The certificates SET is then encoded on its own with thousands of
+ * certificates, both in random order and already in DER order, to measure
+ * the sorting of SET elements.
+ */
+public class BenchmarkDEREncoding {
+
+    interface Operation {
+        Object run() throws Exception;
+    }
+
+    static final Random random = new Random(0);
+
+    static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Builds a value nested the given number of levels deep, alternating
+     * SEQUENCEs and EXPLICIT tags as in CMC controls.
+     */
+    static ASN1Value nested(int depth) {
+        SEQUENCE seq = new SEQUENCE();
+        seq.addElement(new INTEGER(depth));
+        seq.addElement(new OCTET_STRING(randomBytes(32)));
+        try {
+            seq.addElement(new UTF8String("level " + depth));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        if (depth > 0) {
+            seq.addElement(new EXPLICIT(new Tag(depth % 4), nested(depth - 1)));
+        }
+        return seq;
+    }
+
+    static PKIData createPKIData(int controls, int depth) {
+        SEQUENCE controlSequence = new SEQUENCE();
+        for (int i = 1; i <= controls; i++) {
+            controlSequence.addElement(new TaggedAttribute(
+                    new INTEGER(i),
+                    new OBJECT_IDENTIFIER("1.3.6.1.5.5.7.7." + (i % 30 + 1)),
+                    nested(depth)));
+        }
+        return new PKIData(controlSequence, new SEQUENCE(), new SEQUENCE(), new SEQUENCE());
+    }
+
+    static SignedData createSignedData(int contentSize, int certs, int certSize) throws Exception {
+        SET certificates = new SET();
+        for (int i = 0; i < certs; i++) {
+            // A certificate-sized SEQUENCE; its contents don't matter.
+            SEQUENCE cert = new SEQUENCE();
+            cert.addElement(new INTEGER(i));
+            cert.addElement(new OCTET_STRING(randomBytes(certSize)));
+            certificates.addElement(new ANY(ASN1Util.encode(cert)));
+        }
+
+        EncapsulatedContentInfo content = new EncapsulatedContentInfo(
+                ContentInfo.DATA, new OCTET_STRING(randomBytes(contentSize)));
+
+        return new SignedData(null, content, certificates, null, null);
+    }
+
+    /**
+     * Returns a SET with the same elements in DER order, i.e. sorted by
+     * their encodings.
+     */
+    static SET sorted(SET set) throws Exception {
+        byte[][] encodings = new byte[set.size()][];
+        for (int i = 0; i < set.size(); i++) {
+            encodings[i] = ASN1Util.encode(set.elementAt(i));
+        }
+        Arrays.sort(encodings, new ByteArrayLexOrder());
+
+        SET sorted = new SET();
+        for (byte[] encoding : encodings) {
+            sorted.addElement(new ANY(encoding));
+        }
+        return sorted;
+    }
+
+    public static long measure(Operation op, int iterations) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            if (op.run() == null) {
+                throw new RuntimeException("Operation returned null");
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    static void report(String name, Operation op, int iterations) throws Exception {
+        measure(op, iterations / 10 + 1);
+        long elapsed = measure(op, iterations);
+        System.out.println(String.format("%-30s %12.1f ns/op",
+                name, (double) elapsed / iterations));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+        PKIData pkiData = createPKIData(16, 32);
+        SignedData signedData = createSignedData(1024 * 1024, 200, 1200);
+
+        byte[] cmc = ASN1Util.encode(pkiData);
+        byte[] cms = ASN1Util.encode(signedData);
+
+        assert pkiData.encodedLength() == cmc.length;
+        assert signedData.encodedLength() == cms.length;
+
+        System.out.println("CMC PKIData: " + cmc.length + " bytes");
+        System.out.println("SignedData: " + cms.length + " bytes");
+
+        report("PKIData encode", () -> ASN1Util.encode(pkiData), iterations);
+        report("PKIData encodedLength", () -> pkiData.encodedLength(), iterations);
+        report("SignedData encode", () -> ASN1Util.encode(signedData), iterations);
+        report("SignedData encodedLength", () -> signedData.encodedLength(), iterations);
+
+        SET certificates = createSignedData(0, 5000, 1200).getCertificates();
+        SET sortedCertificates = sorted(certificates);
+
+        assert Arrays.equals(ASN1Util.encode(certificates), ASN1Util.encode(sortedCertificates));
+
+        report("5000 certs SET encode", () -> ASN1Util.encode(certificates), iterations / 10 + 1);
+        report("5000 sorted certs SET encode", () -> ASN1Util.encode(sortedCertificates), iterations / 10 + 1);
+    }
+}
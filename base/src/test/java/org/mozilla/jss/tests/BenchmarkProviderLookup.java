@@ -0,0 +1,83 @@
+package org.mozilla.jss.tests;
+
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.Provider;
+import java.security.Security;
+import java.security.Signature;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+
+import org.mozilla.jss.CryptoManager;
+
+/**
+ * Utility for benchmarking the latency of getInstance(...) calls against
+ * the Mozilla-JSS provider.
+ *
+ * Usage: BenchmarkProviderLookup <dbdir> [iterations]
+ *
+ * Each algorithm is looked up by its standard name and, where one exists,
+ * by an alias. Lookups are warmed up first so that the reported figures
+ * reflect steady-state latency rather than class loading.
+ */
+public class BenchmarkProviderLookup {
+
+    interface Lookup {
+        Object get(Provider p) throws Exception;
+    }
+
+    static final String[] NAMES = {
+        "Signature.SHA-256/RSA",
+        "Signature.SHA256withECDSA",
+        "MessageDigest.SHA-256",
+        "MessageDigest.SHA512",
+        "Mac.HmacSHA256",
+        "Cipher.AES",
+        "KeyFactory.RSA",
+    };
+
+    static final Lookup[] LOOKUPS = {
+        p -> Signature.getInstance("SHA-256/RSA", p),
+        p -> Signature.getInstance("SHA256withECDSA", p),
+        p -> MessageDigest.getInstance("SHA-256", p),
+        p -> MessageDigest.getInstance("SHA512", p),
+        p -> Mac.getInstance("HmacSHA256", p),
+        p -> Cipher.getInstance("AES", p),
+        p -> KeyFactory.getInstance("RSA", p),
+    };
+
+    public static long measure(Provider p, Lookup lookup, int iterations) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            if (lookup.get(p) == null) {
+                throw new RuntimeException("Lookup returned null");
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: BenchmarkProviderLookup <dbdir> [iterations]");
+            System.exit(1);
+        }
+
+        CryptoManager.initialize(args[0]);
+
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+
+        Provider p = Security.getProvider("Mozilla-JSS");
+        assert p != null;
+
+        for (int i = 0; i < LOOKUPS.length; i++) {
+            measure(p, LOOKUPS[i], iterations / 10);
+        }
+
+        for (int i = 0; i < LOOKUPS.length; i++) {
+            long elapsed = measure(p, LOOKUPS[i], iterations);
+            System.out.println(String.format("%-30s %8.1f ns/op",
+                    NAMES[i], (double) elapsed / iterations));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.mozilla.jss.tests;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.mozilla.jss.CryptoManager;
+
+/**
+ * Utility for benchmarking the throughput of concurrent signing with a
+ * single private key through the Mozilla-JSS provider.
+ *
+ * Usage: BenchmarkSignature <dbdir> <pwfile> [signatures per thread] [algorithm]
+ *
+ * For each thread count from 1 to 64, every thread signs the given number
+ * of messages with the same key, each with a freshly obtained Signature
+ * as a server handling independent requests would. Results are reported
+ * as total signatures per second.
+ */
+public class BenchmarkSignature {
+
+    public static final int[] THREADS = { 1, 2, 4, 8, 16, 32, 64 };
+
+    public static double run(KeyPair pair, String algorithm, int threads, int count) throws Exception {
+        byte[] message = new byte[1024];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>(threads);
+        List<Exception> failures = new ArrayList<>();
+
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int j = 0; j < count; j++) {
+                        Signature signer = Signature.getInstance(algorithm, "Mozilla-JSS");
+                        signer.initSign(pair.getPrivate());
+                        signer.update(message);
+                        signer.sign();
+                    }
+                } catch (Exception e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        if (!failures.isEmpty()) {
+            throw failures.get(0);
+        }
+
+        return (double) threads * count * 1000000000L / elapsed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: BenchmarkSignature <dbdir> <pwfile> [signatures per thread] [algorithm]");
+            System.exit(1);
+        }
+
+        CryptoManager.initialize(args[0]);
+        CryptoManager cm = CryptoManager.getInstance();
+        cm.setPasswordCallback(new FilePasswordCallback(args[1]));
+
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        String algorithm = args.length > 3 ? args[3] : "SHA256withRSA";
+
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA", "Mozilla-JSS");
+        kpg.initialize(2048);
+        KeyPair pair = kpg.generateKeyPair();
+
+        // Warm up.
+        run(pair, algorithm, 1, count);
+
+        for (int threads : THREADS) {
+            double rate = run(pair, algorithm, threads, count);
+            System.out.println(String.format("%2d threads: %10.1f signatures/s", threads, rate));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.util.BigInt;
+import org.mozilla.jss.netscape.security.util.DerInputStream;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.util.DerValue;
+
+public class DerValueTest {
+
+    static byte[] createSequence() throws IOException {
+        byte[] data = new byte[300];
+        Arrays.fill(data, (byte) 0x5a);
+
+        DerOutputStream contents = new DerOutputStream();
+        contents.putInteger(new BigInt(300));
+        contents.putOctetString(data);
+        contents.putPrintableString("JSS");
+
+        DerOutputStream seq = new DerOutputStream();
+        seq.write(DerValue.tag_Sequence, contents);
+        return seq.toByteArray();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        byte[] encoding = createSequence();
+
+        DerValue value = new DerValue(encoding);
+        Assertions.assertArrayEquals(encoding, value.toByteArray());
+        Assertions.assertArrayEquals(encoding, value.toByteArray());
+        Assertions.assertEquals(new DerValue(new ByteArrayInputStream(encoding)), value);
+
+        // from the middle of a larger array
+        byte[] padded = new byte[encoding.length + 4];
+        System.arraycopy(encoding, 0, padded, 2, encoding.length);
+        DerValue part = new DerValue(padded, 2, encoding.length);
+        Assertions.assertArrayEquals(encoding, part.toByteArray());
+        Assertions.assertEquals(value, part);
+
+        // the elements of a sequence encode to their part of it
+        DerValue[] elements = new DerInputStream(encoding).getSequence(3);
+        Assertions.assertEquals(3, elements.length);
+        Assertions.assertEquals("0202012c", HexFormat.of().formatHex(elements[0].toByteArray()));
+        Assertions.assertArrayEquals(Arrays.copyOfRange(encoding, 8, 8 + 304), elements[1].toByteArray());
+        Assertions.assertEquals("JSS", elements[2].getPrintableString());
+        Assertions.assertEquals("13034a5353", HexFormat.of().formatHex(elements[2].toByteArray()));
+
+        // values built from their contents are equal to parsed ones
+        Assertions.assertEquals(new DerValue(DerValue.tag_OctetString, elements[1].getOctetString()), elements[1]);
+        Assertions.assertArrayEquals(elements[1].toByteArray(),
+                new DerValue(DerValue.tag_OctetString, elements[1].getOctetString()).toByteArray());
+    }
+
+    @Test
+    public void testResetTag() throws Exception {
+        byte[] encoding = HexFormat.of().parseHex("0403010203");
+
+        // the changed tag is encoded, rather than the original encoding
+        DerValue value = new DerValue(encoding);
+        value.resetTag((byte) (DerValue.TAG_CONTEXT | 1));
+        Assertions.assertEquals("8103010203", HexFormat.of().formatHex(value.toByteArray()));
+        Assertions.assertEquals("0403010203", HexFormat.of().formatHex(encoding));
+
+        DerValue[] elements = new DerInputStream(createSequence()).getSequence(3);
+        elements[0].resetTag((byte) (DerValue.TAG_CONTEXT | 2));
+        Assertions.assertEquals("8202012c", HexFormat.of().formatHex(elements[0].toByteArray()));
+    }
+
+    @Test
+    public void testExtraData() throws Exception {
+        byte[] encoding = HexFormat.of().parseHex("04020102ff");
+
+        IOException e = Assertions.assertThrows(IOException.class, () -> new DerValue(encoding));
+        Assertions.assertTrue(e.getMessage().contains("extra"));
+        Assertions.assertThrows(IOException.class, () -> new DerValue(encoding, 0, encoding.length));
+
+        // the value alone is fine
+        Assertions.assertArrayEquals(new byte[] { 1, 2 }, new DerValue(encoding, 0, 4).getOctetString());
+    }
+
+    @Test
+    public void testShortData() throws Exception {
+        byte[] encoding = HexFormat.of().parseHex("040501020304ff");
+
+        Assertions.assertThrows(IOException.class, () -> new DerValue(Arrays.copyOf(encoding, 5)));
+
+        // the length of the range counts, not that of the array
+        Assertions.assertThrows(IOException.class, () -> new DerValue(encoding, 0, 5));
+        Assertions.assertThrows(IOException.class, () -> new DerValue(new ByteArrayInputStream(encoding, 0, 5)));
+    }
+
+    @Test
+    public void testContentsReadOnly() throws Exception {
+        byte[] encoding = HexFormat.of().parseHex("0403010203");
+        DerValue value = new DerValue(encoding);
+
+        ByteBuffer contents = value.getContents();
+        Assertions.assertTrue(contents.isReadOnly());
+        Assertions.assertEquals(3, contents.remaining());
+        Assertions.assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), contents);
+        Assertions.assertThrows(ReadOnlyBufferException.class, () -> contents.put(0, (byte) 9));
+        Assertions.assertThrows(ReadOnlyBufferException.class, () -> contents.array());
+
+        // the copies returned by getters don't share the buffer
+        byte[] octets = value.getOctetString();
+        octets[0] = 9;
+        Assertions.assertArrayEquals(encoding, value.toByteArray());
+        Assertions.assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), value.getContents());
+    }
+}
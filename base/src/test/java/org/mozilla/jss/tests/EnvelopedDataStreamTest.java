@@ -0,0 +1,197 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.crypto.AlreadyInitializedException;
+import org.mozilla.jss.crypto.Cipher;
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.crypto.EncryptionAlgorithm;
+import org.mozilla.jss.crypto.IVParameterSpec;
+import org.mozilla.jss.crypto.KeyGenAlgorithm;
+import org.mozilla.jss.crypto.KeyGenerator;
+import org.mozilla.jss.crypto.KeyPairAlgorithm;
+import org.mozilla.jss.crypto.KeyPairGenerator;
+import org.mozilla.jss.crypto.KeyWrapAlgorithm;
+import org.mozilla.jss.crypto.KeyWrapper;
+import org.mozilla.jss.crypto.PrivateKey;
+import org.mozilla.jss.crypto.SymmetricKey;
+import org.mozilla.jss.pkix.cms.ContentInfo;
+import org.mozilla.jss.pkix.cms.EnvelopedData;
+import org.mozilla.jss.pkix.cms.EnvelopedDataReader;
+import org.mozilla.jss.pkix.cms.EnvelopedDataWriter;
+import org.mozilla.jss.pkix.cms.IssuerAndSerialNumber;
+import org.mozilla.jss.pkix.cms.RecipientInfo;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+import org.mozilla.jss.pkix.primitive.Name;
+
+/**
+ * Test streaming encryption and decryption of CMS EnvelopedData with
+ * EnvelopedDataWriter and EnvelopedDataReader.
+ */
+public class EnvelopedDataStreamTest {
+
+    static CryptoToken token;
+    static KeyPair rsaKeyPair;
+    static byte[] content;
+
+    public static void main(String[] args) throws Exception {
+
+        if (args.length != 2) {
+            System.out.println("Usage: java org.mozilla.jss.tests.EnvelopedDataStreamTest <dbdir> <passwordfile>");
+            System.exit(1);
+        }
+
+        try {
+            CryptoManager.initialize(args[0]);
+        } catch (AlreadyInitializedException e) {
+            // already initialized, it's ok
+        }
+
+        CryptoManager cm = CryptoManager.getInstance();
+        cm.setPasswordCallback(new FilePasswordCallback(args[1]));
+
+        token = cm.getInternalKeyStorageToken();
+        KeyPairGenerator kpg = token.getKeyPairGenerator(KeyPairAlgorithm.RSA);
+        kpg.initialize(2048);
+        kpg.temporaryPairs(true);
+        rsaKeyPair = kpg.genKeyPair();
+
+        // several segments, not a multiple of the block size
+        content = new byte[1000003];
+        new Random(1).nextBytes(content);
+
+        testRoundTrip(EncryptionAlgorithm.AES_128_CBC, 128);
+        testRoundTrip(EncryptionAlgorithm.AES_256_CBC_PAD, 256);
+        testFileChannel();
+        testTemplateDecoding();
+
+        System.out.println("EnvelopedDataStreamTest: PASS");
+    }
+
+    static SymmetricKey generateKey(int strength) throws Exception {
+        KeyGenerator kg = token.getKeyGenerator(KeyGenAlgorithm.AES);
+        kg.initialize(strength);
+        return kg.generate();
+    }
+
+    /**
+     * Creates a RecipientInfo with the key wrapped with the RSA public key.
+     */
+    static RecipientInfo createRecipientInfo(SymmetricKey key) throws Exception {
+
+        KeyWrapper wrapper = token.getKeyWrapper(KeyWrapAlgorithm.RSA);
+        wrapper.initWrap(rsaKeyPair.getPublic(), null);
+        byte[] wrapped = wrapper.wrap(key);
+
+        return new RecipientInfo(
+                new INTEGER(0),
+                new IssuerAndSerialNumber(new Name(), new INTEGER(1)),
+                new AlgorithmIdentifier(KeyWrapAlgorithm.RSA.toOID(), null),
+                new OCTET_STRING(wrapped));
+    }
+
+    static SymmetricKey unwrapKey(RecipientInfo recipientInfo) throws Exception {
+
+        KeyWrapper wrapper = token.getKeyWrapper(KeyWrapAlgorithm.RSA);
+        wrapper.initUnwrap((PrivateKey) rsaKeyPair.getPrivate(), null);
+
+        return wrapper.unwrapSymmetric(
+                recipientInfo.getEncryptedKey().toByteArray(), SymmetricKey.AES, 0);
+    }
+
+    static byte[] encrypt(EncryptionAlgorithm alg, SymmetricKey key) throws Exception {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (EnvelopedDataWriter writer = new EnvelopedDataWriter(out, ContentInfo.DATA, alg, key, null)) {
+            writer.addRecipient(createRecipientInfo(key));
+
+            writer.write(new ByteArrayInputStream(content, 0, 1000));
+            writer.getContentStream().write(content, 1000, content.length - 1000);
+        }
+
+        return out.toByteArray();
+    }
+
+    static byte[] decrypt(byte[] encoding) throws Exception {
+
+        EnvelopedDataReader reader = new EnvelopedDataReader(new ByteArrayInputStream(encoding));
+        assert reader.hasContent();
+        assert reader.getContentType().equals(ContentInfo.DATA);
+        assert reader.getRecipientInfos().size() == 1;
+
+        SymmetricKey key = unwrapKey((RecipientInfo) reader.getRecipientInfos().elementAt(0));
+
+        try (InputStream in = reader.getContent(key)) {
+            return in.readAllBytes();
+        }
+    }
+
+    static void testRoundTrip(EncryptionAlgorithm alg, int strength) throws Exception {
+        System.out.println("Testing " + alg);
+
+        byte[] encoding = encrypt(alg, generateKey(strength));
+        assert Arrays.equals(decrypt(encoding), content);
+    }
+
+    static void testFileChannel() throws Exception {
+        System.out.println("Testing content from a file channel");
+
+        SymmetricKey key = generateKey(256);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Path file = Files.createTempFile("EnvelopedDataStreamTest", ".bin");
+        try {
+            Files.write(file, content);
+
+            try (EnvelopedDataWriter writer = new EnvelopedDataWriter(
+                    out, ContentInfo.DATA, EncryptionAlgorithm.AES_256_CBC, key, null);
+                    FileChannel channel = FileChannel.open(file)) {
+                writer.addRecipient(createRecipientInfo(key));
+                writer.write(channel);
+            }
+
+        } finally {
+            Files.delete(file);
+        }
+
+        assert Arrays.equals(decrypt(out.toByteArray()), content);
+    }
+
+    static void testTemplateDecoding() throws Exception {
+        System.out.println("Testing decoding with templates");
+
+        SymmetricKey key = generateKey(128);
+        ContentInfo contentInfo = (ContentInfo) ASN1Util.decode(
+                ContentInfo.getTemplate(), encrypt(EncryptionAlgorithm.AES_128_CBC, key));
+        EnvelopedData envelopedData = (EnvelopedData) contentInfo.getInterpretedContent();
+
+        // decrypt the whole content at once with the same key and IV
+        AlgorithmIdentifier algID = envelopedData.getEncryptedContentInfo().getContentEncryptionAlgorithm();
+        OCTET_STRING iv = (OCTET_STRING) ASN1Util.decode(
+                OCTET_STRING.getTemplate(), ASN1Util.encode(algID.getParameters()));
+
+        Cipher cipher = token.getCipherContext(EncryptionAlgorithm.AES_128_CBC_PAD);
+        cipher.initDecrypt(key, new IVParameterSpec(iv.toByteArray()));
+        byte[] decrypted = cipher.doFinal(
+                envelopedData.getEncryptedContentInfo().getEncryptedContent().toByteArray());
+
+        assert Arrays.equals(decrypted, content);
+    }
+}
@@ -0,0 +1,142 @@
+package org.mozilla.jss.tests;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HexFormat;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.asn1.ANY;
+import org.mozilla.jss.asn1.ASN1Template;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.ASN1Value;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.InvalidBERException;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.asn1.Tag;
+import org.mozilla.jss.pkix.cert.Certificate;
+import org.mozilla.jss.pkix.cms.SignedData;
+
+public class LazyDecodingTest {
+
+    /**
+     * Decodes INTEGERs, counting how many were decoded.
+     */
+    static class CountingTemplate implements ASN1Template {
+        final ASN1Template template = INTEGER.getTemplate();
+        int decoded;
+
+        @Override
+        public boolean tagMatch(Tag tag) {
+            return template.tagMatch(tag);
+        }
+
+        @Override
+        public ASN1Value decode(InputStream istream) throws IOException, InvalidBERException {
+            decoded++;
+            return template.decode(istream);
+        }
+
+        @Override
+        public ASN1Value decode(Tag implicitTag, InputStream istream) throws IOException, InvalidBERException {
+            decoded++;
+            return template.decode(implicitTag, istream);
+        }
+    }
+
+    // SEQUENCE OF INTEGER { 1, 2, 3 } with needless leading zeros, which
+    // are dropped when the INTEGERs are encoded again
+    static final byte[] INTEGERS = HexFormat.of().parseHex("300c020200010202000202020003");
+
+    static void assertDecodedOnAccess(SET set, CountingTemplate counter) {
+        Assertions.assertEquals(0, counter.decoded);
+        Assertions.assertEquals(3, set.size());
+        Assertions.assertEquals(INTEGER.TAG, set.tagAt(1));
+        Assertions.assertEquals(0, counter.decoded);
+
+        ASN1Value value = set.elementAt(1);
+        Assertions.assertEquals(new INTEGER(2), value);
+        Assertions.assertEquals(1, counter.decoded);
+
+        // decoded only once
+        Assertions.assertSame(value, set.elementAt(1));
+        Assertions.assertEquals(1, counter.decoded);
+    }
+
+    @Test
+    public void testDecodedOnAccess() throws Exception {
+        CountingTemplate counter = new CountingTemplate();
+        SEQUENCE seq = (SEQUENCE) ASN1Util.decode(SEQUENCE.OF_Template.makeLazyOFTemplate(counter), INTEGERS);
+        assertDecodedOnAccess(seq, counter);
+
+        byte[] encoding = INTEGERS.clone();
+        encoding[0] = 0x31;
+        counter = new CountingTemplate();
+        SET set = (SET) ASN1Util.decode(SET.OF_Template.makeLazyOFTemplate(counter), encoding);
+        assertDecodedOnAccess(set, counter);
+    }
+
+    @Test
+    public void testUntouchedReencoded() throws Exception {
+        // Decoded elements are encoded in DER...
+        SEQUENCE eager = (SEQUENCE) ASN1Util.decode(new SEQUENCE.OF_Template(INTEGER.getTemplate()), INTEGERS);
+        Assertions.assertEquals("3009020101020102020103", HexFormat.of().formatHex(ASN1Util.encode(eager)));
+
+        // ...while untouched ones are encoded as they were read.
+        SEQUENCE lazy = (SEQUENCE) ASN1Util.decode(SEQUENCE.OF_Template.makeLazyOFTemplate(INTEGER.getTemplate()), INTEGERS);
+        Assertions.assertArrayEquals(INTEGERS, ASN1Util.encode(lazy));
+
+        lazy.elementAt(0);
+        Assertions.assertEquals("300b0201010202000202020003", HexFormat.of().formatHex(ASN1Util.encode(lazy)));
+
+        byte[] encoding = INTEGERS.clone();
+        encoding[0] = 0x31;
+        SET set = (SET) ASN1Util.decode(SET.OF_Template.makeLazyOFTemplate(INTEGER.getTemplate()), encoding);
+        Assertions.assertArrayEquals(encoding, ASN1Util.encode(set));
+    }
+
+    @Test
+    public void testMalformedCertificate() throws Exception {
+        ANY cert = BenchmarkDERDecoding.createCertificate(1);
+
+        // a SEQUENCE, but not a Certificate
+        SEQUENCE bogus = new SEQUENCE();
+        bogus.addElement(new INTEGER(1));
+
+        SET certs = new SET();
+        certs.addElement(cert);
+        certs.addElement(bogus);
+
+        SEQUENCE contentInfo = new SEQUENCE();
+        contentInfo.addElement(new OBJECT_IDENTIFIER("1.2.840.113549.1.7.1"));
+
+        SEQUENCE sd = new SEQUENCE();
+        sd.addElement(new INTEGER(1));
+        sd.addElement(new SET());
+        sd.addElement(contentInfo);
+        sd.addElement(new Tag(0), certs);
+        sd.addElement(new SET());
+        byte[] encoding = ASN1Util.encode(sd);
+
+        // The malformed certificate isn't noticed until it is accessed.
+        SignedData signedData = (SignedData) ASN1Util.decode(SignedData.getTemplate(), encoding);
+        Assertions.assertArrayEquals(encoding, ASN1Util.encode(signedData));
+
+        SET decoded = signedData.getCertificates();
+        Assertions.assertEquals(2, decoded.size());
+
+        int good = 0;
+        for (int i = 0; i < decoded.size(); i++) {
+            try {
+                Certificate c = (Certificate) decoded.elementAt(i);
+                Assertions.assertArrayEquals(cert.getEncoded(), ASN1Util.encode(c));
+                good++;
+            } catch (RuntimeException e) {
+                Assertions.assertTrue(e.getCause() instanceof InvalidBERException);
+            }
+        }
+        Assertions.assertEquals(1, good);
+    }
+}
@@ -1,5 +1,7 @@
 package org.mozilla.jss.tests;
 
+import java.util.Arrays;
+
 import org.mozilla.jss.CryptoManager;
 import org.mozilla.jss.crypto.X509Certificate;
 import org.mozilla.jss.pkcs11.PK11Cert;
@@ -16,6 +18,20 @@ public class ListCACerts {
 
         X509Certificate[] certs = cm.getCACerts();
         System.out.println("Number of CA certs: " + certs.length);
+        // Certificates returned by a second lookup share their encoding
+        // and parsed form with the first, but callers still get copies.
+        X509Certificate[] again = cm.getCACerts();
+        assert again.length == certs.length;
+        for (int i = 0; i < certs.length; i++) {
+            assert certs[i].equals(again[i]);
+            assert certs[i].getNotAfter().equals(again[i].getNotAfter());
+
+            byte[] encoded = certs[i].getEncoded();
+            encoded[0] ^= 0x01;
+            assert !Arrays.equals(encoded, again[i].getEncoded());
+            assert Arrays.equals(certs[i].getEncoded(), again[i].getEncoded());
+        }
+
         System.out.println("use option \"verbose\" if you want the CA " +
             "certs printed out");
 
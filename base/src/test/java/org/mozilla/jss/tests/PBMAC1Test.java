@@ -24,6 +24,8 @@ import org.mozilla.jss.crypto.X509Certificate;
 import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
 import org.mozilla.jss.netscape.security.pkcs.PKCS12;
 import org.mozilla.jss.netscape.security.pkcs.PKCS12Util;
+import org.mozilla.jss.netscape.security.pkcs.PKCS12Reader;
+import org.mozilla.jss.netscape.security.pkcs.PKCS12Writer;
 import org.mozilla.jss.pkix.cert.Certificate;
 import org.mozilla.jss.pkix.cert.CertificateInfo;
 import org.mozilla.jss.pkix.primitive.Name;
@@ -95,6 +97,10 @@ public class PBMAC1Test {
             // Test cerating a P12 with pbmac1 and KWP encryption.
             testCreateP12WithKWP(args[0], MacType.PBMAC1);
 
+            // Test streaming export and import with both MAC types.
+            testStreamingP12(args[0], MacType.CLASSIC);
+            testStreamingP12(args[0], MacType.PBMAC1);
+
             //Test some rfc verifications
 
             testRFC9879Vectors();
@@ -379,6 +385,81 @@ private static void testCreateP12WithPBMAC1(String dbdir) throws Exception {
           System.out.println("  ✓ Classic MAC PKCS#12 round-trip test PASSED\n");
       }
 
+  /**
+   * Tests PKCS#12 export with PKCS12Writer and import with PKCS12Reader.
+   *
+   * @param dbdir Path to the NSS database directory
+   * @param macType The MAC type of the PKCS#12 file
+   */
+  private static void testStreamingP12(String dbdir, MacType macType) throws Exception {
+          System.out.println("Testing streaming PKCS#12 export and import with " + macType + " MAC...");
+
+          CryptoManager cm = CryptoManager.getInstance();
+
+          PKCS12 pkcs12 = new PKCS12();
+          PKCS12Util util = new PKCS12Util();
+          util.setMacType(macType);
+
+          // Several entries, so that SafeContents are split into batches.
+          String[] nicknames = new String[3];
+          for (int i = 0; i < nicknames.length; i++) {
+              nicknames[i] = "Streaming-Test-" + i + "-" + System.currentTimeMillis();
+              generateTestCertAndKey("RSA", 2048, nicknames[i]);
+              util.loadCertFromNSS(pkcs12, cm.findCertByNickname(nicknames[i]), true, false);
+          }
+
+          Password password = new Password("test123".toCharArray());
+          java.nio.file.Path path = java.nio.file.Paths.get(dbdir, "test-streaming-" + macType + ".p12");
+
+          try (java.io.OutputStream os = java.nio.file.Files.newOutputStream(path);
+                  PKCS12Writer writer = new PKCS12Writer(util, os, password, 2, 2)) {
+              writer.addAll(pkcs12);
+          }
+
+          System.out.println("  ✓ Exported to: " + path);
+
+          // The streamed file must be readable by the in-memory loader.
+          PKCS12 loaded = util.loadFromFile(path.toString(), password);
+          assert loaded.getKeyInfos().size() == nicknames.length;
+          assert loaded.getCertInfos().size() == nicknames.length;
+
+          PKCS12 streamed = util.loadFromFile(path, password);
+          assert streamed.getKeyInfos().size() == nicknames.length;
+          assert streamed.getCertInfos().size() == nicknames.length;
+
+          System.out.println("  ✓ Loaded with both readers");
+
+          try {
+              util.loadFromFile(path, new Password("wrong".toCharArray()));
+              throw new Exception("PKCS#12 file loaded with wrong password!");
+          } catch (Exception e) {
+              if (!e.getMessage().startsWith("Unable to validate PKCS #12 file")) {
+                  throw e;
+              }
+          }
+
+          System.out.println("  ✓ Rejected wrong password");
+
+          CryptoStore store = cm.getInternalKeyStorageToken().getCryptoStore();
+          for (String nickname : nicknames) {
+              store.deleteCert(cm.findCertByNickname(nickname));
+          }
+
+          // Import with the private keys decrypted on two threads.
+          try (PKCS12Reader reader = new PKCS12Reader(util, path, password, 2)) {
+              reader.storeIntoNSS(false);
+          }
+
+          for (String nickname : nicknames) {
+              X509Certificate restoredCert = cm.findCertByNickname(nickname);
+              store.deleteCert(restoredCert);
+          }
+
+          password.clear();
+
+          System.out.println("  ✓ Streaming PKCS#12 round-trip test PASSED\n");
+      }
+
     /**
     * Generates a self-signed test certificate and keypair in the NSS database.
     *
@@ -0,0 +1,179 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.SignatureException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.crypto.AlreadyInitializedException;
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.crypto.KeyPairAlgorithm;
+import org.mozilla.jss.crypto.KeyPairGenerator;
+import org.mozilla.jss.crypto.PrivateKey;
+import org.mozilla.jss.crypto.SignatureAlgorithm;
+import org.mozilla.jss.pkix.cms.ContentInfo;
+import org.mozilla.jss.pkix.cms.SignedData;
+import org.mozilla.jss.pkix.cms.SignedDataReader;
+import org.mozilla.jss.pkix.cms.SignedDataWriter;
+import org.mozilla.jss.pkix.cms.SignerIdentifier;
+import org.mozilla.jss.pkix.cms.SignerInfo;
+
+/**
+ * Test streaming generation and verification of CMS SignedData with
+ * SignedDataWriter and SignedDataReader.
+ */
+public class SignedDataStreamTest {
+
+    static KeyPair rsaKeyPair;
+    static byte[] content;
+
+    public static void main(String[] args) throws Exception {
+
+        if (args.length != 2) {
+            System.out.println("Usage: java org.mozilla.jss.tests.SignedDataStreamTest <dbdir> <passwordfile>");
+            System.exit(1);
+        }
+
+        try {
+            CryptoManager.initialize(args[0]);
+        } catch (AlreadyInitializedException e) {
+            // already initialized, it's ok
+        }
+
+        CryptoManager cm = CryptoManager.getInstance();
+        cm.setPasswordCallback(new FilePasswordCallback(args[1]));
+
+        CryptoToken token = cm.getInternalKeyStorageToken();
+        KeyPairGenerator kpg = token.getKeyPairGenerator(KeyPairAlgorithm.RSA);
+        kpg.initialize(2048);
+        kpg.temporaryPairs(true);
+        rsaKeyPair = kpg.genKeyPair();
+
+        // several segments, not a multiple of the segment size
+        content = new byte[1000003];
+        new Random(1).nextBytes(content);
+
+        testEncapsulated();
+        testDetached();
+        testTemplateDecoding();
+
+        System.out.println("SignedDataStreamTest: PASS");
+    }
+
+    static SignerIdentifier signerIdentifier(int id) {
+        return SignerIdentifier.createSubjectKeyIdentifier(new OCTET_STRING(new byte[] { (byte) id }));
+    }
+
+    /**
+     * Signs the content with two signers using different digests.
+     */
+    static byte[] sign(boolean detached) throws Exception {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (SignedDataWriter writer = new SignedDataWriter(out, ContentInfo.DATA, detached)) {
+            PrivateKey key = (PrivateKey) rsaKeyPair.getPrivate();
+            writer.addSigner(signerIdentifier(1), SignatureAlgorithm.RSASignatureWithSHA256Digest, key);
+            writer.addSigner(signerIdentifier(2), SignatureAlgorithm.RSASignatureWithSHA512Digest, key);
+            writer.addCertificate(BenchmarkDERDecoding.createCertificate(1));
+
+            writer.write(new ByteArrayInputStream(content, 0, 1000));
+            writer.getContentStream().write(content, 1000, content.length - 1000);
+        }
+
+        return out.toByteArray();
+    }
+
+    static void verifyAll(SignedDataReader reader) throws Exception {
+        SET signerInfos = reader.getSignerInfos();
+        assert signerInfos.size() == 2;
+        for (int i = 0; i < signerInfos.size(); i++) {
+            reader.verify((SignerInfo) signerInfos.elementAt(i), rsaKeyPair.getPublic());
+        }
+    }
+
+    static void testEncapsulated() throws Exception {
+        System.out.println("Testing encapsulated content");
+
+        byte[] encoding = sign(false);
+
+        SignedDataReader reader = new SignedDataReader(new ByteArrayInputStream(encoding));
+        assert reader.hasContent();
+        assert reader.getContentType().equals(ContentInfo.DATA);
+        assert reader.getDigestAlgorithmIdentifiers().size() == 2;
+
+        try (InputStream in = reader.getContent()) {
+            assert Arrays.equals(in.readAllBytes(), content);
+        }
+
+        assert reader.getCertificates().size() == 1;
+        verifyAll(reader);
+
+        // the content is digested even if it is not read
+        reader = new SignedDataReader(new ByteArrayInputStream(encoding));
+        verifyAll(reader);
+    }
+
+    static void testDetached() throws Exception {
+        System.out.println("Testing detached content");
+
+        byte[] encoding = sign(true);
+        assert encoding.length < content.length;
+
+        SignedDataReader reader = new SignedDataReader(new ByteArrayInputStream(encoding));
+        assert !reader.hasContent();
+        reader.digest(new ByteArrayInputStream(content));
+        verifyAll(reader);
+
+        Path file = Files.createTempFile("SignedDataStreamTest", ".bin");
+        try {
+            Files.write(file, content);
+
+            reader = new SignedDataReader(new ByteArrayInputStream(encoding));
+            try (FileChannel channel = FileChannel.open(file)) {
+                reader.digest(channel);
+            }
+            verifyAll(reader);
+
+        } finally {
+            Files.delete(file);
+        }
+
+        // modified content must not verify
+        byte[] modified = content.clone();
+        modified[modified.length / 2] ^= 1;
+
+        reader = new SignedDataReader(new ByteArrayInputStream(encoding));
+        reader.digest(new ByteArrayInputStream(modified));
+        try {
+            verifyAll(reader);
+            throw new Exception("Modified content was verified");
+        } catch (SignatureException e) {
+            // expected
+        }
+    }
+
+    static void testTemplateDecoding() throws Exception {
+        System.out.println("Testing decoding with templates");
+
+        ContentInfo contentInfo = (ContentInfo) ASN1Util.decode(ContentInfo.getTemplate(), sign(false));
+        SignedData signedData = (SignedData) contentInfo.getInterpretedContent();
+
+        assert Arrays.equals(signedData.getContentInfo().getContent().toByteArray(), content);
+        assert signedData.getSignerInfos().size() == 2;
+    }
+}
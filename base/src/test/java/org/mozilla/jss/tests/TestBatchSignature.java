@@ -0,0 +1,107 @@
+package org.mozilla.jss.tests;
+
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.crypto.KeyPairAlgorithm;
+import org.mozilla.jss.crypto.KeyPairGenerator;
+import org.mozilla.jss.crypto.PrivateKey;
+import org.mozilla.jss.crypto.SignatureAlgorithm;
+import org.mozilla.jss.pkcs11.PK11Signature;
+import org.mozilla.jss.pkcs11.PK11Token;
+
+public class TestBatchSignature {
+
+    static List<byte[]> messages(int count) {
+        List<byte[]> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(("Batch message " + i).getBytes());
+        }
+        return result;
+    }
+
+    public static void testBatch(PK11Token token, KeyPair pair, SignatureAlgorithm alg, boolean deterministic) throws Exception {
+        List<byte[]> messages = messages(100);
+        PrivateKey privateKey = (PrivateKey) pair.getPrivate();
+
+        try (PK11Signature signer = new PK11Signature(token, alg)) {
+            List<byte[]> signatures = signer.signAll(privateKey, messages);
+            assert signatures.size() == messages.size();
+
+            boolean[] verified = signer.verifyAll(pair.getPublic(), messages, signatures);
+            for (boolean v : verified) {
+                assert v;
+            }
+
+            // Signatures don't verify against the wrong message.
+            List<byte[]> shifted = new ArrayList<>(messages.subList(1, messages.size()));
+            shifted.add(messages.get(0));
+            verified = signer.verifyAll(pair.getPublic(), shifted, signatures);
+            for (boolean v : verified) {
+                assert !v;
+            }
+
+            // Signing precomputed digests matches signing the messages.
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            List<byte[]> digests = new ArrayList<>(messages.size());
+            for (byte[] message : messages) {
+                digests.add(md.digest(message));
+            }
+            List<byte[]> digestSignatures = signer.signDigests(privateKey, digests);
+            verified = signer.verifyAll(pair.getPublic(), messages, digestSignatures);
+            for (int i = 0; i < verified.length; i++) {
+                assert verified[i];
+                if (deterministic) {
+                    assert java.util.Arrays.equals(digestSignatures.get(i), signatures.get(i));
+                }
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                List<byte[]> parallel = signer.signAll(privateKey, messages, pool);
+                assert parallel.size() == messages.size();
+                verified = signer.verifyAll(pair.getPublic(), messages, parallel, pool);
+                for (boolean v : verified) {
+                    assert v;
+                }
+
+                parallel = signer.signDigests(privateKey, digests, pool);
+                verified = signer.verifyAll(pair.getPublic(), messages, parallel, pool);
+                for (boolean v : verified) {
+                    assert v;
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.out.println("Usage: TestBatchSignature <dbdir> <pwfile>");
+            System.exit(1);
+        }
+
+        CryptoManager cm = CryptoManager.getInstance();
+        cm.setPasswordCallback(new FilePasswordCallback(args[1]));
+        PK11Token token = (PK11Token) cm.getInternalKeyStorageToken();
+
+        KeyPairGenerator rsa = token.getKeyPairGenerator(KeyPairAlgorithm.RSA);
+        rsa.initialize(2048);
+        KeyPair rsaPair = rsa.genKeyPair();
+
+        KeyPairGenerator ec = token.getKeyPairGenerator(KeyPairAlgorithm.EC);
+        ec.initialize(256);
+        KeyPair ecPair = ec.genKeyPair();
+
+        System.out.println("Calling testBatch() with RSA...");
+        testBatch(token, rsaPair, SignatureAlgorithm.RSASignatureWithSHA256Digest, true);
+
+        System.out.println("Calling testBatch() with EC...");
+        testBatch(token, ecPair, SignatureAlgorithm.ECSignatureWithSHA256Digest, false);
+    }
+}
@@ -1,6 +1,7 @@
 package org.mozilla.jss.tests;
 
 import org.mozilla.jss.nss.Buffer;
+import org.mozilla.jss.nss.BufferPoolStats;
 import org.mozilla.jss.nss.BufferProxy;
 
 public class TestBuffer {
@@ -71,6 +72,71 @@ public class TestBuffer {
         Buffer.Free(buf);
     }
 
+    public static void TestElastic() {
+        BufferProxy buf = Buffer.CreateElastic(2, 8);
+        byte[] data = {0x00, 0x01, 0x02, 0x03, 0x04};
+
+        assert(buf != null);
+        assert(Buffer.Capacity(buf) == 8);
+        assert(Buffer.Allocated(buf) == 0);
+        assert(Buffer.WriteCapacity(buf) == 8);
+        assert(!Buffer.CanRead(buf));
+        assert(Buffer.CanWrite(buf));
+        assert(!Buffer.Release(buf));
+
+        assert(Buffer.Write(buf, data) == data.length);
+        assert(Buffer.Allocated(buf) == 8);
+        assert(Buffer.ReadCapacity(buf) == 5);
+        assert(Buffer.WriteCapacity(buf) == 3);
+        assert(!Buffer.Release(buf));
+
+        byte[] out_data = Buffer.Read(buf, 5);
+        assert(out_data.length == 5);
+        assert(out_data[4] == data[4]);
+
+        assert(Buffer.Release(buf));
+        assert(Buffer.Allocated(buf) == 0);
+        assert(Buffer.WriteCapacity(buf) == 8);
+
+        assert(Buffer.Put(buf, (byte) 0x05) == 0x05);
+        assert(Buffer.Allocated(buf) == 2);
+        assert(Buffer.Get(buf) == 0x05);
+
+        Buffer.Free(buf);
+    }
+
+    public static void TestPool() {
+        Buffer.ConfigurePool(1 << 20, 4);
+        Buffer.DrainPool();
+
+        BufferPoolStats before = Buffer.GetPoolStats();
+        assert(before.pooledBlocks == 0);
+        assert(before.pooledBytes == 0);
+
+        BufferProxy buf = Buffer.Create(4096);
+        BufferPoolStats during = Buffer.GetPoolStats();
+        assert(during.allocatedBytes == before.allocatedBytes + 4096);
+        assert(during.highWaterBytes >= during.allocatedBytes);
+        Buffer.Free(buf);
+
+        BufferPoolStats after = Buffer.GetPoolStats();
+        assert(after.allocatedBytes == before.allocatedBytes);
+        assert(after.pooledBlocks == 1);
+        assert(after.pooledBytes == 4096);
+
+        // The next buffer of the same size reuses the pooled contents.
+        buf = Buffer.Create(4096);
+        BufferPoolStats reused = Buffer.GetPoolStats();
+        assert(reused.hits == after.hits + 1);
+        assert(reused.pooledBlocks == 0);
+        assert(Buffer.ReadCapacity(buf) == 0);
+        Buffer.Free(buf);
+
+        // Disabling the pool frees everything held in it.
+        Buffer.ConfigurePool(0, 0);
+        assert(Buffer.GetPoolStats().pooledBytes == 0);
+    }
+
     public static void main(String[] args) {
         System.loadLibrary("jss");
 
@@ -85,5 +151,11 @@ public class TestBuffer {
 
         System.out.println("Calling TestPutGet()...");
         TestPutGet();
+
+        System.out.println("Calling TestElastic()...");
+        TestElastic();
+
+        System.out.println("Calling TestPool()...");
+        TestPool();
     }
 }
@@ -0,0 +1,210 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.crypto.Cipher;
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.crypto.DigestAlgorithm;
+import org.mozilla.jss.crypto.EncryptionAlgorithm;
+import org.mozilla.jss.crypto.IVParameterSpec;
+import org.mozilla.jss.crypto.JSSMessageDigest;
+import org.mozilla.jss.crypto.KeyGenAlgorithm;
+import org.mozilla.jss.crypto.KeyGenerator;
+import org.mozilla.jss.crypto.SecretKeyFacade;
+import org.mozilla.jss.crypto.SymmetricKey;
+
+/**
+ * Checks that the Cipher methods writing into a caller's array, and
+ * digests restarted after digest(), give the same results as the
+ * methods returning new arrays and fresh contexts.
+ */
+public class TestCipherOutputArray {
+
+    static byte[] bytes(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 7 + 3);
+        }
+        return data;
+    }
+
+    static void init(Cipher cipher, boolean encrypt, SymmetricKey key, byte[] iv) throws Exception {
+        if (encrypt) {
+            if (iv == null) {
+                cipher.initEncrypt(key);
+            } else {
+                cipher.initEncrypt(key, new IVParameterSpec(iv));
+            }
+        } else {
+            if (iv == null) {
+                cipher.initDecrypt(key);
+            } else {
+                cipher.initDecrypt(key, new IVParameterSpec(iv));
+            }
+        }
+    }
+
+    /**
+     * Runs the cipher over input in two parts with the methods returning
+     * new arrays.
+     */
+    static byte[] runCopying(Cipher cipher, boolean encrypt, SymmetricKey key, byte[] iv,
+            byte[] input, int split) throws Exception {
+
+        init(cipher, encrypt, key, iv);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(cipher.update(input, 0, split));
+        out.write(cipher.doFinal(input, split, input.length - split));
+        return out.toByteArray();
+    }
+
+    /**
+     * Runs the cipher over input in two parts with the methods writing
+     * into output at outputOffset, and returns the bytes written.
+     */
+    static byte[] runInto(Cipher cipher, boolean encrypt, SymmetricKey key, byte[] iv,
+            byte[] input, int inputOffset, int split, byte[] output, int outputOffset) throws Exception {
+
+        init(cipher, encrypt, key, iv);
+
+        int length = input.length - inputOffset;
+        byte[] before = Arrays.copyOf(output, outputOffset);
+
+        int produced = cipher.update(input, inputOffset, split, output, outputOffset);
+        produced += cipher.doFinal(input, inputOffset + split, length - split,
+                output, outputOffset + produced);
+
+        // nothing before the output region is touched
+        assert Arrays.equals(Arrays.copyOf(output, outputOffset), before);
+
+        return Arrays.copyOfRange(output, outputOffset, outputOffset + produced);
+    }
+
+    static void testCipher(CryptoToken token, KeyGenAlgorithm keyAlg, int strength,
+            EncryptionAlgorithm alg, byte[] iv, int length) throws Exception {
+
+        System.out.println("Testing " + alg + " with " + length + " bytes");
+
+        KeyGenerator kg = token.getKeyGenerator(keyAlg);
+        if (strength > 0) {
+            kg.initialize(strength);
+        }
+        SymmetricKey key = kg.generate();
+
+        Cipher cipher = token.getCipherContext(alg);
+        byte[] plaintext = bytes(length);
+        int blockSize = alg.getBlockSize();
+        int split = length / 2 - length / 2 % blockSize;
+
+        byte[] ciphertext = runCopying(cipher, true, key, iv, plaintext, split);
+        assert Arrays.equals(runCopying(cipher, false, key, iv, ciphertext, split), plaintext);
+
+        // Room for the worst case: written directly into the array.
+        byte[] large = new byte[5 + length + 3 * blockSize + 3];
+        assert Arrays.equals(runInto(cipher, true, key, iv, plaintext, 0, split, large, 5), ciphertext);
+        assert Arrays.equals(runInto(cipher, false, key, iv, ciphertext, 0, split, large, 5), plaintext);
+
+        // Exactly enough room: goes through the copying path.
+        byte[] exact = new byte[ciphertext.length];
+        assert Arrays.equals(runInto(cipher, true, key, iv, plaintext, 0, split, exact, 0), ciphertext);
+        exact = new byte[plaintext.length];
+        assert Arrays.equals(runInto(cipher, false, key, iv, ciphertext, 0, split, exact, 0), plaintext);
+
+        // The output overlapping the input: goes through the copying path.
+        byte[] inPlace = Arrays.copyOf(plaintext, length + 2 * blockSize);
+        byte[] input = Arrays.copyOf(inPlace, length);
+        init(cipher, true, key, iv);
+        int produced = cipher.update(inPlace, 0, split, inPlace, 0);
+        System.arraycopy(input, split, inPlace, produced, length - split);
+        produced += cipher.doFinal(inPlace, produced, length - split, inPlace, produced);
+        assert Arrays.equals(Arrays.copyOf(inPlace, produced), ciphertext);
+
+        // Input at an offset.
+        byte[] shifted = new byte[3 + ciphertext.length];
+        System.arraycopy(ciphertext, 0, shifted, 3, ciphertext.length);
+        assert Arrays.equals(runInto(cipher, false, key, iv, shifted, 3, split, large, 0), plaintext);
+    }
+
+    static void testDigest(CryptoToken token) throws Exception {
+        System.out.println("Testing restarted digests");
+
+        MessageDigest reference = MessageDigest.getInstance("SHA-256", "SUN");
+        JSSMessageDigest digest = token.getDigestContext(DigestAlgorithm.SHA256);
+
+        // digest() restarts the context for the next message
+        for (int length : new int[] { 0, 1, 100, 5000, 100 }) {
+            byte[] message = bytes(length);
+            digest.update(message);
+            assert Arrays.equals(digest.digest(), reference.digest(message));
+        }
+
+        // as does reset() in the middle of a message
+        digest.update(bytes(50));
+        digest.reset();
+        digest.update(bytes(100));
+        assert Arrays.equals(digest.digest(), reference.digest(bytes(100)));
+
+        // digest into an array at an offset
+        byte[] out = new byte[40];
+        digest.update(bytes(100));
+        assert digest.digest(out, 4, 32) == 32;
+        assert Arrays.equals(Arrays.copyOfRange(out, 4, 36), reference.digest(bytes(100)));
+    }
+
+    static void testHMAC() throws Exception {
+        System.out.println("Testing restarted HMACs");
+
+        PBEKeySpec spec = new PBEKeySpec("password".toCharArray(),
+                new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }, 7);
+        SecretKeyFacade key = (SecretKeyFacade) SecretKeyFactory.getInstance(
+                "PBEWithSHA1AndDES3", "Mozilla-JSS").generateSecret(spec);
+
+        Mac mac = Mac.getInstance("HmacSHA256", "Mozilla-JSS");
+        mac.init(key);
+
+        // the key is kept when the context is restarted after doFinal()
+        for (int length : new int[] { 0, 100, 5000, 100 }) {
+            byte[] message = bytes(length);
+
+            Mac fresh = Mac.getInstance("HmacSHA256", "Mozilla-JSS");
+            fresh.init(key);
+
+            assert Arrays.equals(mac.doFinal(message), fresh.doFinal(message));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.out.println("Usage: TestCipherOutputArray <dbdir> <pwfile>");
+            System.exit(1);
+        }
+
+        CryptoManager cm = CryptoManager.getInstance();
+        cm.setPasswordCallback(new FilePasswordCallback(args[1]));
+        CryptoToken token = cm.getInternalCryptoToken();
+
+        byte[] iv16 = bytes(16);
+        byte[] iv8 = bytes(8);
+
+        for (int length : new int[] { 16, 100, 4096 }) {
+            testCipher(token, KeyGenAlgorithm.AES, 128, EncryptionAlgorithm.AES_128_CBC_PAD, iv16, length);
+            testCipher(token, KeyGenAlgorithm.DES3, 0, EncryptionAlgorithm.DES3_CBC_PAD, iv8, length);
+        }
+
+        for (int length : new int[] { 32, 4096 }) {
+            testCipher(token, KeyGenAlgorithm.AES, 128, EncryptionAlgorithm.AES_128_CBC, iv16, length);
+            testCipher(token, KeyGenAlgorithm.AES, 128, EncryptionAlgorithm.AES_128_ECB, null, length);
+        }
+
+        testDigest(token);
+        testHMAC();
+    }
+}
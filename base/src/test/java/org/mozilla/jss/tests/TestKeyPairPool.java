@@ -0,0 +1,112 @@
+package org.mozilla.jss.tests;
+
+import java.security.KeyPair;
+import java.util.function.BooleanSupplier;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.crypto.KeyPairAlgorithm;
+import org.mozilla.jss.pkcs11.PK11KeyPairGenerator;
+import org.mozilla.jss.pkcs11.PK11KeyPairPool;
+import org.mozilla.jss.pkcs11.PK11Token;
+
+public class TestKeyPairPool {
+
+    static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (System.currentTimeMillis() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(20);
+        }
+        return condition.getAsBoolean();
+    }
+
+    static PK11KeyPairGenerator newGenerator(PK11Token token, PK11KeyPairPool pool) throws Exception {
+        PK11KeyPairGenerator kpg = new PK11KeyPairGenerator(token, KeyPairAlgorithm.EC);
+        kpg.initialize(256, null);
+        kpg.temporaryPairs(true);
+        kpg.setPool(pool);
+        return kpg;
+    }
+
+    public static void testPool(PK11Token token) throws Exception {
+        try (PK11KeyPairPool pool = new PK11KeyPairPool(token, 2)) {
+            pool.configure(KeyPairAlgorithm.EC, 256, 4, 1);
+            assert waitFor(() -> pool.getDepth() == 4 && pool.getGenerated() == 4);
+
+            PK11KeyPairGenerator kpg = newGenerator(token, pool);
+
+            KeyPair pair = kpg.generateKeyPair();
+            assert pair != null;
+            assert pool.getHits() == 1;
+            assert pool.getMisses() == 0;
+
+            // Drain the pool; it refills once it reaches the low-water mark.
+            kpg.generateKeyPair();
+            kpg.generateKeyPair();
+            assert pool.getHits() == 3;
+            assert waitFor(() -> pool.getDepth() == 4 && pool.getGenerated() == 7);
+
+            // Key pairs with other settings aren't served from the pool.
+            PK11KeyPairGenerator other = new PK11KeyPairGenerator(token, KeyPairAlgorithm.EC);
+            other.initialize(384, null);
+            other.temporaryPairs(true);
+            other.setPool(pool);
+            assert other.generateKeyPair() != null;
+            assert pool.getHits() == 3;
+            assert pool.getMisses() == 0;
+            assert pool.getDepth() == 4;
+
+            assert pool.getAverageWaitTime() > 0;
+
+            // Configuring the same settings again replaces the entry; the
+            // old one stops refilling and its key pairs are dropped.
+            pool.configure(KeyPairAlgorithm.EC, 256, 2, 0);
+            assert waitFor(() -> pool.getDepth() == 2 && pool.getGenerated() == 9);
+            assert pool.getDepths().size() == 1;
+
+            kpg.generateKeyPair();
+            kpg.generateKeyPair();
+            assert pool.getHits() == 5;
+            assert waitFor(() -> pool.getDepth() == 2 && pool.getGenerated() == 11);
+
+            pool.remove(kpg);
+            assert pool.getDepth() == 0;
+            assert pool.getDepths().isEmpty();
+        }
+    }
+
+    public static void testDefault(PK11Token token) throws Exception {
+        PK11KeyPairPool pool = new PK11KeyPairPool(token);
+        PK11KeyPairPool.setDefault(pool);
+        try {
+            PK11KeyPairGenerator kpg = new PK11KeyPairGenerator(token, KeyPairAlgorithm.EC);
+            assert kpg.getPool() == pool;
+        } finally {
+            pool.close();
+        }
+
+        assert PK11KeyPairPool.getDefault() == null;
+        assert new PK11KeyPairGenerator(token, KeyPairAlgorithm.EC).getPool() == null;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.out.println("Usage: TestKeyPairPool <dbdir> <pwfile>");
+            System.exit(1);
+        }
+
+        CryptoManager cm = CryptoManager.getInstance();
+        cm.setPasswordCallback(new FilePasswordCallback(args[1]));
+
+        CryptoToken token = cm.getInternalKeyStorageToken();
+
+        System.out.println("Calling testPool()...");
+        testPool((PK11Token) token);
+
+        System.out.println("Calling testDefault()...");
+        testDefault((PK11Token) token);
+    }
+}
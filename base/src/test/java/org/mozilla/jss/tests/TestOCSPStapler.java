@@ -0,0 +1,180 @@
+package org.mozilla.jss.tests;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.netscape.security.util.BigInt;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.mozilla.jss.netscape.security.util.ObjectIdentifier;
+import org.mozilla.jss.pkcs11.PK11Cert;
+import org.mozilla.jss.ssl.javax.OCSPStapler;
+
+/**
+ * Drives an OCSPStapler from a local stub responder: responses are built
+ * in-process with a short lifetime so that background refreshes happen
+ * within the test.
+ */
+public class TestOCSPStapler {
+
+    /**
+     * Stub OCSP responder returning unsigned "good" responses for a given
+     * serial number, valid for lifetime milliseconds.
+     */
+    static class StubResponder implements OCSPStapler.Fetcher {
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicBoolean failing = new AtomicBoolean();
+        final BigInteger serial;
+        final long lifetime;
+        volatile byte[] last;
+
+        StubResponder(BigInteger serial, long lifetime) {
+            this.serial = serial;
+            this.lifetime = lifetime;
+        }
+
+        @Override
+        public byte[] fetch(PK11Cert cert) throws Exception {
+            calls.incrementAndGet();
+            if (failing.get()) {
+                throw new IOException("stub responder is down");
+            }
+
+            Date now = new Date();
+            last = encodeResponse(serial, now, new Date(now.getTime() + lifetime));
+            return last;
+        }
+    }
+
+    static byte[] encodeResponse(BigInteger serial, Date thisUpdate, Date nextUpdate) throws IOException {
+        DerOutputStream sha1 = new DerOutputStream();
+        sha1.putOID(new ObjectIdentifier("1.3.14.3.2.26"));
+        sha1.putNull();
+
+        DerOutputStream certID = new DerOutputStream();
+        certID.write(DerValue.tag_Sequence, sha1);
+        certID.putOctetString(new byte[20]);
+        certID.putOctetString(new byte[20]);
+        certID.putInteger(new BigInt(serial));
+
+        DerOutputStream next = new DerOutputStream();
+        next.putGeneralizedTime(nextUpdate);
+
+        DerOutputStream single = new DerOutputStream();
+        single.write(DerValue.tag_Sequence, certID);
+        single.write(DerValue.createTag(DerValue.TAG_CONTEXT, false, (byte) 0), new byte[0]);
+        single.putGeneralizedTime(thisUpdate);
+        single.write(DerValue.createTag(DerValue.TAG_CONTEXT, true, (byte) 0), next);
+
+        DerOutputStream singles = new DerOutputStream();
+        singles.write(DerValue.tag_Sequence, single);
+
+        DerOutputStream keyHash = new DerOutputStream();
+        keyHash.putOctetString(new byte[20]);
+
+        DerOutputStream tbs = new DerOutputStream();
+        tbs.write(DerValue.createTag(DerValue.TAG_CONTEXT, true, (byte) 2), keyHash);
+        tbs.putGeneralizedTime(thisUpdate);
+        tbs.write(DerValue.tag_Sequence, singles);
+
+        DerOutputStream sigAlg = new DerOutputStream();
+        sigAlg.putOID(new ObjectIdentifier("1.2.840.113549.1.1.11"));
+        sigAlg.putNull();
+
+        DerOutputStream basic = new DerOutputStream();
+        basic.write(DerValue.tag_Sequence, tbs);
+        basic.write(DerValue.tag_Sequence, sigAlg);
+        basic.putBitString(new byte[1]);
+
+        DerOutputStream basicSeq = new DerOutputStream();
+        basicSeq.write(DerValue.tag_Sequence, basic);
+
+        DerOutputStream responseBytes = new DerOutputStream();
+        responseBytes.putOID(new ObjectIdentifier("1.3.6.1.5.5.7.48.1.1"));
+        responseBytes.putOctetString(basicSeq.toByteArray());
+
+        DerOutputStream wrapper = new DerOutputStream();
+        wrapper.write(DerValue.tag_Sequence, responseBytes);
+
+        DerOutputStream response = new DerOutputStream();
+        response.putEnumerated(0);
+        response.write(DerValue.createTag(DerValue.TAG_CONTEXT, true, (byte) 0), wrapper);
+
+        DerOutputStream result = new DerOutputStream();
+        result.write(DerValue.tag_Sequence, response);
+        return result.toByteArray();
+    }
+
+    static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(20);
+        }
+        return condition.getAsBoolean();
+    }
+
+    public static void testRefresh(PK11Cert cert) throws Exception {
+        StubResponder responder = new StubResponder(cert.getSerialNumber(), 2000);
+        try (OCSPStapler stapler = new OCSPStapler(responder, null)) {
+            stapler.setMinRefreshInterval(100);
+            stapler.setRetryInterval(100);
+
+            // The first lookup only registers the certificate; the fetch
+            // happens in the background.
+            stapler.getResponse(cert);
+            assert waitFor(() -> stapler.getResponse(cert) != null);
+            assert stapler.getResponse(cert) == responder.last;
+
+            // Responses are refreshed halfway through their lifetime.
+            assert waitFor(() -> responder.calls.get() >= 2);
+            assert waitFor(() -> stapler.getResponse(cert) == responder.last);
+
+            // While the responder is down, the last response is kept.
+            responder.failing.set(true);
+            byte[] kept = stapler.getResponse(cert);
+            int calls = responder.calls.get();
+            assert waitFor(() -> responder.calls.get() > calls);
+            assert stapler.getResponse(cert) == kept;
+
+            // ...until it expires.
+            assert waitFor(() -> stapler.getResponse(cert) == null);
+
+            responder.failing.set(false);
+            assert waitFor(() -> stapler.getResponse(cert) != null);
+        }
+    }
+
+    public static void testWrongSerial(PK11Cert cert) throws Exception {
+        StubResponder responder = new StubResponder(cert.getSerialNumber().add(BigInteger.ONE), 60000);
+        try (OCSPStapler stapler = new OCSPStapler(responder, null)) {
+            stapler.register(cert);
+            assert waitFor(() -> responder.calls.get() >= 1);
+            Thread.sleep(100);
+            assert stapler.getResponse(cert) == null;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.out.println("Usage: TestOCSPStapler <dbdir> <nickname>");
+            System.exit(1);
+        }
+
+        CryptoManager cm = CryptoManager.getInstance();
+        PK11Cert cert = (PK11Cert) cm.findCertByNickname(args[1]);
+
+        System.out.println("Calling testRefresh()...");
+        testRefresh(cert);
+
+        System.out.println("Calling testWrongSerial()...");
+        testWrongSerial(cert);
+    }
+}
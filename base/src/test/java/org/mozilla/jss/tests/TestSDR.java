@@ -5,6 +5,8 @@
 package org.mozilla.jss.tests;
 
 import java.security.*;
+import java.util.Arrays;
+import java.util.List;
 import org.mozilla.jss.CryptoManager;
 import org.mozilla.jss.crypto.*;
 import org.mozilla.jss.SecretDecoderRing.*;
@@ -82,6 +84,22 @@ public class TestSDR {
         }
         System.out.println("Decrypted ciphertext matches original plaintext");
 
+        // encrypt and decrypt several values at once
+        List<byte[]> plaintexts = Arrays.asList(
+            plaintext, new byte[0], "Goodbye, world!".getBytes("UTF-8"));
+        List<byte[]> ciphertexts = encryptor.encrypt(plaintexts);
+        List<byte[]> recoveredList = decryptor.decrypt(ciphertexts);
+        if( recoveredList.size() != plaintexts.size() ) {
+            throw new Exception("Batch decryption returned wrong count");
+        }
+        for(int i=0; i < plaintexts.size(); ++i) {
+            if( !Arrays.equals(plaintexts.get(i), recoveredList.get(i)) ) {
+                throw new Exception(
+                    "Batch recovered plaintext does not match original");
+            }
+        }
+        System.out.println("Batch decryption matches original plaintexts");
+
         // delete the key and try to decrypt. Decryption should fail.
         km.deleteKey(keyID);
         try {
@@ -1,11 +1,19 @@
 package org.mozilla.jss.tests;
 
+import java.math.BigInteger;
+import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.security.KeyStore;
+import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import javax.net.ssl.ExtendedSSLSession;
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
@@ -15,15 +23,23 @@ import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLSession;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedTrustManager;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.pkcs11.PK11Cert;
+import org.mozilla.jss.pkcs11.PK11PrivKey;
 import org.mozilla.jss.provider.javax.crypto.JSSNativeTrustManager;
 import org.mozilla.jss.provider.javax.crypto.JSSTrustManager;
 import org.mozilla.jss.ssl.SSLCipher;
 import org.mozilla.jss.ssl.SSLVersion;
 import org.mozilla.jss.ssl.javax.JSSEngine;
 import org.mozilla.jss.ssl.javax.JSSEngineReferenceImpl;
+import org.mozilla.jss.ssl.javax.JSSKeyMaterials;
 import org.mozilla.jss.ssl.javax.JSSParameters;
+import org.mozilla.jss.ssl.javax.JSSSession;
+import org.mozilla.jss.ssl.javax.JSSSessionTicketCache;
+import org.mozilla.jss.ssl.javax.OCSPStapler;
 
 public class TestSSLEngine {
     public static boolean debug = false;
@@ -981,6 +997,291 @@ public class TestSSLEngine {
         }
     }
 
+    public static void testSessionTickets(SSLContext ctx, String client_alias, String server_alias) throws Exception {
+        String protocol = "TLSv1.3";
+        String cipher_suite = "TLS_AES_128_GCM_SHA256";
+        if (skipProtocolCipherSuite(protocol, cipher_suite, client_alias, server_alias)) {
+            return;
+        }
+
+        JSSSessionTicketCache cache = new JSSSessionTicketCache();
+        long resumed = JSSEngine.getResumedHandshakeCount();
+
+        for (int round = 0; round < 2; round++) {
+            System.err.println("Testing session tickets: round " + round);
+
+            // The peer port is only used as part of the cache key.
+            JSSEngine client_eng = (JSSEngine) ctx.createSSLEngine("localhost", 8443);
+            JSSParameters client_params = createParameters();
+            client_params.setEnableSessionTickets(true);
+            client_params.setSessionTicketCache(cache);
+            client_eng.setSSLParameters(client_params);
+            client_eng.setUseClientMode(true);
+
+            JSSEngine server_eng = (JSSEngine) ctx.createSSLEngine();
+            JSSParameters server_params = createParameters(server_alias);
+            server_params.setEnableSessionTickets(true);
+            server_eng.setSSLParameters(server_params);
+            server_eng.setUseClientMode(false);
+
+            configureSSLEngine(client_eng, protocol, cipher_suite);
+            configureSSLEngine(server_eng, protocol, cipher_suite);
+
+            try {
+                testBasicHandshake(client_eng, server_eng, false);
+
+                JSSSession client_session = client_eng.getSession();
+                JSSSession server_session = server_eng.getSession();
+                assert(client_session.isResumed() == (round == 1));
+                assert(server_session.isResumed() == (round == 1));
+            } finally {
+                client_eng.cleanup();
+                server_eng.cleanup();
+            }
+
+            // TLS 1.3 tickets arrive after the handshake; the post-handshake
+            // transfer reads them on the client side.
+            assert(cache.size() == 1);
+        }
+
+        assert(cache.getHits() == 1);
+        assert(JSSEngine.getResumedHandshakeCount() >= resumed + 2);
+    }
+
+    public static void testALPN(SSLContext ctx, String client_alias, String server_alias) throws Exception {
+        String protocol = "TLSv1.3";
+        String cipher_suite = "TLS_AES_128_GCM_SHA256";
+        if (skipProtocolCipherSuite(protocol, cipher_suite, client_alias, server_alias)) {
+            return;
+        }
+
+        for (boolean use_selector : new boolean[] { false, true }) {
+            System.err.println("Testing ALPN: selector=" + use_selector);
+
+            JSSEngine client_eng = (JSSEngine) ctx.createSSLEngine();
+            JSSParameters client_params = createParameters();
+            client_params.setApplicationProtocols(new String[] { "h2", "http/1.1" });
+            client_eng.setSSLParameters(client_params);
+            client_eng.setUseClientMode(true);
+
+            JSSEngine server_eng = (JSSEngine) ctx.createSSLEngine();
+            JSSParameters server_params = createParameters(server_alias);
+            server_params.setApplicationProtocols(new String[] { "http/1.1" });
+            server_eng.setSSLParameters(server_params);
+            server_eng.setUseClientMode(false);
+
+            String expected = "http/1.1";
+            if (use_selector) {
+                expected = "h2";
+                server_eng.setHandshakeApplicationProtocolSelector((eng, offered) -> {
+                    assert(eng == server_eng);
+                    assert(offered.equals(Arrays.asList("h2", "http/1.1")));
+                    return "h2";
+                });
+            }
+
+            configureSSLEngine(client_eng, protocol, cipher_suite);
+            configureSSLEngine(server_eng, protocol, cipher_suite);
+
+            try {
+                assert(client_eng.getApplicationProtocol() == null);
+                testBasicHandshake(client_eng, server_eng, false);
+
+                assert(expected.equals(client_eng.getApplicationProtocol()));
+                assert(expected.equals(server_eng.getApplicationProtocol()));
+            } finally {
+                client_eng.cleanup();
+                server_eng.cleanup();
+            }
+        }
+
+        // A selector returning null declines ALPN; the handshake succeeds
+        // without an application protocol.
+        for (String selected : new String[] { null, "" }) {
+            JSSEngine client_eng = (JSSEngine) ctx.createSSLEngine();
+            JSSParameters client_params = createParameters();
+            client_params.setApplicationProtocols(new String[] { "h2", "http/1.1" });
+            client_eng.setSSLParameters(client_params);
+            client_eng.setUseClientMode(true);
+
+            JSSEngine server_eng = (JSSEngine) ctx.createSSLEngine();
+            server_eng.setSSLParameters(createParameters(server_alias));
+            server_eng.setUseClientMode(false);
+            server_eng.setHandshakeApplicationProtocolSelector((eng, offered) -> selected);
+
+            configureSSLEngine(client_eng, protocol, cipher_suite);
+            configureSSLEngine(server_eng, protocol, cipher_suite);
+
+            try {
+                testBasicHandshake(client_eng, server_eng, false);
+                assert("".equals(client_eng.getApplicationProtocol()));
+                assert("".equals(server_eng.getApplicationProtocol()));
+            } finally {
+                client_eng.cleanup();
+                server_eng.cleanup();
+            }
+        }
+
+        // Without ALPN on the server, nothing is negotiated.
+        JSSEngine client_eng = (JSSEngine) ctx.createSSLEngine();
+        JSSParameters client_params = createParameters();
+        client_params.setApplicationProtocols(new String[] { "h2" });
+        client_eng.setSSLParameters(client_params);
+        client_eng.setUseClientMode(true);
+
+        JSSEngine server_eng = (JSSEngine) ctx.createSSLEngine();
+        server_eng.setSSLParameters(createParameters(server_alias));
+        server_eng.setUseClientMode(false);
+
+        configureSSLEngine(client_eng, protocol, cipher_suite);
+        configureSSLEngine(server_eng, protocol, cipher_suite);
+
+        try {
+            testBasicHandshake(client_eng, server_eng, false);
+            assert("".equals(client_eng.getApplicationProtocol()));
+            assert("".equals(server_eng.getApplicationProtocol()));
+        } finally {
+            client_eng.cleanup();
+            server_eng.cleanup();
+        }
+    }
+
+    public static void testSharedKeyMaterials(SSLContext ctx, KeyManager[] kms, String client_alias, String server_alias) throws Exception {
+        String protocol = "TLSv1.3";
+        String cipher_suite = "TLS_AES_128_GCM_SHA256";
+        if (skipProtocolCipherSuite(protocol, cipher_suite, client_alias, server_alias)) {
+            return;
+        }
+
+        // Resolve the server certificates once, as JSSContext does, and
+        // share them between several server engines.
+        JSSKeyMaterials materials = JSSKeyMaterials.fromAliases(Arrays.asList(server_alias.split(",")), kms);
+        assert(!materials.getCertificates().isEmpty());
+
+        for (int round = 0; round < 3; round++) {
+            System.err.println("Testing shared key materials: round " + round);
+
+            JSSEngine client_eng = (JSSEngine) ctx.createSSLEngine();
+            client_eng.setSSLParameters(createParameters());
+            client_eng.setUseClientMode(true);
+
+            JSSEngine server_eng = (JSSEngine) ctx.createSSLEngine();
+            JSSParameters server_params = createParameters();
+            server_params.setKeyMaterials(materials);
+            server_eng.setSSLParameters(server_params);
+            server_eng.setUseClientMode(false);
+
+            assert(server_eng.getSSLParameters().getKeyMaterials() == materials);
+
+            configureSSLEngine(client_eng, protocol, cipher_suite);
+            configureSSLEngine(server_eng, protocol, cipher_suite);
+
+            try {
+                testBasicHandshake(client_eng, server_eng, false);
+            } finally {
+                client_eng.cleanup();
+                server_eng.cleanup();
+            }
+        }
+    }
+
+    /**
+     * Trusts any server, recording the server certificate and the OCSP
+     * responses stapled to it during the handshake.
+     */
+    static class StaplingTrustManager extends X509ExtendedTrustManager {
+        volatile X509Certificate peer;
+        volatile List<byte[]> responses;
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+            peer = chain[0];
+            responses = ((ExtendedSSLSession) engine.getHandshakeSession()).getStatusResponses();
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+
+    public static void testOCSPStapling(SSLContext jss_context, String server_alias) throws Exception {
+        // Serve stub OCSP responses for the server certificates, and check
+        // that a JSSE client (which requests stapling by default) receives
+        // the current response for the certificate the server picked.
+        Map<BigInteger, byte[]> served = new ConcurrentHashMap<>();
+        OCSPStapler.Fetcher responder = cert -> {
+            Date now = new Date();
+            byte[] response = TestOCSPStapler.encodeResponse(cert.getSerialNumber(), now,
+                    new Date(now.getTime() + 3600000));
+            served.put(cert.getSerialNumber(), response);
+            return response;
+        };
+
+        JSSKeyMaterials materials = JSSKeyMaterials.fromAliases(Arrays.asList(server_alias.split(",")), getKMs());
+
+        try (OCSPStapler stapler = new OCSPStapler(responder, null)) {
+            for (Pair<PK11Cert, PK11PrivKey> pair : materials.getCertificates()) {
+                PK11Cert cert = pair.getLeft();
+                stapler.register(cert);
+                assert TestOCSPStapler.waitFor(() -> stapler.getResponse(cert) != null);
+            }
+
+            for (String protocol : new String[] { "TLSv1.2", "TLSv1.3" }) {
+                System.err.println("Testing OCSP stapling: " + protocol);
+
+                StaplingTrustManager tm = new StaplingTrustManager();
+                SSLContext jsse_context = SSLContext.getInstance("TLS", "SunJSSE");
+                jsse_context.init(null, new TrustManager[] { tm }, null);
+
+                SSLEngine client_eng = jsse_context.createSSLEngine("localhost", 443);
+                client_eng.setUseClientMode(true);
+                client_eng.setEnabledProtocols(new String[] { protocol });
+
+                JSSEngine server_eng = (JSSEngine) jss_context.createSSLEngine();
+                server_eng.setSSLParameters(createParameters(server_alias));
+                server_eng.setOCSPStapler(stapler);
+                server_eng.setUseClientMode(false);
+                server_eng.setEnabledProtocols(new String[] { protocol });
+
+                try {
+                    testBasicHandshake(client_eng, server_eng, false);
+                } finally {
+                    server_eng.cleanup();
+                }
+
+                assert tm.peer != null;
+                assert tm.responses != null && tm.responses.size() >= 1;
+                assert Arrays.equals(tm.responses.get(0), served.get(tm.peer.getSerialNumber()));
+            }
+        }
+    }
+
     public static void testBasicClientServer(String[] args) throws Exception {
         SSLContext ctx = SSLContext.getInstance("TLS", "Mozilla-JSS");
         ctx.init(getKMs(), getTMs(), null);
@@ -991,11 +1292,13 @@ public class TestSSLEngine {
         testAllHandshakes(ctx, client_alias, server_alias, false);
         testAllHandshakes(ctx, client_alias, server_alias, true);
         testJSSEToJSSHandshakes(ctx, server_alias);
+        testOCSPStapling(ctx, server_alias);
     }
 
     public static void testNativeClientServer(String[] args) throws Exception {
         SSLContext ctx = SSLContext.getInstance("TLS", "Mozilla-JSS");
-        ctx.init(getKSKMs(), new TrustManager[] { new JSSNativeTrustManager() }, null);
+        KeyManager[] kms = getKSKMs();
+        ctx.init(kms, new TrustManager[] { new JSSNativeTrustManager() }, null);
 
         String client_alias = args[2];
         String server_alias = args[3];
@@ -1003,6 +1306,9 @@ public class TestSSLEngine {
         testAllHandshakes(ctx, client_alias, server_alias, false);
         testAllHandshakes(ctx, client_alias, server_alias, true);
         testPostHandshakeAuth(ctx, client_alias, server_alias);
+        testSessionTickets(ctx, client_alias, server_alias);
+        testALPN(ctx, client_alias, server_alias);
+        testSharedKeyMaterials(ctx, kms, client_alias, server_alias);
         testJSSEToJSSHandshakes(ctx, server_alias);
     }
 
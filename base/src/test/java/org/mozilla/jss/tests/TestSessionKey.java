@@ -0,0 +1,176 @@
+package org.mozilla.jss.tests;
+
+import java.util.Arrays;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.crypto.KeyGenAlgorithm;
+import org.mozilla.jss.crypto.KeyGenerator;
+import org.mozilla.jss.pkcs11.PK11SymKey;
+import org.mozilla.jss.symkey.SecureChannelKeys;
+import org.mozilla.jss.symkey.SessionKey;
+
+/**
+ * Exercises the symkey library against master keys stored on the internal
+ * key storage token.
+ */
+public class TestSessionKey {
+
+    static final String TOKEN = "internal";
+
+    static PK11SymKey createMasterKey(CryptoToken token, String nickname) throws Exception {
+        KeyGenerator kg = token.getKeyGenerator(KeyGenAlgorithm.DES3);
+        kg.temporaryKeys(false);
+
+        PK11SymKey key = (PK11SymKey) kg.generate();
+        key.setNickName(nickname);
+        return key;
+    }
+
+    public static void testKeyCache(CryptoToken token) throws Exception {
+        String nickname = "TestSessionKey-" + System.currentTimeMillis();
+        byte[] check = SessionKey.ComputeKeyCheck(createMasterKey(token, nickname));
+
+        // The first lookup finds the key on the token; the second one is
+        // served from the cache and must return the same key.
+        PK11SymKey found = SessionKey.GetSymKeyByName(TOKEN, nickname);
+        assert found != null;
+        assert Arrays.equals(SessionKey.ComputeKeyCheck(found), check);
+
+        PK11SymKey cached = SessionKey.GetSymKeyByName(TOKEN, nickname);
+        assert cached != null;
+        assert Arrays.equals(SessionKey.ComputeKeyCheck(cached), check);
+
+        // Deleting the key evicts it from the cache.
+        SessionKey.DeleteSymmetricKey(TOKEN, nickname);
+        assert SessionKey.GetSymKeyByName(TOKEN, nickname) == null;
+
+        // A new key under the same name is found instead of a stale handle.
+        byte[] newCheck = SessionKey.ComputeKeyCheck(createMasterKey(token, nickname));
+        assert !Arrays.equals(newCheck, check);
+
+        PK11SymKey replaced = SessionKey.GetSymKeyByName(TOKEN, nickname);
+        assert replaced != null;
+        assert Arrays.equals(SessionKey.ComputeKeyCheck(replaced), newCheck);
+
+        // Clearing the cache only drops handles; the key is still found.
+        SessionKey.ClearKeyCache();
+        replaced = SessionKey.GetSymKeyByName(TOKEN, nickname);
+        assert replaced != null;
+        assert Arrays.equals(SessionKey.ComputeKeyCheck(replaced), newCheck);
+
+        SessionKey.DeleteSymmetricKey(TOKEN, nickname);
+        assert SessionKey.GetSymKeyByName(TOKEN, nickname) == null;
+    }
+
+    static byte[] bytes(int length, int seed) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (seed + i * 13);
+        }
+        return data;
+    }
+
+    static void assertSameKeys(SecureChannelKeys keys, String keyName,
+            byte[] cardChallenge, byte[] hostChallenge, byte[] keyInfo,
+            byte kdfOnKeyVersion, byte[] cuid, byte[] kdd,
+            byte[] devKey, String sharedSecret) throws Exception {
+
+        assert keys != null;
+
+        byte[] mac = SessionKey.ComputeSessionKey(TOKEN, keyName,
+                cardChallenge, hostChallenge, keyInfo, kdfOnKeyVersion, false,
+                cuid, kdd, devKey, "true", null, sharedSecret);
+        assert mac != null;
+        assert Arrays.equals(keys.getMacSessionKey(), mac);
+
+        byte[] enc = SessionKey.ComputeEncSessionKey(TOKEN, keyName,
+                cardChallenge, hostChallenge, keyInfo, kdfOnKeyVersion, false,
+                cuid, kdd, devKey, "true", null);
+        assert enc != null;
+        assert Arrays.equals(keys.getEncSessionKey(), enc);
+
+        PK11SymKey kek = SessionKey.ComputeKekKey(TOKEN, keyName,
+                cardChallenge, hostChallenge, keyInfo, kdfOnKeyVersion, false,
+                cuid, kdd, devKey, "true", null);
+        assert kek != null;
+        assert Arrays.equals(SessionKey.ComputeKeyCheck(keys.getKekKey()),
+                SessionKey.ComputeKeyCheck(kek));
+
+        byte[] hostCryptogram = SessionKey.ComputeCryptogram(TOKEN, keyName,
+                cardChallenge, hostChallenge, keyInfo, kdfOnKeyVersion, false,
+                cuid, kdd, 0, devKey, "true", null);
+        assert hostCryptogram != null;
+        assert Arrays.equals(keys.getHostCryptogram(), hostCryptogram);
+
+        byte[] cardCryptogram = SessionKey.ComputeCryptogram(TOKEN, keyName,
+                cardChallenge, hostChallenge, keyInfo, kdfOnKeyVersion, false,
+                cuid, kdd, 1, devKey, "true", null);
+        assert cardCryptogram != null;
+        assert Arrays.equals(keys.getCardCryptogram(), cardCryptogram);
+    }
+
+    public static void testSecureChannelKeys(CryptoToken token) throws Exception {
+        String suffix = "-" + System.currentTimeMillis();
+        String keyName = "TestSessionKey-master" + suffix;
+        String sharedSecret = "TestSessionKey-sharedSecret" + suffix;
+        createMasterKey(token, keyName);
+        createMasterKey(token, sharedSecret);
+
+        byte[] keyInfo = { 0x02, 0x01 };
+        byte[] devKey = bytes(16, 0x40);
+
+        byte[][] cardChallenges = { bytes(8, 1), bytes(8, 2) };
+        byte[][] hostChallenges = { bytes(8, 3), bytes(8, 4) };
+        byte[][] keyInfos = { keyInfo, keyInfo };
+        byte[][] cuids = { bytes(10, 5), bytes(10, 6) };
+        byte[][] kdds = { bytes(10, 7), bytes(10, 8) };
+
+        try {
+            // 0xFF keeps the original KDF for key version 2, while 0x01
+            // switches to the NIST SP800-108 KDF.
+            for (byte kdfOnKeyVersion : new byte[] { (byte) 0xFF, 0x01 }) {
+
+                SecureChannelKeys keys = SessionKey.ComputeSecureChannelKeys(TOKEN, keyName,
+                        cardChallenges[0], hostChallenges[0], keyInfo, kdfOnKeyVersion, false,
+                        cuids[0], kdds[0], devKey, devKey, devKey, "true", null, sharedSecret);
+                assertSameKeys(keys, keyName, cardChallenges[0], hostChallenges[0],
+                        keyInfo, kdfOnKeyVersion, cuids[0], kdds[0], devKey, sharedSecret);
+
+                SecureChannelKeys[] batch = SessionKey.ComputeSecureChannelKeys(TOKEN, keyName,
+                        cardChallenges, hostChallenges, keyInfos, kdfOnKeyVersion, false,
+                        cuids, kdds, devKey, devKey, devKey, "true", null, sharedSecret);
+                assert batch != null && batch.length == cardChallenges.length;
+
+                for (int i = 0; i < batch.length; i++) {
+                    assertSameKeys(batch[i], keyName, cardChallenges[i], hostChallenges[i],
+                            keyInfo, kdfOnKeyVersion, cuids[i], kdds[i], devKey, sharedSecret);
+                }
+
+                // different cards get different keys
+                assert !Arrays.equals(batch[0].getMacSessionKey(), batch[1].getMacSessionKey());
+            }
+
+        } finally {
+            SessionKey.DeleteSymmetricKey(TOKEN, keyName);
+            SessionKey.DeleteSymmetricKey(TOKEN, sharedSecret);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: TestSessionKey <dbdir> <passwords>");
+            System.exit(1);
+        }
+
+        CryptoManager cm = CryptoManager.getInstance();
+        cm.setPasswordCallback(new FilePasswordCallback(args[1]));
+        CryptoToken token = cm.getInternalKeyStorageToken();
+
+        System.out.println("Calling testKeyCache()...");
+        testKeyCache(token);
+
+        System.out.println("Calling testSecureChannelKeys()...");
+        testSecureChannelKeys(token);
+    }
+}
@@ -0,0 +1,112 @@
+package org.mozilla.jss.tests;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.pkcs11.PK11SignaturePool;
+
+public class TestSignaturePool {
+
+    public static void testReuse(KeyPair pair, KeyPair other) throws Exception {
+        byte[] message = "Signed by a pooled context".getBytes();
+
+        PK11SignaturePool.clear();
+        long hits = PK11SignaturePool.getHits();
+
+        byte[][] signatures = new byte[10][];
+        for (int i = 0; i < signatures.length; i++) {
+            // Alternate keys so that contexts are both reused and replaced.
+            Signature signer = Signature.getInstance("SHA256withRSA", "Mozilla-JSS");
+            signer.initSign(i % 3 == 2 ? other.getPrivate() : pair.getPrivate());
+            signer.update(message);
+            signatures[i] = signer.sign();
+        }
+
+        assert PK11SignaturePool.getHits() >= hits + signatures.length - 1;
+
+        for (int i = 0; i < signatures.length; i++) {
+            Signature verifier = Signature.getInstance("SHA256withRSA", "Mozilla-JSS");
+            verifier.initVerify(i % 3 == 2 ? other.getPublic() : pair.getPublic());
+            verifier.update(message);
+            assert verifier.verify(signatures[i]);
+
+            // A reused verification context must not remember the last result.
+            byte[] corrupted = signatures[i].clone();
+            corrupted[corrupted.length / 2] ^= 0x01;
+            verifier.initVerify(i % 3 == 2 ? other.getPublic() : pair.getPublic());
+            verifier.update(message);
+            assert !verifier.verify(corrupted);
+        }
+    }
+
+    public static void testReleased(KeyPair pair) throws Exception {
+        byte[] message = "Signed again after release".getBytes();
+
+        PK11SignaturePool.clear();
+
+        Signature signer = Signature.getInstance("SHA256withRSA", "Mozilla-JSS");
+        signer.initSign(pair.getPrivate());
+        signer.update(message);
+        byte[] first = signer.sign();
+
+        // The context went back to the pool, but the signature stays
+        // initialized with the same key: the pooled context is taken back
+        // and restarted.
+        long hits = PK11SignaturePool.getHits();
+        signer.update(message);
+        byte[] second = signer.sign();
+        assert PK11SignaturePool.getHits() == hits + 1;
+
+        Signature verifier = Signature.getInstance("SHA256withRSA", "Mozilla-JSS");
+        verifier.initVerify(pair.getPublic());
+        verifier.update(message);
+        assert verifier.verify(first);
+
+        // Likewise for verification.
+        verifier.update(message);
+        assert verifier.verify(second);
+
+        verifier.update("Something else".getBytes());
+        assert !verifier.verify(second);
+
+        // A context handed out to another signature in the meantime is
+        // not shared; a new one is used instead.
+        signer.update(message);
+        byte[] third = signer.sign();
+
+        Signature other = Signature.getInstance("SHA256withRSA", "Mozilla-JSS");
+        other.initSign(pair.getPrivate());
+        signer.update(message);
+        other.update(message);
+        byte[] fourth = signer.sign();
+        byte[] fifth = other.sign();
+
+        for (byte[] signature : new byte[][] { third, fourth, fifth }) {
+            verifier.update(message);
+            assert verifier.verify(signature);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.out.println("Usage: TestSignaturePool <dbdir> <pwfile>");
+            System.exit(1);
+        }
+
+        CryptoManager cm = CryptoManager.getInstance();
+        cm.setPasswordCallback(new FilePasswordCallback(args[1]));
+
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA", "Mozilla-JSS");
+        kpg.initialize(2048);
+        KeyPair pair = kpg.generateKeyPair();
+        KeyPair other = kpg.generateKeyPair();
+
+        System.out.println("Calling testReuse()...");
+        testReuse(pair, other);
+
+        System.out.println("Calling testReleased()...");
+        testReleased(pair);
+    }
+}
@@ -0,0 +1,93 @@
+package org.mozilla.jss.tests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.x509.LdapV3DNStrConverter;
+import org.mozilla.jss.netscape.security.x509.RFC1779StrConverter;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+
+public class X500NameTest {
+
+    public static final String DN = "CN=Test User,OU=Engineering,O=Example,C=US";
+
+    @Test
+    public void testEqualsParsedNames() throws Exception {
+
+        X500Name name = new X500Name(DN);
+        X500Name parsed = new X500Name(name.getEncoded());
+        X500Name spaced = new X500Name("CN=Test User, OU=Engineering, O=Example, C=US");
+
+        Assertions.assertEquals(name, parsed);
+        Assertions.assertEquals(name, spaced);
+        Assertions.assertEquals(name.hashCode(), parsed.hashCode());
+        Assertions.assertEquals(name.hashCode(), spaced.hashCode());
+        Assertions.assertNotEquals(name, new X500Name("CN=Other User,OU=Engineering,O=Example,C=US"));
+    }
+
+    @Test
+    public void testCachedEncoding() throws Exception {
+
+        X500Name name = new X500Name(DN);
+        byte[] encoded = name.getEncoded();
+
+        // the returned array is a copy
+        encoded[encoded.length - 1] ^= 1;
+        Assertions.assertNotEquals(encoded[encoded.length - 1], name.getEncoded()[encoded.length - 1]);
+        Assertions.assertEquals(name, new X500Name(name.getEncoded()));
+    }
+
+    @Test
+    public void testLdapDNString() throws Exception {
+
+        X500Name name = new X500Name(DN);
+        String dn = name.toLdapDNString();
+
+        Assertions.assertEquals(DN, dn);
+        Assertions.assertSame(dn, name.toString());
+
+        // a different converter is not given the cached string
+        String rfc1779 = name.toLdapDNString(new RFC1779StrConverter());
+        Assertions.assertEquals(new RFC1779StrConverter().encodeDN(name), rfc1779);
+        Assertions.assertEquals(new LdapV3DNStrConverter().encodeDN(name),
+                name.toLdapDNString(new LdapV3DNStrConverter()));
+    }
+
+    @Test
+    public void testMatches() throws Exception {
+
+        X500Name name = new X500Name(DN);
+
+        Assertions.assertTrue(name.matches(new X500Name("cn=TEST  USER , ou=engineering,o=EXAMPLE,c=us")));
+        Assertions.assertTrue(name.matches(new X500Name("CN=  Test User  ,OU=Engineering,O=Example,C=US")));
+        Assertions.assertFalse(name.matches(new X500Name("CN=TestUser,OU=Engineering,O=Example,C=US")));
+        Assertions.assertFalse(name.matches(new X500Name("OU=Engineering,O=Example,C=US")));
+        Assertions.assertFalse(name.matches(null));
+
+        // the AVAs of a multi-valued RDN are not ordered
+        Assertions.assertTrue(new X500Name("CN=a+UID=b,O=Example").matches(new X500Name("UID=B+CN=A,O=Example")));
+
+        // special characters cannot make different names match
+        Assertions.assertFalse(new X500Name("CN=a\\,b,O=Example").matches(new X500Name("CN=a,CN=b,O=Example")));
+    }
+
+    @Test
+    public void testCanonicalString() throws Exception {
+
+        X500Name name = new X500Name("CN=  Test   User ,O=Example");
+
+        // most significant RDN first
+        Assertions.assertEquals("2.5.4.10=example,2.5.4.3=test user", name.toCanonicalString());
+        Assertions.assertSame(name.toCanonicalString(), name.toCanonicalString());
+        Assertions.assertEquals("", new X500Name("").toCanonicalString());
+    }
+
+    @Test
+    public void testIntern() throws Exception {
+
+        X500Name name = new X500Name(DN).intern();
+
+        Assertions.assertSame(name, new X500Name(DN).intern());
+        Assertions.assertSame(name, new X500Name(name.getEncoded()).intern());
+        Assertions.assertNotSame(name, new X500Name("CN=Other User").intern());
+    }
+}
@@ -105,6 +105,18 @@ macro(jss_tests)
         DEPENDS "Setup_DBs"
     )
 
+    jss_test_java(
+        NAME "SignedData_Stream_Test"
+        COMMAND "org.mozilla.jss.tests.SignedDataStreamTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "Setup_DBs"
+    )
+
+    jss_test_java(
+        NAME "EnvelopedData_Stream_Test"
+        COMMAND "org.mozilla.jss.tests.EnvelopedDataStreamTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "Setup_DBs"
+    )
+
     jss_test_java(
         NAME "JSS_Test_Raw_SSL"
         COMMAND "org.mozilla.jss.tests.TestRawSSL" "${RESULTS_NSSDB_OUTPUT_DIR}"
@@ -209,11 +221,31 @@ macro(jss_tests)
         COMMAND "org.mozilla.jss.tests.TestKeyGen" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
         DEPENDS "Setup_DBs"
     )
+    jss_test_java(
+        NAME "Key_Pair_Pool"
+        COMMAND "org.mozilla.jss.tests.TestKeyPairPool" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "Setup_DBs"
+    )
+    jss_test_java(
+        NAME "Signature_Pool"
+        COMMAND "org.mozilla.jss.tests.TestSignaturePool" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "Setup_DBs"
+    )
+    jss_test_java(
+        NAME "Batch_Signature"
+        COMMAND "org.mozilla.jss.tests.TestBatchSignature" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "Setup_DBs"
+    )
     jss_test_java(
         NAME "Digest"
         COMMAND "org.mozilla.jss.tests.DigestTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
         DEPENDS "Setup_DBs"
     )
+    jss_test_java(
+        NAME "Cipher_Output_Array"
+        COMMAND "org.mozilla.jss.tests.TestCipherOutputArray" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "Setup_DBs"
+    )
     jss_test_java(
         NAME "HMAC"
         COMMAND "org.mozilla.jss.tests.CrossHMACTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
@@ -289,6 +321,11 @@ macro(jss_tests)
         COMMAND "org.mozilla.jss.tests.SymKeyDeriving" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
         DEPENDS "Setup_DBs"
     )
+    jss_test_java(
+        NAME "Session_Key"
+        COMMAND "org.mozilla.jss.tests.TestSessionKey" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "Setup_DBs"
+    )
     jss_test_java(
         NAME "X509CertTest"
         COMMAND "org.mozilla.jss.tests.X509CertTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
@@ -314,6 +351,11 @@ macro(jss_tests)
         COMMAND "org.mozilla.jss.tests.TestSSLEngine" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}" "Client_ECDSA" "Server_ECDSA"
         DEPENDS "SSLEngine_RSA"
     )
+    jss_test_java(
+        NAME "OCSP_Stapler"
+        COMMAND "org.mozilla.jss.tests.TestOCSPStapler" "${RESULTS_NSSDB_OUTPUT_DIR}" "Server_RSA"
+        DEPENDS "List_CA_certs"
+    )
     jss_test_java(
 	NAME "SSLEngine_Multi_Cert_RSA_ECDSA"
 	COMMAND "org.mozilla.jss.tests.TestSSLEngine" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}" "Client_ECDSA" "Server_RSA,Server_ECDSA"
@@ -515,6 +557,30 @@ macro(jss_tests)
         NAME "JUnit_PrintableConverterTest"
         COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.PrintableConverterTest"
     )
+    jss_test_java(
+        NAME "JUnit_X500NameTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.X500NameTest"
+    )
+    jss_test_java(
+        NAME "JUnit_ASN1EncodingTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.ASN1EncodingTest"
+    )
+    jss_test_java(
+        NAME "JUnit_BERInputBufferTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.BERInputBufferTest"
+    )
+    jss_test_java(
+        NAME "JUnit_LazyDecodingTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.LazyDecodingTest"
+    )
+    jss_test_java(
+        NAME "JUnit_DerValueTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.DerValueTest"
+    )
+    jss_test_java(
+        NAME "JUnit_Base64Test"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.Base64Test"
+    )
 
     if(TEST_WITH_INTERNET)
         jss_test_java(
@@ -575,7 +641,7 @@ function(jss_test_java)
     list(APPEND EXEC_COMMAND "-classpath")
     list(APPEND EXEC_COMMAND "${TEST_CLASSPATH}")
     list(APPEND EXEC_COMMAND "-ea")
-    list(APPEND EXEC_COMMAND "-Djava.library.path=${CMAKE_BINARY_DIR}")
+    list(APPEND EXEC_COMMAND "-Djava.library.path=${CMAKE_BINARY_DIR}:${CMAKE_BINARY_DIR}/symkey")
     if(TEST_JAVA_MODE STREQUAL "FIPS")
         list(APPEND EXEC_COMMAND "-Djava.security.properties=${CONFIG_OUTPUT_DIR}/fips.security")
     elseif(TEST_JAVA_MODE STREQUAL "INTERNET")
@@ -3,9 +3,11 @@
 #include <stdint.h>
 #include <jni.h>
 
+#include "java_ids.h"
 #include "jssutil.h"
 #include "BufferProxy.h"
 #include "j_buffer.h"
+#include "j_buffer_pool.h"
 
 #include "_jni/org_mozilla_jss_nss_Buffer.h"
 
@@ -22,6 +24,20 @@ Java_org_mozilla_jss_nss_Buffer_Create(JNIEnv *env, jclass clazz, jlong length)
     return JSS_PR_wrapJBuffer(env, &buf);
 }
 
+JNIEXPORT jobject JNICALL
+Java_org_mozilla_jss_nss_Buffer_CreateElastic(JNIEnv *env, jclass clazz,
+    jlong initial_length, jlong max_length)
+{
+    j_buffer *buf = NULL;
+
+    PR_ASSERT(env != NULL && initial_length > 0 && max_length > 0);
+
+    buf = jb_alloc_elastic((size_t) initial_length, (size_t) max_length);
+    PR_ASSERT(buf != NULL);
+
+    return JSS_PR_wrapJBuffer(env, &buf);
+}
+
 JNIEXPORT jlong JNICALL
 Java_org_mozilla_jss_nss_Buffer_Capacity(JNIEnv *env, jclass clazz, jobject buf)
 {
@@ -36,6 +52,20 @@ Java_org_mozilla_jss_nss_Buffer_Capacity(JNIEnv *env, jclass clazz, jobject buf)
     return jb_capacity(real_buf);
 }
 
+JNIEXPORT jlong JNICALL
+Java_org_mozilla_jss_nss_Buffer_Allocated(JNIEnv *env, jclass clazz, jobject buf)
+{
+    j_buffer *real_buf = NULL;
+
+    PR_ASSERT(env != NULL && buf != NULL);
+
+    if (JSS_PR_unwrapJBuffer(env, buf, &real_buf) != PR_SUCCESS) {
+        return 0;
+    }
+
+    return jb_allocated(real_buf);
+}
+
 JNIEXPORT jboolean JNICALL
 Java_org_mozilla_jss_nss_Buffer_CanRead(JNIEnv *env, jclass clazz, jobject buf)
 {
@@ -167,6 +197,21 @@ Java_org_mozilla_jss_nss_Buffer_Put(JNIEnv *env, jclass clazz, jobject buf, jbyt
     return jb_put(real_buf, (uint8_t) input);
 }
 
+JNIEXPORT jboolean JNICALL
+Java_org_mozilla_jss_nss_Buffer_Release(JNIEnv *env, jclass clazz, jobject buf)
+{
+    j_buffer *real_buf = NULL;
+
+    PR_ASSERT(env != NULL && buf != NULL);
+
+    if (JSS_PR_unwrapJBuffer(env, buf, &real_buf) != PR_SUCCESS ||
+            real_buf == NULL) {
+        return false;
+    }
+
+    return jb_release(real_buf);
+}
+
 JNIEXPORT void JNICALL
 Java_org_mozilla_jss_nss_Buffer_Free(JNIEnv *env, jclass clazz, jobject buf)
 {
@@ -182,3 +227,49 @@ Java_org_mozilla_jss_nss_Buffer_Free(JNIEnv *env, jclass clazz, jobject buf)
     jb_free(real_buf);
     JSS_clearPtrFromProxy(env, buf);
 }
+
+JNIEXPORT void JNICALL
+Java_org_mozilla_jss_nss_Buffer_ConfigurePool(JNIEnv *env, jclass clazz,
+    jlong max_pooled_bytes, jlong max_pooled_per_size)
+{
+    PR_ASSERT(env != NULL && max_pooled_bytes >= 0 && max_pooled_per_size >= 0);
+
+    jbp_configure((size_t) max_pooled_bytes, (size_t) max_pooled_per_size);
+}
+
+JNIEXPORT void JNICALL
+Java_org_mozilla_jss_nss_Buffer_DrainPool(JNIEnv *env, jclass clazz)
+{
+    jbp_drain();
+}
+
+JNIEXPORT jobject JNICALL
+Java_org_mozilla_jss_nss_Buffer_GetPoolStats(JNIEnv *env, jclass clazz)
+{
+    j_buffer_pool_stats stats;
+    jclass statsClass;
+    jmethodID constructor;
+
+    PR_ASSERT(env != NULL);
+
+    jbp_stats(&stats);
+
+    statsClass = (*env)->FindClass(env, BUFFER_POOL_STATS_CLASS_NAME);
+    if (statsClass == NULL) {
+        ASSERT_OUTOFMEM(env);
+        return NULL;
+    }
+
+    constructor = (*env)->GetMethodID(env, statsClass, PLAIN_CONSTRUCTOR,
+        BUFFER_POOL_STATS_CONSTRUCTOR_SIG);
+    if (constructor == NULL) {
+        ASSERT_OUTOFMEM(env);
+        return NULL;
+    }
+
+    return (*env)->NewObject(env, statsClass, constructor,
+        (jlong) stats.allocated_bytes, (jlong) stats.allocated_blocks,
+        (jlong) stats.pooled_bytes, (jlong) stats.pooled_blocks,
+        (jlong) stats.high_water_bytes, (jlong) stats.hits,
+        (jlong) stats.misses);
+}
@@ -0,0 +1,86 @@
+#include <nspr.h>
+#include <nss.h>
+#include <cert.h>
+#include <ocsp.h>
+#include <jni.h>
+
+#include "java_ids.h"
+#include "jss_exceptions.h"
+#include "jssutil.h"
+#include "pk11util.h"
+
+#include "_jni/org_mozilla_jss_nss_Cert.h"
+
+JNIEXPORT jbyteArray JNICALL
+Java_org_mozilla_jss_nss_Cert_GetEncodedOCSPResponse(JNIEnv *env, jclass clazz,
+    jobject cert, jstring location)
+{
+    CERTCertificate *real_cert = NULL;
+    CERTCertList *cert_list = NULL;
+    PLArenaPool *arena = NULL;
+    const char *given_location = NULL;
+    char *aia_location = NULL;
+    const char *real_location = NULL;
+    SECItem *response = NULL;
+    jbyteArray result = NULL;
+
+    PR_ASSERT(env != NULL && cert != NULL);
+    PR_SetError(0, 0);
+
+    if (JSS_PK11_getCertPtr(env, cert, &real_cert) != PR_SUCCESS) {
+        return NULL;
+    }
+
+    if (location != NULL) {
+        given_location = JSS_RefJString(env, location);
+        if (given_location == NULL) {
+            return NULL;
+        }
+        real_location = given_location;
+    } else {
+        aia_location = CERT_GetOCSPAuthorityInfoAccessLocation(real_cert);
+        if (aia_location == NULL) {
+            // No responder known for this certificate; the PR error is
+            // left set for the caller.
+            goto finish;
+        }
+        real_location = aia_location;
+    }
+
+    cert_list = CERT_NewCertList();
+    if (cert_list == NULL) {
+        goto finish;
+    }
+
+    if (CERT_AddCertToListTail(cert_list, CERT_DupCertificate(real_cert)) != SECSuccess) {
+        goto finish;
+    }
+
+    arena = PORT_NewArena(DER_DEFAULT_CHUNKSIZE);
+    if (arena == NULL) {
+        goto finish;
+    }
+
+    response = CERT_GetEncodedOCSPResponse(arena, cert_list, real_location,
+                                           PR_Now(), PR_FALSE, NULL, NULL,
+                                           NULL);
+    if (response == NULL) {
+        goto finish;
+    }
+
+    result = JSS_SECItemToByteArray(env, response);
+
+finish:
+    if (arena != NULL) {
+        PORT_FreeArena(arena, PR_FALSE);
+    }
+    if (cert_list != NULL) {
+        CERT_DestroyCertList(cert_list);
+    }
+    if (aia_location != NULL) {
+        PORT_Free(aia_location);
+    }
+    JSS_DerefJString(env, location, given_location);
+
+    return result;
+}
@@ -701,6 +701,55 @@ Java_org_mozilla_jss_nss_SSL_ConfigServerCert(JNIEnv *env, jclass clazz,
     return SSL_ConfigServerCert(real_fd, real_cert, real_key, NULL, 0);
 }
 
+JNIEXPORT int JNICALL
+Java_org_mozilla_jss_nss_SSL_ConfigServerCertWithOCSP(JNIEnv *env, jclass clazz,
+    jobject fd, jobject cert, jobject key, jbyteArray ocspResponse)
+{
+    PRFileDesc *real_fd = NULL;
+    CERTCertificate *real_cert = NULL;
+    SECKEYPrivateKey *real_key = NULL;
+    SECItem *response = NULL;
+    SECItemArray responses = { 0 };
+    SSLExtraServerCertData extra = { 0 };
+    SECStatus ret = SECFailure;
+
+    PR_ASSERT(env != NULL && fd != NULL);
+    PR_SetError(0, 0);
+
+    if (JSS_PR_getPRFileDesc(env, fd, &real_fd) != PR_SUCCESS) {
+        return SECFailure;
+    }
+
+    if (JSS_PK11_getCertPtr(env, cert, &real_cert) != PR_SUCCESS) {
+        return SECFailure;
+    }
+
+    if (JSS_PK11_getPrivKeyPtr(env, key, &real_key) != PR_SUCCESS) {
+        return SECFailure;
+    }
+
+    if (ocspResponse == NULL) {
+        return SSL_ConfigServerCert(real_fd, real_cert, real_key, NULL, 0);
+    }
+
+    response = JSS_ByteArrayToSECItem(env, ocspResponse);
+    if (response == NULL) {
+        return SECFailure;
+    }
+
+    responses.items = response;
+    responses.len = 1;
+
+    extra.authType = ssl_auth_null;
+    extra.stapledOCSPResponses = &responses;
+
+    ret = SSL_ConfigServerCert(real_fd, real_cert, real_key, &extra,
+                               sizeof(extra));
+
+    SECITEM_FreeItem(response, PR_TRUE);
+    return ret;
+}
+
 JNIEXPORT int JNICALL
 Java_org_mozilla_jss_nss_SSL_ConfigServerSessionIDCache(JNIEnv *env, jclass clazz,
     jint maxCacheEntries, jlong timeout, jlong ssl3_timeout, jstring directory)
@@ -1030,6 +1079,118 @@ Java_org_mozilla_jss_nss_SSL_EnableHandshakeCallback(JNIEnv *env, jclass clazz,
     return SSL_HandshakeCallback(real_fd, JSSL_SSLFDHandshakeComplete, fd_ref);
 }
 
+JNIEXPORT jint JNICALL
+Java_org_mozilla_jss_nss_SSL_EnableResumptionTokenCallback(JNIEnv *env,
+    jclass clazz, jobject fd)
+{
+    PRFileDesc *real_fd = NULL;
+    jobject fd_ref = NULL;
+
+    PR_ASSERT(env != NULL && fd != NULL);
+    PR_SetError(0, 0);
+
+    if (JSS_PR_getPRFileDesc(env, fd, &real_fd) != PR_SUCCESS) {
+        return SECFailure;
+    }
+
+    if (JSS_NSS_getGlobalRef(env, fd, &fd_ref) != PR_SUCCESS) {
+        return SECFailure;
+    }
+
+    return SSL_SetResumptionTokenCallback(real_fd,
+        JSSL_SSLFDResumptionTokenCallback, fd_ref);
+}
+
+JNIEXPORT jint JNICALL
+Java_org_mozilla_jss_nss_SSL_SetResumptionToken(JNIEnv *env, jclass clazz,
+    jobject fd, jbyteArray token)
+{
+    PRFileDesc *real_fd = NULL;
+    SECItem *item = NULL;
+    SECStatus ret = SECFailure;
+
+    PR_ASSERT(env != NULL && fd != NULL);
+    PR_SetError(0, 0);
+
+    if (token == NULL) {
+        PR_SetError(PR_INVALID_ARGUMENT_ERROR, 0);
+        return ret;
+    }
+
+    if (JSS_PR_getPRFileDesc(env, fd, &real_fd) != PR_SUCCESS) {
+        return ret;
+    }
+
+    item = JSS_ByteArrayToSECItem(env, token);
+    if (item == NULL) {
+        return ret;
+    }
+
+    ret = SSL_SetResumptionToken(real_fd, item->data, item->len);
+
+    SECITEM_ZfreeItem(item, PR_TRUE);
+    return ret;
+}
+
+JNIEXPORT jint JNICALL
+Java_org_mozilla_jss_nss_SSL_SetNextProtoNego(JNIEnv *env, jclass clazz,
+    jobject fd, jbyteArray protocols)
+{
+    PRFileDesc *real_fd = NULL;
+    jbyte *data = NULL;
+    jsize length = 0;
+    SECStatus ret = SECFailure;
+
+    PR_ASSERT(env != NULL && fd != NULL);
+    PR_SetError(0, 0);
+
+    if (JSS_PR_getPRFileDesc(env, fd, &real_fd) != PR_SUCCESS) {
+        return ret;
+    }
+
+    if (protocols == NULL) {
+        return SSL_SetNextProtoNego(real_fd, NULL, 0);
+    }
+
+    if (!JSS_RefByteArray(env, protocols, &data, &length)) {
+        return ret;
+    }
+
+    ret = SSL_SetNextProtoNego(real_fd, (const unsigned char *)data, length);
+
+    JSS_DerefByteArray(env, protocols, data, JNI_ABORT);
+    return ret;
+}
+
+JNIEXPORT jbyteArray JNICALL
+Java_org_mozilla_jss_nss_SSL_GetNextProto(JNIEnv *env, jclass clazz,
+    jobject fd)
+{
+    PRFileDesc *real_fd = NULL;
+    SSLNextProtoState state = SSL_NEXT_PROTO_NO_SUPPORT;
+    unsigned char buf[255];
+    unsigned int length = 0;
+
+    PR_ASSERT(env != NULL && fd != NULL);
+    PR_SetError(0, 0);
+
+    if (JSS_PR_getPRFileDesc(env, fd, &real_fd) != PR_SUCCESS) {
+        return NULL;
+    }
+
+    if (SSL_GetNextProto(real_fd, &state, buf, &length, sizeof(buf)) != SECSuccess) {
+        return NULL;
+    }
+
+    /* Only report protocols both sides agreed upon. */
+    if ((state != SSL_NEXT_PROTO_NEGOTIATED &&
+            state != SSL_NEXT_PROTO_SELECTED) || length == 0) {
+        return NULL;
+    }
+
+    return JSS_ToByteArray(env, buf, length);
+}
+
 JNIEXPORT jint JNICALL
 Java_org_mozilla_jss_nss_SSL_getSSLRequestCertificate(JNIEnv *env, jclass clazz)
 {
@@ -1108,6 +1269,18 @@ Java_org_mozilla_jss_nss_SSL_getSSLEnableFallbackSCSV(JNIEnv *env, jclass clazz)
     return SSL_ENABLE_FALLBACK_SCSV;
 }
 
+JNIEXPORT jint JNICALL
+Java_org_mozilla_jss_nss_SSL_getSSLEnableSessionTickets(JNIEnv *env, jclass clazz)
+{
+    return SSL_ENABLE_SESSION_TICKETS;
+}
+
+JNIEXPORT jint JNICALL
+Java_org_mozilla_jss_nss_SSL_getSSLEnableALPN(JNIEnv *env, jclass clazz)
+{
+    return SSL_ENABLE_ALPN;
+}
+
 JNIEXPORT jint JNICALL
 Java_org_mozilla_jss_nss_SSL_getSSLRequireNever(JNIEnv *env, jclass clazz)
 {
@@ -286,6 +286,55 @@ JSSL_SSLFDHandshakeComplete(PRFileDesc *fd, void *client_data)
     (void)(*env)->CallVoidMethod(env, sslfd_proxy, handshakeCompletedMethod, event);
 }
 
+SECStatus
+JSSL_SSLFDResumptionTokenCallback(PRFileDesc *fd,
+                                  const PRUint8 *resumptionToken,
+                                  unsigned int len, void *ctx)
+{
+    JNIEnv *env = NULL;
+    jobject sslfd_proxy = (jobject)ctx;
+    jclass sslfdProxyClass;
+    jmethodID tokenReceivedMethod;
+    jbyteArray token;
+
+    /* NSS ignores our return value; failing to save a token only costs a
+     * full handshake on the next connection. */
+    if (fd == NULL || ctx == NULL || resumptionToken == NULL ||
+            JSS_javaVM == NULL) {
+        return SECSuccess;
+    }
+
+    if ((*JSS_javaVM)->AttachCurrentThread(JSS_javaVM, (void**)&env, NULL) != JNI_OK || env == NULL) {
+        return SECSuccess;
+    }
+
+    sslfdProxyClass = (*env)->GetObjectClass(env, sslfd_proxy);
+
+    if (sslfdProxyClass == NULL) {
+        return SECSuccess;
+    }
+
+    tokenReceivedMethod = (*env)->GetMethodID(
+        env,
+        sslfdProxyClass,
+        "resumptionTokenReceived",
+        "([B)V");
+
+    if (tokenReceivedMethod == NULL) {
+        return SECSuccess;
+    }
+
+    token = JSS_ToByteArray(env, resumptionToken, len);
+
+    if (token == NULL) {
+        return SECSuccess;
+    }
+
+    // sslfd_proxy.resumptionTokenReceived(token)
+    (void)(*env)->CallVoidMethod(env, sslfd_proxy, tokenReceivedMethod, token);
+    return SECSuccess;
+}
+
 SECStatus
 JSSL_SSLFDAsyncCertAuthCallback(void *arg, PRFileDesc *fd, PRBool checkSig, PRBool isServer)
 {
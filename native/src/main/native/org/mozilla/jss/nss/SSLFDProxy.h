@@ -26,6 +26,11 @@ JSSL_SSLFDCertSelectionCallback(void *arg,
 void
 JSSL_SSLFDHandshakeComplete(PRFileDesc *fd, void *client_data);
 
+SECStatus
+JSSL_SSLFDResumptionTokenCallback(PRFileDesc *fd,
+                                  const PRUint8 *resumptionToken,
+                                  unsigned int len, void *ctx);
+
 SECStatus
 JSSL_SSLFDAsyncCertAuthCallback(void *arg, PRFileDesc *fd, PRBool checkSig, PRBool isServer);
 
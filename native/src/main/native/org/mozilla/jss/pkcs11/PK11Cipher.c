@@ -234,6 +234,114 @@ finish:
     
 
 
+/***********************************************************************
+ *
+ * PK11Cipher.updateContextInto
+ *
+ * Like updateContext, but writes the output directly into the caller's
+ * array instead of allocating one. Both arrays are accessed as critical
+ * regions, so the input is never copied. Bounds are checked by the caller;
+ * the output region must hold at least inputLen + blockSize bytes.
+ */
+JNIEXPORT jint JNICALL
+Java_org_mozilla_jss_pkcs11_PK11Cipher_updateContextInto
+    (JNIEnv *env, jclass clazz, jobject contextObj, jbyteArray inputBA,
+    jint inputOffset, jint inputLen, jbyteArray outputBA, jint outputOffset,
+    jint outputLen)
+{
+    PK11Context *context=NULL;
+    jbyte *inbuf=NULL;
+    jbyte *outbuf=NULL;
+    int outlen = 0;
+    SECStatus status;
+    PRErrorCode error;
+
+    PR_ASSERT(env!=NULL && contextObj!=NULL && inputBA!=NULL &&
+        outputBA!=NULL);
+
+    /* get the context */
+    if( JSS_PK11_getCipherContext(env, contextObj, &context) != PR_SUCCESS) {
+        return 0;
+    }
+
+    inbuf = (*env)->GetPrimitiveArrayCritical(env, inputBA, NULL);
+    if(inbuf == NULL) {
+        ASSERT_OUTOFMEM(env);
+        return 0;
+    }
+    outbuf = (*env)->GetPrimitiveArrayCritical(env, outputBA, NULL);
+    if(outbuf == NULL) {
+        (*env)->ReleasePrimitiveArrayCritical(env, inputBA, inbuf, JNI_ABORT);
+        ASSERT_OUTOFMEM(env);
+        return 0;
+    }
+
+    /* do the operation; no JNI calls until both regions are released */
+    status = PK11_CipherOp(context,
+        (unsigned char*)(outbuf + outputOffset), &outlen, outputLen,
+        (unsigned char*)(inbuf + inputOffset), inputLen);
+    error = PR_GetError();
+
+    (*env)->ReleasePrimitiveArrayCritical(env, inputBA, inbuf, JNI_ABORT);
+    (*env)->ReleasePrimitiveArrayCritical(env, outputBA, outbuf, 0);
+
+    if( status != SECSuccess ) {
+        JSS_throwMsgPrErrArg(
+            env, TOKEN_EXCEPTION, "Cipher context update failed", error);
+        return 0;
+    }
+
+    return outlen;
+}
+
+/***********************************************************************
+ *
+ * PK11Cipher.finalizeContextInto
+ *
+ * Like finalizeContext, but writes the output directly into the caller's
+ * array. The output region must hold at least blockSize bytes.
+ */
+JNIEXPORT jint JNICALL
+Java_org_mozilla_jss_pkcs11_PK11Cipher_finalizeContextInto
+    (JNIEnv *env, jclass clazz, jobject contextObj, jbyteArray outputBA,
+        jint outputOffset, jint outputLen)
+{
+    PK11Context *context=NULL;
+    jbyte *outbuf=NULL;
+    unsigned int outlen = 0;
+    SECStatus status;
+    PRErrorCode error;
+
+    PR_ASSERT(env!=NULL && contextObj!=NULL && outputBA!=NULL);
+
+    /* get context */
+    if( JSS_PK11_getCipherContext(env, contextObj, &context) != PR_SUCCESS) {
+        return 0;
+    }
+
+    outbuf = (*env)->GetPrimitiveArrayCritical(env, outputBA, NULL);
+    if(outbuf == NULL) {
+        ASSERT_OUTOFMEM(env);
+        return 0;
+    }
+
+    /* perform the finalization */
+    status = PK11_DigestFinal(context,
+        (unsigned char*)(outbuf + outputOffset), &outlen, outputLen);
+    error = PR_GetError();
+
+    (*env)->ReleasePrimitiveArrayCritical(env, outputBA, outbuf, 0);
+
+    if( status != SECSuccess ) {
+        JSS_throwMsgPrErrArg(
+            env, TOKEN_EXCEPTION, "Cipher context finalization failed",
+            error);
+        return 0;
+    }
+
+    return outlen;
+}
+
 /***********************************************************************
  *
  * J S S _ P K 1 1 _ g e t C i p h e r C o n t e x t
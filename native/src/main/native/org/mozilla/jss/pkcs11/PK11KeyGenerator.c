@@ -796,3 +796,85 @@ JNIEXPORT jbyteArray JNICALL
 
       return result;
   }
+
+/*
+ * MacData.derivePBMAC1Key
+ *
+ * Derives the PBKDF2 key of a PBMAC1 AlgorithmIdentifier, so that the
+ * HMAC can be computed incrementally with a JSSMessageDigest.
+ */
+JNIEXPORT jobject JNICALL
+Java_org_mozilla_jss_pkcs12_MacData_derivePBMAC1Key(
+    JNIEnv *env, jclass clazz,
+    jobject token,
+    jbyteArray passwordArray,
+    jbyteArray pbmac1AlgIDArray)
+{
+    PK11SlotInfo *slot = NULL;
+    SECItem *password = NULL;
+    SECItem *pbmac1AlgIDItem = NULL;
+    SECAlgorithmID *pbmac1AlgID = NULL;
+    PK11SymKey *key = NULL;
+    jobject keyObj = NULL;
+
+    PR_ASSERT(env != NULL);
+
+    if (token == NULL || passwordArray == NULL || pbmac1AlgIDArray == NULL) {
+        JSS_throw(env, NULL_POINTER_EXCEPTION);
+        goto finish;
+    }
+
+    if (JSS_PK11_getTokenSlotPtr(env, token, &slot) != PR_SUCCESS) {
+        /* exception was thrown */
+        goto finish;
+    }
+
+    password = JSS_ByteArrayToSECItem(env, passwordArray);
+    if (password == NULL) {
+        goto finish;
+    }
+
+    pbmac1AlgIDItem = JSS_ByteArrayToSECItem(env, pbmac1AlgIDArray);
+    if (pbmac1AlgIDItem == NULL) {
+        goto finish;
+    }
+
+    pbmac1AlgID = PR_Calloc(1, sizeof(SECAlgorithmID));
+    if (pbmac1AlgID == NULL) {
+        JSS_throw(env, OUT_OF_MEMORY_ERROR);
+        goto finish;
+    }
+
+    if (SEC_ASN1DecodeItem(NULL, pbmac1AlgID,
+            SEC_ASN1_GET(SECOID_AlgorithmIDTemplate),
+            pbmac1AlgIDItem) != SECSuccess) {
+        JSS_throwMsgPrErr(env, TOKEN_EXCEPTION,
+            "Failed to decode PBMAC1 AlgorithmID");
+        goto finish;
+    }
+
+    key = PK11_PBEKeyGen(slot, pbmac1AlgID, password, PR_FALSE, NULL);
+    if (key == NULL) {
+        JSS_throwMsgPrErr(env, TOKEN_EXCEPTION,
+            "Failed to derive key for PBMAC1");
+        goto finish;
+    }
+
+    /* wrapSymKey takes ownership of the key and sets it to NULL */
+    keyObj = JSS_PK11_wrapSymKey(env, &key);
+
+finish:
+    if (password != NULL) {
+        SECITEM_ZfreeItem(password, PR_TRUE);
+    }
+    if (pbmac1AlgIDItem != NULL) {
+        SECITEM_FreeItem(pbmac1AlgIDItem, PR_TRUE);
+    }
+    if (pbmac1AlgID != NULL) {
+        SECOID_DestroyAlgorithmID(pbmac1AlgID, PR_TRUE);
+    }
+    if (key != NULL) {
+        PK11_FreeSymKey(key);
+    }
+    return keyObj;
+}
@@ -113,27 +113,33 @@ Java_org_mozilla_jss_pkcs11_PK11MessageDigest_update
 
     PK11Context *context = NULL;
     jbyte* bytes = NULL;
-    jsize length = 0;
+    SECStatus status;
 
     if( JSS_PK11_getCipherContext(env, proxyObj, &context) != PR_SUCCESS ) {
         /* exception was thrown */
-        goto finish;
+        return;
     }
 
-    if (!JSS_RefByteArray(env, inbufBA, &bytes, &length) ||
-            length < offset+len) {
-        goto finish;
+    if ((*env)->GetArrayLength(env, inbufBA) < offset+len) {
+        JSS_throw(env, ARRAY_INDEX_OUT_OF_BOUNDS_EXCEPTION);
+        return;
     }
 
-    if( PK11_DigestOp(context, (unsigned char*)(bytes+offset), len)
-            != SECSuccess )
-    {
-        JSS_throwMsg(env, DIGEST_EXCEPTION, "Digest operation failed");
-        goto finish;
+    /* Access the input as a critical region so it isn't copied; no JNI
+     * calls may be made until it is released. */
+    bytes = (*env)->GetPrimitiveArrayCritical(env, inbufBA, NULL);
+    if (bytes == NULL) {
+        ASSERT_OUTOFMEM(env);
+        return;
     }
 
-finish:
-    JSS_DerefByteArray(env, inbufBA, bytes, JNI_ABORT);
+    status = PK11_DigestOp(context, (unsigned char*)(bytes+offset), len);
+
+    (*env)->ReleasePrimitiveArrayCritical(env, inbufBA, bytes, JNI_ABORT);
+
+    if( status != SECSuccess ) {
+        JSS_throwMsg(env, DIGEST_EXCEPTION, "Digest operation failed");
+    }
 }
 
 
@@ -149,30 +155,60 @@ Java_org_mozilla_jss_pkcs11_PK11MessageDigest_digest
 {
     PK11Context *context=NULL;
     jbyte *bytes=NULL;
-    jsize length = 0;
     SECStatus status;
     unsigned int outLen = 0;
 
     if( JSS_PK11_getCipherContext(env, proxyObj, &context) != PR_SUCCESS) {
         /* exception was thrown */
-        goto finish;
+        return 0;
+    }
+
+    if ((*env)->GetArrayLength(env, outbuf) < offset+len) {
+        JSS_throw(env, ARRAY_INDEX_OUT_OF_BOUNDS_EXCEPTION);
+        return 0;
     }
 
-    if (!JSS_RefByteArray(env, outbuf, &bytes, &length) ||
-            length < offset+len) {
+    bytes = (*env)->GetPrimitiveArrayCritical(env, outbuf, NULL);
+    if (bytes == NULL) {
         ASSERT_OUTOFMEM(env);
-        goto finish;
+        return 0;
     }
 
     status = PK11_DigestFinal(context, (unsigned char*)(bytes+offset),
                     &outLen, len);
+
+    (*env)->ReleasePrimitiveArrayCritical(env, outbuf, bytes, 0);
+
     if( status != SECSuccess ) {
         JSS_throwMsg(env, DIGEST_EXCEPTION, "Error occurred while performing"
             " digest operation");
-        goto finish;
+        return 0;
     }
 
-finish:
-    JSS_DerefByteArray(env, outbuf, bytes, 0);
     return outLen;
 }
+
+
+/***********************************************************************
+ *
+ * PK11MessageDigest.reinit
+ *
+ * Restarts an existing digest or HMAC context (keeping its key) so it can
+ * be reused after digest(), instead of creating a new context.
+ */
+JNIEXPORT void JNICALL
+Java_org_mozilla_jss_pkcs11_PK11MessageDigest_reinit
+    (JNIEnv *env, jclass clazz, jobject proxyObj)
+{
+    PK11Context *context=NULL;
+
+    if( JSS_PK11_getCipherContext(env, proxyObj, &context) != PR_SUCCESS) {
+        /* exception was thrown */
+        return;
+    }
+
+    if( PK11_DigestBegin(context) != SECSuccess ) {
+        JSS_throwMsg(env, DIGEST_EXCEPTION,
+            "Unable to reinitialize digest context");
+    }
+}
@@ -211,6 +211,40 @@ finish:
     PORT_FreeArena(arena, PR_TRUE /* zero */);
 }
 
+/**********************************************************************
+ *
+ * PK11Signature.resetSigContext
+ *
+ * Restarts a finished signing or verification context so that it can be
+ * used for another operation with the same key, without recreating it.
+ */
+JNIEXPORT void JNICALL
+Java_org_mozilla_jss_pkcs11_PK11Signature_resetSigContext
+    (JNIEnv *env, jobject this)
+{
+    SigContextType type;
+    void *ctxt = NULL;
+
+    if (getSigContext(env, this, &ctxt, &type) != PR_SUCCESS) {
+        PR_ASSERT((*env)->ExceptionOccurred(env) != NULL);
+        return;
+    }
+    PR_ASSERT(ctxt != NULL);
+
+    if (type == SGN_CONTEXT) {
+        if (SGN_Begin((SGNContext*)ctxt) != SECSuccess) {
+            JSS_throwMsgPrErr(env, TOKEN_EXCEPTION,
+                              "Unable to restart signing context");
+        }
+    } else {
+        PR_ASSERT(type == VFY_CONTEXT);
+        if (VFY_Begin((VFYContext*)ctxt) != SECSuccess) {
+            JSS_throwMsgPrErr(env, TOKEN_EXCEPTION,
+                              "Unable to restart verification context");
+        }
+    }
+}
+
 /**********************************************************************
  *
  * PK11Signature.engineUpdateNative
@@ -374,6 +408,278 @@ finish:
 	return verified;
 }
 
+/**********************************************************************
+ *
+ * PK11Signature.engineSignBatchNative
+ *
+ * Signs each message with the signing context, restarting it between
+ * messages. The context must have been begun by initSigContext or
+ * resetSigContext.
+ */
+JNIEXPORT jobjectArray JNICALL
+Java_org_mozilla_jss_pkcs11_PK11Signature_engineSignBatchNative
+    (JNIEnv *env, jobject this, jobjectArray messages)
+{
+    SGNContext *ctxt = NULL;
+    SigContextType type;
+    jclass byteArrayClass = NULL;
+    jobjectArray result = NULL;
+    jsize count = 0;
+
+    PR_ASSERT(env!=NULL && this!=NULL && messages!=NULL);
+
+    if (getSigContext(env, this, (void**)&ctxt, &type) != PR_SUCCESS) {
+        PR_ASSERT((*env)->ExceptionOccurred(env) != NULL);
+        return NULL;
+    }
+    PR_ASSERT(ctxt!=NULL && type==SGN_CONTEXT);
+
+    byteArrayClass = (*env)->FindClass(env, "[B");
+    if (byteArrayClass == NULL) {
+        ASSERT_OUTOFMEM(env);
+        return NULL;
+    }
+
+    count = (*env)->GetArrayLength(env, messages);
+    result = (*env)->NewObjectArray(env, count, byteArrayClass, NULL);
+    if (result == NULL) {
+        ASSERT_OUTOFMEM(env);
+        return NULL;
+    }
+
+    for (jsize i = 0; i < count; i++) {
+        jbyteArray message = NULL;
+        jbyte *bytes = NULL;
+        jsize length = 0;
+        SECItem signature = { siBuffer, NULL, 0 };
+        SECStatus rv;
+        jbyteArray sigArray = NULL;
+
+        if (i > 0 && SGN_Begin(ctxt) != SECSuccess) {
+            JSS_throwMsgPrErr(env, TOKEN_EXCEPTION,
+                              "Unable to restart signing context");
+            return NULL;
+        }
+
+        message = (*env)->GetObjectArrayElement(env, messages, i);
+        if (!JSS_RefByteArray(env, message, &bytes, &length)) {
+            ASSERT_OUTOFMEM(env);
+            return NULL;
+        }
+
+        rv = SGN_Update(ctxt, (unsigned char *)bytes, (unsigned)length);
+        JSS_DerefByteArray(env, message, bytes, JNI_ABORT);
+        (*env)->DeleteLocalRef(env, message);
+
+        if (rv != SECSuccess) {
+            JSS_throwMsgPrErr(env, SIGNATURE_EXCEPTION, "update failed");
+            return NULL;
+        }
+
+        if (SGN_End(ctxt, &signature) != SECSuccess) {
+            JSS_throwMsgPrErr(env, SIGNATURE_EXCEPTION,
+                              "Signing operation failed");
+            return NULL;
+        }
+
+        sigArray = JSS_ToByteArray(env, signature.data, signature.len);
+        PR_Free(signature.data);
+        if (sigArray == NULL) {
+            ASSERT_OUTOFMEM(env);
+            return NULL;
+        }
+
+        (*env)->SetObjectArrayElement(env, result, i, sigArray);
+        (*env)->DeleteLocalRef(env, sigArray);
+    }
+
+    return result;
+}
+
+/**********************************************************************
+ *
+ * PK11Signature.engineVerifyBatchNative
+ *
+ * Verifies each message against the corresponding signature with the
+ * verification context, restarting it between messages. The context must
+ * have been begun by initVfyContext or resetSigContext.
+ */
+JNIEXPORT jbooleanArray JNICALL
+Java_org_mozilla_jss_pkcs11_PK11Signature_engineVerifyBatchNative
+    (JNIEnv *env, jobject this, jobjectArray messages, jobjectArray signatures)
+{
+    VFYContext *ctxt = NULL;
+    SigContextType type;
+    jbooleanArray result = NULL;
+    jboolean *verified = NULL;
+    jsize count = 0;
+
+    PR_ASSERT(env!=NULL && this!=NULL && messages!=NULL && signatures!=NULL);
+
+    if (getSigContext(env, this, (void**)&ctxt, &type) != PR_SUCCESS) {
+        PR_ASSERT((*env)->ExceptionOccurred(env) != NULL);
+        return NULL;
+    }
+    if (type != VFY_CONTEXT) {
+        JSS_throwMsgPrErr(env, SIGNATURE_EXCEPTION,
+            "Verification engine has signature context");
+        return NULL;
+    }
+
+    count = (*env)->GetArrayLength(env, messages);
+    if ((*env)->GetArrayLength(env, signatures) != count) {
+        JSS_throwMsg(env, SIGNATURE_EXCEPTION,
+            "Number of signatures does not match number of messages");
+        return NULL;
+    }
+
+    verified = PR_Calloc(count > 0 ? count : 1, sizeof(jboolean));
+    if (verified == NULL) {
+        JSS_throw(env, OUT_OF_MEMORY_ERROR);
+        return NULL;
+    }
+
+    for (jsize i = 0; i < count; i++) {
+        jbyteArray message = NULL;
+        jbyteArray sigArray = NULL;
+        jbyte *bytes = NULL;
+        jsize length = 0;
+        SECItem sigItem = { siBuffer, NULL, 0 };
+        SECStatus rv;
+
+        if (i > 0 && VFY_Begin(ctxt) != SECSuccess) {
+            JSS_throwMsgPrErr(env, TOKEN_EXCEPTION,
+                              "Unable to restart verification context");
+            goto finish;
+        }
+
+        message = (*env)->GetObjectArrayElement(env, messages, i);
+        if (!JSS_RefByteArray(env, message, &bytes, &length)) {
+            ASSERT_OUTOFMEM(env);
+            goto finish;
+        }
+
+        rv = VFY_Update(ctxt, (unsigned char *)bytes, (unsigned)length);
+        JSS_DerefByteArray(env, message, bytes, JNI_ABORT);
+        (*env)->DeleteLocalRef(env, message);
+
+        if (rv != SECSuccess) {
+            JSS_throwMsgPrErr(env, SIGNATURE_EXCEPTION, "update failed");
+            goto finish;
+        }
+
+        sigArray = (*env)->GetObjectArrayElement(env, signatures, i);
+        if (!JSS_RefByteArray(env, sigArray, (jbyte **) &sigItem.data, (jsize *) &sigItem.len)) {
+            ASSERT_OUTOFMEM(env);
+            goto finish;
+        }
+
+        rv = VFY_EndWithSignature(ctxt, &sigItem);
+        JSS_DerefByteArray(env, sigArray, sigItem.data, JNI_ABORT);
+        (*env)->DeleteLocalRef(env, sigArray);
+
+        if (rv == SECSuccess) {
+            verified[i] = JNI_TRUE;
+        } else if (PR_GetError() != SEC_ERROR_BAD_SIGNATURE) {
+            JSS_throwMsgPrErr(env, SIGNATURE_EXCEPTION,
+                "Failed to complete verification operation");
+            goto finish;
+        }
+    }
+
+    result = (*env)->NewBooleanArray(env, count);
+    if (result == NULL) {
+        ASSERT_OUTOFMEM(env);
+        goto finish;
+    }
+    (*env)->SetBooleanArrayRegion(env, result, 0, count, verified);
+
+finish:
+    PR_Free(verified);
+    return result;
+}
+
+/**********************************************************************
+ *
+ * PK11Signature.engineSignDigestsNative
+ *
+ * Signs each precomputed digest of the given digest algorithm with the
+ * private key, encoding the signatures as SGN_End would.
+ */
+JNIEXPORT jobjectArray JNICALL
+Java_org_mozilla_jss_pkcs11_PK11Signature_engineSignDigestsNative
+    (JNIEnv *env, jclass clazz, jobject keyObj, jobject digestAlgObj,
+    jobjectArray digests)
+{
+    SECKEYPrivateKey *key = NULL;
+    SECOidTag digestAlg = SEC_OID_UNKNOWN;
+    jclass byteArrayClass = NULL;
+    jobjectArray result = NULL;
+    jsize count = 0;
+
+    PR_ASSERT(env!=NULL && keyObj!=NULL && digestAlgObj!=NULL && digests!=NULL);
+
+    if (JSS_PK11_getPrivKeyPtr(env, keyObj, &key) != PR_SUCCESS) {
+        /* exception was thrown */
+        return NULL;
+    }
+
+    digestAlg = JSS_getOidTagFromAlg(env, digestAlgObj);
+    if (digestAlg == SEC_OID_UNKNOWN) {
+        JSS_throwMsg(env, SIGNATURE_EXCEPTION, "Unknown digest algorithm");
+        return NULL;
+    }
+
+    byteArrayClass = (*env)->FindClass(env, "[B");
+    if (byteArrayClass == NULL) {
+        ASSERT_OUTOFMEM(env);
+        return NULL;
+    }
+
+    count = (*env)->GetArrayLength(env, digests);
+    result = (*env)->NewObjectArray(env, count, byteArrayClass, NULL);
+    if (result == NULL) {
+        ASSERT_OUTOFMEM(env);
+        return NULL;
+    }
+
+    for (jsize i = 0; i < count; i++) {
+        jbyteArray digestArray = NULL;
+        SECItem *digest = NULL;
+        SECItem signature = { siBuffer, NULL, 0 };
+        SECStatus rv;
+        jbyteArray sigArray = NULL;
+
+        digestArray = (*env)->GetObjectArrayElement(env, digests, i);
+        digest = JSS_ByteArrayToSECItem(env, digestArray);
+        (*env)->DeleteLocalRef(env, digestArray);
+        if (digest == NULL) {
+            return NULL;
+        }
+
+        rv = SGN_Digest(key, digestAlg, &signature, digest);
+        SECITEM_FreeItem(digest, PR_TRUE /*freeit*/);
+
+        if (rv != SECSuccess) {
+            JSS_throwMsgPrErr(env, SIGNATURE_EXCEPTION,
+                              "Unable to sign digest");
+            return NULL;
+        }
+
+        sigArray = JSS_SECItemToByteArray(env, &signature);
+        SECITEM_FreeItem(&signature, PR_FALSE /*freeit*/);
+        if (sigArray == NULL) {
+            ASSERT_OUTOFMEM(env);
+            return NULL;
+        }
+
+        (*env)->SetObjectArrayElement(env, result, i, sigArray);
+        (*env)->DeleteLocalRef(env, sigArray);
+    }
+
+    return result;
+}
+
 /*
  * Extract the algorithm from a PK11Signature.
  *
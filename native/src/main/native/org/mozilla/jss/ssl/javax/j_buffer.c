@@ -1,4 +1,5 @@
 #include "j_buffer.h"
+#include "j_buffer_pool.h"
 
 #include <stdlib.h>
 #include <stdio.h>
@@ -6,7 +7,7 @@
 
 j_buffer *jb_alloc(size_t length) {
     j_buffer *buf = calloc(1, sizeof(j_buffer));
-    buf->contents = calloc(length, sizeof(uint8_t));
+    buf->contents = jbp_alloc(length);
 
     buf->capacity = length;
 
@@ -15,6 +16,34 @@ j_buffer *jb_alloc(size_t length) {
     buf->write_pos = 0;
     buf->read_pos = length;
 
+    buf->initial_capacity = length;
+    buf->max_capacity = length;
+    buf->elastic = false;
+
+    return buf;
+}
+
+j_buffer *jb_alloc_elastic(size_t initial_length, size_t max_length) {
+    j_buffer *buf = calloc(1, sizeof(j_buffer));
+
+    // Contents are allocated on the first write. Until then, capacity is
+    // zero, so both read_pos and write_pos sit at the sentinel value.
+    buf->contents = NULL;
+    buf->capacity = 0;
+    buf->write_pos = 0;
+    buf->read_pos = 0;
+
+    if (initial_length == 0) {
+        initial_length = 1;
+    }
+    if (initial_length > max_length) {
+        initial_length = max_length;
+    }
+
+    buf->initial_capacity = initial_length;
+    buf->max_capacity = max_length;
+    buf->elastic = true;
+
     return buf;
 }
 
@@ -23,9 +52,78 @@ size_t jb_capacity(j_buffer *buf) {
         return 0;
     }
 
+    return buf->max_capacity;
+}
+
+size_t jb_allocated(j_buffer *buf) {
+    if (buf == NULL) {
+        return 0;
+    }
+
     return buf->capacity;
 }
 
+bool jb_is_elastic(j_buffer *buf) {
+    return buf != NULL && buf->elastic;
+}
+
+/*
+ * Ensure an elastic buffer has room for at least needed bytes in total
+ * (readable plus writable). The readable bytes are moved to the start of the
+ * new contents, so the ring is linear after growing. When the buffer can't
+ * grow (fixed-size, at max_capacity, or out of memory), nothing changes and
+ * the subsequent write is simply short.
+ */
+static void jb_reserve(j_buffer *buf, size_t needed) {
+    if (!buf->elastic || buf->capacity >= needed ||
+            buf->capacity == buf->max_capacity) {
+        return;
+    }
+
+    size_t new_capacity = buf->capacity;
+    if (new_capacity < buf->initial_capacity) {
+        new_capacity = buf->initial_capacity;
+    }
+    while (new_capacity < needed && new_capacity < buf->max_capacity) {
+        // Guard against overflow when doubling; max_capacity bounds us anyway.
+        if (new_capacity > buf->max_capacity / 2) {
+            new_capacity = buf->max_capacity;
+        } else {
+            new_capacity *= 2;
+        }
+    }
+    if (new_capacity > buf->max_capacity) {
+        new_capacity = buf->max_capacity;
+    }
+
+    uint8_t *new_contents = jbp_alloc(new_capacity);
+    if (new_contents == NULL) {
+        return;
+    }
+
+    // Drain the existing contents (which may wrap around) into the start
+    // of the new contents.
+    size_t used = jb_read(buf, new_contents, new_capacity);
+
+    if (buf->contents != NULL) {
+        memset(buf->contents, 0, buf->capacity);
+        jbp_free(buf->contents, buf->capacity);
+    }
+
+    buf->contents = new_contents;
+    buf->capacity = new_capacity;
+
+    // When used == new_capacity, write_pos lands on the sentinel value,
+    // marking the buffer as full.
+    if (used == 0) {
+        buf->read_pos = new_capacity;
+        buf->write_pos = 0;
+    } else {
+        buf->read_pos = 0;
+        buf->write_pos = used;
+    }
+}
+
 bool jb_can_read(j_buffer *buf) {
     /* buf->read_pos == buf->capacity <=> can't read from the buffer */
     return buf != NULL && buf->read_pos != buf->capacity;
@@ -58,15 +156,13 @@ size_t jb_read_capacity(j_buffer *buf) {
 }
 
 bool jb_can_write(j_buffer *buf) {
-    /* buf->write_pos == buf->capacity <=> can't write to the buffer */
-    return buf != NULL && buf->write_pos != buf->capacity;
+    /* buf->write_pos == buf->capacity <=> can't write to the allocated
+     * contents; elastic buffers can still write when they can grow. */
+    return jb_write_capacity(buf) > 0;
 }
 
-size_t jb_write_capacity(j_buffer *buf) {
-    if (buf == NULL) {
-        return 0;
-    }
-
+/* Number of bytes which can be written without growing the contents. */
+static size_t jb_ring_write_capacity(j_buffer *buf) {
     /* Semantics: buf->write_pos == buf->capacity <=> can't write */
     if (buf->write_pos == buf->capacity) {
         return 0;
@@ -87,10 +183,25 @@ size_t jb_write_capacity(j_buffer *buf) {
     return (buf->capacity - buf->write_pos) + buf->read_pos;
 }
 
+size_t jb_write_capacity(j_buffer *buf) {
+    if (buf == NULL) {
+        return 0;
+    }
+
+    /* Elastic buffers can additionally grow up to max_capacity; for fixed
+     * buffers, max_capacity == capacity and this adds nothing. */
+    return jb_ring_write_capacity(buf) + (buf->max_capacity - buf->capacity);
+}
+
 int jb_put(j_buffer *buf, uint8_t byte) {
     /* ret == EOF <=> can't write to the buffer */
     /* ret = char written <=> can write to the buffer */
-    if (!jb_can_write(buf)) {
+    if (buf == NULL) {
+        return EOF;
+    }
+
+    jb_reserve(buf, jb_read_capacity(buf) + 1);
+    if (buf->write_pos == buf->capacity) {
         return EOF;
     }
 
@@ -122,10 +233,10 @@ int jb_put(j_buffer *buf, uint8_t byte) {
     return byte;
 }
 
-size_t jb_write(j_buffer *buf, const uint8_t *input, size_t input_size) {
+static size_t jb_ring_write(j_buffer *buf, const uint8_t *input, size_t input_size) {
     /* ret == 0 <=> can't write to the buffer or input_size == 0 */
     /* ret == amount written <=> can write to the buffer */
-    if (!jb_can_write(buf) || input_size == 0) {
+    if (buf->write_pos == buf->capacity || input_size == 0) {
         return 0;
     }
 
@@ -156,7 +267,7 @@ size_t jb_write(j_buffer *buf, const uint8_t *input, size_t input_size) {
     // bytes than we computed above. To handle this, we call jb_write
     // again after this pass. In the above we ensure that we always write
     // at least one byte, so input_size shrinks and buf->write_pos moves.
-    // This ensures we make at most two calls to jb_write and have a recursion
+    // This ensures we make at most two calls to jb_ring_write and have a recursion
     // depth of at most two.
 
     // This copies the current byte window from the input to the buffer.
@@ -194,7 +305,17 @@ size_t jb_write(j_buffer *buf, const uint8_t *input, size_t input_size) {
     input_size -= write_size;
 
     // Recurse, updating the return value by this write size.
-    return write_size + jb_write(buf, input, input_size);
+    return write_size + jb_ring_write(buf, input, input_size);
+}
+
+size_t jb_write(j_buffer *buf, const uint8_t *input, size_t input_size) {
+    if (buf == NULL || input_size == 0) {
+        return 0;
+    }
+
+    // Grow elastic buffers first, so the write lands in a single pass.
+    jb_reserve(buf, jb_read_capacity(buf) + input_size);
+    return jb_ring_write(buf, input, input_size);
 }
 
 int jb_get(j_buffer *buf) {
@@ -287,23 +408,46 @@ size_t jb_read(j_buffer *buf, uint8_t *output, size_t output_size) {
     return read_size + jb_read(buf, output, output_size);
 }
 
+bool jb_release(j_buffer *buf) {
+    if (!jb_is_elastic(buf) || buf->contents == NULL || jb_can_read(buf)) {
+        return false;
+    }
+
+    // As with jb_free, clear the contents before handing them back to the
+    // pool; the next buffer to use them expects zeroed memory.
+    memset(buf->contents, 0, buf->capacity);
+    jbp_free(buf->contents, buf->capacity);
+
+    // Return to the unallocated state from jb_alloc_elastic.
+    buf->contents = NULL;
+    buf->capacity = 0;
+    buf->write_pos = 0;
+    buf->read_pos = 0;
+
+    return true;
+}
+
 void jb_free(j_buffer *buf) {
-    // Safely handle partial or invalid structures.
+    // Safely handle partial or invalid structures. Released elastic buffers
+    // legitimately have no contents.
     if (buf == NULL) {
         return;
     }
-    if (buf->contents == NULL || buf->capacity == 0) {
+    if (buf->max_capacity == 0 || (buf->contents == NULL && !buf->elastic)) {
         return;
     }
 
     // We clear the contents of the buffer before freeing it in case any
     // sensitive information was stored.
-    memset(buf->contents, 0, buf->capacity);
-    free(buf->contents);
+    if (buf->contents != NULL) {
+        memset(buf->contents, 0, buf->capacity);
+        jbp_free(buf->contents, buf->capacity);
+    }
 
     // Safe guards to ensure we don't try and free buf again.
     buf->contents = NULL;
     buf->capacity = 0;
+    buf->max_capacity = 0;
 
     free(buf);
 }
@@ -10,11 +10,12 @@
  * A j_buffer is a circular ring buffer creating a FIFO queue of bytes.
  */
 typedef struct {
-    /* Contents of the buffer. */
+    /* Contents of the buffer; NULL while an elastic buffer is released. */
     uint8_t *contents;
 
     /* Capacity is used as a sentinel value; when write_pos == capacity, can't
-     * write. */
+     * write. This is the size of the currently allocated contents, which
+     * can be smaller than max_capacity for elastic buffers. */
     size_t capacity;
 
     /* Next position to write to, else capacity if unable to write. */
@@ -22,6 +23,15 @@ typedef struct {
 
     /* Next position to read from, else capacity if unable to read. */
     size_t read_pos;
+
+    /* Size of the contents allocated on first write to an elastic buffer. */
+    size_t initial_capacity;
+
+    /* Upper bound on capacity; equal to capacity for fixed-size buffers. */
+    size_t max_capacity;
+
+    /* Whether contents are allocated lazily and grown on demand. */
+    bool elastic;
 } j_buffer;
 
 /*
@@ -30,9 +40,26 @@ typedef struct {
  */
 j_buffer *jb_alloc(size_t length);
 
-/* Get the original capacity (i.e., when empty) of the specified buffer. */
+/*
+ * Create a new elastic buffer; must be freed with jb_free. No contents are
+ * allocated until the first write, at which point initial_length bytes are
+ * allocated. The contents grow (doubling, up to max_length) when a write
+ * would not otherwise fit, and can be handed back with jb_release when the
+ * buffer is empty. To callers, an elastic buffer behaves as a buffer of
+ * max_length bytes.
+ */
+j_buffer *jb_alloc_elastic(size_t initial_length, size_t max_length);
+
+/* Get the original capacity (i.e., when empty) of the specified buffer. For
+ * elastic buffers, this is the maximum capacity. */
 size_t jb_capacity(j_buffer *buf);
 
+/* Get the number of bytes currently allocated for the buffer's contents. */
+size_t jb_allocated(j_buffer *buf);
+
+/* Whether or not the buffer was created with jb_alloc_elastic. */
+bool jb_is_elastic(j_buffer *buf);
+
 /* Whether or not the buffer can be read from. */
 bool jb_can_read(j_buffer *buf);
 
@@ -73,7 +100,15 @@ int jb_get(j_buffer *buf);
 size_t jb_read(j_buffer *buf, uint8_t *output, size_t output_size);
 
 /*
- * Free a buffer allocated with jb_alloc. This includes zeroing the contents
+ * Release the contents of an empty elastic buffer, zeroing them first. The
+ * buffer remains usable; contents are reallocated on the next write. Returns
+ * true if memory was released; false when the buffer is fixed-size, not
+ * empty, or already released.
+ */
+bool jb_release(j_buffer *buf);
+
+/*
+ * Free a buffer allocated with jb_alloc or jb_alloc_elastic. This includes zeroing the contents
  * of the buffer in case any sensitive material was stored.
  */
 void jb_free(j_buffer *buf);
@@ -0,0 +1,252 @@
+#include <nspr.h>
+
+#include <stdlib.h>
+#include <string.h>
+
+#include "j_buffer_pool.h"
+
+/*
+ * A free block stores the pointer to the next free block of the same size in
+ * its first bytes; the rest of the block is already zero. Blocks smaller than
+ * a pointer are never pooled.
+ */
+typedef struct jbp_free_block {
+    struct jbp_free_block *next;
+} jbp_free_block;
+
+typedef struct {
+    /* Size of every block in this class; zero if the slot is unused. */
+    size_t size;
+
+    /* Singly-linked LIFO list of free blocks. */
+    jbp_free_block *head;
+
+    /* Number of blocks on the list. */
+    size_t count;
+} jbp_size_class;
+
+static PRCallOnceType jbp_once;
+static PRLock *jbp_lock = NULL;
+
+static jbp_size_class jbp_classes[JBP_MAX_SIZE_CLASSES];
+static size_t jbp_max_pooled_bytes = JBP_DEFAULT_MAX_POOLED_BYTES;
+static size_t jbp_max_pooled_per_size = JBP_DEFAULT_MAX_POOLED_PER_SIZE;
+static j_buffer_pool_stats jbp_counters;
+
+static PRStatus jbp_init(void)
+{
+    jbp_lock = PR_NewLock();
+    return jbp_lock != NULL ? PR_SUCCESS : PR_FAILURE;
+}
+
+/* Acquire the pool lock; false if the lock couldn't be created. */
+static bool jbp_enter(void)
+{
+    if (PR_CallOnce(&jbp_once, jbp_init) != PR_SUCCESS) {
+        return false;
+    }
+
+    PR_Lock(jbp_lock);
+    return true;
+}
+
+static void jbp_exit(void)
+{
+    PR_Unlock(jbp_lock);
+}
+
+/* Find the class for size, claiming an unused slot when create is set.
+ * Must be called with the lock held. */
+static jbp_size_class *jbp_find_class(size_t size, bool create)
+{
+    jbp_size_class *unused = NULL;
+
+    for (size_t i = 0; i < JBP_MAX_SIZE_CLASSES; i++) {
+        if (jbp_classes[i].size == size) {
+            return &jbp_classes[i];
+        }
+        if (unused == NULL && jbp_classes[i].size == 0) {
+            unused = &jbp_classes[i];
+        }
+    }
+
+    if (create && unused != NULL) {
+        unused->size = size;
+        return unused;
+    }
+
+    return NULL;
+}
+
+/* Pop and free blocks from class until both caps hold. Must be called with
+ * the lock held. */
+static void jbp_trim_class(jbp_size_class *class)
+{
+    while (class->head != NULL &&
+            (class->count > jbp_max_pooled_per_size ||
+             jbp_counters.pooled_bytes > jbp_max_pooled_bytes)) {
+        jbp_free_block *block = class->head;
+        class->head = block->next;
+        class->count -= 1;
+
+        jbp_counters.pooled_blocks -= 1;
+        jbp_counters.pooled_bytes -= class->size;
+
+        free(block);
+    }
+
+    if (class->head == NULL) {
+        // Hand the slot back so another size can use it.
+        class->size = 0;
+        class->count = 0;
+    }
+}
+
+uint8_t *jbp_alloc(size_t size)
+{
+    uint8_t *result = NULL;
+
+    if (size == 0) {
+        return NULL;
+    }
+
+    if (!jbp_enter()) {
+        return calloc(size, sizeof(uint8_t));
+    }
+
+    jbp_size_class *class = jbp_find_class(size, false);
+    if (class != NULL && class->head != NULL) {
+        jbp_free_block *block = class->head;
+        class->head = block->next;
+        class->count -= 1;
+        if (class->head == NULL) {
+            class->size = 0;
+        }
+
+        jbp_counters.pooled_blocks -= 1;
+        jbp_counters.pooled_bytes -= size;
+        jbp_counters.hits += 1;
+
+        // Only the link needs clearing; the rest was zeroed by the caller
+        // of jbp_free.
+        result = (uint8_t *) block;
+        memset(result, 0, sizeof(jbp_free_block));
+    } else {
+        jbp_counters.misses += 1;
+    }
+
+    jbp_exit();
+
+    if (result == NULL) {
+        // Allocate outside of the lock; calloc can be slow for large blocks.
+        result = calloc(size, sizeof(uint8_t));
+        if (result == NULL) {
+            return NULL;
+        }
+    }
+
+    if (jbp_enter()) {
+        jbp_counters.allocated_blocks += 1;
+        jbp_counters.allocated_bytes += size;
+        if (jbp_counters.allocated_bytes > jbp_counters.high_water_bytes) {
+            jbp_counters.high_water_bytes = jbp_counters.allocated_bytes;
+        }
+        jbp_exit();
+    }
+
+    return result;
+}
+
+void jbp_free(uint8_t *block, size_t size)
+{
+    if (block == NULL) {
+        return;
+    }
+
+    if (!jbp_enter()) {
+        free(block);
+        return;
+    }
+
+    jbp_counters.allocated_blocks -= 1;
+    jbp_counters.allocated_bytes -= size;
+
+    if (size >= sizeof(jbp_free_block) &&
+            jbp_counters.pooled_bytes + size <= jbp_max_pooled_bytes) {
+        jbp_size_class *class = jbp_find_class(size, true);
+        if (class != NULL && class->count < jbp_max_pooled_per_size) {
+            jbp_free_block *free_block = (jbp_free_block *) block;
+            free_block->next = class->head;
+            class->head = free_block;
+            class->count += 1;
+
+            jbp_counters.pooled_blocks += 1;
+            jbp_counters.pooled_bytes += size;
+
+            block = NULL;
+        } else if (class != NULL && class->head == NULL) {
+            // We claimed an empty slot but couldn't use it.
+            class->size = 0;
+        }
+    }
+
+    jbp_exit();
+
+    // Not pooled: over a cap, too small, or out of size classes.
+    free(block);
+}
+
+void jbp_configure(size_t max_pooled_bytes, size_t max_pooled_per_size)
+{
+    if (!jbp_enter()) {
+        return;
+    }
+
+    jbp_max_pooled_bytes = max_pooled_bytes;
+    jbp_max_pooled_per_size = max_pooled_per_size;
+
+    for (size_t i = 0; i < JBP_MAX_SIZE_CLASSES; i++) {
+        if (jbp_classes[i].size != 0) {
+            jbp_trim_class(&jbp_classes[i]);
+        }
+    }
+
+    jbp_exit();
+}
+
+void jbp_drain(void)
+{
+    if (!jbp_enter()) {
+        return;
+    }
+
+    size_t max_pooled_bytes = jbp_max_pooled_bytes;
+    jbp_max_pooled_bytes = 0;
+
+    for (size_t i = 0; i < JBP_MAX_SIZE_CLASSES; i++) {
+        if (jbp_classes[i].size != 0) {
+            jbp_trim_class(&jbp_classes[i]);
+        }
+    }
+
+    jbp_max_pooled_bytes = max_pooled_bytes;
+
+    jbp_exit();
+}
+
+void jbp_stats(j_buffer_pool_stats *stats)
+{
+    if (stats == NULL) {
+        return;
+    }
+
+    memset(stats, 0, sizeof(j_buffer_pool_stats));
+
+    if (!jbp_enter()) {
+        return;
+    }
+
+    *stats = jbp_counters;
+
+    jbp_exit();
+}
@@ -0,0 +1,68 @@
+#include <stdbool.h>
+#include <stdint.h>
+#include <stddef.h>
+
+#pragma once
+
+/*
+ * Process-wide slab pool for j_buffer contents.
+ *
+ * Each JSSEngine creates (and on re-initialization, recreates) a pair of
+ * j_buffers, and elastic buffers allocate and release their contents as
+ * connections go idle. Rather than returning these backing stores to the
+ * allocator every time, freed contents are kept on per-size free lists and
+ * handed to the next j_buffer asking for the same size.
+ *
+ * All functions are thread-safe. Blocks handed out by jbp_alloc are always
+ * zeroed, as with calloc; callers must zero any sensitive contents before
+ * calling jbp_free, as jb_free and jb_release already do.
+ */
+
+/* Default upper bound on the total bytes held in free lists. */
+#define JBP_DEFAULT_MAX_POOLED_BYTES (16 * 1024 * 1024)
+
+/* Default upper bound on the blocks held in a single size's free list. */
+#define JBP_DEFAULT_MAX_POOLED_PER_SIZE 1024
+
+/* Maximum number of distinct block sizes tracked; others bypass the pool. */
+#define JBP_MAX_SIZE_CLASSES 16
+
+/* Snapshot of the pool counters; see jbp_stats. */
+typedef struct {
+    /* Bytes and blocks currently handed out to j_buffers. */
+    size_t allocated_bytes;
+    size_t allocated_blocks;
+
+    /* Bytes and blocks currently held in the free lists. */
+    size_t pooled_bytes;
+    size_t pooled_blocks;
+
+    /* Highest value allocated_bytes has reached. */
+    size_t high_water_bytes;
+
+    /* Allocations satisfied from (hits) or missing (misses) the pool. */
+    uint64_t hits;
+    uint64_t misses;
+} j_buffer_pool_stats;
+
+/* Get a zeroed block of size bytes; NULL when out of memory. */
+uint8_t *jbp_alloc(size_t size);
+
+/*
+ * Return a block of size bytes obtained from jbp_alloc. The block is kept
+ * for reuse unless doing so would exceed the configured caps. The caller
+ * is expected to have zeroed the block.
+ */
+void jbp_free(uint8_t *block, size_t size);
+
+/*
+ * Set the caps on the pool. A max_pooled_bytes of zero disables pooling;
+ * existing free lists are trimmed to fit the new caps.
+ */
+void jbp_configure(size_t max_pooled_bytes, size_t max_pooled_per_size);
+
+/* Release every block held in the free lists back to the allocator. */
+void jbp_drain(void);
+
+/* Copy the current counters into stats. */
+void jbp_stats(j_buffer_pool_stats *stats);
@@ -400,6 +400,12 @@ PR_BEGIN_EXTERN_C
 #define BUFFER_PROXY_CLASS_NAME "org/mozilla/jss/nss/BufferProxy"
 #define BUFFER_PROXY_CONSTRUCTOR_SIG "([B)V"
 
+/*
+ * BufferPoolStats
+ */
+#define BUFFER_POOL_STATS_CLASS_NAME "org/mozilla/jss/nss/BufferPoolStats"
+#define BUFFER_POOL_STATS_CONSTRUCTOR_SIG "(JJJJJJJ)V"
+
 /*
  * GlobalRefProxy
  */
@@ -3313,3 +3313,444 @@ finish:
 
 // end DRM proto
 #endif                                            // DRM_SUPPORT_DEBUG
+
+//=================================================================================
+// Secure channel setup in a single call.
+//
+// ComputeSessionKey, ComputeEncSessionKey, ComputeKekKey and
+// ComputeCryptogram each look up the token, the master key and the
+// shared secret and derive the card keys again. The functions below do
+// that once per card, or once per batch of cards for the lookups, and
+// return everything needed to open the secure channel.
+
+// Copy a Java byte array into a Buffer; false if there is no array.
+static bool GetBuffer(JNIEnv *env, jbyteArray array, Buffer &out)
+{
+    if (array == NULL) {
+        return false;
+    }
+
+    jsize len = env->GetArrayLength(array);
+    jbyte *bytes = env->GetByteArrayElements(array, NULL);
+    if (bytes == NULL) {
+        return false;
+    }
+
+    out = Buffer((BYTE *) bytes, len);
+    env->ReleaseByteArrayElements(array, bytes, JNI_ABORT);
+    return true;
+}
+
+// Wrap the first 16 bytes of a session key with the transport key, as
+// ComputeSessionKey does.
+static jbyteArray WrapSecureChannelSessionKey(JNIEnv *env, PK11SymKey *symkey, PK11SymKey *transportKey)
+{
+    CK_ULONG bitPosition = 0;
+    SECItem paramsItem = { siBuffer, (unsigned char *) &bitPosition, sizeof bitPosition };
+    SECItem noParams = { siBuffer, NULL, 0 };
+    BYTE wrapped[KEYLENGTH];
+    SECItem wrappedKeyItem = { siBuffer, wrapped, KEYLENGTH };
+    jbyteArray handleBA = NULL;
+
+    PK11SymKey *symkey16 = PK11_Derive(symkey, CKM_EXTRACT_KEY_FROM_KEY, &paramsItem, CKA_ENCRYPT,
+                                                            CKA_DERIVE, KEYLENGTH);
+    if ( !symkey16 ) {
+        PR_fprintf(PR_STDERR,"Can't derive 16 byte key from 24 byte symkey! \n");
+        return NULL;
+    }
+
+    if (PK11_WrapSymKey(CKM_DES3_ECB, &noParams, transportKey, symkey16, &wrappedKeyItem) == SECSuccess) {
+        handleBA = env->NewByteArray(KEYLENGTH);
+        if (handleBA != NULL) {
+            env->SetByteArrayRegion(handleBA, 0, KEYLENGTH, (jbyte *) wrapped);
+        }
+    } else {
+        PR_fprintf(PR_STDERR, "Can't wrap session key! Error: %d \n", PR_GetError());
+    }
+
+    memset(wrapped, 0, sizeof wrapped);
+    PK11_FreeSymKey(symkey16);
+    return handleBA;
+}
+
+// MAC the two 8 byte challenges with the session key, as
+// ComputeCryptogram does.
+static jbyteArray ComputeSecureChannelCryptogram(JNIEnv *env, PK11SymKey *symkey, const Buffer &first, const Buffer &second)
+{
+    Buffer input_x = Buffer(KEYLENGTH);
+    Buffer icv = Buffer(EIGHT_BYTES, (BYTE)0);
+    Buffer output = Buffer(EIGHT_BYTES, (BYTE)0);
+    jbyteArray handleBA = NULL;
+
+    input_x.replace(0, (const BYTE *) first, EIGHT_BYTES);
+    input_x.replace(EIGHT_BYTES, (const BYTE *) second, EIGHT_BYTES);
+
+    if (ComputeMAC(symkey, input_x, icv, output) != PR_SUCCESS) {
+        return NULL;
+    }
+
+    handleBA = env->NewByteArray(EIGHT_BYTES);
+    if (handleBA != NULL) {
+        env->SetByteArrayRegion(handleBA, 0, EIGHT_BYTES, (jbyte *) (BYTE *) output);
+    }
+    return handleBA;
+}
+
+// State shared by all cards of a batch.
+struct SecureChannelContext
+{
+    PK11SlotInfo *slot;
+    PK11SymKey *transportKey;
+    char *keyName;                 // NULL to use each card's key version
+    char *keySetString;
+    BYTE nistSP800_108KdfOnKeyVersion;
+    jboolean nistSP800_108KdfUseCuidAsKdd;
+    Buffer macBuff;
+    Buffer authBuff;
+    Buffer kekBuff;
+
+    // The master key of the previous card, reused while cards share it.
+    PK11SymKey *masterKey;
+    char masterKeyName[KEYNAMELENGTH];
+};
+
+static PK11SymKey *GetSecureChannelMasterKey(SecureChannelContext *ctx, char *keyname)
+{
+    if (ctx->masterKey == NULL || strcmp(ctx->masterKeyName, keyname) != 0) {
+        if (ctx->masterKey != NULL) {
+            PK11_FreeSymKey(ctx->masterKey);
+        }
+        ctx->masterKey = ReturnSymKey(ctx->slot, keyname);
+        strncpy(ctx->masterKeyName, keyname, KEYNAMELENGTH-1);
+        ctx->masterKeyName[KEYNAMELENGTH-1] = '\0';
+    }
+    return ctx->masterKey;
+}
+
+// Compute { wrapped mac session key, wrapped enc session key, kek key,
+// host cryptogram, card cryptogram } for one card, or NULL on failure.
+static jobjectArray ComputeSecureChannelKeysForCard(JNIEnv *env, SecureChannelContext *ctx,
+    jclass objectClass, jbyteArray card_challenge, jbyteArray host_challenge,
+    jbyteArray keyInfo, jbyteArray CUID, jbyteArray KDD)
+{
+    Buffer cc, hc, keyVersionBuff, cuid, kdd;
+    jbyte *keyVersion = NULL;
+    char keyname[KEYNAMELENGTH];
+
+    PK11SymKey *masterKey = NULL;
+    PK11SymKey *macKey = NULL;
+    PK11SymKey *encKey = NULL;
+    PK11SymKey *kekKey = NULL;
+    PK11SymKey *macSessionKey = NULL;
+    PK11SymKey *encSessionKey = NULL;
+
+    BYTE macData[KEYLENGTH];
+    BYTE encData[KEYLENGTH];
+    BYTE kekData[KEYLENGTH];
+
+    jbyteArray macHandle = NULL;
+    jbyteArray encHandle = NULL;
+    jobject kekObj = NULL;
+    jbyteArray hostCryptogram = NULL;
+    jbyteArray cardCryptogram = NULL;
+    jobjectArray result = NULL;
+
+    if (!GetBuffer(env, card_challenge, cc) || cc.size() < EIGHT_BYTES ||
+        !GetBuffer(env, host_challenge, hc) || hc.size() < EIGHT_BYTES ||
+        !GetBuffer(env, keyInfo, keyVersionBuff) || keyVersionBuff.size() < 2 ||
+        !GetBuffer(env, CUID, cuid) || cuid.size() == 0 ||
+        !GetBuffer(env, KDD, kdd) || kdd.size() != NistSP800_108KDF::KDD_SIZE_BYTES) {
+        goto done;
+    }
+
+    keyVersion = (jbyte *) (BYTE *) keyVersionBuff;
+
+    if (ctx->keyName != NULL) {
+        strncpy(keyname, ctx->keyName, KEYNAMELENGTH-1);
+        keyname[KEYNAMELENGTH-1] = '\0';
+    } else {
+        GetKeyName(keyVersion, keyname);
+    }
+
+    if ( (keyVersion[0] == 0x1 && keyVersion[1]== 0x1 && strcmp( keyname, "#01#01") == 0) ||
+        (keyVersion[0] == -1 && strstr(keyname, "#FF")))
+    {
+        /* default manufacturers key */
+
+        macKey = ReturnDeveloperSymKey(ctx->slot, (char *) "mac", ctx->keySetString, ctx->macBuff);
+        encKey = ReturnDeveloperSymKey(ctx->slot, (char *) "auth", ctx->keySetString, ctx->authBuff);
+        kekKey = ReturnDeveloperSymKey(ctx->slot, (char *) "kek", ctx->keySetString, ctx->kekBuff);
+
+    } else {
+        masterKey = GetSecureChannelMasterKey(ctx, keyname);
+        if (masterKey == NULL) {
+            goto done;
+        }
+
+        BYTE requestedKeyVersion_byte = static_cast<BYTE>(keyVersion[0]);
+        if (NistSP800_108KDF::useNistSP800_108KDF(ctx->nistSP800_108KdfOnKeyVersion, requestedKeyVersion_byte) == true) {
+
+            // react to "UseCUIDAsKDD" setting value
+            const Buffer &context = ctx->nistSP800_108KdfUseCuidAsKdd == JNI_TRUE ? cuid : kdd;
+            if (context.size() > 0x000000FF) {  // sanity check (CUID should never be larger than 255 bytes)
+                PR_fprintf(PR_STDERR, "ComputeSecureChannelKeys NistSP800_108KDF code: Error; context_len larger than 255 bytes.\n");
+                goto done;
+            }
+
+            // One call derives all three card keys.
+            try {
+                NistSP800_108KDF::ComputeCardKeys(masterKey, (const BYTE *) context, context.size(), &encKey, &macKey, &kekKey);
+            } catch(std::runtime_error& ex) {
+                PR_fprintf(PR_STDERR, "ComputeSecureChannelKeys NistSP800_108KDF code: Exception invoking NistSP800_108KDF::ComputeCardKeys: ");
+                PR_fprintf(PR_STDERR, "%s\n", ex.what() == NULL ? "null" : ex.what());
+                goto done;
+            } catch(...) {
+                PR_fprintf(PR_STDERR, "ComputeSecureChannelKeys NistSP800_108KDF code: Unknown exception invoking NistSP800_108KDF::ComputeCardKeys.\n");
+                goto done;
+            }
+
+        } else {
+            // Original KDF, diversified by the KDD as in ComputeSessionKey.
+            GetDiversificationData((jbyte *) (BYTE *) kdd, macData, mac);
+            GetDiversificationData((jbyte *) (BYTE *) kdd, encData, enc);
+            GetDiversificationData((jbyte *) (BYTE *) kdd, kekData, kek);
+
+            macKey = ComputeCardKeyOnToken(masterKey, macData, 1);
+            encKey = ComputeCardKeyOnToken(masterKey, encData, 1);
+            kekKey = ComputeCardKeyOnToken(masterKey, kekData, 1);
+        }
+    }
+
+    if (macKey == NULL || encKey == NULL || kekKey == NULL) {
+        goto done;
+    }
+
+    macSessionKey = DeriveKey(macKey, hc, cc);
+    encSessionKey = DeriveKey(encKey, hc, cc);
+    if (macSessionKey == NULL || encSessionKey == NULL) {
+        goto done;
+    }
+
+    macHandle = WrapSecureChannelSessionKey(env, macSessionKey, ctx->transportKey);
+    encHandle = WrapSecureChannelSessionKey(env, encSessionKey, ctx->transportKey);
+    hostCryptogram = ComputeSecureChannelCryptogram(env, encSessionKey, cc, hc);
+    cardCryptogram = ComputeSecureChannelCryptogram(env, encSessionKey, hc, cc);
+    if (macHandle == NULL || encHandle == NULL || hostCryptogram == NULL || cardCryptogram == NULL) {
+        goto done;
+    }
+
+    /* wrap the kek in java object. This sets kekKey to NULL. */
+    kekObj = JSS_PK11_wrapSymKey(env, &kekKey, NULL);
+    if (kekObj == NULL) {
+        goto done;
+    }
+
+    result = env->NewObjectArray(5, objectClass, NULL);
+    if (result == NULL) {
+        goto done;
+    }
+
+    env->SetObjectArrayElement(result, 0, macHandle);
+    env->SetObjectArrayElement(result, 1, encHandle);
+    env->SetObjectArrayElement(result, 2, kekObj);
+    env->SetObjectArrayElement(result, 3, hostCryptogram);
+    env->SetObjectArrayElement(result, 4, cardCryptogram);
+
+done:
+
+    memset(macData, 0, sizeof macData);
+    memset(encData, 0, sizeof encData);
+    memset(kekData, 0, sizeof kekData);
+
+    if (macKey) {
+        PK11_FreeSymKey(macKey);
+    }
+    if (encKey) {
+        PK11_FreeSymKey(encKey);
+    }
+    if (kekKey) {
+        PK11_FreeSymKey(kekKey);
+    }
+    if (macSessionKey) {
+        PK11_FreeSymKey(macSessionKey);
+    }
+    if (encSessionKey) {
+        PK11_FreeSymKey(encSessionKey);
+    }
+
+    // Local references would otherwise pile up over a large batch.
+    if (macHandle) {
+        env->DeleteLocalRef(macHandle);
+    }
+    if (encHandle) {
+        env->DeleteLocalRef(encHandle);
+    }
+    if (kekObj) {
+        env->DeleteLocalRef(kekObj);
+    }
+    if (hostCryptogram) {
+        env->DeleteLocalRef(hostCryptogram);
+    }
+    if (cardCryptogram) {
+        env->DeleteLocalRef(cardCryptogram);
+    }
+
+    return result;
+}
+
+#ifdef __cplusplus
+extern "C"
+{
+#endif
+/*
+ * Class:     org_mozilla_jss_symkey_SessionKey
+ * Method:    ComputeSecureChannelKeysNative
+ * Signature: (Ljava/lang/String;Ljava/lang/String;[[B[[B[[BBZ[[B[[B[B[B[BLjava/lang/String;Ljava/lang/String;Ljava/lang/String;)[Ljava/lang/Object;
+ */
+    JNIEXPORT jobjectArray JNICALL Java_org_mozilla_jss_symkey_SessionKey_ComputeSecureChannelKeysNative
+        (JNIEnv *, jclass, jstring, jstring, jobjectArray, jobjectArray, jobjectArray, jbyte, jboolean, jobjectArray, jobjectArray, jbyteArray, jbyteArray, jbyteArray, jstring, jstring, jstring);
+#ifdef __cplusplus
+}
+#endif
+extern "C" JNIEXPORT jobjectArray JNICALL Java_org_mozilla_jss_symkey_SessionKey_ComputeSecureChannelKeysNative(JNIEnv * env, jclass this2, jstring tokenName, jstring keyName, jobjectArray card_challenges, jobjectArray host_challenges, jobjectArray keyInfos, jbyte nistSP800_108KdfOnKeyVersion, jboolean nistSP800_108KdfUseCuidAsKdd, jobjectArray CUIDs, jobjectArray KDDs, jbyteArray macKeyArray, jbyteArray authKeyArray, jbyteArray kekKeyArray, jstring useSoftToken_s, jstring keySet, jstring sharedSecretKeyName)
+{
+    SecureChannelContext ctx;
+    char *tokenNameChars = NULL;
+    char *keyNameChars = NULL;
+    char *keySetStringChars = NULL;
+    char *sharedSecretKeyNameChars = NULL;
+    PK11SlotInfo *internal = NULL;
+    jclass objectClass = NULL;
+    jobjectArray results = NULL;
+    jsize count = 0;
+
+    ctx.slot = NULL;
+    ctx.transportKey = NULL;
+    ctx.keyName = NULL;
+    ctx.keySetString = (char *) DEFKEYSET_NAME;
+    ctx.nistSP800_108KdfOnKeyVersion = static_cast<BYTE>(nistSP800_108KdfOnKeyVersion);
+    ctx.nistSP800_108KdfUseCuidAsKdd = nistSP800_108KdfUseCuidAsKdd;
+    ctx.masterKey = NULL;
+    ctx.masterKeyName[0] = '\0';
+
+    /* hardcoded permanent developer keys */
+    if (!GetBuffer(env, macKeyArray, ctx.macBuff) || ctx.macBuff.size() < KEYLENGTH ||
+        !GetBuffer(env, authKeyArray, ctx.authBuff) || ctx.authBuff.size() < KEYLENGTH ||
+        !GetBuffer(env, kekKeyArray, ctx.kekBuff) || ctx.kekBuff.size() < KEYLENGTH) {
+        goto done;
+    }
+
+    if (card_challenges == NULL || host_challenges == NULL || keyInfos == NULL ||
+        CUIDs == NULL || KDDs == NULL) {
+        goto done;
+    }
+
+    if( keySet != NULL ) {
+        keySetStringChars = (char *) (env)->GetStringUTFChars( keySet, NULL);
+        if ( keySetStringChars != NULL ) {
+            ctx.keySetString = keySetStringChars;
+        }
+    }
+
+    if( sharedSecretKeyName != NULL ) {
+        sharedSecretKeyNameChars = (char *) (env)->GetStringUTFChars( sharedSecretKeyName, NULL);
+    }
+
+    GetSharedSecretKeyName(sharedSecretKeyNameChars != NULL ? sharedSecretKeyNameChars : (char *) TRANSPORT_KEY_NAME);
+
+    if (tokenName)
+    {
+        tokenNameChars = (char *)(env)->GetStringUTFChars(tokenName, NULL);
+        ctx.slot = ReturnSlot(tokenNameChars);
+        (env)->ReleaseStringUTFChars(tokenName, (const char *)tokenNameChars);
+    }
+
+    if (ctx.slot == NULL) {
+        goto done;
+    }
+
+    if (keyName)
+    {
+        keyNameChars = (char *)(env)->GetStringUTFChars(keyName, NULL);
+        ctx.keyName = keyNameChars;
+    }
+
+    internal = PK11_GetInternalKeySlot();
+    ctx.transportKey = ReturnSymKey( internal, GetSharedSecretKeyName(NULL));
+    if ( ctx.transportKey == NULL ) {
+        PR_fprintf(PR_STDERR, "Can't find shared secret transport key! \n");
+        goto done;
+    }
+
+    objectClass = env->FindClass("java/lang/Object");
+    if (objectClass == NULL) {
+        goto done;
+    }
+
+    count = env->GetArrayLength(card_challenges);
+    results = env->NewObjectArray(count, objectClass, NULL);
+    if (results == NULL) {
+        goto done;
+    }
+
+    for (jsize i = 0; i < count; i++) {
+        jbyteArray cc = (jbyteArray) env->GetObjectArrayElement(card_challenges, i);
+        jbyteArray hc = (jbyteArray) env->GetObjectArrayElement(host_challenges, i);
+        jbyteArray kv = (jbyteArray) env->GetObjectArrayElement(keyInfos, i);
+        jbyteArray cuid = (jbyteArray) env->GetObjectArrayElement(CUIDs, i);
+        jbyteArray kdd = (jbyteArray) env->GetObjectArrayElement(KDDs, i);
+
+        jobjectArray keys = ComputeSecureChannelKeysForCard(env, &ctx, objectClass, cc, hc, kv, cuid, kdd);
+        if (keys != NULL) {
+            env->SetObjectArrayElement(results, i, keys);
+            env->DeleteLocalRef(keys);
+        }
+
+        env->DeleteLocalRef(cc);
+        env->DeleteLocalRef(hc);
+        env->DeleteLocalRef(kv);
+        env->DeleteLocalRef(cuid);
+        env->DeleteLocalRef(kdd);
+
+        if (env->ExceptionCheck()) {
+            results = NULL;
+            goto done;
+        }
+    }
+
+done:
+
+    if (ctx.masterKey) {
+        PK11_FreeSymKey(ctx.masterKey);
+        ctx.masterKey = NULL;
+    }
+
+    if (ctx.transportKey) {
+        PK11_FreeSymKey(ctx.transportKey);
+        ctx.transportKey = NULL;
+    }
+
+    if (ctx.slot) {
+        PK11_FreeSlot(ctx.slot);
+        ctx.slot = NULL;
+    }
+
+    if (internal) {
+        PK11_FreeSlot(internal);
+        internal = NULL;
+    }
+
+    if (keyNameChars) {
+        (env)->ReleaseStringUTFChars(keyName, (const char *)keyNameChars);
+    }
+
+    if( keySetStringChars ) {
+        (env)->ReleaseStringUTFChars(keySet, (const char *)keySetStringChars);
+    }
+
+    if( sharedSecretKeyNameChars ) {
+        (env)->ReleaseStringUTFChars(sharedSecretKeyName, (const char *)sharedSecretKeyNameChars);
+    }
+
+    return results;
+}
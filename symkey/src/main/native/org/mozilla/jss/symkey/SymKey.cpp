@@ -64,6 +64,7 @@ extern "C"
 #include <assert.h>
 #include <stdio.h>
 #include <cstdarg>
+#include <map>
 #include <string>
 
 #include "Buffer.h"
@@ -110,12 +111,105 @@ extern "C"
 }
 #endif
 
-PK11SlotInfo *ReturnSlot(char *tokenNameChars)
+/* Cache of slot and symmetric key handles.
+ *
+ * Every session key derivation looks up its token by name and then its
+ * master key by nickname. Finding the key means listing every fixed key
+ * in the slot, so without the cache each lookup costs a round trip to
+ * the token per key stored on it.
+ *
+ * Slots are cached by token name and keys by slot and nickname. The cache
+ * holds its own reference to each handle and hands out new references,
+ * so callers free the results of ReturnSlot() and ReturnSymKey() as
+ * before. Only successful lookups are cached. A cached key is checked
+ * against its nickname before it is returned, so a key deleted or renamed
+ * behind our back is looked up again rather than returned stale; keys
+ * deleted through SessionKey.DeleteSymmetricKey() are evicted immediately. */
+
+typedef std::map<std::string, PK11SlotInfo *> SlotCache;
+typedef std::map<std::string, PK11SymKey *> SymKeyCache;
+
+static PRCallOnceType keyCacheOnce;
+static PRLock *keyCacheLock = NULL;
+static SlotCache *slotCache = NULL;
+static SymKeyCache *symKeyCache = NULL;
+
+static PRStatus InitKeyCache(void)
 {
-    if( tokenNameChars == NULL)
-    {
-        return NULL;
+    keyCacheLock = PR_NewLock();
+    if (keyCacheLock == NULL) {
+        return PR_FAILURE;
+    }
+
+    slotCache = new SlotCache();
+    symKeyCache = new SymKeyCache();
+    return PR_SUCCESS;
+}
+
+/* Acquire the cache lock; false if the cache couldn't be created, in
+ * which case lookups go straight to the token. */
+static bool EnterKeyCache(void)
+{
+    if (PR_CallOnce(&keyCacheOnce, InitKeyCache) != PR_SUCCESS) {
+        return false;
+    }
+
+    PR_Lock(keyCacheLock);
+    return true;
+}
+
+static void ExitKeyCache(void)
+{
+    PR_Unlock(keyCacheLock);
+}
+
+static std::string SymKeyCacheKey(PK11SlotInfo *slot, const char *keyname)
+{
+    char prefix[64];
+    snprintf(prefix, sizeof(prefix), "%lu:%lu:",
+        (unsigned long) PK11_GetModuleID(slot), (unsigned long) PK11_GetSlotID(slot));
+    return std::string(prefix) + keyname;
+}
+
+/* Drop all cached handles, e.g. after keys were added or removed on a
+ * token by another process. */
+void ClearKeyCache(void)
+{
+    if (!EnterKeyCache()) {
+        return;
+    }
+
+    for (SlotCache::iterator it = slotCache->begin(); it != slotCache->end(); ++it) {
+        PK11_FreeSlot(it->second);
+    }
+    slotCache->clear();
+
+    for (SymKeyCache::iterator it = symKeyCache->begin(); it != symKeyCache->end(); ++it) {
+        PK11_FreeSymKey(it->second);
     }
+    symKeyCache->clear();
+
+    ExitKeyCache();
+}
+
+/* Drop the cached handle for the named key on the given slot. */
+void RemoveCachedSymKey(PK11SlotInfo *slot, const char *keyname)
+{
+    if (slot == NULL || keyname == NULL || !EnterKeyCache()) {
+        return;
+    }
+
+    SymKeyCache::iterator it = symKeyCache->find(SymKeyCacheKey(slot, keyname));
+    if (it != symKeyCache->end()) {
+        PK11_FreeSymKey(it->second);
+        symKeyCache->erase(it);
+    }
+
+    ExitKeyCache();
+}
+
+static PK11SlotInfo *FindSlot(char *tokenNameChars)
+{
     PK11SlotInfo *slot=NULL;
 
     if(!strcmp( tokenNameChars, "internal" ) || !strcmp( tokenNameChars, "Internal Key Storage Token"))
@@ -129,12 +223,55 @@ PK11SlotInfo *ReturnSlot(char *tokenNameChars)
     return slot;
 }
 
+PK11SlotInfo *ReturnSlot(char *tokenNameChars)
+{
+    if( tokenNameChars == NULL)
+    {
+        return NULL;
+    }
+    PK11SlotInfo *slot=NULL;
+
+    if (!EnterKeyCache()) {
+        return FindSlot(tokenNameChars);
+    }
+
+    SlotCache::iterator it = slotCache->find(tokenNameChars);
+    if (it != slotCache->end()) {
+        // A removed token will be found again under a new slot if it
+        // comes back.
+        if (PK11_IsPresent(it->second)) {
+            slot = PK11_ReferenceSlot(it->second);
+        } else {
+            PK11_FreeSlot(it->second);
+            slotCache->erase(it);
+        }
+    }
+    ExitKeyCache();
+
+    if (slot != NULL) {
+        return slot;
+    }
+
+    slot = FindSlot(tokenNameChars);
+    if (slot == NULL || !EnterKeyCache()) {
+        return slot;
+    }
+
+    // Another thread may have cached the slot in the meantime.
+    it = slotCache->find(tokenNameChars);
+    if (it == slotCache->end()) {
+        (*slotCache)[tokenNameChars] = PK11_ReferenceSlot(slot);
+    }
+    ExitKeyCache();
+
+    return slot;
+}
 
 /* Find the Symmetric key with the given nickname
   Returns null if the key could not be found
   Steve wrote this code to replace the old impl */
 
-PK11SymKey * ReturnSymKey( PK11SlotInfo *slot, char *keyname)
+static PK11SymKey *FindSymKeyInSlot( PK11SlotInfo *slot, char *keyname)
 {
     char       *name       = NULL;
     PK11SymKey *foundSymKey= NULL;
@@ -192,6 +329,61 @@ PK11SymKey * ReturnSymKey( PK11SlotInfo *slot, char *keyname)
     return foundSymKey;
 }
 
+/* Return a new reference to the Symmetric key with the given nickname,
+   from the cache if possible.
+   Returns null if the key could not be found */
+
+PK11SymKey * ReturnSymKey( PK11SlotInfo *slot, char *keyname)
+{
+    PK11SymKey *foundSymKey = NULL;
+    PK11SymKey *cachedSymKey = NULL;
+    char       *name        = NULL;
+
+    if (keyname == NULL || slot == NULL)
+    {
+        return NULL;
+    }
+
+    if (!EnterKeyCache()) {
+        return FindSymKeyInSlot(slot, keyname);
+    }
+
+    std::string cacheKey = SymKeyCacheKey(slot, keyname);
+    SymKeyCache::iterator it = symKeyCache->find(cacheKey);
+    if (it != symKeyCache->end()) {
+        cachedSymKey = PK11_ReferenceSymKey(it->second);
+    }
+    ExitKeyCache();
+
+    if (cachedSymKey != NULL) {
+        // One attribute read instead of listing every key in the slot.
+        name = PK11_GetSymKeyNickname(cachedSymKey);
+        if (name != NULL && strcmp(keyname, name) == 0) {
+            PORT_Free(name);
+            return cachedSymKey;
+        }
+
+        if (name != NULL) {
+            PORT_Free(name);
+        }
+        PK11_FreeSymKey(cachedSymKey);
+        RemoveCachedSymKey(slot, keyname);
+    }
+
+    foundSymKey = FindSymKeyInSlot(slot, keyname);
+    if (foundSymKey == NULL || !EnterKeyCache()) {
+        return foundSymKey;
+    }
+
+    it = symKeyCache->find(cacheKey);
+    if (it == symKeyCache->end()) {
+        (*symKeyCache)[cacheKey] = PK11_ReferenceSymKey(foundSymKey);
+    }
+    ExitKeyCache();
+
+    return foundSymKey;
+}
+
 PK11SymKey *CreateDesKey24Byte(PK11SlotInfo *slot, PK11SymKey *origKey) {
 
     PK11SymKey *newKey = NULL;
@@ -290,7 +482,7 @@ loser:
 
 
 extern "C" JNIEXPORT jstring
-JNICALL Java_org_mozilla_jss_symkey_SessionKey_DeleteKey(JNIEnv * env, jclass this2, jstring tokenName, jstring keyName)
+JNICALL Java_org_mozilla_jss_symkey_SessionKey_DeleteSymmetricKey(JNIEnv * env, jclass this2, jstring tokenName, jstring keyName)
 
 {
     char *tokenNameChars;
@@ -314,13 +506,10 @@ JNICALL Java_org_mozilla_jss_symkey_SessionKey_DeleteKey(JNIEnv * env, jclass th
     {
         goto finish;
     }
-    if(strcmp( tokenNameChars, "internal" ) == 0 )
-    {
-        slot = PK11_GetInternalKeySlot();
-    }
-    else if( tokenNameChars != NULL )
+    slot = FindSlot( tokenNameChars );
+    if( slot == NULL )
     {
-        slot = PK11_FindSlotByName( tokenNameChars );
+        goto finish;
     }
     /* Initialize the symmetric key list. */
     symKey = PK11_ListFixedKeysInSlot( slot , NULL, ( void *) &pwdata );
@@ -348,6 +537,8 @@ JNICALL Java_org_mozilla_jss_symkey_SessionKey_DeleteKey(JNIEnv * env, jclass th
         symKey = nextSymKey;
     }
 
+    RemoveCachedSymKey( slot, keyNameChars );
+
     if( keys_deleted == 0 )
     {
 
@@ -1900,6 +2091,19 @@ JNICALL Java_org_mozilla_jss_symkey_SessionKey_SetDefaultPrefix(JNIEnv * env, jc
     return;
 }
 
+/*
+ * Class:     org_mozilla_jss_symkey_SessionKey
+ * Method:    ClearKeyCache
+ * Signature: ()V
+ */
+extern "C" JNIEXPORT void JNICALL Java_org_mozilla_jss_symkey_SessionKey_ClearKeyCache
+(JNIEnv *, jclass);
+extern "C" JNIEXPORT void
+JNICALL Java_org_mozilla_jss_symkey_SessionKey_ClearKeyCache(JNIEnv * env, jclass this2)
+{
+    ClearKeyCache();
+}
+
 int checkForDeveloperKeySet(char * keyInfo)
 {
 
@@ -59,12 +59,4 @@ public class JSSImplementation extends SSLImplementation {
 
         return new JSSUtil(cert);
     }
-
-/*    @Override
-    public boolean isAlpnSupported() {
-        // NSS supports ALPN but JSS doesn't yet support ALPN.
-        return false;
-    }
-
-*/
 }
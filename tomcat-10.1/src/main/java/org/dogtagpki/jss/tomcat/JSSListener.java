@@ -46,6 +46,9 @@ public class JSSListener implements LifecycleListener {
 
         if (type.equals(Lifecycle.BEFORE_INIT_EVENT)) {
             initJSS();
+
+        } else if (type.equals(Lifecycle.AFTER_DESTROY_EVENT)) {
+            shutdownJSS();
         }
     }
 
@@ -62,4 +65,11 @@ public class JSSListener implements LifecycleListener {
             throw new RuntimeException(e);
         }
     }
+
+    public void shutdownJSS() {
+
+        logger.info("JSSListener: Shutting down JSS");
+
+        TomcatJSS.getInstance().shutdown();
+    }
 }
@@ -14,6 +14,7 @@ import org.mozilla.jss.JSSProvider;
 import org.mozilla.jss.provider.javax.crypto.JSSKeyManager;
 import org.mozilla.jss.provider.javax.crypto.JSSTrustManager;
 import org.mozilla.jss.ssl.javax.JSSEngine;
+import org.mozilla.jss.ssl.javax.JSSKeyMaterials;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,6 +34,12 @@ public class JSSContext implements org.apache.tomcat.util.net.SSLContext {
     private javax.net.ssl.SSLContext ctx;
     private List<String> aliases;
 
+    /**
+     * Server certificates and keys, resolved from the aliases in init()
+     * and shared by all engines created by this context.
+     */
+    private JSSKeyMaterials keyMaterials;
+
     private JSSKeyManager jkm;
     private JSSTrustManager jtm;
 
@@ -88,6 +95,14 @@ public class JSSContext implements org.apache.tomcat.util.net.SSLContext {
 
             ctx = javax.net.ssl.SSLContext.getInstance("TLS", provider);
             ctx.init(kms, tms, sr);
+
+            // Look up the certificates and keys once rather than for every
+            // connection. Initializing the context again, as Tomcat does
+            // when reloading its SSL configuration, picks up new ones.
+            keyMaterials = null;
+            if (JSSProvider.ENABLE_JSSENGINE && aliases != null && !aliases.isEmpty()) {
+                keyMaterials = JSSKeyMaterials.fromAliases(aliases, kms);
+            }
         } catch (Exception e) {
             throw new KeyManagementException(e.getMessage(), e);
         }
@@ -102,9 +117,14 @@ public class JSSContext implements org.apache.tomcat.util.net.SSLContext {
 
         if (eng instanceof JSSEngine) {
             JSSEngine j_eng = (JSSEngine) eng;
-            j_eng.setCertFromAliases(aliases);
+            if (keyMaterials != null) {
+                j_eng.setKeyMaterials(keyMaterials);
+            } else {
+                j_eng.setCertFromAliases(aliases);
+            }
             if(instance != null) {
                 j_eng.setListeners(instance.getSocketListeners());
+                j_eng.setOCSPStapler(instance.getOCSPStapler());
             }
         }
 
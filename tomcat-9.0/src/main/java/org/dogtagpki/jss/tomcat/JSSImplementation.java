@@ -60,7 +60,7 @@ public class JSSImplementation extends SSLImplementation {
 
     @Override
     public boolean isAlpnSupported() {
-        // NSS supports ALPN but JSS doesn't yet support ALPN.
-        return false;
+        // JSSEngine negotiates ALPN via NSS; this is required for HTTP/2.
+        return true;
     }
 }
@@ -54,6 +54,7 @@ import org.mozilla.jss.ssl.SSLAlertEvent;
 import org.mozilla.jss.ssl.SSLHandshakeCompletedEvent;
 import org.mozilla.jss.ssl.SSLServerSocket;
 import org.mozilla.jss.ssl.SSLSocketListener;
+import org.mozilla.jss.ssl.javax.OCSPStapler;
 import org.mozilla.jss.util.IncorrectPasswordException;
 import org.mozilla.jss.util.Password;
 import org.slf4j.Logger;
@@ -96,6 +97,9 @@ public class TomcatJSS implements SSLSocketListener {
     int ocspMaxCacheEntryDuration = 86400; // seconds (default: 24 hours)
     int ocspTimeout = 60; // seconds (default: 1 minute)
 
+    boolean enableOCSPStapling;
+    OCSPStapler ocspStapler;
+
     String strictCiphers;
     boolean boolStrictCiphers;
 
@@ -239,6 +243,22 @@ public class TomcatJSS implements SSLSocketListener {
         this.ocspTimeout = ocspTimeout;
     }
 
+    public boolean getEnableOCSPStapling() {
+        return enableOCSPStapling;
+    }
+
+    public void setEnableOCSPStapling(boolean enableOCSPStapling) {
+        this.enableOCSPStapling = enableOCSPStapling;
+    }
+
+    /**
+     * Returns the OCSPStapler shared by all server SSLEngines, or null
+     * when OCSP stapling is disabled.
+     */
+    public OCSPStapler getOCSPStapler() {
+        return ocspStapler;
+    }
+
     public void loadJSSConfig(String jssConf) throws IOException {
         File configFile = new File(jssConf);
         loadJSSConfig(configFile);
@@ -298,6 +318,10 @@ public class TomcatJSS implements SSLSocketListener {
         String ocspTimeoutProp = config.getProperty("ocspTimeout");
         if (StringUtils.isNotEmpty(ocspTimeoutProp))
             setOcspTimeout(Integer.parseInt(ocspTimeoutProp));
+
+        String enableOCSPStaplingProp = config.getProperty("enableOCSPStapling");
+        if (StringUtils.isNotEmpty(enableOCSPStaplingProp))
+            setEnableOCSPStapling(Boolean.parseBoolean(enableOCSPStaplingProp));
     }
 
     public void loadTomcatConfig(String serverXml)
@@ -378,6 +402,10 @@ public class TomcatJSS implements SSLSocketListener {
         String ocspTimeoutProp = connector.getAttribute("ocspTimeout");
         if (StringUtils.isNotEmpty(ocspTimeoutProp))
             setOcspTimeout(Integer.parseInt(ocspTimeoutProp));
+
+        String enableOCSPStaplingProp = connector.getAttribute("enableOCSPStapling");
+        if (StringUtils.isNotEmpty(enableOCSPStaplingProp))
+            setEnableOCSPStapling(Boolean.parseBoolean(enableOCSPStaplingProp));
     }
 
     /**
@@ -483,11 +511,39 @@ public class TomcatJSS implements SSLSocketListener {
         // 12 hours = 43200 seconds
         SSLServerSocket.configServerSessionIDCache(0, 43200, 43200, null);
 
+        logger.debug("TomcatJSS: enableOCSPStapling: {}", enableOCSPStapling);
+        closeOCSPStapler();
+        if (enableOCSPStapling) {
+            // Responses are fetched from the responder named in the
+            // server certificate, in the background.
+            ocspStapler = new OCSPStapler();
+        }
+
         logger.debug("TomcatJSS: initialization complete");
 
         initialized = true;
     }
 
+    /**
+     * Stops the background work started by init(). Calling init() again
+     * afterwards applies the current configuration.
+     */
+    public void shutdown() {
+
+        logger.debug("TomcatJSS: shutdown");
+
+        closeOCSPStapler();
+        initialized = false;
+    }
+
+    void closeOCSPStapler() {
+        if (ocspStapler == null) {
+            return;
+        }
+        ocspStapler.close();
+        ocspStapler = null;
+    }
+
     public void login() throws NoSuchTokenException, TokenException {
 
         logger.debug("TomcatJSS: logging into tokens");